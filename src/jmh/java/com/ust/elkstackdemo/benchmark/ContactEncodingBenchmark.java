@@ -0,0 +1,96 @@
+package com.ust.elkstackdemo.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ust.elkstackdemo.controller.ContactFormat;
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactJson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a list of contacts in each response format, with the size of the encoded
+ * list printed once per trial. {@link #encode} writes fresh contacts, as Jackson or
+ * {@link ContactFormat} does for a response; {@link #encodeCachedJson} is what {@code GET /contacts}
+ * and the searches actually do for JSON, copying each stored contact's cached encoding.
+ * {@link #decode} reads the list the way {@code POST /contacts/bulk} does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ContactEncodingBenchmark {
+
+    @Param({"json", "cbor", "smile", "protobuf"})
+    public String format;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Null for JSON.
+     */
+    private ContactFormat contactFormat;
+    private List<Contact> contacts;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        contactFormat = format.equals("json") ? null : ContactFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        contacts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            contacts.add(ContactGenerator.contact(i));
+        }
+        encoded = encode();
+        System.out.printf("%n%s: %d contacts in %d bytes, %.1f per contact%n",
+                format, size, encoded.length, (double) encoded.length / size);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        // copies, so that JSON is encoded afresh rather than from the cache
+        var fresh = new ArrayList<Contact>(contacts.size());
+        for (Contact contact : contacts) {
+            fresh.add(new Contact(contact.getName(), contact.getEmail(), contact.getPhoneNumber()));
+        }
+        return contactFormat == null ? objectMapper.writeValueAsBytes(fresh) : contactFormat.encode(fresh);
+    }
+
+    @Benchmark
+    public byte[] encodeCachedJson() {
+        return ContactJson.array(contacts);
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) throws IOException {
+        var in = new ByteArrayInputStream(encoded);
+        Iterator<Contact> read = contactFormat == null
+                ? objectMapper.readerFor(Contact.class).readValues(in)
+                : contactFormat.read(in);
+        while (read.hasNext()) {
+            blackhole.consume(read.next());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.ust.elkstackdemo.benchmark;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.repository.ContactStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic synthetic contacts: contact {@code i} is always the same, so stores of any size can
+ * be built without holding the data set and fresh contacts are simply indexes past the store size.
+ * <p>
+ * Names combine common first and last names, some accented, so that names repeat the way they do
+ * in a real address book and lookups by name return a handful of contacts. Phone numbers are ten
+ * digits starting with 2-9 and are unique for every index below {@link #MAX_CONTACTS}: they come
+ * from an affine permutation of the index, which also spreads consecutive indexes across the
+ * number space.
+ */
+final class ContactGenerator {
+
+    /**
+     * Distinct phone numbers available, one per index.
+     */
+    static final long MAX_CONTACTS = 8_000_000_000L;
+
+    private static final long PHONE_BASE = 2_000_000_000L;
+
+    /**
+     * Multiplier of the permutation; coprime with {@link #MAX_CONTACTS} (odd, not a multiple of 5)
+     * and small enough that {@code i * PHONE_MULTIPLIER} cannot overflow.
+     */
+    private static final long PHONE_MULTIPLIER = 1_000_003L;
+
+    private static final String[] FIRST_NAMES = {
+            "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "William", "Elizabeth",
+            "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+            "José", "María", "Juan", "Ana", "Luis", "Sofía", "Carlos", "Lucía", "Jorge", "Elena",
+            "Wei", "Fang", "Hiroshi", "Yuki", "Arjun", "Priya", "Ahmed", "Fatima", "Olivier", "Chloé",
+            "Søren", "Ingrid", "Mateus", "Beatriz", "Dmitri", "Olga", "Kwame", "Amara", "Liam", "Noah"
+    };
+
+    private static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+            "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+            "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis", "Robinson",
+            "Müller", "Schmidt", "Dubois", "Lefèvre", "Rossi", "Bianchi", "Nowak", "Kowalski", "Ivanov", "Petrov",
+            "Wang", "Li", "Zhang", "Chen", "Tanaka", "Suzuki", "Patel", "Sharma", "Okafor", "Mensah",
+            "Silva", "Santos", "Oliveira", "Pereira", "Costa", "Jensen", "Nielsen", "Hansen", "Larsen", "Andersen"
+    };
+
+    private static final String[] DOMAINS = {"gmail.com", "yahoo.com", "outlook.com", "example.com", "proton.me"};
+
+    private ContactGenerator() {
+    }
+
+    static Contact contact(long i) {
+        // a middle initial makes roughly 78k distinct names, so each name is shared by about
+        // size / 78k contacts
+        String first = FIRST_NAMES[(int) (i % FIRST_NAMES.length)];
+        String last = LAST_NAMES[(int) (i / FIRST_NAMES.length % LAST_NAMES.length)];
+        char initial = (char) ('A' + i / (FIRST_NAMES.length * LAST_NAMES.length) % 26);
+        String name = first + " " + initial + ". " + last;
+        String email = first.toLowerCase() + "." + last.toLowerCase() + i + "@" + DOMAINS[(int) (i % DOMAINS.length)];
+        return new Contact(name, email, phoneNumber(i));
+    }
+
+    static String name(long i) {
+        return contact(i).getName();
+    }
+
+    static String phoneNumber(long i) {
+        return Long.toString(PHONE_BASE + i * PHONE_MULTIPLIER % MAX_CONTACTS);
+    }
+
+    /**
+     * Add contacts {@code [0, size)} in bulk batches.
+     */
+    static void fill(ContactStore store, int size) {
+        List<Contact> batch = new ArrayList<>(1000);
+        for (int i = 0; i < size; i++) {
+            batch.add(contact(i));
+            if (batch.size() == 1000 || i == size - 1) {
+                store.addContacts(batch);
+                batch.clear();
+            }
+        }
+    }
+}
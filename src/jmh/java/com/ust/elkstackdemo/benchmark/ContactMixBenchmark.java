@@ -0,0 +1,86 @@
+package com.ust.elkstackdemo.benchmark;
+
+import com.ust.elkstackdemo.model.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent readers and writers on one store. Readers alternate name and phone number lookups;
+ * writers alternate adding a fresh contact and removing the oldest one they added, keeping at most
+ * {@link Writer#IN_FLIGHT} extra contacts each so the store size holds steady. JMH reports each
+ * group's throughput and its readers' and writers' separately.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactMixBenchmark {
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        static final int IN_FLIGHT = 1024;
+
+        final ArrayDeque<String> added = new ArrayDeque<>(IN_FLIGHT);
+        boolean remove;
+
+        void write(StoreState state) {
+            if (remove && !added.isEmpty()) {
+                state.store.removeContactByPhoneNumber(added.poll());
+            } else {
+                Contact contact = state.freshContact();
+                state.store.addContact(contact);
+                added.add(contact.getPhoneNumber());
+            }
+            remove = added.size() >= IN_FLIGHT || !remove;
+        }
+    }
+
+    private static List<Contact> read(StoreState state, ContactReadBenchmark.Keys keys) {
+        int i = keys.next();
+        return (i & 1) == 0 ? state.store.getContactsByName(keys.names[i])
+                : state.store.getContactsByPhoneNumber(keys.phoneNumbers[i]);
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(7)
+    public List<Contact> readMostlyRead(StoreState state, ContactReadBenchmark.Keys keys) {
+        return read(state, keys);
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public void readMostlyWrite(StoreState state, Writer writer) {
+        writer.write(state);
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(2)
+    public List<Contact> balancedRead(StoreState state, ContactReadBenchmark.Keys keys) {
+        return read(state, keys);
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(2)
+    public void balancedWrite(StoreState state, Writer writer) {
+        writer.write(state);
+    }
+}
@@ -0,0 +1,95 @@
+package com.ust.elkstackdemo.benchmark;
+
+import com.ust.elkstackdemo.model.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded lookups against a filled store, one benchmark per query type. Keys are drawn at
+ * random from the stored contacts up front, so every lookup hits and key generation stays out of
+ * the measurement. Run with more threads ({@code -t 4}) for read scalability without writers;
+ * {@link ContactMixBenchmark} adds them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactReadBenchmark {
+
+    /**
+     * Keys cycled through by one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Keys {
+
+        static final int COUNT = 4096;
+
+        final String[] names = new String[COUNT];
+        final String[] namePrefixes = new String[COUNT];
+        final String[] misspelledNames = new String[COUNT];
+        final String[] phoneNumbers = new String[COUNT];
+        final String[] phoneFragments = new String[COUNT];
+        int next;
+
+        @Setup
+        public void setUp(StoreState state) {
+            var random = new SplittableRandom(Thread.currentThread().threadId());
+            for (int i = 0; i < COUNT; i++) {
+                long index = random.nextLong(state.size);
+                String name = ContactGenerator.name(index);
+                String phoneNumber = ContactGenerator.phoneNumber(index);
+                names[i] = name;
+                // first name, initial and the start of the last name, e.g. "James A. Sm"
+                namePrefixes[i] = name.substring(0, Math.min(name.length(), name.indexOf('.') + 4));
+                misspelledNames[i] = name.substring(0, name.length() - 2) + "x" + name.charAt(name.length() - 1);
+                phoneNumbers[i] = phoneNumber;
+                phoneFragments[i] = phoneNumber.substring(3, 9);
+            }
+        }
+
+        int next() {
+            return next++ & (COUNT - 1);
+        }
+    }
+
+    @Benchmark
+    public List<Contact> getContactsByName(StoreState state, Keys keys) {
+        return state.store.getContactsByName(keys.names[keys.next()]);
+    }
+
+    @Benchmark
+    public List<Contact> getContactsByNamePrefix(StoreState state, Keys keys) {
+        return state.store.getContactsByNamePrefix(keys.namePrefixes[keys.next()]);
+    }
+
+    @Benchmark
+    public List<Contact> getContactsByNameFuzzy(StoreState state, Keys keys) {
+        return state.store.getContactsByNameFuzzy(keys.misspelledNames[keys.next()]);
+    }
+
+    @Benchmark
+    public List<Contact> getContactsByPhoneNumber(StoreState state, Keys keys) {
+        return state.store.getContactsByPhoneNumber(keys.phoneNumbers[keys.next()]);
+    }
+
+    /**
+     * Six digits from the middle of a number, answered through the n-gram index.
+     */
+    @Benchmark
+    public List<Contact> getContactsByPhoneNumberFragment(StoreState state, Keys keys) {
+        return state.store.getContactsByPhoneNumber(keys.phoneFragments[keys.next()]);
+    }
+}
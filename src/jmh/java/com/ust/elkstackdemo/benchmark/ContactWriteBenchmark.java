@@ -0,0 +1,91 @@
+package com.ust.elkstackdemo.benchmark;
+
+import com.ust.elkstackdemo.model.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded adds and removes. Each invocation writes a batch of {@link #BATCH} fresh contacts
+ * and the invocation-level fixtures undo it, so the store stays within one batch of its parameter
+ * size however long the run; the batch also makes each invocation long enough for per-invocation
+ * fixtures not to skew the timing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactWriteBenchmark {
+
+    static final int BATCH = 1000;
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void addContact(StoreState state, Fresh fresh) {
+        for (Contact contact : fresh.batch) {
+            state.store.addContact(contact);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void removeContactByPhoneNumber(StoreState state, Present present) {
+        for (Contact contact : present.batch) {
+            state.store.removeContactByPhoneNumber(contact.getPhoneNumber());
+        }
+    }
+
+    /**
+     * A batch not in the store yet, removed again once {@link #addContact} has added it.
+     */
+    @State(Scope.Thread)
+    public static class Fresh {
+
+        final Contact[] batch = new Contact[BATCH];
+
+        @Setup(Level.Invocation)
+        public void generate(StoreState state) {
+            for (int i = 0; i < BATCH; i++) {
+                batch[i] = state.freshContact();
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void remove(StoreState state) {
+            for (Contact contact : batch) {
+                state.store.removeContactByPhoneNumber(contact.getPhoneNumber());
+            }
+        }
+    }
+
+    /**
+     * A batch added to the store for {@link #removeContactByPhoneNumber} to remove.
+     */
+    @State(Scope.Thread)
+    public static class Present {
+
+        final Contact[] batch = new Contact[BATCH];
+
+        @Setup(Level.Invocation)
+        public void add(StoreState state) {
+            for (int i = 0; i < BATCH; i++) {
+                batch[i] = state.freshContact();
+            }
+            state.store.addContacts(Arrays.asList(batch));
+        }
+    }
+}
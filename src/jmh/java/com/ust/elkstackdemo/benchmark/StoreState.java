@@ -0,0 +1,59 @@
+package com.ust.elkstackdemo.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.repository.ContactRepository;
+import com.ust.elkstackdemo.repository.ContactStore;
+import com.ust.elkstackdemo.repository.OffHeapContactStore;
+import com.ust.elkstackdemo.repository.ShardedContactStore;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A store filled with {@link #size} generated contacts, shared by every thread of a trial. The
+ * {@code size} and {@code backend} parameters apply to every benchmark that uses it; narrow them
+ * with e.g. {@code -p size=10000 -p backend=heap}.
+ */
+@State(Scope.Benchmark)
+public class StoreState {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"heap", "offheap", "sharded"})
+    public String backend;
+
+    public ContactStore store;
+
+    /**
+     * Next generator index not in the store yet; writers take fresh contacts from here.
+     */
+    private final AtomicLong fresh = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void fill() {
+        // without Spring there is no logging configuration and Logback logs everything to the console
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.ERROR);
+        store = switch (backend) {
+            case "heap" -> new ContactRepository();
+            case "offheap" -> new OffHeapContactStore();
+            case "sharded" -> new ShardedContactStore(Runtime.getRuntime().availableProcessors());
+            default -> throw new IllegalArgumentException("Invalid backend: " + backend);
+        };
+        ContactGenerator.fill(store, size);
+        fresh.set(size);
+    }
+
+    /**
+     * A contact that is not and never was in the store.
+     */
+    public Contact freshContact() {
+        return ContactGenerator.contact(fresh.getAndIncrement());
+    }
+}
@@ -0,0 +1,345 @@
+package com.ust.elkstackdemo.loadtest;
+
+import com.ust.elkstackdemo.ElkStackDemoApplication;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load test of the whole stack: starts the application on a random port in this JVM,
+ * preloads contacts through the bulk endpoint, then starts requests at a fixed rate whatever the
+ * responses do, so a slow server builds a queue instead of slowing the load down.
+ * <p>
+ * Response time is measured from when each request was due to start, not from when it was sent,
+ * which corrects for coordinated omission: a stall delays every request scheduled during it and
+ * they all carry the delay. Service time, from the actual send, is reported alongside for
+ * comparison. Only requests due within the measured window count; the warmup runs at the same
+ * rate but is not recorded.
+ * <p>
+ * Settings come from {@code loadtest.*} system properties (see {@link LoadTestSettings}); any other
+ * system property, e.g. {@code -Dspring.threads.virtual.enabled=true}, configures the application.
+ * Percentile distributions are written to {@code loadtest.report-dir} as {@code .hgrm} files for
+ * plotting.
+ */
+public final class ContactLoadTest {
+
+    private static final String[] FIRST_NAMES = {
+            "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "José", "María",
+            "Wei", "Fang", "Arjun", "Priya", "Ahmed", "Fatima", "Olivier", "Chloé", "Kwame", "Amara"
+    };
+
+    private static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Garcia", "Martinez", "Lee", "Wang", "Chen", "Patel", "Müller", "Dubois",
+            "Rossi", "Nowak", "Ivanov", "Tanaka", "Silva", "Okafor", "Jensen", "Hansen", "Brown", "Lopez",
+            "Davis", "Miller", "Wilson", "Taylor", "Moore", "Clark", "Lewis", "Harris", "Young", "King"
+    };
+
+    /**
+     * Phone number ranges of the three kinds of generated contacts.
+     */
+    private static final long SEARCHABLE_PHONES = 3_000_000_000L;
+    private static final long REMOVABLE_PHONES = 4_000_000_000L;
+    private static final long ADDED_PHONES = 5_000_000_000L;
+
+    private static final int PRELOAD_CHUNK = 10_000;
+
+    /**
+     * Application settings echoed in the report, since they are what runs are compared on.
+     */
+    private static final String[] REPORTED_PROPERTIES = {
+            "contacts.store.backend", "contacts.store.shards", "spring.threads.virtual.enabled", "server.tomcat.threads.max",
+            "server.tomcat.max-connections", "contacts.search-cache.enabled",
+            "contacts.logging.async", "contacts.logging.overflow-policy", "logging.level.com.ust.elkstackdemo",
+            "contacts.logging.sampling.debug-sample-rate", "contacts.persistence.enabled"
+    };
+
+    private final LoadTestSettings settings;
+    private final URI base;
+    private final HttpClient client;
+    private final ExecutorService callbacks;
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ArrayDeque<String> removable = new ArrayDeque<>();
+    private final SplittableRandom random = new SplittableRandom(42);
+    private long added;
+    private int maxInFlight;
+
+    ContactLoadTest(LoadTestSettings settings, URI base) {
+        this.settings = settings;
+        this.base = base;
+        this.callbacks = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(settings.timeout())
+                .executor(callbacks)
+                .build();
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        var settings = LoadTestSettings.fromSystemProperties();
+        var reportDir = Path.of(System.getProperty("loadtest.report-dir", "target/loadtest"));
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(ElkStackDemoApplication.class)
+                .run("--server.port=0");
+        try {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            var loadTest = new ContactLoadTest(settings, URI.create("http://localhost:" + port));
+            try {
+                loadTest.preload();
+                loadTest.run();
+                loadTest.report(System.out, app);
+                loadTest.writeDistributions(reportDir);
+            } finally {
+                loadTest.callbacks.shutdownNow();
+            }
+        } finally {
+            app.close();
+        }
+    }
+
+    /**
+     * Load the searchable contacts and as many removable ones as the mix can remove.
+     */
+    void preload() throws IOException, InterruptedException {
+        long removals = settings.expected(Operation.REMOVE) + 100;
+        StringBuilder body = new StringBuilder();
+        for (long i = 0; i < settings.preload() + removals; i++) {
+            long phone = i < settings.preload() ? SEARCHABLE_PHONES + i : REMOVABLE_PHONES + i;
+            if (i >= settings.preload()) {
+                removable.add(Long.toString(phone));
+            }
+            body.append("{\"name\":\"").append(name(i)).append("\",\"email\":\"user").append(i)
+                    .append("@example.com\",\"phoneNumber\":\"").append(phone).append("\"}\n");
+            if ((i + 1) % PRELOAD_CHUNK == 0 || i == settings.preload() + removals - 1) {
+                var response = client.send(HttpRequest.newBuilder(base.resolve("/contacts/bulk"))
+                        .header("Content-Type", "application/x-ndjson")
+                        .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                        .build(), HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("Preload failed with " + response.statusCode() + ": " + response.body());
+                }
+                body.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Start requests on schedule until the measured window is over, then wait for the stragglers.
+     */
+    void run() throws InterruptedException {
+        Operation[] operations = Operation.values();
+        int[] cumulative = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += settings.weight(operations[i]);
+            cumulative[i] = total;
+        }
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup().toNanos();
+        long measureTo = measureFrom + settings.duration().toNanos();
+        for (long n = 0; ; n++) {
+            long due = start + n * 1_000_000_000L / settings.rate();
+            if (due >= measureTo) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int outstanding = inFlight.get();
+            maxInFlight = Math.max(maxInFlight, outstanding);
+            if (outstanding >= settings.maxInFlight()) {
+                throw new IllegalStateException("Target rate of " + settings.rate() + "/s is not sustainable: "
+                        + outstanding + " requests outstanding");
+            }
+            int pick = random.nextInt(total);
+            int i = 0;
+            while (cumulative[i] <= pick) {
+                i++;
+            }
+            send(operations[i], due, due >= measureFrom);
+        }
+        long deadline = System.nanoTime() + settings.timeout().toNanos() + 1_000_000_000L;
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        for (Stats stats : stats.values()) {
+            stats.freeze();
+        }
+    }
+
+    private void send(Operation operation, long due, boolean measured) {
+        HttpRequest request = request(operation);
+        var stats = this.stats.get(operation);
+        if (measured) {
+            stats.sent.increment();
+        }
+        inFlight.incrementAndGet();
+        long sent = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            long now = System.nanoTime();
+            inFlight.decrementAndGet();
+            if (measured && !stats.frozen) {
+                stats.responseTime.recordValue((now - due) / 1000);
+                stats.serviceTime.recordValue((now - sent) / 1000);
+                if (failure != null || response.statusCode() >= 400) {
+                    stats.errors.increment();
+                }
+            }
+        });
+    }
+
+    private HttpRequest request(Operation operation) {
+        return switch (operation) {
+            case ADD -> {
+                long i = added++;
+                String json = "{\"name\":\"" + name(i) + "\",\"email\":\"added" + i + "@example.com\",\"phoneNumber\":\""
+                        + (ADDED_PHONES + i) + "\"}";
+                yield builder("/contacts").header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+            }
+            case LIST -> builder("/contacts?limit=100&after=" + random.nextInt(settings.preload())).GET().build();
+            case SEARCH -> {
+                long i = random.nextInt(settings.preload());
+                String name = name(i);
+                yield switch (random.nextInt(3)) {
+                    case 0 -> builder("/contacts/search?type=phone&key=" + (SEARCHABLE_PHONES + i)).GET().build();
+                    case 1 -> builder("/contacts/search?type=name&key=" + encode(name)).GET().build();
+                    default -> builder("/contacts/search?type=name_prefix&key="
+                            + encode(name.substring(0, name.indexOf(' ') + 3))).GET().build();
+                };
+            }
+            case REMOVE -> {
+                String phone = removable.poll();
+                if (phone == null) {
+                    throw new IllegalStateException("Ran out of contacts to remove");
+                }
+                yield builder("/contacts/remove?num=" + phone).POST(HttpRequest.BodyPublishers.noBody()).build();
+            }
+        };
+    }
+
+    private HttpRequest.Builder builder(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(settings.timeout());
+    }
+
+    void report(PrintStream out, ConfigurableApplicationContext app) {
+        var environment = app.getEnvironment();
+        out.println();
+        out.println("Load test settings: " + settings);
+        for (String property : REPORTED_PROPERTIES) {
+            out.println("  " + property + " = " + environment.getProperty(property, "(default)"));
+        }
+        long sent = stats.values().stream().mapToLong(s -> s.sent.sum()).sum();
+        long completed = stats.values().stream().mapToLong(s -> s.reportedResponseTime.getTotalCount()).sum();
+        double seconds = settings.duration().toNanos() / 1e9;
+        out.printf("Target %d req/s, started %.1f req/s, completed %.1f req/s, at most %d in flight%n",
+                settings.rate(), sent / seconds, completed / seconds, maxInFlight);
+        table(out, "Response time from scheduled start, corrected for coordinated omission (ms)", true);
+        table(out, "Service time from actual send (ms)", false);
+    }
+
+    private void table(PrintStream out, String title, boolean response) {
+        out.println();
+        out.println(title);
+        out.printf("%-10s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+                "operation", "requests", "errors", "req/s", "p50", "p90", "p99", "p99.9", "max");
+        Histogram all = new Histogram(3);
+        long allErrors = 0;
+        double seconds = settings.duration().toNanos() / 1e9;
+        for (var entry : stats.entrySet()) {
+            Histogram histogram = response ? entry.getValue().reportedResponseTime : entry.getValue().reportedServiceTime;
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            long errors = entry.getValue().errors.sum();
+            row(out, entry.getKey().label(), histogram, errors, seconds);
+            all.add(histogram);
+            allErrors += errors;
+        }
+        row(out, "all", all, allErrors, seconds);
+    }
+
+    private static void row(PrintStream out, String label, Histogram histogram, long errors, double seconds) {
+        out.printf("%-10s %10d %8d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n", label, histogram.getTotalCount(), errors,
+                histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    void writeDistributions(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        for (var entry : stats.entrySet()) {
+            if (entry.getValue().reportedResponseTime.getTotalCount() == 0) {
+                continue;
+            }
+            String label = entry.getKey().label();
+            try (var out = new PrintStream(Files.newOutputStream(dir.resolve(label + "-response.hgrm")))) {
+                entry.getValue().reportedResponseTime.outputPercentileDistribution(out, 1000.0);
+            }
+            try (var out = new PrintStream(Files.newOutputStream(dir.resolve(label + "-service.hgrm")))) {
+                entry.getValue().reportedServiceTime.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        System.out.println();
+        System.out.println("Percentile distributions written to " + dir.toAbsolutePath());
+    }
+
+    private static String name(long i) {
+        return FIRST_NAMES[(int) (i % FIRST_NAMES.length)] + " " + LAST_NAMES[(int) (i / FIRST_NAMES.length % LAST_NAMES.length)];
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Latencies in microseconds and counts of one operation within the measured window.
+     */
+    private static final class Stats {
+
+        final Histogram responseTime = new ConcurrentHistogram(3);
+        final Histogram serviceTime = new ConcurrentHistogram(3);
+        final LongAdder sent = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        volatile boolean frozen;
+
+        /**
+         * Copies reported once recording stops, so that requests still outstanding after the
+         * timeout cannot change what is being printed.
+         */
+        Histogram reportedResponseTime;
+        Histogram reportedServiceTime;
+
+        void freeze() {
+            frozen = true;
+            reportedResponseTime = responseTime.copy();
+            reportedServiceTime = serviceTime.copy();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.ust.elkstackdemo.loadtest;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * What a load test run does, read from {@code loadtest.*} system properties.
+ *
+ * @param rate        Requests started per second, whatever the responses do.
+ * @param warmup      Time at the target rate before recording starts.
+ * @param duration    Time at the target rate that is recorded.
+ * @param mix         Relative weight of each operation, e.g. {@code add=10,list=5,search=80,remove=5}.
+ * @param preload     Contacts loaded before the run for searches and listing to find.
+ * @param timeout     Time after which a request counts as failed.
+ * @param maxInFlight Requests outstanding at which the run gives up: the target rate is not
+ *                    sustainable and latencies would only measure the queue.
+ */
+record LoadTestSettings(int rate, Duration warmup, Duration duration, Map<Operation, Integer> mix, int preload,
+                        Duration timeout, int maxInFlight) {
+
+    LoadTestSettings {
+        if (rate < 1) {
+            throw new IllegalArgumentException("Invalid rate: " + rate);
+        }
+        if (warmup.isNegative()) {
+            throw new IllegalArgumentException("Invalid warmup: " + warmup);
+        }
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Invalid duration: " + duration);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("Invalid mix: " + mix);
+        }
+        if (preload < 1) {
+            throw new IllegalArgumentException("Invalid preload: " + preload);
+        }
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Invalid timeout: " + timeout);
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Invalid max in flight: " + maxInFlight);
+        }
+        mix = Map.copyOf(mix);
+    }
+
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Integer.parseInt(System.getProperty("loadtest.rate", "500")),
+                Duration.ofSeconds(Long.parseLong(System.getProperty("loadtest.warmup-seconds", "10"))),
+                Duration.ofSeconds(Long.parseLong(System.getProperty("loadtest.duration-seconds", "30"))),
+                parseMix(System.getProperty("loadtest.mix", "add=10,list=5,search=80,remove=5")),
+                Integer.parseInt(System.getProperty("loadtest.preload", "10000")),
+                Duration.ofSeconds(Long.parseLong(System.getProperty("loadtest.timeout-seconds", "10"))),
+                Integer.parseInt(System.getProperty("loadtest.max-in-flight", "10000")));
+    }
+
+    /**
+     * Parse {@code "add=10,search=90"}; operations left out get no requests.
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            Operation operation;
+            int weight;
+            try {
+                operation = Operation.valueOf(parts[0].trim().toUpperCase());
+                weight = Integer.parseInt(parts[1].trim());
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            }
+            if (parts.length != 2 || weight < 0) {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            }
+            weights.put(operation, weight);
+        }
+        return weights;
+    }
+
+    int weight(Operation operation) {
+        return mix.getOrDefault(operation, 0);
+    }
+
+    /**
+     * Requests of {@code operation} a whole run may issue, warmup included.
+     */
+    long expected(Operation operation) {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        double seconds = (warmup.toMillis() + duration.toMillis()) / 1000.0;
+        return (long) Math.ceil(rate * seconds * weight(operation) / total);
+    }
+}
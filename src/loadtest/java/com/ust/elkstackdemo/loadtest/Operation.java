@@ -0,0 +1,31 @@
+package com.ust.elkstackdemo.loadtest;
+
+/**
+ * The requests a load test mixes.
+ */
+enum Operation {
+
+    /**
+     * {@code POST /contacts} with a contact not in the store.
+     */
+    ADD,
+
+    /**
+     * {@code GET /contacts?limit=100&after=...} from a random point of the store.
+     */
+    LIST,
+
+    /**
+     * {@code GET /contacts/search} by phone number, name or name prefix of a preloaded contact.
+     */
+    SEARCH,
+
+    /**
+     * {@code POST /contacts/remove} of a contact preloaded for removal.
+     */
+    REMOVE;
+
+    String label() {
+        return name().toLowerCase();
+    }
+}
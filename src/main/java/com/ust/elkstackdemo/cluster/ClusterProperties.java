@@ -0,0 +1,31 @@
+package com.ust.elkstackdemo.cluster;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Settings for partitioning contacts across a cluster of nodes, under {@code contacts.cluster}.
+ *
+ * @param enabled      Whether this node is part of a cluster. Off by default, keeping every
+ *                     contact on this instance.
+ * @param self         Base URL other nodes reach this one at, exactly as it appears in
+ *                     {@code nodes}.
+ * @param nodes        Base URLs of every node, this one included. {@code PUT /cluster/members}
+ *                     replaces them at runtime.
+ * @param virtualNodes Points each node gets on the hash ring; more spread contacts more evenly.
+ * @param timeout      How long a request to another node may take, connecting included.
+ * @param batchSize    Contacts per request when a bulk import or a rebalance sends contacts to
+ *                     another node.
+ */
+@ConfigurationProperties("contacts.cluster")
+public record ClusterProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("http://localhost:8000") String self,
+        @DefaultValue("http://localhost:8000") List<String> nodes,
+        @DefaultValue("128") int virtualNodes,
+        @DefaultValue("5s") Duration timeout,
+        @DefaultValue("1000") int batchSize) {
+}
@@ -0,0 +1,17 @@
+package com.ust.elkstackdemo.cluster;
+
+import java.util.List;
+
+/**
+ * This node's view of the cluster.
+ *
+ * @param self          This node's base URL.
+ * @param members       Base URLs of the nodes contacts are partitioned across.
+ * @param virtualNodes  Points each member has on the hash ring.
+ * @param localContacts Contacts stored on this node.
+ * @param rebalancing   Whether contacts this node no longer owns are being moved away.
+ * @param movedContacts Contacts moved to other nodes by rebalancing since startup.
+ */
+public record ClusterStatus(String self, List<String> members, int virtualNodes, int localContacts,
+                            boolean rebalancing, long movedContacts) {
+}
@@ -0,0 +1,508 @@
+package com.ust.elkstackdemo.cluster;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ust.elkstackdemo.model.BulkResult;
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.repository.ContactStore;
+import com.ust.elkstackdemo.service.ContactService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.UnknownHostException;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Partitions contacts across a statically configured cluster of nodes by phone number, on a
+ * {@link HashRing}. Each node stores only the contacts it owns; {@code ContactController} forwards
+ * adds and removes to the owning node and scatters searches, which may match contacts anywhere,
+ * to every node at once.
+ * <p>
+ * Requests one node sends another carry {@link #FORWARDED_HEADER} and are served from the
+ * receiving node's store as they are, so a request is forwarded at most once even while nodes
+ * disagree about the members. {@link ForwardedByFilter} drops the header from requests that do not
+ * come from a member, see {@link #forwardedByMember}.
+ * <p>
+ * When the members change, with {@link #updateMembers}, every node moves the contacts it no
+ * longer owns to their new owners in the background: a node that joins receives its share from
+ * the others, and a node left out of the list hands everything over. A contact added to a node
+ * while it rebalances, by a node still routing under the members it had before, is moved by the
+ * next pass of the rebalance.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contacts.cluster", name = "enabled", havingValue = "true")
+public class ContactCluster {
+
+    /**
+     * Request header naming the node a request was forwarded by.
+     */
+    public static final String FORWARDED_HEADER = "X-Contacts-Forwarded-By";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContactCluster.class);
+
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * Most passes one rebalance makes over the store, so that nodes briefly disagreeing about the
+     * members cannot pass contacts back and forth forever.
+     */
+    private static final int REBALANCE_PASSES = 3;
+    private static final TypeReference<List<Contact>> CONTACT_LIST = new TypeReference<>() {
+    };
+
+    private final ContactStore contactStore;
+    private final ClusterProperties properties;
+    private final String self;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger pendingRebalances = new AtomicInteger();
+    private final AtomicLong movedContacts = new AtomicLong();
+
+    private volatile HashRing ring;
+    /**
+     * Addresses of the members other than this node, and of those the last change of members left
+     * out while they hand their contacts over, resolved when the members are set.
+     */
+    private volatile Map<String, Set<InetAddress>> memberAddresses;
+    private ExecutorService rebalancer;
+
+    public ContactCluster(ContactStore contactStore, ClusterProperties properties) {
+        if (properties.batchSize() < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + properties.batchSize());
+        }
+        this.contactStore = contactStore;
+        this.properties = properties;
+        this.self = node(properties.self());
+        this.ring = new HashRing(nodes(properties.nodes()), properties.virtualNodes());
+        this.memberAddresses = addresses(ring.nodes());
+        this.client = HttpClient.newBuilder().connectTimeout(properties.timeout()).build();
+    }
+
+    @PostConstruct
+    public void start() {
+        rebalancer = Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, "cluster-rebalancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LOGGER.info("Node {} of cluster {}", self, ring.nodes());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        rebalancer.shutdownNow();
+        rebalancer.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    public List<String> members() {
+        return ring.nodes();
+    }
+
+    public ClusterStatus status() {
+        return new ClusterStatus(self, ring.nodes(), properties.virtualNodes(), contactStore.size(),
+                pendingRebalances.get() > 0, movedContacts.get());
+    }
+
+    /**
+     * @return The node that owns {@code phoneNumber} if that is another one, or null if this node
+     * does or there is no phone number to place, leaving validation to this node.
+     */
+    public String remoteOwner(String phoneNumber) {
+        if (phoneNumber == null) {
+            return null;
+        }
+        String owner = ring.owner(phoneNumber);
+        return owner.equals(self) ? null : owner;
+    }
+
+    /**
+     * Whether a request that names {@code node} in {@link #FORWARDED_HEADER} really was forwarded by
+     * it: {@code node} is another member, or one just left out, and the request came from one of its
+     * addresses.
+     * @param remoteAddress IP address the request came from.
+     */
+    public boolean forwardedByMember(String node, String remoteAddress) {
+        var addresses = node == null ? null : memberAddresses.get(node);
+        if (addresses == null || remoteAddress == null) {
+            return false;
+        }
+        try {
+            // an IP literal, so nothing is looked up
+            return addresses.contains(InetAddress.getByName(remoteAddress));
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Send a request to {@code node} and answer with whatever it answers.
+     * @param pathAndQuery Already encoded, starting with {@code /}.
+     * @return The node's response, or 502 if it could not be reached.
+     */
+    public ResponseEntity<byte[]> forward(String node, String method, String pathAndQuery, MediaType contentType,
+                                          byte[] body) {
+        var request = request(node, pathAndQuery)
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body));
+        if (contentType != null) {
+            request.header(HttpHeaders.CONTENT_TYPE, contentType.toString());
+        }
+        try {
+            var response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            var headers = new HttpHeaders();
+            response.headers().firstValue(HttpHeaders.CONTENT_TYPE).ifPresent(type -> headers.set(HttpHeaders.CONTENT_TYPE, type));
+            return new ResponseEntity<>(response.body().length == 0 ? null : response.body(), headers, response.statusCode());
+        } catch (IOException e) {
+            LOGGER.warn("Could not forward {} {} to {}: {}", method, pathAndQuery, node, e.toString());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        }
+    }
+
+    /**
+     * Run a search on every other member at once.
+     * @return The contacts they found, node by node in member order. Fails if any node does.
+     */
+    public CompletableFuture<List<Contact>> searchOthers(String type, String key) {
+        List<CompletableFuture<List<Contact>>> parts = new ArrayList<>();
+        for (String node : ring.nodes()) {
+            if (node.equals(self)) {
+                continue;
+            }
+            var request = request(node, "/contacts/search?type=" + encode(type) + "&key=" + encode(key))
+                    .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                    .GET()
+                    .build();
+            parts.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .thenApply(response -> contacts(node, response)));
+        }
+        return CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            List<Contact> found = new ArrayList<>();
+            for (var part : parts) {
+                found.addAll(part.join());
+            }
+            return found;
+        });
+    }
+
+    /**
+     * Add the contacts of a bulk import, each on the node that owns it: this node's through
+     * {@code addLocally}, the others' sent to them {@code batchSize} at a time. A batch that cannot
+     * be delivered is rejected as a whole.
+     * @param addLocally Adds a batch to this node, e.g. {@link ContactService#addContacts}.
+     * @return The combined outcome, failures indexed by position in {@code contacts}.
+     */
+    public BulkResult addContacts(Iterator<Contact> contacts, Function<Iterator<Contact>, BulkResult> addLocally) {
+        var ring = this.ring;
+        var outcome = new BulkOutcome();
+        Map<String, Batch> batches = new HashMap<>();
+        for (long index = 0; contacts.hasNext(); index++) {
+            var contact = contacts.next();
+            String owner = contact.getPhoneNumber() == null ? self : ring.owner(contact.getPhoneNumber());
+            var batch = batches.computeIfAbsent(owner, node -> new Batch());
+            batch.add(contact, index);
+            if (batch.contacts.size() == properties.batchSize()) {
+                outcome.add(owner, batch, addLocally);
+                batch.clear();
+            }
+        }
+        batches.forEach((owner, batch) -> {
+            if (!batch.contacts.isEmpty()) {
+                outcome.add(owner, batch, addLocally);
+            }
+        });
+        return outcome.result();
+    }
+
+    /**
+     * Replace the members and rebalance this node in the background; with {@code propagate}, do
+     * the same on every other node, old and new, as well. Being told the members it already has
+     * by another node changes nothing.
+     * @return The nodes that could not be told, empty if all were.
+     * @throws IllegalArgumentException If {@code nodes} is empty or holds something other than
+     *                                  http or https URLs.
+     */
+    public List<String> updateMembers(List<String> nodes, boolean propagate) {
+        List<String> previous;
+        HashRing updated;
+        synchronized (this) {
+            previous = ring.nodes();
+            updated = new HashRing(nodes(nodes), properties.virtualNodes());
+            if (!propagate && updated.nodes().equals(previous)) {
+                return List.of();
+            }
+            ring = updated;
+            Set<String> trusted = new LinkedHashSet<>(previous);
+            trusted.addAll(updated.nodes());
+            memberAddresses = addresses(trusted);
+            LOGGER.info("Cluster members changed from {} to {}", previous, updated.nodes());
+            pendingRebalances.incrementAndGet();
+            rebalancer.execute(this::rebalance);
+        }
+        // told outside the lock, as a node that did not know this one yet tells it back
+        List<String> unreachable = new ArrayList<>();
+        if (!propagate) {
+            return unreachable;
+        }
+        Set<String> others = new LinkedHashSet<>(previous);
+        others.addAll(updated.nodes());
+        others.remove(self);
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(updated.nodes());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String node : others) {
+            var response = forward(node, "PUT", "/cluster/members", MediaType.APPLICATION_JSON, body);
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                LOGGER.warn("Node {} did not take the new members: {}", node, response.getStatusCode());
+                unreachable.add(node);
+            }
+        }
+        return unreachable;
+    }
+
+    /**
+     * Move every contact this node does not own under the current members to its owner, in passes
+     * until one finds nothing more to move.
+     */
+    private void rebalance() {
+        long started = System.nanoTime();
+        long moved = 0;
+        try {
+            for (int pass = 0; pass < REBALANCE_PASSES; pass++) {
+                long passMoved = rebalancePass();
+                moved += passMoved;
+                if (passMoved == 0) {
+                    break;
+                }
+            }
+        } finally {
+            pendingRebalances.decrementAndGet();
+        }
+        LOGGER.info("Rebalance moved {} contacts to other nodes in {} ms", moved,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Deliver the contacts this node does not own to their owners, then remove exactly the delivered
+     * ones here: a contact added meanwhile with the same phone number stays for the next pass.
+     * @return How many contacts were moved.
+     */
+    private long rebalancePass() {
+        var ring = this.ring;
+        Map<String, List<Contact>> leaving = new LinkedHashMap<>();
+        try (var contacts = contactStore.streamContacts()) {
+            contacts.forEach(contact -> {
+                String owner = ring.owner(contact.getPhoneNumber());
+                if (!owner.equals(self)) {
+                    leaving.computeIfAbsent(owner, node -> new ArrayList<>()).add(contact);
+                }
+            });
+        }
+        long moved = 0;
+        for (var entry : leaving.entrySet()) {
+            var contacts = entry.getValue();
+            for (int from = 0; from < contacts.size(); from += properties.batchSize()) {
+                var batch = contacts.subList(from, Math.min(contacts.size(), from + properties.batchSize()));
+                if (send(entry.getKey(), batch) == null) {
+                    LOGGER.warn("Could not move {} contacts to {}; they stay here until the next rebalance",
+                            batch.size(), entry.getKey());
+                    continue;
+                }
+                contactStore.removeContacts(batch);
+                moved += batch.size();
+                movedContacts.addAndGet(batch.size());
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Bulk-add {@code contacts} on {@code node}.
+     * @return Its result, or null if it could not be reached or refused the request.
+     */
+    private BulkResult send(String node, List<Contact> contacts) {
+        var body = new ByteArrayOutputStream(contacts.size() * 64);
+        for (Contact contact : contacts) {
+            body.writeBytes(contact.toJson());
+            body.write('\n');
+        }
+        var response = forward(node, "POST", "/contacts/bulk", MediaType.parseMediaType(NDJSON_VALUE), body.toByteArray());
+        if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(response.getBody(), BulkResult.class);
+        } catch (IOException e) {
+            LOGGER.warn("Unreadable bulk result from {}: {}", node, e.toString());
+            return null;
+        }
+    }
+
+    private List<Contact> contacts(String node, HttpResponse<byte[]> response) {
+        if (response.statusCode() == HttpStatus.NO_CONTENT.value()) {
+            return List.of();
+        }
+        if (response.statusCode() != HttpStatus.OK.value()) {
+            throw new IllegalStateException("Search on " + node + " answered " + response.statusCode());
+        }
+        try {
+            return objectMapper.readValue(response.body(), CONTACT_LIST);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable search result from " + node, e);
+        }
+    }
+
+    private HttpRequest.Builder request(String node, String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create(node + pathAndQuery))
+                .timeout(properties.timeout())
+                .header(FORWARDED_HEADER, self);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The addresses each of {@code nodes} other than this one resolves to; none for a node that
+     * does not resolve.
+     */
+    private Map<String, Set<InetAddress>> addresses(Collection<String> nodes) {
+        Map<String, Set<InetAddress>> addresses = new HashMap<>();
+        for (String node : nodes) {
+            if (node.equals(self)) {
+                continue;
+            }
+            try {
+                addresses.put(node, Set.of(InetAddress.getAllByName(URI.create(node).getHost())));
+            } catch (UnknownHostException e) {
+                LOGGER.warn("Could not resolve node {}; requests it forwards are routed again: {}", node, e.toString());
+                addresses.put(node, Set.of());
+            }
+        }
+        return addresses;
+    }
+
+    private static List<String> nodes(List<String> nodes) {
+        List<String> normalized = new ArrayList<>(nodes.size());
+        for (String node : nodes) {
+            String url = node(node);
+            if (!normalized.contains(url)) {
+                normalized.add(url);
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * {@code node} without a trailing slash.
+     * @throws IllegalArgumentException If it is not an http or https URL.
+     */
+    private static String node(String node) {
+        URI uri;
+        try {
+            uri = node == null ? null : URI.create(node.strip());
+        } catch (IllegalArgumentException e) {
+            uri = null;
+        }
+        if (uri == null || uri.getHost() == null || !("http".equals(uri.getScheme()) || "https".equals(uri.getScheme()))) {
+            throw new IllegalArgumentException("Invalid node: " + node);
+        }
+        String url = uri.toString();
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * Contacts bound for one node, with their positions in the import.
+     */
+    private static final class Batch {
+
+        final List<Contact> contacts = new ArrayList<>();
+        final List<Long> indexes = new ArrayList<>();
+
+        void add(Contact contact, long index) {
+            contacts.add(contact);
+            indexes.add(index);
+        }
+
+        void clear() {
+            contacts.clear();
+            indexes.clear();
+        }
+    }
+
+    /**
+     * The combined result of the batches of one import.
+     */
+    private final class BulkOutcome {
+
+        private long received;
+        private long added;
+        private long rejected;
+        private final List<BulkResult.Failure> failures = new ArrayList<>();
+
+        void add(String owner, Batch batch, Function<Iterator<Contact>, BulkResult> addLocally) {
+            var result = owner.equals(self) ? addLocally.apply(batch.contacts.iterator()) : send(owner, batch.contacts);
+            received += batch.contacts.size();
+            if (result == null) {
+                rejected += batch.contacts.size();
+                for (long index : batch.indexes) {
+                    failure(index, "Could not reach " + owner);
+                }
+                return;
+            }
+            added += result.added();
+            rejected += result.rejected();
+            for (BulkResult.Failure failure : result.failures()) {
+                failure(batch.indexes.get((int) failure.index()), failure.reason());
+            }
+        }
+
+        private void failure(long index, String reason) {
+            if (failures.size() < ContactService.BULK_MAX_FAILURES) {
+                failures.add(new BulkResult.Failure(index, reason));
+            }
+        }
+
+        BulkResult result() {
+            failures.sort(Comparator.comparingLong(BulkResult.Failure::index));
+            return new BulkResult(received, added, rejected, List.copyOf(failures));
+        }
+    }
+}
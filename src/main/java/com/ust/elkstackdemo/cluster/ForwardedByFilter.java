@@ -0,0 +1,87 @@
+package com.ust.elkstackdemo.cluster;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+
+/**
+ * Hides {@link ContactCluster#FORWARDED_HEADER} from everything after it unless the request was
+ * forwarded by a member of the cluster, so that a client cannot set the header to skip routing,
+ * to stop a change of members from reaching the other nodes, or to be admitted at the priority
+ * of forwarded requests. Without a cluster no request keeps the header.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ForwardedByFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForwardedByFilter.class);
+
+    private final ObjectProvider<ContactCluster> cluster;
+
+    public ForwardedByFilter(ObjectProvider<ContactCluster> cluster) {
+        this.cluster = cluster;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(ContactCluster.FORWARDED_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String forwardedBy = request.getHeader(ContactCluster.FORWARDED_HEADER);
+        var cluster = this.cluster.getIfAvailable();
+        if (cluster != null && cluster.forwardedByMember(forwardedBy, request.getRemoteAddr())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        LOGGER.warn("Ignoring {} {} on a request from {}, which is not a member of the cluster",
+                ContactCluster.FORWARDED_HEADER, forwardedBy, request.getRemoteAddr());
+        chain.doFilter(new WithoutForwardedHeader(request), response);
+    }
+
+    /**
+     * The request as if it had been sent without {@link ContactCluster#FORWARDED_HEADER}.
+     */
+    private static final class WithoutForwardedHeader extends HttpServletRequestWrapper {
+
+        WithoutForwardedHeader(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return hidden(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return hidden(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            var names = Collections.list(super.getHeaderNames());
+            names.removeIf(ForwardedByFilter::hidden);
+            return Collections.enumeration(names);
+        }
+    }
+
+    private static boolean hidden(String name) {
+        return ContactCluster.FORWARDED_HEADER.equalsIgnoreCase(name);
+    }
+}
@@ -0,0 +1,91 @@
+package com.ust.elkstackdemo.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A consistent-hash ring assigning keys to nodes. Each node is placed on the ring at
+ * {@code virtualNodes} points, and a key belongs to the node of the first point at or after the
+ * key's hash, wrapping around. Adding a node therefore moves only the keys that now fall just
+ * before its points, about one in {@code n + 1}, all of them to the new node.
+ * <p>
+ * Hashes depend on nothing but the strings, so every node, in every JVM, computes the same owners
+ * from the same list of nodes. Immutable.
+ */
+final class HashRing {
+
+    private final List<String> nodes;
+
+    /**
+     * Sorted positions of every point on the ring.
+     */
+    private final long[] points;
+
+    /**
+     * Index in {@link #nodes} of the node at each point.
+     */
+    private final int[] owners;
+
+    HashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Invalid nodes: " + nodes);
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Invalid virtual nodes: " + virtualNodes);
+        }
+        this.nodes = List.copyOf(nodes);
+        int count = nodes.size() * virtualNodes;
+        long[] positions = new long[count];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int i = 0; i < virtualNodes; i++) {
+                positions[node * virtualNodes + i] = hash(nodes.get(node) + "#" + i);
+            }
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byPosition = Long.compare(positions[a], positions[b]);
+            // ties, however unlikely, go to the node listed first
+            return byPosition != 0 ? byPosition : Integer.compare(a, b);
+        });
+        this.points = new long[count];
+        this.owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = positions[order[i]];
+            owners[i] = order[i] / virtualNodes;
+        }
+    }
+
+    List<String> nodes() {
+        return nodes;
+    }
+
+    String owner(String key) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return nodes.get(owners[i == points.length ? 0 : i]);
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes, finished with the MurmurHash3 mixer so that keys differing
+     * only in their last characters still land far apart.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
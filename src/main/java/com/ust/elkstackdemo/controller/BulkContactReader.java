@@ -0,0 +1,249 @@
+package com.ust.elkstackdemo.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ust.elkstackdemo.model.BulkResult;
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.service.ContactService;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily parses the body of a bulk contact import, one contact at a time, so the request is never
+ * buffered in full. Supports a JSON array, NDJSON, CSV and the binary {@link ContactFormat}s.
+ * <p>
+ * A malformed record ends the import rather than failing it: the contacts before it have been
+ * added by then, so {@link Records} stops there and remembers why, for the response to say how far
+ * the import got.
+ */
+final class BulkContactReader {
+
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    private BulkContactReader() {
+    }
+
+    /**
+     * Open an iterator over the contacts in {@code body}.
+     * @param contentType The media type of the body.
+     * @param body        The request body, consumed as the iterator advances.
+     */
+    static Records read(MediaType contentType, InputStream body, ObjectMapper objectMapper) throws IOException {
+        if (TEXT_CSV_VALUE.equals(contentType.getType() + "/" + contentType.getSubtype())) {
+            return new Records(new CsvIterator(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))));
+        }
+        var format = ContactFormat.of(contentType);
+        if (format != null) {
+            return new Records(format.read(body));
+        }
+        // a MappingIterator unwraps a top-level JSON array and also reads whitespace-separated values
+        return new Records(objectMapper.readerFor(Contact.class).readValues(body));
+    }
+
+    /**
+     * The contacts of a body up to its first malformed record, if any.
+     */
+    static final class Records implements Iterator<Contact> {
+
+        private final Iterator<Contact> contacts;
+        private Contact next;
+        private long read;
+        private String malformed;
+
+        private Records(Iterator<Contact> contacts) {
+            this.contacts = contacts;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (malformed != null) {
+                return false;
+            }
+            // a parser may fail in either call, depending on where in the record it finds the fault
+            try {
+                if (!contacts.hasNext()) {
+                    return false;
+                }
+                next = contacts.next();
+                return true;
+            } catch (RuntimeException e) {
+                String reason = malformedReason(e);
+                if (reason == null) {
+                    throw e;
+                }
+                malformed = reason;
+                return false;
+            }
+        }
+
+        @Override
+        public Contact next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            var contact = next;
+            next = null;
+            read++;
+            return contact;
+        }
+
+        /**
+         * Why the import stopped short, or null if the whole body was read.
+         */
+        String malformed() {
+            return malformed;
+        }
+
+        /**
+         * {@code result} with the malformed record counted as received and rejected, and listed as
+         * the last failure at its position in the body unless the failures are already capped.
+         */
+        BulkResult withMalformed(BulkResult result) {
+            var failures = result.failures();
+            if (failures.size() < ContactService.BULK_MAX_FAILURES) {
+                var listed = new ArrayList<>(failures);
+                listed.add(new BulkResult.Failure(read, malformed));
+                failures = List.copyOf(listed);
+            }
+            return new BulkResult(result.received() + 1, result.added(), result.rejected() + 1, failures);
+        }
+
+        /**
+         * The reason a parser failed on a record, or null if reading the body failed instead.
+         */
+        private static String malformedReason(RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                return e.getMessage();
+            }
+            // a MappingIterator wraps mapping errors and, in a bare RuntimeException, syntax errors
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof JsonProcessingException json) {
+                    return "Invalid record: " + json.getOriginalMessage();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Reads {@code name,email,phoneNumber} rows. A first row naming those columns is treated as a
+     * header and may list them in any order. Fields may be double-quoted, with {@code ""} as an
+     * escaped quote; quoted fields cannot span lines, so a row with an unterminated quote is
+     * malformed. Missing fields are read as null.
+     */
+    private static final class CsvIterator implements Iterator<Contact> {
+
+        private static final List<String> DEFAULT_COLUMNS = List.of("name", "email", "phonenumber");
+
+        private final BufferedReader reader;
+        private int[] columns = {0, 1, 2};
+        private boolean headerChecked;
+        private List<String> next;
+
+        CsvIterator(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    var fields = split(line);
+                    if (!headerChecked) {
+                        headerChecked = true;
+                        if (isHeader(fields)) {
+                            continue;
+                        }
+                    }
+                    next = fields;
+                    return true;
+                }
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Contact next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            var fields = next;
+            next = null;
+            return new Contact(field(fields, columns[0]), field(fields, columns[1]), field(fields, columns[2]));
+        }
+
+        private boolean isHeader(List<String> fields) {
+            int[] order = new int[DEFAULT_COLUMNS.size()];
+            for (int column = 0; column < DEFAULT_COLUMNS.size(); column++) {
+                order[column] = -1;
+                for (int i = 0; i < fields.size(); i++) {
+                    if (fields.get(i).trim().equalsIgnoreCase(DEFAULT_COLUMNS.get(column))) {
+                        order[column] = i;
+                    }
+                }
+                if (order[column] < 0) {
+                    return false;
+                }
+            }
+            columns = order;
+            return true;
+        }
+
+        private static String field(List<String> fields, int index) {
+            return index < fields.size() ? fields.get(index) : null;
+        }
+
+        private static List<String> split(String line) {
+            List<String> fields = new ArrayList<>(3);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) {
+                throw new IllegalArgumentException("Invalid CSV row: unterminated quote in " + line);
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
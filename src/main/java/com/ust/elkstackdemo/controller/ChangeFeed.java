@@ -0,0 +1,425 @@
+package com.ust.elkstackdemo.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactChange;
+import com.ust.elkstackdemo.repository.ContactChangeListener;
+import com.ust.elkstackdemo.repository.ContactStore;
+import com.ust.elkstackdemo.service.ChangeLog;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pushes contact changes to the Server-Sent Events subscribers of {@code GET /contacts/stream}.
+ * <p>
+ * One dispatcher thread reads newly committed versions from the {@link ChangeLog}, renders each
+ * version's events once and publishes them into a ring shared by every subscriber. A subscriber
+ * reads the ring from its own position, on a virtual thread of its own while it has anything to
+ * send, so a slow client blocks only that thread and writers never wait for anyone: all they do is
+ * wake the dispatcher. A subscriber that falls a whole ring behind has lost events and is
+ * disconnected; it can reconnect with {@code Last-Event-ID} and replay what it missed from the
+ * change log.
+ * <p>
+ * A client that stops reading leaves its sender blocked in a write. The dispatcher looks for such
+ * senders every half {@code send-timeout} and disconnects the subscribers whose write has taken
+ * longer than that, or which have been lapped meanwhile: their place is freed at once and their
+ * sender is interrupted, completing the response with an error once the write gives up. The
+ * emitter itself is left to the sender, as it stays locked for as long as the write blocks.
+ * <p>
+ * Each change is an event named {@code add} or {@code remove} with the {@link ContactChange} as its
+ * data. Only the last event of a version carries an {@code id}, the version, so a client always
+ * resumes after the last version it received completely. A new subscription starts with a
+ * {@code version} event whose id is the version the subscriber is up to date with.
+ */
+@Component
+public class ChangeFeed implements ContactChangeListener, SmartInitializingSingleton {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeFeed.class);
+
+    static final MediaType EVENT_STREAM = MediaType.TEXT_EVENT_STREAM;
+
+    private static final Event HEARTBEAT = new Event(-1, -1, ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+
+    private final ContactStore contactStore;
+    private final ChangeLog changeLog;
+    private final ObjectMapper objectMapper;
+    private final ChangeFeedProperties properties;
+
+    /**
+     * Published events by sequence number, at {@code sequence & mask}. Written by the dispatcher only.
+     */
+    private final AtomicReferenceArray<Event> ring;
+    private final int mask;
+    private volatile long head;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("contact-feed-", 0).factory());
+    private final LongAdder slowDisconnects = new LongAdder();
+    private volatile Thread dispatcher;
+    private volatile boolean running;
+
+    /**
+     * Latest version published to the ring. Dispatcher only.
+     */
+    private long published;
+
+    /**
+     * Some of a version's events, rendered as they go on the wire.
+     *
+     * @param sequence Position in the ring.
+     * @param version  The version of the changes, or -1 for a heartbeat.
+     */
+    record Event(long sequence, long version, byte[] bytes) {
+    }
+
+    public ChangeFeed(ContactStore contactStore, ChangeLog changeLog, ObjectMapper objectMapper,
+                      ChangeFeedProperties properties) {
+        if (properties.queueSize() < 1) {
+            throw new IllegalArgumentException("Invalid queue size: " + properties.queueSize());
+        }
+        if (!properties.sendTimeout().isPositive()) {
+            throw new IllegalArgumentException("Invalid send timeout: " + properties.sendTimeout());
+        }
+        this.contactStore = contactStore;
+        this.changeLog = changeLog;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        int capacity = Integer.highestOneBit(properties.queueSize() - 1) << 1;
+        this.ring = new AtomicReferenceArray<>(Math.max(capacity, 1));
+        this.mask = ring.length() - 1;
+    }
+
+    /**
+     * Start once every singleton exists, so that the feed begins at the version persistence
+     * recovered the store to instead of announcing every recovered contact.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        start();
+    }
+
+    public void start() {
+        published = contactStore.version();
+        running = true;
+        contactStore.addChangeListener(this);
+        var thread = new Thread(this::dispatch, "contact-feed");
+        thread.setDaemon(true);
+        dispatcher = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        contactStore.removeChangeListener(this);
+        running = false;
+        Thread thread = dispatcher;
+        LockSupport.unpark(thread);
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        senders.shutdownNow();
+    }
+
+    public boolean hasCapacity() {
+        return subscribers.size() < properties.maxSubscribers();
+    }
+
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    public long slowDisconnects() {
+        return slowDisconnects.sum();
+    }
+
+    /**
+     * Start sending changes on a response that never times out.
+     * @param lastEventId The version the client last received completely, to replay every change
+     *                    after it first, or null to start with the next change.
+     * @return The emitter for the response, or null if the changes after {@code lastEventId} are no
+     * longer kept and the client must list every contact again.
+     */
+    public ResponseBodyEmitter subscribe(Long lastEventId) {
+        return subscribe(lastEventId, new ResponseBodyEmitter(0L));
+    }
+
+    ResponseBodyEmitter subscribe(Long lastEventId, ResponseBodyEmitter emitter) {
+        if (lastEventId != null && changeLog.since(lastEventId, 1) == null) {
+            return null;
+        }
+        // positioned before the catch-up reads the log, so no version can fall in between
+        var subscriber = new Subscriber(emitter, head, lastEventId != null ? lastEventId : contactStore.version());
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        LOGGER.debug("Change feed subscribed from version {}", subscriber.version);
+        subscriber.signal();
+        return emitter;
+    }
+
+    @Override
+    public void contactAdded(long version, Contact contact) {
+    }
+
+    @Override
+    public void contactsRemoved(long version, String phoneNumber, List<Contact> contacts) {
+    }
+
+    /**
+     * Wake the dispatcher; the change log already holds the change.
+     */
+    @Override
+    public void afterChange() {
+        LockSupport.unpark(dispatcher);
+    }
+
+    private void dispatch() {
+        long heartbeatNanos = properties.heartbeatInterval().toNanos();
+        long sweepNanos = properties.sendTimeout().toNanos() / 2;
+        long lastPublished = System.nanoTime();
+        long lastSwept = lastPublished;
+        while (running) {
+            LockSupport.parkNanos(this, Math.min(heartbeatNanos, sweepNanos));
+            try {
+                if (System.nanoTime() - lastSwept >= sweepNanos) {
+                    disconnectStalled();
+                    lastSwept = System.nanoTime();
+                }
+                if (publishChanges()) {
+                    lastPublished = System.nanoTime();
+                } else if (System.nanoTime() - lastPublished >= heartbeatNanos) {
+                    publish(HEARTBEAT.version(), HEARTBEAT.bytes());
+                    lastPublished = System.nanoTime();
+                } else {
+                    continue;
+                }
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.signal();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not publish contact changes", e);
+            }
+        }
+    }
+
+    /**
+     * Disconnect the subscribers whose sender has been stuck in one write for the send timeout, or
+     * has been lapped while in it.
+     */
+    private void disconnectStalled() {
+        long now = System.nanoTime();
+        long timeoutNanos = properties.sendTimeout().toNanos();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince;
+            if (since != 0 && (now - since >= timeoutNanos || head - subscriber.cursor > ring.length())) {
+                subscriber.expire();
+            }
+        }
+    }
+
+    /**
+     * Publish every version committed since the last call, one event per version.
+     * @return Whether anything was published.
+     */
+    private boolean publishChanges() {
+        boolean any = false;
+        while (true) {
+            var changes = changeLog.since(published, ContactStore.MAX_PAGE_SIZE);
+            if (changes == null) {
+                // the change log dropped versions never published: no subscriber can be brought up to date
+                LOGGER.warn("Change feed fell behind the change log at version {}; disconnecting subscribers", published);
+                published = contactStore.version();
+                subscribers.forEach(subscriber -> subscriber.emitter.complete());
+                return any;
+            }
+            var pending = new StringBuilder();
+            var changeList = changes.changes();
+            for (int i = 0; i < changeList.size(); i++) {
+                var change = changeList.get(i);
+                boolean last = i + 1 == changeList.size() || changeList.get(i + 1).version() != change.version();
+                render(pending, change, last);
+                if (last) {
+                    publish(change.version(), pending.toString().getBytes(StandardCharsets.UTF_8));
+                    pending.setLength(0);
+                    any = true;
+                }
+            }
+            published = changes.version();
+            if (!changes.more()) {
+                return any;
+            }
+        }
+    }
+
+    private void publish(long version, byte[] bytes) {
+        long sequence = head;
+        ring.set((int) (sequence & mask), new Event(sequence, version, bytes));
+        head = sequence + 1;
+    }
+
+    private void render(StringBuilder out, ContactChange change, boolean last) {
+        out.append("event: ").append(change.type() == ContactChange.Type.ADD ? "add" : "remove").append('\n');
+        if (last) {
+            out.append("id: ").append(change.version()).append('\n');
+        }
+        try {
+            out.append("data: ").append(objectMapper.writeValueAsString(change)).append("\n\n");
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * One client's position in the ring and the version it has been sent up to.
+     */
+    private final class Subscriber {
+
+        final ResponseBodyEmitter emitter;
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile long cursor;
+        long version;
+        boolean caughtUp;
+
+        /**
+         * {@link System#nanoTime()} when the write in progress started, or 0 between writes.
+         */
+        volatile long sendingSince;
+        volatile Thread sender;
+        volatile boolean expired;
+
+        Subscriber(ResponseBodyEmitter emitter, long cursor, long version) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+            this.version = version;
+        }
+
+        /**
+         * Make sure a sender runs if there is anything to send.
+         */
+        void signal() {
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        /**
+         * Free this subscriber's place and get its sender out of the write it is stuck in.
+         */
+        void expire() {
+            // set first, so that a write finishing meanwhile still finds it
+            expired = true;
+            if (subscribers.remove(this)) {
+                LOGGER.info("Disconnecting a change feed subscriber not reading for {}", properties.sendTimeout());
+                slowDisconnects.increment();
+                Thread thread = sender;
+                if (thread != null) {
+                    thread.interrupt();
+                }
+            }
+        }
+
+        private void drain() {
+            sender = Thread.currentThread();
+            try {
+                do {
+                    if (!caughtUp) {
+                        catchUp();
+                    }
+                    while (cursor < head) {
+                        var event = ring.get((int) (cursor & mask));
+                        if (event == null || event.sequence() != cursor) {
+                            LOGGER.info("Disconnecting a change feed subscriber more than {} events behind", ring.length());
+                            slowDisconnects.increment();
+                            subscribers.remove(this);
+                            emitter.complete();
+                            return;
+                        }
+                        cursor++;
+                        // versions already sent while catching up are skipped
+                        if (event.version() < 0 || event.version() > version) {
+                            send(event.bytes());
+                            version = Math.max(version, event.version());
+                        }
+                    }
+                    draining.set(false);
+                    // a publish between the last check and the reset would otherwise go unsent
+                } while (cursor < head && draining.compareAndSet(false, true));
+                checkExpired();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Change feed subscriber gone: {}", e.toString());
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+            } finally {
+                sender = null;
+            }
+        }
+
+        private void send(byte[] bytes) throws IOException {
+            // never 0, which means not sending
+            sendingSince = System.nanoTime() | 1;
+            try {
+                emitter.send(bytes, EVENT_STREAM);
+            } finally {
+                sendingSince = 0;
+            }
+            checkExpired();
+        }
+
+        private void checkExpired() throws IOException {
+            if (expired) {
+                throw new IOException("Subscriber stopped reading");
+            }
+        }
+
+        /**
+         * Send what the client missed from the change log, then the version it is up to date with.
+         */
+        private void catchUp() throws IOException {
+            var out = new StringBuilder();
+            while (true) {
+                var changes = changeLog.since(version, ContactStore.MAX_PAGE_SIZE);
+                if (changes == null) {
+                    throw new IllegalStateException("Changes after version " + version + " are no longer kept");
+                }
+                var changeList = changes.changes();
+                for (int i = 0; i < changeList.size(); i++) {
+                    var change = changeList.get(i);
+                    render(out, change, i + 1 == changeList.size() || changeList.get(i + 1).version() != change.version());
+                }
+                if (!out.isEmpty()) {
+                    send(out.toString().getBytes(StandardCharsets.UTF_8));
+                    out.setLength(0);
+                }
+                version = changes.version();
+                if (!changes.more()) {
+                    break;
+                }
+            }
+            caughtUp = true;
+            send(("event: version\nid: " + version + "\ndata: " + version + "\n\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.ust.elkstackdemo.controller;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the Server-Sent Events change feed, {@code GET /contacts/stream}, under
+ * {@code contacts.feed}.
+ *
+ * @param queueSize         Versions a subscriber may fall behind before it is disconnected. This
+ *                          is also the size of the buffer shared by all subscribers.
+ * @param maxSubscribers    Subscribers at once; more are turned away with 503.
+ * @param heartbeatInterval How long the feed may stay quiet before a comment is sent, which keeps
+ *                          proxies from closing idle connections and finds dead ones.
+ * @param sendTimeout       How long a write to one subscriber may block before the subscriber is
+ *                          disconnected as not reading.
+ */
+@ConfigurationProperties("contacts.feed")
+public record ChangeFeedProperties(
+        @DefaultValue("1024") int queueSize,
+        @DefaultValue("10000") int maxSubscribers,
+        @DefaultValue("15s") Duration heartbeatInterval,
+        @DefaultValue("30s") Duration sendTimeout) {
+}
@@ -0,0 +1,59 @@
+package com.ust.elkstackdemo.controller;
+
+import com.ust.elkstackdemo.cluster.ClusterStatus;
+import com.ust.elkstackdemo.cluster.ContactCluster;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/cluster")
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterController {
+
+    private final ObjectProvider<ContactCluster> cluster;
+
+    @GetMapping
+    // GET /cluster: members, contacts stored on this node and whether it is rebalancing
+    public ResponseEntity<ClusterStatus> getStatus() {
+        var node = cluster.getIfAvailable();
+        if (node == null) {
+            log.debug("Cluster not enabled");
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(node.status());
+    }
+
+    @PutMapping("/members")
+    // PUT /cluster/members with a JSON array of base URLs, e.g. ["http://a:8000","http://b:8000"],
+    // sent to any one node, which passes it on to the others
+    public ResponseEntity<ClusterStatus> updateMembers(
+            @RequestBody List<String> members,
+            @RequestHeader(value = ContactCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        var node = cluster.getIfAvailable();
+        if (node == null) {
+            log.debug("Cluster not enabled");
+            return ResponseEntity.notFound().build();
+        }
+        List<String> unreachable;
+        try {
+            unreachable = node.updateMembers(members, forwardedBy == null);
+        } catch (IllegalArgumentException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Rejected cluster members {}: {}", members, e.getMessage());
+            }
+            return ResponseEntity.badRequest().build();
+        }
+        if (!unreachable.isEmpty()) {
+            log.warn("Cluster members updated here but not on {}", unreachable);
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(node.status());
+        }
+        return ResponseEntity.ok(node.status());
+    }
+}
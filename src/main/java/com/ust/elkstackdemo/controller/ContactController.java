@@ -1,61 +1,510 @@
 package com.ust.elkstackdemo.controller;
 
+import com.ust.elkstackdemo.cluster.ContactCluster;
+import com.ust.elkstackdemo.metrics.ContactMetrics;
+import com.ust.elkstackdemo.model.BulkResult;
 import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactChanges;
+import com.ust.elkstackdemo.model.ContactJson;
+import com.ust.elkstackdemo.model.ContactProtobuf;
+import com.ust.elkstackdemo.model.Versioned;
 import com.ust.elkstackdemo.service.ContactService;
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @RestController
 @RequestMapping("/contacts")
-@RequiredArgsConstructor
 @Slf4j
 public class ContactController {
 
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * Response header carrying the store version a read was answered from.
+     */
+    static final String VERSION_HEADER = "X-Contacts-Version";
+
+    /**
+     * Versions count from zero again when the application restarts, so entity tags also carry the
+     * time it started to keep tags from different runs apart.
+     */
+    private static final String ETAG_EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * Contacts written between explicit flushes of a streamed response.
+     */
+    private static final int STREAM_FLUSH_INTERVAL = 1024;
+
     private final ContactService contactService;
+    private final ObjectMapper objectMapper;
+    private final ContactMetrics metrics;
+    private final ChangeFeed changeFeed;
+
+    /**
+     * Partitions contacts across nodes, or null when this instance keeps them all.
+     */
+    private final ContactCluster cluster;
+
+    /**
+     * Headers of the latest successful read in each representation: JSON, then each
+     * {@link ContactFormat}.
+     */
+    private final AtomicReferenceArray<ReadHeaders> readHeaders =
+            new AtomicReferenceArray<>(ContactFormat.values().length + 1);
+
+    /**
+     * The entity tag and read-only headers of a 200 response read at {@code version}.
+     */
+    private record ReadHeaders(long version, String etag, HttpHeaders headers) {
+    }
+
+    public ContactController(ContactService contactService, ObjectMapper objectMapper, ContactMetrics metrics,
+                             ChangeFeed changeFeed, ObjectProvider<ContactCluster> cluster) {
+        this.contactService = contactService;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.changeFeed = changeFeed;
+        this.cluster = cluster.getIfAvailable();
+    }
 
     @PostMapping
-    public ResponseEntity<?> addContact(@RequestBody Contact contact) {
-        log.debug("Adding contact with name: {}, email: {}, phoneNumber: {}",
-                contact.getName(), contact.getEmail(), contact.getPhoneNumber());
-        contactService.addContact(contact.getName(), contact.getEmail(), contact.getPhoneNumber());
-        return ResponseEntity.ok().build();
+    public ResponseEntity<?> addContact(@RequestBody Contact contact,
+                                        @RequestHeader(value = ContactCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        long start = System.nanoTime();
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Adding contact with name: {}, email: {}, phoneNumber: {}",
+                        contact.getName(), contact.getEmail(), contact.getPhoneNumber());
+            }
+            String owner = owner(contact.getPhoneNumber(), forwardedBy);
+            if (owner != null) {
+                return cluster.forward(owner, "POST", "/contacts", MediaType.APPLICATION_JSON, contact.toJson());
+            }
+            contactService.addContact(contact.getName(), contact.getEmail(), contact.getPhoneNumber());
+            return ResponseEntity.ok().build();
+        } finally {
+            metrics.record(ContactMetrics.Layer.CONTROLLER, ContactMetrics.Operation.ADD, start);
+        }
+    }
+
+    @PostMapping(consumes = ContactFormat.APPLICATION_PROTOBUF_VALUE)
+    // POST /contacts with a Contact message of contacts.proto; JSON, CBOR and Smile bodies are read by addContact
+    public ResponseEntity<?> addProtobufContact(@RequestBody byte[] body,
+                                                @RequestHeader(value = ContactCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        Contact contact;
+        try {
+            contact = ContactProtobuf.decode(body);
+        } catch (IllegalArgumentException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Rejected contact: {}", e.getMessage());
+            }
+            return ResponseEntity.badRequest().build();
+        }
+        return addContact(contact, forwardedBy);
+    }
+
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE,
+            BulkContactReader.TEXT_CSV_VALUE, ContactFormat.APPLICATION_CBOR_VALUE,
+            ContactFormat.APPLICATION_SMILE_VALUE, ContactFormat.APPLICATION_PROTOBUF_VALUE})
+    // POST /contacts/bulk with a JSON array, NDJSON, CSV (name,email,phoneNumber), CBOR, Smile or
+    // protobuf ContactList body
+    public ResponseEntity<BulkResult> addContacts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                  @RequestHeader(value = ContactCluster.FORWARDED_HEADER, required = false) String forwardedBy,
+                                                  InputStream body) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Adding contacts in bulk from {}", contentType);
+            }
+            var contacts = BulkContactReader.read(contentType, body, objectMapper);
+            var result = clustered(forwardedBy)
+                    ? cluster.addContacts(contacts, contactService::addContacts)
+                    : contactService.addContacts(contacts);
+            if (contacts.malformed() != null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Stopped bulk import after {} contacts: {}", result.received(), contacts.malformed());
+                }
+                // the contacts before the malformed record stay added; the response says how many
+                return ResponseEntity.badRequest().body(contacts.withMalformed(result));
+            }
+            return ResponseEntity.ok(result);
+        } finally {
+            metrics.record(ContactMetrics.Layer.CONTROLLER, ContactMetrics.Operation.ADD_BULK, start);
+        }
     }
 
     @PostMapping("/remove")
     // POST /contacts/remove?num=1234567890
-    public ResponseEntity<?> removeContactByPhoneNumber(@RequestParam("num") String phoneNumber) {
-        log.debug("Removing contact with phoneNumber: {}", phoneNumber);
-        contactService.removeContactByPhoneNumber(phoneNumber);
-        return ResponseEntity.ok().build();
+    public ResponseEntity<?> removeContactByPhoneNumber(@RequestParam("num") String phoneNumber,
+                                                        @RequestHeader(value = ContactCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        long start = System.nanoTime();
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Removing contact with phoneNumber: {}", phoneNumber);
+            }
+            String owner = owner(phoneNumber, forwardedBy);
+            if (owner != null) {
+                return cluster.forward(owner, "POST",
+                        "/contacts/remove?num=" + URLEncoder.encode(phoneNumber, StandardCharsets.UTF_8), null, null);
+            }
+            contactService.removeContactByPhoneNumber(phoneNumber);
+            return ResponseEntity.ok().build();
+        } finally {
+            metrics.record(ContactMetrics.Layer.CONTROLLER, ContactMetrics.Operation.REMOVE, start);
+        }
     }
 
-    @GetMapping
-    public ResponseEntity<?> getContacts() {
+    @GetMapping(params = {"!limit", "!after"}, produces = {MediaType.APPLICATION_JSON_VALUE,
+            ContactFormat.APPLICATION_CBOR_VALUE, ContactFormat.APPLICATION_SMILE_VALUE,
+            ContactFormat.APPLICATION_PROTOBUF_VALUE})
+    // GET /contacts, as JSON or, by Accept, CBOR, Smile or a protobuf ContactList
+    public ResponseEntity<StreamingResponseBody> getContacts(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept, WebRequest request) {
+        long start = System.nanoTime();
         log.debug("Getting all contacts");
-        var list = contactService.getContacts();
-        if (list.isEmpty()) {
+        var format = ContactFormat.negotiate(accept);
+        var stream = contactService.streamContacts();
+        var headers = readHeaders(stream.version(), format);
+        if (request.checkNotModified(headers.etag())) {
+            stream.value().close();
+            if (log.isDebugEnabled()) {
+                log.debug("Contacts not modified since version {}", stream.version());
+            }
+            metrics.record(ContactMetrics.Layer.CONTROLLER, ContactMetrics.Operation.LIST, start);
+            return null;
+        }
+        var contacts = stream.value().iterator();
+        if (!contacts.hasNext()) {
+            stream.value().close();
             log.debug("No contacts found");
-            return ResponseEntity.noContent().build();
+            metrics.record(ContactMetrics.Layer.CONTROLLER, ContactMetrics.Operation.LIST, start);
+            return ResponseEntity.noContent().header(VERSION_HEADER, Long.toString(stream.version()))
+                    .eTag(headers.etag()).varyBy(HttpHeaders.ACCEPT).build();
         }
-        return ResponseEntity.ok(list);
+        if (format != null) {
+            StreamingResponseBody body = out -> {
+                try (var closing = stream.value()) {
+                    var writer = format.open(out);
+                    int written = 0;
+                    while (contacts.hasNext()) {
+                        writer.write(contacts.next());
+                        if (++written % STREAM_FLUSH_INTERVAL == 0) {
+                            writer.flush();
+                        }
+                    }
+                    writer.finish();
+                } finally {
+                    metrics.record(ContactMetrics.Layer.CONTROLLER, ContactMetrics.Operation.LIST, start);
+                }
+            };
+            return new ResponseEntity<>(body, headers.headers(), HttpStatus.OK);
+        }
+        // written as a JSON array straight from the snapshot instead of a materialized list, each
+        // contact's cached encoding copied to the response buffer, so a full listing serializes
+        // nothing and a slow client blocks only its own (virtual) thread
+        StreamingResponseBody body = out -> {
+            try (var closing = stream.value()) {
+                out.write('[');
+                int written = 0;
+                while (contacts.hasNext()) {
+                    if (written > 0) {
+                        out.write(',');
+                    }
+                    out.write(contacts.next().toJson());
+                    if (++written % STREAM_FLUSH_INTERVAL == 0) {
+                        out.flush();
+                    }
+                }
+                out.write(']');
+            } finally {
+                metrics.record(ContactMetrics.Layer.CONTROLLER, ContactMetrics.Operation.LIST, start);
+            }
+        };
+        return new ResponseEntity<>(body, headers.headers(), HttpStatus.OK);
+    }
+
+    @GetMapping
+    // GET /contacts?limit=100&after=<next cursor of the previous page>
+    public ResponseEntity<?> getContactsPage(@RequestParam(value = "limit", required = false) Integer limit,
+                                             @RequestParam(value = "after", required = false) String after,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                             WebRequest request) {
+        long start = System.nanoTime();
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Getting contacts page after: {}, limit: {}", after, limit);
+            }
+            var format = ContactFormat.negotiate(accept);
+            var page = contactService.getContacts(after, limit == null ? DEFAULT_PAGE_SIZE : limit);
+            if (request.checkNotModified(readHeaders(page.version(), format).etag())) {
+                return null;
+            }
+            return encoded(new Versioned<>(page.version(), format == null
+                    ? ContactJson.page(page.value()) : format.encode(page.value())), format);
+        } finally {
+            metrics.record(ContactMetrics.Layer.CONTROLLER, ContactMetrics.Operation.LIST_PAGE, start);
+        }
+    }
+
+    @GetMapping(params = {"!limit", "!after"}, produces = APPLICATION_NDJSON_VALUE)
+    // GET /contacts with Accept: application/x-ndjson; pages are never streamed
+    public ResponseEntity<StreamingResponseBody> streamContacts(WebRequest request) {
+        log.debug("Streaming all contacts");
+        var stream = contactService.streamContacts();
+        if (request.checkNotModified(etag(stream.version()))) {
+            stream.value().close();
+            return null;
+        }
+        long start = System.nanoTime();
+        // timed until the last contact is written, which happens after this method returns
+        StreamingResponseBody body = out -> {
+            try (var contacts = stream.value()) {
+                int written = 0;
+                for (var it = contacts.iterator(); it.hasNext(); ) {
+                    out.write(it.next().toJson());
+                    out.write('\n');
+                    // flush the first line right away so clients see data before the store is exhausted
+                    if (written++ % STREAM_FLUSH_INTERVAL == 0) {
+                        out.flush();
+                    }
+                }
+            } finally {
+                metrics.record(ContactMetrics.Layer.CONTROLLER, ContactMetrics.Operation.STREAM, start);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(VERSION_HEADER, Long.toString(stream.version()))
+                .eTag(etag(stream.version()))
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
     }
 
     @GetMapping("/search")
     // GET /contacts/search?key=1234567890&type=phone
+    // GET /contacts/search?key=jo&type=name_prefix (also name, name_ignore_case, name_fuzzy)
     public ResponseEntity<?> getContactsByPhoneNumber(@RequestParam("type") String type,
-                                                      @RequestParam("key") String key) {
-        log.debug("Getting contact with {}: {}", type, key);
-        var list = switch (type) {
-            case "phone" -> contactService.getContactsByPhoneNumber(key);
-            case "name" -> contactService.getContactsByName(key);
+                                                      @RequestParam("key") String key,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                      @RequestHeader(value = ContactCluster.FORWARDED_HEADER, required = false) String forwardedBy,
+                                                      WebRequest request) {
+        long start = System.nanoTime();
+        var operation = ContactMetrics.Operation.ofSearchType(type);
+        var format = ContactFormat.negotiate(accept);
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Getting contact with {}: {}", type, key);
+            }
+            if (clustered(forwardedBy)) {
+                return searchCluster(operation, type, key, format);
+            }
+            if (format == null && (operation == ContactMetrics.Operation.SEARCH_PHONE || operation == ContactMetrics.Operation.SEARCH_NAME)) {
+                // already serialized as JSON, and cached, by the service
+                var json = operation == ContactMetrics.Operation.SEARCH_PHONE
+                        ? contactService.getContactsByPhoneNumberJson(key)
+                        : contactService.getContactsByNameJson(key);
+                if (request.checkNotModified(readHeaders(json.version(), null).etag())) {
+                    return null;
+                }
+                if (json.value().length == 0) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("No contacts found with {}: {}", type, key);
+                    }
+                    return versioned(json, HttpStatus.NO_CONTENT, null);
+                }
+                return encoded(json, null);
+            }
+            var list = search(operation, type, key);
+            if (request.checkNotModified(readHeaders(list.version(), format).etag())) {
+                return null;
+            }
+            if (list.value().isEmpty()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("No contacts found with {}: {}", type, key);
+                }
+                return versioned(list, HttpStatus.NO_CONTENT, format);
+            }
+            return encoded(new Versioned<>(list.version(), format == null
+                    ? ContactJson.array(list.value()) : format.encode(list.value())), format);
+        } finally {
+            metrics.record(ContactMetrics.Layer.CONTROLLER, operation, start);
+        }
+    }
+
+    @GetMapping("/changes")
+    // GET /contacts/changes?since=<X-Contacts-Version or version of the previous response>&limit=100
+    public ResponseEntity<ContactChanges> getChanges(@RequestParam("since") long since,
+                                                     @RequestParam(value = "limit", required = false) Integer limit) {
+        long start = System.nanoTime();
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Getting changes since version: {}", since);
+            }
+            var changes = contactService.getChanges(since, limit == null ? DEFAULT_PAGE_SIZE : limit);
+            if (changes == null) {
+                // the client is too far behind, or ahead of a restarted store, and must list everything again
+                if (log.isDebugEnabled()) {
+                    log.debug("Changes since version {} are no longer kept", since);
+                }
+                return ResponseEntity.status(HttpStatus.GONE).build();
+            }
+            return ResponseEntity.ok()
+                    .header(VERSION_HEADER, Long.toString(changes.version()))
+                    .body(changes);
+        } finally {
+            metrics.record(ContactMetrics.Layer.CONTROLLER, ContactMetrics.Operation.CHANGES, start);
+        }
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    // GET /contacts/stream: Server-Sent Events for every add and remove from now, or after Last-Event-ID
+    public ResponseEntity<ResponseBodyEmitter> streamChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        if (log.isDebugEnabled()) {
+            log.debug("Subscribing to changes after version: {}", lastEventId);
+        }
+        if (!changeFeed.hasCapacity()) {
+            log.debug("Change feed has no room for another subscriber");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        var emitter = changeFeed.subscribe(lastEventId);
+        if (emitter == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Changes since version {} are no longer kept", lastEventId);
+            }
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .cacheControl(CacheControl.noStore())
+                .body(emitter);
+    }
+
+    private Versioned<List<Contact>> search(ContactMetrics.Operation operation, String type, String key) {
+        return switch (operation) {
+            case SEARCH_PHONE -> contactService.getContactsByPhoneNumber(key);
+            case SEARCH_NAME -> contactService.getContactsByName(key);
+            case SEARCH_NAME_IGNORE_CASE -> contactService.getContactsByNameIgnoreCase(key);
+            case SEARCH_NAME_PREFIX -> contactService.getContactsByNamePrefix(key);
+            case SEARCH_NAME_FUZZY -> contactService.getContactsByNameFuzzy(key);
             default -> throw new IllegalArgumentException("Invalid search type: " + type);
         };
-        if (list.isEmpty()) {
-            log.debug("No contacts found with {}: {}", type, key);
-            return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * A search on this node and every other one at once. Each node answers from its own version of
+     * the store, so the merged result carries no version or entity tag.
+     */
+    private ResponseEntity<?> searchCluster(ContactMetrics.Operation operation, String type, String key,
+                                            ContactFormat format) {
+        var others = cluster.searchOthers(type, key);
+        List<Contact> found = new ArrayList<>(search(operation, type, key).value());
+        try {
+            found.addAll(others.join());
+        } catch (CompletionException e) {
+            log.warn("Search for {}: {} failed on another node: {}", type, key, e.getCause().toString());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        }
+        if (found.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug("No contacts found with {}: {} on any node", type, key);
+            }
+            return ResponseEntity.noContent().varyBy(HttpHeaders.ACCEPT).build();
         }
-        return ResponseEntity.ok(list);
+        return ResponseEntity.ok()
+                .contentType(format == null ? MediaType.APPLICATION_JSON : format.mediaType())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(format == null ? ContactJson.array(found) : format.encode(found));
+    }
+
+    /**
+     * Whether a request should be spread over the cluster: this node is part of one and the
+     * request did not come from another node, which already did.
+     */
+    private boolean clustered(String forwardedBy) {
+        return cluster != null && forwardedBy == null;
+    }
+
+    /**
+     * The other node a write to {@code phoneNumber} belongs to, or null to handle it here.
+     */
+    private String owner(String phoneNumber, String forwardedBy) {
+        return clustered(forwardedBy) ? cluster.remoteOwner(phoneNumber) : null;
+    }
+
+    /**
+     * The strong entity tag of everything read at store {@code version}: any response read at the
+     * same version of the same run is identical.
+     */
+    static String etag(long version) {
+        return "\"" + ETAG_EPOCH + "-" + version + "\"";
+    }
+
+    /**
+     * The entity tag of a read at {@code version} encoded in {@code format}, or in JSON when it is
+     * null, since each encoding is a different representation of the same result.
+     */
+    static String etag(long version, ContactFormat format) {
+        return format == null ? etag(version)
+                : "\"" + ETAG_EPOCH + "-" + version + "-" + format.name().toLowerCase(Locale.ROOT) + "\"";
+    }
+
+    /**
+     * The headers of a 200 response read at {@code version} in {@code format}, or in JSON when it
+     * is null. They change only with the version, so they are built once for the latest version
+     * read and shared by the responses read at it; building them cost more than the rest of a
+     * cached search.
+     */
+    private ReadHeaders readHeaders(long version, ContactFormat format) {
+        int slot = format == null ? 0 : format.ordinal() + 1;
+        var cached = readHeaders.get(slot);
+        if (cached == null || cached.version() != version) {
+            String etag = etag(version, format);
+            var headers = new HttpHeaders();
+            headers.set(VERSION_HEADER, Long.toString(version));
+            headers.setETag(etag);
+            headers.setVary(List.of(HttpHeaders.ACCEPT));
+            headers.setContentType(format == null ? MediaType.APPLICATION_JSON : format.mediaType());
+            cached = new ReadHeaders(version, etag, HttpHeaders.readOnlyHttpHeaders(headers));
+            readHeaders.set(slot, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * A 200 response with a body already encoded in {@code format}, or JSON assembled from cached
+     * contact encodings when it is null, written to the response as is.
+     */
+    private ResponseEntity<byte[]> encoded(Versioned<byte[]> body, ContactFormat format) {
+        return new ResponseEntity<>(body.value(), readHeaders(body.version(), format).headers(), HttpStatus.OK);
+    }
+
+    private static ResponseEntity<?> versioned(Versioned<?> result, HttpStatus status, ContactFormat format) {
+        var response = ResponseEntity.status(status)
+                .header(VERSION_HEADER, Long.toString(result.version()))
+                .eTag(etag(result.version(), format))
+                .varyBy(HttpHeaders.ACCEPT);
+        return status == HttpStatus.NO_CONTENT ? response.build() : response.body(result.value());
     }
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package com.ust.elkstackdemo.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactPage;
+import com.ust.elkstackdemo.model.ContactProtobuf;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Binary alternatives to JSON for contact lists, pages and bulk input, chosen by the request's
+ * {@code Accept} or {@code Content-Type}. CBOR and Smile carry the same fields and structure as the
+ * JSON; Protocol Buffers follows {@code src/main/proto/contacts.proto}.
+ */
+public enum ContactFormat {
+
+    CBOR(ContactFormat.APPLICATION_CBOR_VALUE, CBORMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .build()),
+    SMILE(ContactFormat.APPLICATION_SMILE_VALUE, SmileMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .build()),
+    PROTOBUF(ContactFormat.APPLICATION_PROTOBUF_VALUE, null);
+
+    public static final String APPLICATION_CBOR_VALUE = "application/cbor";
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final String APPLICATION_PROTOBUF_VALUE = "application/x-protobuf";
+
+    private final MediaType mediaType;
+
+    /**
+     * The mapper of a Jackson binary format, null for Protocol Buffers.
+     */
+    private final ObjectMapper mapper;
+
+    ContactFormat(String mediaType, ObjectMapper mapper) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.mapper = mapper;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * The format to answer with, by the quality the {@code Accept} header gives each format and
+     * JSON; the first listed wins a tie.
+     * @return The preferred binary format, or null when JSON, or anything, is preferred or the
+     * header is missing or malformed.
+     */
+    public static ContactFormat negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return null;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        ContactFormat best = null;
+        double bestQuality = 0;
+        for (MediaType type : accepted) {
+            var format = of(type);
+            if (format == null && !type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                continue;
+            }
+            if (type.getQualityValue() > bestQuality) {
+                best = format;
+                bestQuality = type.getQualityValue();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return The format of exactly {@code type}, ignoring its parameters, or null.
+     */
+    public static ContactFormat of(MediaType type) {
+        for (ContactFormat format : values()) {
+            if (format.mediaType.equalsTypeAndSubtype(type)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The contacts as one list: an array, or a {@code ContactList}.
+     */
+    public byte[] encode(List<Contact> contacts) {
+        if (mapper == null) {
+            return ContactProtobuf.list(contacts);
+        }
+        try {
+            return mapper.writeValueAsBytes(contacts);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public byte[] encode(ContactPage page) {
+        if (mapper == null) {
+            return ContactProtobuf.page(page);
+        }
+        try {
+            return mapper.writeValueAsBytes(page);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Start writing a list of contacts to {@code out}, one contact at a time.
+     */
+    public Writer open(OutputStream out) throws IOException {
+        if (mapper == null) {
+            return new Writer() {
+                @Override
+                public void write(Contact contact) throws IOException {
+                    ContactProtobuf.writeListEntry(contact, out);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    out.flush();
+                }
+
+                @Override
+                public void finish() {
+                }
+            };
+        }
+        JsonGenerator generator = mapper.createGenerator(out);
+        generator.writeStartArray();
+        return new Writer() {
+            @Override
+            public void write(Contact contact) throws IOException {
+                generator.writeObject(contact);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                generator.flush();
+            }
+
+            @Override
+            public void finish() throws IOException {
+                generator.writeEndArray();
+                generator.close();
+            }
+        };
+    }
+
+    /**
+     * Lazily read a list of contacts, or with CBOR and Smile also a sequence of them, from
+     * {@code in}.
+     */
+    public Iterator<Contact> read(InputStream in) throws IOException {
+        if (mapper == null) {
+            return ContactProtobuf.readList(in);
+        }
+        return mapper.readerFor(Contact.class).readValues(in);
+    }
+
+    /**
+     * Writes the contacts of one list; {@link #finish()} completes it without closing the stream.
+     */
+    public interface Writer {
+
+        void write(Contact contact) throws IOException;
+
+        void flush() throws IOException;
+
+        void finish() throws IOException;
+    }
+}
@@ -0,0 +1,73 @@
+package com.ust.elkstackdemo.controller;
+
+import com.ust.elkstackdemo.logging.LogSamplingFilter;
+import com.ust.elkstackdemo.logging.LogSamplingSettings;
+import com.ust.elkstackdemo.logging.LogSamplingStatus;
+import com.ust.elkstackdemo.logging.LoggingStatus;
+import com.ust.elkstackdemo.logging.RingBufferAppender;
+import com.ust.elkstackdemo.shipping.LogShipper;
+import com.ust.elkstackdemo.shipping.ShipperStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/logging")
+@RequiredArgsConstructor
+@Slf4j
+public class LoggingController {
+
+    private final ObjectProvider<LogShipper> logShipper;
+
+    @GetMapping("/status")
+    // GET /logging/status: ring buffer depth and dropped event counts
+    public ResponseEntity<LoggingStatus> getStatus() {
+        var appender = RingBufferAppender.find();
+        if (appender == null) {
+            log.debug("No ring buffer appender configured");
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(appender.status());
+    }
+
+    @GetMapping("/sampling")
+    // GET /logging/sampling: sampling settings and how many events they kept out
+    public ResponseEntity<LogSamplingStatus> getSampling() {
+        var filter = LogSamplingFilter.find();
+        if (filter == null) {
+            log.debug("No log sampling filter configured");
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(filter.status());
+    }
+
+    @PutMapping("/sampling")
+    // PUT /logging/sampling: replace the sample rate and budgets without a restart
+    public ResponseEntity<LogSamplingStatus> updateSampling(@RequestBody LogSamplingSettings settings) {
+        var filter = LogSamplingFilter.find();
+        if (filter == null) {
+            log.debug("No log sampling filter configured");
+            return ResponseEntity.notFound().build();
+        }
+        filter.update(settings);
+        log.info("Log sampling updated: {}", settings);
+        return ResponseEntity.ok(filter.status());
+    }
+
+    @GetMapping("/shipper")
+    // GET /logging/shipper: events shipped to Elasticsearch, retries and backpressure
+    public ResponseEntity<ShipperStatus> getShipper() {
+        var shipper = logShipper.getIfAvailable();
+        if (shipper == null) {
+            log.debug("Log shipper not enabled");
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(shipper.status());
+    }
+}
@@ -0,0 +1,30 @@
+package com.ust.elkstackdemo.controller;
+
+import com.ust.elkstackdemo.metrics.ContactMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+@Slf4j
+public class MetricsController {
+
+    /**
+     * Content type of the Prometheus text exposition format.
+     */
+    static final String PROMETHEUS_TEXT_VALUE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final ContactMetrics metrics;
+
+    @GetMapping(value = "/metrics", produces = PROMETHEUS_TEXT_VALUE)
+    // GET /metrics: operation latencies, lookup hits and misses, store gauges for Prometheus to scrape
+    public ResponseEntity<String> getMetrics() {
+        var out = new StringBuilder(16 * 1024);
+        metrics.scrape(out);
+        log.trace("Scraped {} characters of metrics", out.length());
+        return ResponseEntity.ok(out.toString());
+    }
+}
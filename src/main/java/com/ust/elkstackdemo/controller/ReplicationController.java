@@ -0,0 +1,31 @@
+package com.ust.elkstackdemo.controller;
+
+import com.ust.elkstackdemo.replication.Replication;
+import com.ust.elkstackdemo.replication.ReplicationStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/replication")
+@RequiredArgsConstructor
+@Slf4j
+public class ReplicationController {
+
+    private final ObjectProvider<Replication> replication;
+
+    @GetMapping("/status")
+    // GET /replication/status: offsets applied here and on the primary, and how far replicas lag behind
+    public ResponseEntity<ReplicationStatus> getStatus() {
+        var role = replication.getIfAvailable();
+        if (role == null) {
+            log.debug("Replication not enabled");
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(role.status());
+    }
+}
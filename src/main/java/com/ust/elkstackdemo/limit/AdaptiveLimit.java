@@ -0,0 +1,173 @@
+package com.ust.elkstackdemo.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrency limit that follows latency, after the gradient algorithm of Netflix's
+ * concurrency-limits. Latencies are averaged over short windows; each window's average is compared
+ * with a slow moving long-term average. While the short one stays within {@code tolerance} times
+ * the long one the limit grows by about its square root per window, leaving room for a small
+ * queue, and once requests wait on each other the limit shrinks in proportion, at most by half.
+ * <p>
+ * Requests over the limit are turned away at once rather than queued. Low priority requests may
+ * only take {@code lowPriorityShare} of it, so they are turned away first.
+ */
+final class AdaptiveLimit {
+
+    enum Priority {
+        HIGH, LOW
+    }
+
+    /**
+     * Fewest latencies a window averages, so that a quiet moment does not move the limit.
+     */
+    private static final int WINDOW_MIN_SAMPLES = 10;
+
+    /**
+     * Weight of each window in the long-term average, which thereby spans about 100 windows.
+     */
+    private static final double LONG_TERM_WEIGHT = 2.0 / 101;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double lowPriorityShare;
+    private final double tolerance;
+    private final double smoothing;
+    private final long windowNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder[] rejected = {new LongAdder(), new LongAdder()};
+
+    private volatile double limit;
+
+    // the current window and the long-term average, guarded by this
+    private long windowStart;
+    private long windowSum;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private double longTermNanos;
+
+    AdaptiveLimit(String name, int initialLimit, int minLimit, int maxLimit, double lowPriorityShare,
+                  double tolerance, double smoothing, long windowNanos) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid " + name + " limits: " + minLimit + " to " + maxLimit);
+        }
+        if (initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid initial " + name + " limit: " + initialLimit);
+        }
+        if (!(lowPriorityShare > 0 && lowPriorityShare <= 1)) {
+            throw new IllegalArgumentException("Invalid low priority share: " + lowPriorityShare);
+        }
+        if (!(tolerance >= 1)) {
+            throw new IllegalArgumentException("Invalid tolerance: " + tolerance);
+        }
+        if (!(smoothing > 0 && smoothing <= 1)) {
+            throw new IllegalArgumentException("Invalid smoothing: " + smoothing);
+        }
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.lowPriorityShare = lowPriorityShare;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.windowNanos = windowNanos;
+    }
+
+    /**
+     * Admit a request if there is room for it. Every admitted request must be released exactly
+     * once.
+     */
+    boolean tryAcquire(Priority priority) {
+        double current = limit;
+        int allowed = priority == Priority.HIGH ? (int) current : Math.max(1, (int) (current * lowPriorityShare));
+        while (true) {
+            int busy = inFlight.get();
+            if (busy >= allowed) {
+                rejected[priority.ordinal()].increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(busy, busy + 1)) {
+                admitted.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release a request admitted at {@code startNanos}, a {@link System#nanoTime()} reading.
+     * @param sample Whether its latency says anything about the load, false e.g. when it failed
+     *               early or streamed for as long as its client kept reading.
+     */
+    void release(long startNanos, boolean sample) {
+        int busy = inFlight.getAndDecrement();
+        if (sample) {
+            sample(System.nanoTime() - startNanos, busy);
+        }
+    }
+
+    private synchronized void sample(long latencyNanos, int busy) {
+        long now = System.nanoTime();
+        if (windowSamples == 0) {
+            windowStart = now;
+        }
+        windowSum += latencyNanos;
+        windowMaxInFlight = Math.max(windowMaxInFlight, busy);
+        if (++windowSamples >= WINDOW_MIN_SAMPLES && now - windowStart >= windowNanos) {
+            update((double) windowSum / windowSamples, windowMaxInFlight);
+            windowSum = 0;
+            windowSamples = 0;
+            windowMaxInFlight = 0;
+        }
+    }
+
+    /**
+     * Move the limit by a window's average latency.
+     * @param maxInFlight The most requests in flight during the window.
+     */
+    synchronized void update(double shortTermNanos, int maxInFlight) {
+        if (longTermNanos == 0) {
+            longTermNanos = shortTermNanos;
+        } else {
+            longTermNanos += (shortTermNanos - longTermNanos) * LONG_TERM_WEIGHT;
+        }
+        if (longTermNanos > 2 * shortTermNanos) {
+            // latency is back to normal after a long overload the average had crept up with; let it
+            // come down faster, or the limit would stay too high for as long
+            longTermNanos *= 0.95;
+        }
+        double current = limit;
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longTermNanos / shortTermNanos));
+        double estimate = current * gradient + Math.sqrt(current);
+        double next = Math.max(minLimit, Math.min(maxLimit, current * (1 - smoothing) + estimate * smoothing));
+        if (next > current && maxInFlight < current / 2) {
+            // hardly used, so the latency says nothing about whether more would fit
+            return;
+        }
+        limit = next;
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    long rejected(Priority priority) {
+        return rejected[priority.ordinal()].sum();
+    }
+
+    ConcurrencyLimitStatus status() {
+        double latencyMillis;
+        synchronized (this) {
+            latencyMillis = longTermNanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+        return new ConcurrencyLimitStatus(name, limit(), inFlight(), admitted.sum(), rejected(Priority.HIGH),
+                rejected(Priority.LOW), latencyMillis);
+    }
+}
@@ -0,0 +1,151 @@
+package com.ust.elkstackdemo.limit;
+
+import com.ust.elkstackdemo.cluster.ContactCluster;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holds {@code /contacts} requests to the {@link ConcurrencyLimits}, turning away the ones over
+ * them at once with {@code Retry-After} instead of letting them queue for a thread. High priority
+ * are lookups, paged listings and single writes; low priority, and turned away first, are full
+ * listings, bulk imports and searches that scan every name. Requests forwarded by another node of
+ * a cluster count as high priority, as that node already admitted them; {@code ForwardedByFilter},
+ * which runs first, leaves the header only on requests that did come from one.
+ * <p>
+ * {@code /contacts/stream} is left alone: its subscribers stay connected for good and are bounded
+ * by {@code contacts.feed.max-subscribers}. A streamed listing holds its place until the last
+ * contact is written, but its duration depends on the client, so it does not move the limit.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    private final ObjectProvider<ConcurrencyLimits> limits;
+
+    public ConcurrencyLimitFilter(ObjectProvider<ConcurrencyLimits> limits) {
+        this.limits = limits;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !(path.equals("/contacts") || path.startsWith("/contacts/")) || path.equals("/contacts/stream");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ConcurrencyLimits limits = this.limits.getIfAvailable();
+        if (limits == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        boolean write = isWrite(request);
+        var priority = priority(request, write);
+        var limit = limits.limit(write);
+        if (!limit.tryAcquire(priority)) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Turned away {} {} over the {} limit of {}", request.getMethod(), request.getRequestURI(),
+                        write ? "write" : "read", limit.limit());
+            }
+            // no error page: answering must stay cheaper than serving
+            response.setStatus(limits.rejectStatus());
+            response.setHeader(HttpHeaders.RETRY_AFTER, limits.retryAfter());
+            return;
+        }
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            chain.doFilter(request, response);
+            completed = true;
+        } finally {
+            if (completed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new Release(limit, start));
+            } else {
+                // a request that failed tells nothing about latency under load
+                limit.release(start, completed);
+            }
+        }
+    }
+
+    private static boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !(HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method));
+    }
+
+    static AdaptiveLimit.Priority priority(HttpServletRequest request, boolean write) {
+        if (request.getHeader(ContactCluster.FORWARDED_HEADER) != null) {
+            return AdaptiveLimit.Priority.HIGH;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean low;
+        if (write) {
+            low = path.equals("/contacts/bulk");
+        } else if (path.equals("/contacts/search")) {
+            String type = request.getParameter("type");
+            low = !("phone".equals(type) || "name".equals(type));
+        } else {
+            low = path.equals("/contacts") && request.getParameter("limit") == null
+                    && request.getParameter("after") == null;
+        }
+        return low ? AdaptiveLimit.Priority.LOW : AdaptiveLimit.Priority.HIGH;
+    }
+
+    /**
+     * Releases the place of a request answered asynchronously once its response is complete.
+     */
+    private static final class Release implements AsyncListener {
+
+        private final AdaptiveLimit limit;
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Release(AdaptiveLimit limit, long start) {
+            this.limit = limit;
+            this.start = start;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                limit.release(start, false);
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.ust.elkstackdemo.limit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for limiting concurrent requests to {@code /contacts}, under {@code contacts.limits}.
+ *
+ * @param enabled           Whether requests over the limits are turned away.
+ * @param minLimit          The lowest either limit may fall to.
+ * @param readInitialLimit  Concurrent reads allowed at startup, before any latency was measured.
+ * @param readMaxLimit      The highest the read limit may grow to.
+ * @param writeInitialLimit Concurrent writes allowed at startup.
+ * @param writeMaxLimit     The highest the write limit may grow to.
+ * @param lowPriorityShare  Part of each limit that full listings, scanning searches and bulk
+ *                          imports may take, keeping the rest for lookups and single writes.
+ * @param tolerance         How many times their long-term average latencies may grow to before a
+ *                          limit shrinks.
+ * @param smoothing         Weight of each new estimate when a limit changes, between 0 and 1.
+ * @param window            Shortest time latencies are averaged over before a limit changes.
+ * @param rejectStatus      Status of a turned away request, 503 or 429.
+ * @param retryAfter        When a turned away client should try again, sent in whole seconds.
+ * @param logInterval       How often the limits are logged while requests arrive; 0 never.
+ */
+@ConfigurationProperties("contacts.limits")
+public record ConcurrencyLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("4") int minLimit,
+        @DefaultValue("100") int readInitialLimit,
+        @DefaultValue("1000") int readMaxLimit,
+        @DefaultValue("50") int writeInitialLimit,
+        @DefaultValue("500") int writeMaxLimit,
+        @DefaultValue("0.75") double lowPriorityShare,
+        @DefaultValue("1.5") double tolerance,
+        @DefaultValue("0.2") double smoothing,
+        @DefaultValue("100ms") Duration window,
+        @DefaultValue("503") int rejectStatus,
+        @DefaultValue("1s") Duration retryAfter,
+        @DefaultValue("10s") Duration logInterval) {
+}
@@ -0,0 +1,16 @@
+package com.ust.elkstackdemo.limit;
+
+/**
+ * One concurrency limit as it stands.
+ *
+ * @param name          {@code reads} or {@code writes}.
+ * @param limit         Requests allowed at once.
+ * @param inFlight      Requests being served.
+ * @param admitted      Requests let through since startup.
+ * @param rejectedHigh  High priority requests turned away since startup.
+ * @param rejectedLow   Low priority requests turned away since startup.
+ * @param latencyMillis Long-term average latency the limit is judged against; 0 until measured.
+ */
+public record ConcurrencyLimitStatus(String name, int limit, int inFlight, long admitted, long rejectedHigh,
+                                     long rejectedLow, double latencyMillis) {
+}
@@ -0,0 +1,119 @@
+package com.ust.elkstackdemo.limit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The concurrency limits {@link ConcurrencyLimitFilter} holds {@code /contacts} requests to: one
+ * for reads and one for writes, so that slow writes cannot crowd out reads or the other way
+ * around. While requests arrive, both are logged every {@code log-interval} with their numbers as
+ * fields of the event, for dashboards over the shipped logs; {@code GET /metrics} has them too.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contacts.limits", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimits {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyLimits.class);
+
+    private final ConcurrencyLimitProperties properties;
+    private final AdaptiveLimit reads;
+    private final AdaptiveLimit writes;
+    private final String retryAfter;
+    private final long[] lastLogged = new long[4];
+
+    private ScheduledExecutorService scheduler;
+
+    public ConcurrencyLimits(ConcurrencyLimitProperties properties) {
+        if (properties.rejectStatus() != 503 && properties.rejectStatus() != 429) {
+            throw new IllegalArgumentException("Invalid reject status: " + properties.rejectStatus());
+        }
+        if (properties.window().isNegative() || properties.retryAfter().isNegative()
+                || properties.logInterval().isNegative()) {
+            throw new IllegalArgumentException("Invalid limit intervals: " + properties);
+        }
+        this.properties = properties;
+        this.reads = limit("reads", properties.readInitialLimit(), properties.readMaxLimit());
+        this.writes = limit("writes", properties.writeInitialLimit(), properties.writeMaxLimit());
+        // whole seconds, rounded up
+        this.retryAfter = Long.toString((properties.retryAfter().toMillis() + 999) / 1000);
+    }
+
+    private AdaptiveLimit limit(String name, int initialLimit, int maxLimit) {
+        return new AdaptiveLimit(name, initialLimit, properties.minLimit(), maxLimit, properties.lowPriorityShare(),
+                properties.tolerance(), properties.smoothing(), properties.window().toNanos());
+    }
+
+    @PostConstruct
+    public void start() {
+        long millis = properties.logInterval().toMillis();
+        if (millis == 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "concurrency-limits");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::log, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    AdaptiveLimit limit(boolean write) {
+        return write ? writes : reads;
+    }
+
+    int rejectStatus() {
+        return properties.rejectStatus();
+    }
+
+    /**
+     * {@code Retry-After} of a turned away request.
+     */
+    String retryAfter() {
+        return retryAfter;
+    }
+
+    public List<ConcurrencyLimitStatus> status() {
+        return List.of(reads.status(), writes.status());
+    }
+
+    private void log() {
+        var statuses = status();
+        for (int i = 0; i < statuses.size(); i++) {
+            var status = statuses.get(i);
+            long rejected = status.rejectedHigh() + status.rejectedLow();
+            long admittedSince = status.admitted() - lastLogged[2 * i];
+            long rejectedSince = rejected - lastLogged[2 * i + 1];
+            lastLogged[2 * i] = status.admitted();
+            lastLogged[2 * i + 1] = rejected;
+            if (admittedSince + rejectedSince == 0) {
+                continue;
+            }
+            LOGGER.atInfo()
+                    .addKeyValue("limit.name", status.name())
+                    .addKeyValue("limit.value", status.limit())
+                    .addKeyValue("limit.in_flight", status.inFlight())
+                    .addKeyValue("limit.admitted", admittedSince)
+                    .addKeyValue("limit.rejected", rejectedSince)
+                    .addKeyValue("limit.latency_ms", status.latencyMillis())
+                    .log("Concurrency limit for {}: {}, {} admitted and {} rejected since last logged",
+                            status.name(), status.limit(), admittedSince, rejectedSince);
+        }
+    }
+}
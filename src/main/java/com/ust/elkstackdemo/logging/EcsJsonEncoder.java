@@ -0,0 +1,119 @@
+package com.ust.elkstackdemo.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.encoder.EncoderBase;
+import org.slf4j.event.KeyValuePair;
+
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * Encodes each event as one line of Elastic Common Schema JSON, so Logstash and Filebeat can ship
+ * the log file without grok patterns. Besides the standard fields, MDC entries and the key-value
+ * pairs of SLF4J's fluent API ({@code LOGGER.atDebug().addKeyValue("phoneNumber", p).log(...)})
+ * become top-level fields. Numbers and booleans keep their JSON type; anything else is a string.
+ */
+public class EcsJsonEncoder extends EncoderBase<ILoggingEvent> {
+
+    private static final String ECS_VERSION = "1.2.0";
+    private static final byte[] EMPTY = new byte[0];
+
+    private String serviceName;
+
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    @Override
+    public byte[] headerBytes() {
+        return EMPTY;
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return EMPTY;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"@timestamp\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(event.getInstant(), json);
+        json.append("\",\"log.level\":\"").append(event.getLevel().toString()).append('"');
+        field(json, "message", event.getFormattedMessage());
+        field(json, "ecs.version", ECS_VERSION);
+        if (serviceName != null) {
+            field(json, "service.name", serviceName);
+            field(json, "event.dataset", serviceName);
+        }
+        field(json, "process.thread.name", event.getThreadName());
+        field(json, "log.logger", event.getLoggerName());
+        for (Map.Entry<String, String> entry : event.getMDCPropertyMap().entrySet()) {
+            field(json, entry.getKey(), entry.getValue());
+        }
+        if (event.getKeyValuePairs() != null) {
+            for (KeyValuePair pair : event.getKeyValuePairs()) {
+                json.append(',');
+                string(json, pair.key);
+                json.append(':');
+                value(json, pair.value);
+            }
+        }
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            field(json, "error.type", throwable.getClassName());
+            field(json, "error.message", throwable.getMessage());
+            field(json, "error.stack_trace", ThrowableProxyUtil.asString(throwable));
+        }
+        json.append("}\n");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void field(StringBuilder json, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        json.append(',');
+        string(json, name);
+        json.append(':');
+        string(json, value);
+    }
+
+    private static void value(StringBuilder json, Object value) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            json.append(value);
+        } else if (value instanceof Number number && Double.isFinite(number.doubleValue())) {
+            json.append(number);
+        } else {
+            string(json, String.valueOf(value));
+        }
+    }
+
+    private static void string(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,305 @@
+package com.ust.elkstackdemo.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+import org.slf4j.event.KeyValuePair;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Turbo filter that keeps log volume proportional to what is worth reading. It runs before Logback
+ * builds an event, so whatever it denies costs no formatting, no allocation and no ring buffer slot.
+ * <ul>
+ *     <li><b>Request sampling</b>: {@link #enterRequest()} decides once per HTTP request whether it
+ *     is sampled. Sampled requests log everything; the others lose their DEBUG and TRACE events,
+ *     including the {@code isDebugEnabled()} checks guarding them.</li>
+ *     <li><b>Per-template budgets</b>: outside sampled requests, each message template of each
+ *     logger may be logged at its logger's budget in events per second, with a burst allowance.
+ *     Repeats beyond it are counted and collapsed into one summary event per template every
+ *     summary interval, carrying the count as {@code log.suppressed}. ERROR events always pass.</li>
+ * </ul>
+ * Settings come from {@code logback-spring.xml} at startup and can be replaced at runtime through
+ * {@link #update(LogSamplingSettings)}; budgets start afresh when they are.
+ */
+public class LogSamplingFilter extends TurboFilter {
+
+    /**
+     * Name the filter is registered under in {@code logback-spring.xml}.
+     */
+    public static final String NAME = "SAMPLING";
+
+    /**
+     * Templates tracked per logger; beyond this, a logger's remaining templates share one budget so
+     * messages built by concatenation cannot grow the tables without bound.
+     */
+    static final int MAX_TEMPLATES_PER_LOGGER = 1024;
+
+    static final String OTHER_TEMPLATES = "(other messages)";
+
+    private static final ThreadLocal<Boolean> SAMPLED = new ThreadLocal<>();
+
+    private final LongAdder sampledRequests = new LongAdder();
+    private final LongAdder unsampledRequests = new LongAdder();
+    private final LongAdder debugDenied = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    private double debugSampleRate = 1;
+    private double eventsPerSecond = 10;
+    private int burst = 20;
+    private String loggerBudgets;
+    private long summaryIntervalSeconds = 10;
+
+    private volatile Budgets budgets;
+    private ScheduledExecutorService summaries;
+    private long lastSummary;
+
+    public LogSamplingFilter() {
+        setName(NAME);
+    }
+
+    public void setDebugSampleRate(double debugSampleRate) {
+        this.debugSampleRate = debugSampleRate;
+    }
+
+    public void setEventsPerSecond(double eventsPerSecond) {
+        this.eventsPerSecond = eventsPerSecond;
+    }
+
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    public void setLoggerBudgets(String loggerBudgets) {
+        this.loggerBudgets = loggerBudgets;
+    }
+
+    public void setSummaryIntervalSeconds(long summaryIntervalSeconds) {
+        this.summaryIntervalSeconds = summaryIntervalSeconds;
+    }
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        budgets = new Budgets(new LogSamplingSettings(debugSampleRate, eventsPerSecond, burst,
+                LogSamplingSettings.parseBudgets(loggerBudgets), summaryIntervalSeconds));
+        lastSummary = System.nanoTime();
+        summaries = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "logging-summaries");
+            thread.setDaemon(true);
+            return thread;
+        });
+        summaries.scheduleWithFixedDelay(this::summarizeIfDue, 1, 1, TimeUnit.SECONDS);
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        summaries.shutdownNow();
+        summarize(budgets);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level.levelInt >= Level.ERROR_INT || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        Boolean sampled = SAMPLED.get();
+        if (sampled == Boolean.TRUE) {
+            return FilterReply.NEUTRAL;
+        }
+        if (sampled == Boolean.FALSE && level.levelInt < Level.INFO_INT) {
+            if (format != null) {
+                debugDenied.increment();
+            }
+            return FilterReply.DENY;
+        }
+        if (format == null) {
+            // an isXxxEnabled() check: only the message itself is budgeted
+            return FilterReply.NEUTRAL;
+        }
+        if (budgets.of(logger).of(format).tryAcquire(System.nanoTime(), level)) {
+            return FilterReply.NEUTRAL;
+        }
+        suppressed.increment();
+        return FilterReply.DENY;
+    }
+
+    /**
+     * Decides whether the request now running on this thread is sampled, until {@link #exitRequest()}.
+     */
+    public boolean enterRequest() {
+        double rate = budgets.settings.debugSampleRate();
+        boolean sampled = rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+        (sampled ? sampledRequests : unsampledRequests).increment();
+        SAMPLED.set(sampled);
+        return sampled;
+    }
+
+    public static void exitRequest() {
+        SAMPLED.remove();
+    }
+
+    /**
+     * Replaces the settings, reporting what the old budgets suppressed first.
+     */
+    public synchronized void update(LogSamplingSettings settings) {
+        Budgets previous = budgets;
+        budgets = new Budgets(settings);
+        summarize(previous);
+    }
+
+    public LogSamplingStatus status() {
+        return new LogSamplingStatus(budgets.settings, sampledRequests.sum(), unsampledRequests.sum(),
+                debugDenied.sum(), suppressed.sum());
+    }
+
+    /**
+     * The filter configured in {@code logback-spring.xml}, if Logback is in use and it is there.
+     */
+    public static LogSamplingFilter find() {
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext context) {
+            for (TurboFilter filter : context.getTurboFilterList()) {
+                if (filter instanceof LogSamplingFilter sampling) {
+                    return sampling;
+                }
+            }
+        }
+        return null;
+    }
+
+    private synchronized void summarizeIfDue() {
+        long now = System.nanoTime();
+        if (now - lastSummary >= TimeUnit.SECONDS.toNanos(budgets.settings.summaryIntervalSeconds())) {
+            summarize(budgets);
+        }
+    }
+
+    /**
+     * Reports and resets what the current budgets suppressed; the scheduler does this every interval.
+     */
+    void summarize() {
+        summarize(budgets);
+    }
+
+    private synchronized void summarize(Budgets budgets) {
+        lastSummary = System.nanoTime();
+        long seconds = budgets.settings.summaryIntervalSeconds();
+        for (LoggerBudgets logger : budgets.loggers.values()) {
+            for (Budget budget : logger.templates.values()) {
+                long repeats = budget.suppressed.sumThenReset();
+                if (repeats == 0) {
+                    continue;
+                }
+                // straight to the appenders: going through the logger would budget the summary too
+                var summary = new LoggingEvent(LogSamplingFilter.class.getName(), logger.logger, budget.level,
+                        "Suppressed {} repeats of \"{}\" in the last {} s", null,
+                        new Object[]{repeats, budget.template, seconds});
+                summary.setKeyValuePairs(List.of(new KeyValuePair("log.suppressed", repeats),
+                        new KeyValuePair("log.template", budget.template)));
+                logger.logger.callAppenders(summary);
+            }
+        }
+    }
+
+    /**
+     * Budgets for one set of settings, created lazily per logger and template.
+     */
+    static final class Budgets {
+
+        final LogSamplingSettings settings;
+        final ConcurrentHashMap<String, LoggerBudgets> loggers = new ConcurrentHashMap<>();
+
+        Budgets(LogSamplingSettings settings) {
+            this.settings = settings;
+        }
+
+        LoggerBudgets of(Logger logger) {
+            LoggerBudgets budgets = loggers.get(logger.getName());
+            return budgets != null ? budgets : loggers.computeIfAbsent(logger.getName(), name ->
+                    new LoggerBudgets(logger, settings.eventsPerSecond(name), settings.burst()));
+        }
+    }
+
+    static final class LoggerBudgets {
+
+        final Logger logger;
+        final ConcurrentHashMap<String, Budget> templates = new ConcurrentHashMap<>();
+        private final long intervalNanos;
+        private final long toleranceNanos;
+
+        LoggerBudgets(Logger logger, double eventsPerSecond, int burst) {
+            this.logger = logger;
+            this.intervalNanos = eventsPerSecond == 0 ? Long.MAX_VALUE : (long) (1e9 / eventsPerSecond);
+            this.toleranceNanos = eventsPerSecond == 0 ? -1 : intervalNanos * (burst - 1);
+        }
+
+        Budget of(String template) {
+            Budget budget = templates.get(template);
+            if (budget != null) {
+                return budget;
+            }
+            String key = templates.size() < MAX_TEMPLATES_PER_LOGGER ? template : OTHER_TEMPLATES;
+            return templates.computeIfAbsent(key, k -> new Budget(k, intervalNanos, toleranceNanos));
+        }
+    }
+
+    /**
+     * A token bucket kept as one timestamp (the generic cell rate algorithm): {@code due} is when the
+     * bucket would be full again, and an event fits if that is at most the burst tolerance away.
+     */
+    static final class Budget {
+
+        final String template;
+        final LongAdder suppressed = new LongAdder();
+        volatile Level level;
+        private final AtomicLong due = new AtomicLong(Long.MIN_VALUE);
+        private final long intervalNanos;
+        private final long toleranceNanos;
+
+        Budget(String template, long intervalNanos, long toleranceNanos) {
+            this.template = template;
+            this.intervalNanos = intervalNanos;
+            this.toleranceNanos = toleranceNanos;
+        }
+
+        boolean tryAcquire(long now, Level eventLevel) {
+            if (toleranceNanos >= 0) {
+                while (true) {
+                    long current = due.get();
+                    long start = current == Long.MIN_VALUE ? now : Math.max(current, now);
+                    if (start - now > toleranceNanos) {
+                        break;
+                    }
+                    if (due.compareAndSet(current, start + intervalNanos)) {
+                        return true;
+                    }
+                }
+            }
+            Level seen = level;
+            if (seen == null || eventLevel.levelInt > seen.levelInt) {
+                level = eventLevel;
+            }
+            suppressed.increment();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.ust.elkstackdemo.logging;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Makes the sampling decision of {@link LogSamplingFilter} for each request before anything else
+ * logs on its behalf, and clears it when the request leaves the thread.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class LogSamplingRequestFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        LogSamplingFilter sampling = LogSamplingFilter.find();
+        if (sampling == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        sampling.enterRequest();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            LogSamplingFilter.exitRequest();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.ust.elkstackdemo.logging;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * How much the {@link LogSamplingFilter} lets through.
+ *
+ * @param debugSampleRate         Fraction of HTTP requests, between 0 and 1, that keep their DEBUG and TRACE
+ *                                events. The rest of the requests only log INFO and above.
+ * @param eventsPerSecond         Default rate at which each message template may be logged outside sampled
+ *                                requests; repeats beyond it are suppressed and summarized.
+ * @param burst                   Events of one template that may be logged back to back before the rate applies.
+ * @param loggerBudgets           Per-logger overrides of {@code eventsPerSecond}, keyed by logger name or
+ *                                package prefix; the longest match wins and 0 suppresses everything below ERROR.
+ * @param summaryIntervalSeconds  How often suppressed repeats are reported.
+ */
+public record LogSamplingSettings(double debugSampleRate, double eventsPerSecond, int burst,
+                                  Map<String, Double> loggerBudgets, long summaryIntervalSeconds) {
+
+    public LogSamplingSettings {
+        if (!(debugSampleRate >= 0 && debugSampleRate <= 1)) {
+            throw new IllegalArgumentException("Invalid debug sample rate: " + debugSampleRate);
+        }
+        if (!(eventsPerSecond > 0) || Double.isInfinite(eventsPerSecond)) {
+            throw new IllegalArgumentException("Invalid events per second: " + eventsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("Invalid burst: " + burst);
+        }
+        if (summaryIntervalSeconds < 1) {
+            throw new IllegalArgumentException("Invalid summary interval: " + summaryIntervalSeconds);
+        }
+        loggerBudgets = loggerBudgets == null ? Map.of() : Map.copyOf(loggerBudgets);
+        for (Map.Entry<String, Double> budget : loggerBudgets.entrySet()) {
+            if (budget.getKey().isBlank() || budget.getValue() == null
+                    || !(budget.getValue() >= 0) || Double.isInfinite(budget.getValue())) {
+                throw new IllegalArgumentException("Invalid logger budget: " + budget.getKey() + "=" + budget.getValue());
+            }
+        }
+    }
+
+    /**
+     * Parses {@code logger=eventsPerSecond} pairs separated by commas, the form used in properties files.
+     */
+    public static Map<String, Double> parseBudgets(String budgets) {
+        Map<String, Double> parsed = new LinkedHashMap<>();
+        if (budgets == null || budgets.isBlank()) {
+            return parsed;
+        }
+        for (String pair : budgets.split(",")) {
+            int equals = pair.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Invalid logger budget: " + pair.trim());
+            }
+            try {
+                parsed.put(pair.substring(0, equals).trim(), Double.parseDouble(pair.substring(equals + 1).trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid logger budget: " + pair.trim());
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * The events per second allowed for each template of {@code loggerName}.
+     */
+    double eventsPerSecond(String loggerName) {
+        double rate = eventsPerSecond;
+        int matched = -1;
+        for (Map.Entry<String, Double> budget : loggerBudgets.entrySet()) {
+            String prefix = budget.getKey();
+            if (prefix.length() > matched && (loggerName.equals(prefix)
+                    || (loggerName.startsWith(prefix) && loggerName.charAt(prefix.length()) == '.'))) {
+                rate = budget.getValue();
+                matched = prefix.length();
+            }
+        }
+        return rate;
+    }
+}
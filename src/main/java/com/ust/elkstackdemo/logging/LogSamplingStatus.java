@@ -0,0 +1,14 @@
+package com.ust.elkstackdemo.logging;
+
+/**
+ * Settings and counters of the {@link LogSamplingFilter}.
+ *
+ * @param settings          The settings in effect.
+ * @param sampledRequests   Requests since startup that kept their DEBUG events.
+ * @param unsampledRequests Requests since startup that only logged INFO and above.
+ * @param debugDenied       DEBUG and TRACE events skipped because their request was not sampled.
+ * @param suppressed        Events over their template's budget, reported in summaries instead.
+ */
+public record LogSamplingStatus(LogSamplingSettings settings, long sampledRequests, long unsampledRequests,
+                                long debugDenied, long suppressed) {
+}
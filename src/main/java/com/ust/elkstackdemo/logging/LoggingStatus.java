@@ -0,0 +1,15 @@
+package com.ust.elkstackdemo.logging;
+
+/**
+ * Health of the asynchronous logging pipeline.
+ *
+ * @param async          Whether events are handed to a background writer.
+ * @param overflowPolicy What happens to events when the ring buffer is full.
+ * @param capacity       Size of the ring buffer.
+ * @param queueDepth     Events waiting to be written.
+ * @param dropped        Events dropped since startup because the buffer was full.
+ * @param droppedDebug   The part of {@code dropped} that were TRACE or DEBUG events.
+ */
+public record LoggingStatus(boolean async, OverflowPolicy overflowPolicy, int capacity, int queueDepth,
+                            long dropped, long droppedDebug) {
+}
@@ -0,0 +1,33 @@
+package com.ust.elkstackdemo.logging;
+
+/**
+ * What {@link RingBufferAppender} does with an event when its ring buffer is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Wait for room, so that no event is ever lost at the cost of slowing the logging thread.
+     */
+    BLOCK,
+
+    /**
+     * Drop TRACE and DEBUG events, wait for room for everything else.
+     */
+    DROP_DEBUG,
+
+    /**
+     * Drop the event, whatever its level. Logging never slows the caller down.
+     */
+    DROP_ALL;
+
+    /**
+     * Parse a policy written as in configuration, e.g. {@code drop-debug}.
+     */
+    static OverflowPolicy of(String value) {
+        try {
+            return valueOf(value.trim().replace('-', '_').toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid overflow policy: " + value);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.ust.elkstackdemo.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logback appender that takes logging I/O off the calling thread. Events are prepared on the
+ * caller, put in a lock-free {@link RingBuffer} and written to the attached appenders by a single
+ * background thread, which flushes file appenders once per batch instead of once per event.
+ * <p>
+ * When the buffer is full the {@link OverflowPolicy} decides between waiting and dropping. Dropped
+ * events are counted; the background thread reports new drops as a WARN event at most every
+ * {@link #REPORT_INTERVAL_MILLIS} ms, and {@link #status()} exposes the counts and the queue depth.
+ * <p>
+ * With {@code async} set to false the appender writes straight through on the calling thread.
+ */
+public class RingBufferAppender extends UnsynchronizedAppenderBase<ILoggingEvent>
+        implements AppenderAttachable<ILoggingEvent> {
+
+    /**
+     * Name the appender is registered under in {@code logback-spring.xml}.
+     */
+    public static final String NAME = "ASYNC";
+
+    static final long REPORT_INTERVAL_MILLIS = 10_000;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder droppedDebug = new LongAdder();
+
+    private int capacity = 8192;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_DEBUG;
+    private boolean async = true;
+    private long maxFlushTimeMillis = 1000;
+
+    private RingBuffer<ILoggingEvent> buffer;
+    private Thread worker;
+    private volatile boolean idle;
+    private volatile boolean stopping;
+    private long reportedDrops;
+    private long lastReport;
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void setOverflowPolicy(String overflowPolicy) {
+        this.overflowPolicy = OverflowPolicy.of(overflowPolicy);
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public void setMaxFlushTimeMillis(long maxFlushTimeMillis) {
+        this.maxFlushTimeMillis = maxFlushTimeMillis;
+    }
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        if (async) {
+            buffer = new RingBuffer<>(capacity);
+            for (Iterator<Appender<ILoggingEvent>> it = appenders.iteratorForAppenders(); it.hasNext(); ) {
+                // the worker flushes after each batch instead
+                if (it.next() instanceof OutputStreamAppender<ILoggingEvent> stream) {
+                    stream.setImmediateFlush(false);
+                }
+            }
+            stopping = false;
+            worker = new Thread(this::drain, "logging-ring-buffer");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        if (worker != null) {
+            stopping = true;
+            LockSupport.unpark(worker);
+            try {
+                worker.join(maxFlushTimeMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (worker.isAlive()) {
+                addWarn("Stopped with " + buffer.size() + " log events still queued");
+            }
+            worker = null;
+        }
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (!async) {
+            appenders.appendLoopOnAppenders(event);
+            return;
+        }
+        event.prepareForDeferredProcessing();
+        if (!buffer.offer(event)) {
+            overflow(event);
+        }
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * Counters for monitoring; cheap enough to read on every scrape.
+     */
+    public LoggingStatus status() {
+        return new LoggingStatus(async, overflowPolicy, async ? buffer.capacity() : 0, async ? buffer.size() : 0,
+                dropped.sum(), droppedDebug.sum());
+    }
+
+    /**
+     * The appender configured in {@code logback-spring.xml}, if Logback is in use and it is there.
+     */
+    public static RingBufferAppender find() {
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext context
+                && context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).getAppender(NAME) instanceof RingBufferAppender appender) {
+            return appender;
+        }
+        return null;
+    }
+
+    private void overflow(ILoggingEvent event) {
+        boolean debug = !event.getLevel().isGreaterOrEqual(Level.INFO);
+        if (overflowPolicy == OverflowPolicy.DROP_ALL || (overflowPolicy == OverflowPolicy.DROP_DEBUG && debug)) {
+            dropped.increment();
+            if (debug) {
+                droppedDebug.increment();
+            }
+            return;
+        }
+        while (!buffer.offer(event)) {
+            if (!isStarted()) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.unpark(worker);
+            Thread.onSpinWait();
+            Thread.yield();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            ILoggingEvent event = buffer.poll();
+            if (event != null) {
+                appenders.appendLoopOnAppenders(event);
+                continue;
+            }
+            flushAll();
+            reportDrops();
+            if (stopping) {
+                // one last pass for anything offered while the flag was being set
+                while ((event = buffer.poll()) != null) {
+                    appenders.appendLoopOnAppenders(event);
+                }
+                flushAll();
+                return;
+            }
+            idle = true;
+            if (buffer.size() == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            idle = false;
+        }
+    }
+
+    private void flushAll() {
+        for (Iterator<Appender<ILoggingEvent>> it = appenders.iteratorForAppenders(); it.hasNext(); ) {
+            if (it.next() instanceof OutputStreamAppender<ILoggingEvent> stream && stream.getOutputStream() != null) {
+                try {
+                    stream.getOutputStream().flush();
+                } catch (IOException e) {
+                    addError("Could not flush " + stream.getName(), e);
+                }
+            }
+        }
+    }
+
+    private void reportDrops() {
+        long now = System.currentTimeMillis();
+        if (now - lastReport < REPORT_INTERVAL_MILLIS) {
+            return;
+        }
+        long drops = dropped.sum();
+        if (drops > reportedDrops) {
+            Logger logger = ((LoggerContext) getContext()).getLogger(RingBufferAppender.class);
+            var report = new LoggingEvent(RingBufferAppender.class.getName(), logger, Level.WARN,
+                    "Dropped {} log events since the last report ({} in total); queue depth {} of {}", null,
+                    new Object[]{drops - reportedDrops, drops, buffer.size(), buffer.capacity()});
+            appenders.appendLoopOnAppenders(report);
+            reportedDrops = drops;
+            // only a report starts the interval, so the first drops after a quiet spell are told at once
+            lastReport = now;
+        }
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> appender) {
+        appenders.addAppender(appender);
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return appenders.iteratorForAppenders();
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String name) {
+        return appenders.getAppender(name);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return appenders.isAttached(appender);
+    }
+
+    @Override
+    public void detachAndStopAllAppenders() {
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        return appenders.detachAppender(appender);
+    }
+
+    @Override
+    public boolean detachAppender(String name) {
+        return appenders.detachAppender(name);
+    }
+}
@@ -0,0 +1,269 @@
+package com.ust.elkstackdemo.metrics;
+
+import com.ust.elkstackdemo.limit.ConcurrencyLimitStatus;
+import com.ust.elkstackdemo.limit.ConcurrencyLimits;
+import com.ust.elkstackdemo.replication.Replication;
+import com.ust.elkstackdemo.replication.ReplicationStatus;
+import com.ust.elkstackdemo.repository.ContactStore;
+import com.ust.elkstackdemo.repository.OffHeapContactStore;
+import com.ust.elkstackdemo.service.SearchCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and hit/miss counters for every contact operation, per layer, plus store
+ * gauges read at scrape time. Everything a recorder touches is allocated up front in arrays
+ * indexed by enum ordinal, so recording costs two {@code System.nanoTime()} calls and a couple of
+ * {@link LongAdder} increments:
+ * <pre>
+ * long start = System.nanoTime();
+ * try {
+ *     ...
+ * } finally {
+ *     metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.ADD, start);
+ * }
+ * </pre>
+ * {@link #scrape(StringBuilder)} renders the Prometheus text format.
+ */
+@Component
+public class ContactMetrics {
+
+    public enum Layer {
+        CONTROLLER, REPOSITORY;
+
+        final String label = name().toLowerCase();
+    }
+
+    public enum Operation {
+        ADD("add", null),
+        ADD_BULK("add_bulk", null),
+        REMOVE("remove", null),
+        LIST("list", null),
+        LIST_PAGE("list_page", null),
+        STREAM("stream", null),
+        CHANGES("changes", null),
+        SEARCH_PHONE("search", "phone"),
+        SEARCH_NAME("search", "name"),
+        SEARCH_NAME_IGNORE_CASE("search", "name_ignore_case"),
+        SEARCH_NAME_PREFIX("search", "name_prefix"),
+        SEARCH_NAME_FUZZY("search", "name_fuzzy");
+
+        final String operation;
+        final String type;
+
+        Operation(String operation, String type) {
+            this.operation = operation;
+            this.type = type;
+        }
+
+        /**
+         * The search operation for a {@code type} parameter of {@code GET /contacts/search}.
+         */
+        public static Operation ofSearchType(String type) {
+            for (Operation operation : values()) {
+                if (operation.type != null && operation.type.equals(type)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Invalid search type: " + type);
+        }
+
+        String labels() {
+            return type == null ? "operation=\"" + operation + "\"" : "operation=\"" + operation + "\",type=\"" + type + "\"";
+        }
+    }
+
+    private static final int OPERATIONS = Operation.values().length;
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[Layer.values().length * OPERATIONS];
+    private final LongAdder[] hits = new LongAdder[OPERATIONS];
+    private final LongAdder[] misses = new LongAdder[OPERATIONS];
+    private final ObjectProvider<ContactStore> contactStore;
+    private final ObjectProvider<SearchCache> searchCache;
+    private final ObjectProvider<Replication> replication;
+    private final ObjectProvider<ConcurrencyLimits> limits;
+
+    /**
+     * Metrics without store, cache, replication and limit gauges, for components created outside
+     * Spring.
+     */
+    public ContactMetrics() {
+        this(null, null, null, null);
+    }
+
+    @Autowired
+    public ContactMetrics(ObjectProvider<ContactStore> contactStore, ObjectProvider<SearchCache> searchCache,
+                          ObjectProvider<Replication> replication, ObjectProvider<ConcurrencyLimits> limits) {
+        this.contactStore = contactStore;
+        this.searchCache = searchCache;
+        this.replication = replication;
+        this.limits = limits;
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < OPERATIONS; i++) {
+            hits[i] = new LongAdder();
+            misses[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record the time from {@code startNanos}, a {@link System#nanoTime()} reading, until now.
+     */
+    public void record(Layer layer, Operation operation, long startNanos) {
+        latency[layer.ordinal() * OPERATIONS + operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Count a lookup that found something ({@code found}) or nothing.
+     */
+    public void result(Operation operation, boolean found) {
+        (found ? hits : misses)[operation.ordinal()].increment();
+    }
+
+    public LatencyHistogram latency(Layer layer, Operation operation) {
+        return latency[layer.ordinal() * OPERATIONS + operation.ordinal()];
+    }
+
+    public long hits(Operation operation) {
+        return hits[operation.ordinal()].sum();
+    }
+
+    public long misses(Operation operation) {
+        return misses[operation.ordinal()].sum();
+    }
+
+    /**
+     * Append every metric in the Prometheus text exposition format, version 0.0.4. Histograms
+     * appear once their operation has been recorded at least once.
+     */
+    public void scrape(StringBuilder out) {
+        out.append("# HELP contacts_operation_seconds Latency of contact operations by layer.\n")
+                .append("# TYPE contacts_operation_seconds histogram\n");
+        for (Layer layer : Layer.values()) {
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram histogram = latency(layer, operation);
+                if (histogram.count() > 0) {
+                    histogram.write(out, "contacts_operation_seconds",
+                            "layer=\"" + layer.label + "\"," + operation.labels());
+                }
+            }
+        }
+        out.append("# HELP contacts_lookups_total Lookups by whether they found any contact.\n")
+                .append("# TYPE contacts_lookups_total counter\n");
+        for (Operation operation : Operation.values()) {
+            long hit = hits(operation);
+            long miss = misses(operation);
+            if (hit + miss > 0) {
+                out.append("contacts_lookups_total{").append(operation.labels()).append(",result=\"hit\"} ")
+                        .append(hit).append('\n');
+                out.append("contacts_lookups_total{").append(operation.labels()).append(",result=\"miss\"} ")
+                        .append(miss).append('\n');
+            }
+        }
+        SearchCache cache = searchCache == null ? null : searchCache.getIfAvailable();
+        if (cache != null) {
+            scrape(out, cache);
+        }
+        Replication role = replication == null ? null : replication.getIfAvailable();
+        if (role != null) {
+            scrape(out, role.status());
+        }
+        ConcurrencyLimits concurrency = limits == null ? null : limits.getIfAvailable();
+        if (concurrency != null) {
+            scrape(out, concurrency.status());
+        }
+        ContactStore store = contactStore == null ? null : contactStore.getIfAvailable();
+        if (store == null) {
+            return;
+        }
+        out.append("# HELP contacts_store_size Contacts currently stored.\n")
+                .append("# TYPE contacts_store_size gauge\n")
+                .append("contacts_store_size ").append(store.size()).append('\n');
+        out.append("# HELP contacts_index_memory_bytes Estimated memory held by each index.\n")
+                .append("# TYPE contacts_index_memory_bytes gauge\n");
+        store.indexMemory((index, bytes) -> out.append("contacts_index_memory_bytes{index=\"").append(index)
+                .append("\"} ").append(bytes).append('\n'));
+        if (store instanceof OffHeapContactStore offHeap) {
+            out.append("# HELP contacts_store_offheap_bytes Memory outside the Java heap holding contact rows and strings.\n")
+                    .append("# TYPE contacts_store_offheap_bytes gauge\n")
+                    .append("contacts_store_offheap_bytes ").append(offHeap.offHeapBytes()).append('\n');
+        }
+    }
+
+    private static void scrape(StringBuilder out, ReplicationStatus status) {
+        out.append("# HELP contacts_replication_offset Latest replicated operation applied here.\n")
+                .append("# TYPE contacts_replication_offset gauge\n")
+                .append("contacts_replication_offset{role=\"").append(status.role()).append("\"} ")
+                .append(status.offset()).append('\n');
+        out.append("# HELP contacts_replication_lag_operations Operations of the primary not yet applied, per replica on a primary.\n")
+                .append("# TYPE contacts_replication_lag_operations gauge\n");
+        if (status.replicas().isEmpty()) {
+            out.append("contacts_replication_lag_operations{role=\"").append(status.role()).append("\"} ")
+                    .append(status.lagOperations()).append('\n');
+        }
+        for (ReplicationStatus.Replica replica : status.replicas()) {
+            out.append("contacts_replication_lag_operations{role=\"").append(status.role())
+                    .append("\",replica=\"").append(replica.address()).append("\"} ")
+                    .append(replica.lagOperations()).append('\n');
+        }
+        if (status.lagMillis() >= 0) {
+            out.append("# HELP contacts_replication_lag_seconds How far this instance's contents trail the primary.\n")
+                    .append("# TYPE contacts_replication_lag_seconds gauge\n")
+                    .append("contacts_replication_lag_seconds{role=\"").append(status.role()).append("\"} ")
+                    .append(status.lagMillis() / 1000.0).append('\n');
+        }
+    }
+
+    private static void scrape(StringBuilder out, List<ConcurrencyLimitStatus> statuses) {
+        out.append("# HELP contacts_concurrency_limit Requests allowed at once, by class.\n")
+                .append("# TYPE contacts_concurrency_limit gauge\n");
+        for (ConcurrencyLimitStatus status : statuses) {
+            out.append("contacts_concurrency_limit{class=\"").append(status.name()).append("\"} ")
+                    .append(status.limit()).append('\n');
+        }
+        out.append("# HELP contacts_concurrency_in_flight Requests being served, by class.\n")
+                .append("# TYPE contacts_concurrency_in_flight gauge\n");
+        for (ConcurrencyLimitStatus status : statuses) {
+            out.append("contacts_concurrency_in_flight{class=\"").append(status.name()).append("\"} ")
+                    .append(status.inFlight()).append('\n');
+        }
+        out.append("# HELP contacts_concurrency_requests_total Requests by class and whether they were admitted or, by priority, rejected.\n")
+                .append("# TYPE contacts_concurrency_requests_total counter\n");
+        for (ConcurrencyLimitStatus status : statuses) {
+            out.append("contacts_concurrency_requests_total{class=\"").append(status.name())
+                    .append("\",result=\"admitted\"} ").append(status.admitted()).append('\n');
+            out.append("contacts_concurrency_requests_total{class=\"").append(status.name())
+                    .append("\",result=\"rejected\",priority=\"high\"} ").append(status.rejectedHigh()).append('\n');
+            out.append("contacts_concurrency_requests_total{class=\"").append(status.name())
+                    .append("\",result=\"rejected\",priority=\"low\"} ").append(status.rejectedLow()).append('\n');
+        }
+    }
+
+    private static void scrape(StringBuilder out, SearchCache cache) {
+        var stats = cache.stats();
+        out.append("# HELP contacts_search_cache_requests_total Cacheable searches by whether the cache had the response.\n")
+                .append("# TYPE contacts_search_cache_requests_total counter\n")
+                .append("contacts_search_cache_requests_total{result=\"hit\"} ").append(stats.hitCount()).append('\n')
+                .append("contacts_search_cache_requests_total{result=\"miss\"} ").append(stats.missCount()).append('\n');
+        out.append("# HELP contacts_search_cache_hit_ratio Share of cacheable searches answered from the cache since startup.\n")
+                .append("# TYPE contacts_search_cache_hit_ratio gauge\n")
+                .append("contacts_search_cache_hit_ratio ").append(stats.hitRate()).append('\n');
+        out.append("# HELP contacts_search_cache_evictions_total Entries evicted to stay within the size limit.\n")
+                .append("# TYPE contacts_search_cache_evictions_total counter\n")
+                .append("contacts_search_cache_evictions_total ").append(stats.evictionCount()).append('\n');
+        out.append("# HELP contacts_search_cache_invalidations_total Entries removed because a write changed their result.\n")
+                .append("# TYPE contacts_search_cache_invalidations_total counter\n")
+                .append("contacts_search_cache_invalidations_total ").append(cache.invalidations()).append('\n');
+        out.append("# HELP contacts_search_cache_entries Responses currently cached.\n")
+                .append("# TYPE contacts_search_cache_entries gauge\n")
+                .append("contacts_search_cache_entries ").append(cache.size()).append('\n');
+        out.append("# HELP contacts_search_cache_bytes Estimated heap held by cached responses.\n")
+                .append("# TYPE contacts_search_cache_bytes gauge\n")
+                .append("contacts_search_cache_bytes ").append(cache.weightedSize()).append('\n');
+    }
+}
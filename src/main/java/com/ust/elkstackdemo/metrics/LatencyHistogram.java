@@ -0,0 +1,74 @@
+package com.ust.elkstackdemo.metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets whose upper bounds double from 1 µs to about 8.4 s, the
+ * cumulative {@code le} buckets of a Prometheus histogram. Recording picks the bucket with a
+ * little arithmetic and bumps two {@link LongAdder}s: no locks, no allocation once the adders'
+ * cells exist, and concurrent recorders rarely touch the same cache line.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Buckets with a finite upper bound; one more counts everything slower.
+     */
+    static final int BUCKETS = 24;
+
+    private static final String[] UPPER_BOUNDS = new String[BUCKETS + 1];
+
+    static {
+        for (int i = 0; i < BUCKETS; i++) {
+            UPPER_BOUNDS[i] = BigDecimal.valueOf(1L << i).movePointLeft(6).toPlainString();
+        }
+        UPPER_BOUNDS[BUCKETS] = "+Inf";
+    }
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        counts[bucket(nanos)].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * The first bucket whose upper bound, {@code 2^i} µs, is at least {@code nanos}.
+     */
+    static int bucket(long nanos) {
+        if (nanos <= 1000) {
+            return 0;
+        }
+        return Math.min(64 - Long.numberOfLeadingZeros((nanos - 1) / 1000), BUCKETS);
+    }
+
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : counts) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Append the histogram in the Prometheus text format; {@code labels} are rendered as given,
+     * e.g. {@code layer="service",operation="add"}.
+     */
+    void write(StringBuilder out, String name, String labels) {
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i].sum();
+            out.append(name).append("_bucket{").append(labels).append(",le=\"").append(UPPER_BOUNDS[i])
+                    .append("\"} ").append(cumulative).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ").append(sumNanos.sum() / 1e9).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+    }
+}
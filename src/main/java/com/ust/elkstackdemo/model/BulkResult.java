@@ -0,0 +1,24 @@
+package com.ust.elkstackdemo.model;
+
+import java.util.List;
+
+/**
+ * Summary of a bulk contact import.
+ *
+ * @param received   Number of contacts read from the request body.
+ * @param added      Number of contacts added to the repository.
+ * @param rejected   Number of contacts rejected as invalid or duplicate.
+ * @param failures   The first rejected contacts with the reason for each, capped to keep the
+ *                   response small for very large imports.
+ */
+public record BulkResult(long received, long added, long rejected, List<Failure> failures) {
+
+    /**
+     * A rejected contact.
+     *
+     * @param index  Zero-based position of the contact in the request body.
+     * @param reason Why the contact was not added.
+     */
+    public record Failure(long index, String reason) {
+    }
+}
@@ -2,12 +2,52 @@ package com.ust.elkstackdemo.model;
 
 import lombok.*;
 
-@Getter @Setter @AllArgsConstructor @NoArgsConstructor @ToString
+@Getter @NoArgsConstructor @ToString
 public class Contact {
 
     private String name;
     private String email;
     private String phoneNumber;
 
+    /**
+     * This contact as UTF-8 JSON, once {@link #toJson()} has been called. Stores call it when the
+     * contact is added, after which it never changes; the setters, used while a request body is
+     * read, drop it.
+     */
+    @Getter(AccessLevel.NONE) @ToString.Exclude
+    private transient volatile byte[] json;
 
+    public Contact(String name, String email, String phoneNumber) {
+        this.name = name;
+        this.email = email;
+        this.phoneNumber = phoneNumber;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+        json = null;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+        json = null;
+    }
+
+    public void setPhoneNumber(String phoneNumber) {
+        this.phoneNumber = phoneNumber;
+        json = null;
+    }
+
+    /**
+     * The JSON Jackson would write for this contact, encoded once and shared by every response
+     * that includes it. Callers must not modify the array.
+     */
+    public byte[] toJson() {
+        byte[] encoded = json;
+        if (encoded == null) {
+            encoded = ContactJson.encode(this);
+            json = encoded;
+        }
+        return encoded;
+    }
 }
@@ -0,0 +1,18 @@
+package com.ust.elkstackdemo.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A contact added to or removed from the store.
+ *
+ * @param version The store version the change became visible at.
+ * @param type    Whether the contact was added or removed.
+ * @param contact The contact as it was added, or as it was when removed.
+ */
+public record ContactChange(long version, Type type, Contact contact) {
+
+    public enum Type {
+        @JsonProperty("add") ADD,
+        @JsonProperty("remove") REMOVE
+    }
+}
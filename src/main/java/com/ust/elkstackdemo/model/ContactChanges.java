@@ -0,0 +1,13 @@
+package com.ust.elkstackdemo.model;
+
+import java.util.List;
+
+/**
+ * The changes after a store version, oldest first.
+ *
+ * @param changes The changes, always every change of each version included.
+ * @param version The version these changes bring a client up to; pass it as {@code since} next time.
+ * @param more    Whether later changes were left out to keep the response small.
+ */
+public record ContactChanges(List<ContactChange> changes, long version, boolean more) {
+}
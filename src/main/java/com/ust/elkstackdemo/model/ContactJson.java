@@ -0,0 +1,131 @@
+package com.ust.elkstackdemo.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * JSON for contact results without Jackson: each {@link Contact} is encoded once by hand, byte for
+ * byte as the application's {@code ObjectMapper} would write it, and responses are assembled by
+ * copying those encodings between brackets and commas.
+ */
+public final class ContactJson {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final byte[] PAGE_START = "{\"contacts\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PAGE_NEXT = ",\"next\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private ContactJson() {
+    }
+
+    static byte[] encode(Contact contact) {
+        var out = new StringBuilder(48 + length(contact.getName()) + length(contact.getEmail())
+                + length(contact.getPhoneNumber()));
+        out.append("{\"name\":");
+        string(out, contact.getName());
+        out.append(",\"email\":");
+        string(out, contact.getEmail());
+        out.append(",\"phoneNumber\":");
+        string(out, contact.getPhoneNumber());
+        out.append('}');
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The contacts as a JSON array, in one array of exactly the right size.
+     */
+    public static byte[] array(List<Contact> contacts) {
+        return join(contacts, null);
+    }
+
+    /**
+     * The page as Jackson writes a {@link ContactPage}, in one array of exactly the right size.
+     */
+    public static byte[] page(ContactPage page) {
+        if (page.next() == null) {
+            return join(page.contacts(), NULL);
+        }
+        var next = new StringBuilder(page.next().length() + 2);
+        string(next, page.next());
+        return join(page.contacts(), next.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Copy the contacts' cached encodings into one array, bracketed and comma-separated, wrapped in
+     * a page object ending with {@code cursor} unless it is null.
+     */
+    private static byte[] join(List<Contact> contacts, byte[] cursor) {
+        int length = 2 + Math.max(contacts.size() - 1, 0);
+        for (int i = 0; i < contacts.size(); i++) {
+            length += contacts.get(i).toJson().length;
+        }
+        if (cursor != null) {
+            length += PAGE_START.length + PAGE_NEXT.length + cursor.length + 1;
+        }
+        byte[] json = new byte[length];
+        int position = 0;
+        if (cursor != null) {
+            position = copy(PAGE_START, json, position);
+        }
+        json[position++] = '[';
+        for (int i = 0; i < contacts.size(); i++) {
+            if (i > 0) {
+                json[position++] = ',';
+            }
+            position = copy(contacts.get(i).toJson(), json, position);
+        }
+        json[position++] = ']';
+        if (cursor != null) {
+            position = copy(PAGE_NEXT, json, position);
+            position = copy(cursor, json, position);
+            json[position] = '}';
+        }
+        return json;
+    }
+
+    private static int copy(byte[] part, byte[] json, int position) {
+        System.arraycopy(part, 0, json, position, part.length);
+        return position + part.length;
+    }
+
+    /**
+     * Append {@code value} as a JSON string, escaped as Jackson's UTF-8 generator escapes it:
+     * quotes, backslashes, control characters and the surrogate halves of characters outside the
+     * Basic Multilingual Plane.
+     */
+    private static void string(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\b' -> out.append("\\b");
+                case '\t' -> out.append("\\t");
+                case '\n' -> out.append("\\n");
+                case '\f' -> out.append("\\f");
+                case '\r' -> out.append("\\r");
+                default -> {
+                    if (c < 0x20) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else if (Character.isSurrogate(c)) {
+                        out.append("\\u").append(HEX[c >> 12]).append(HEX[(c >> 8) & 0xF])
+                                .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    private static int length(String value) {
+        return value == null ? 4 : value.length() + 2;
+    }
+}
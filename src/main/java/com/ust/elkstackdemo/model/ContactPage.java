@@ -0,0 +1,12 @@
+package com.ust.elkstackdemo.model;
+
+import java.util.List;
+
+/**
+ * One page of contacts in store order.
+ *
+ * @param contacts The contacts on this page.
+ * @param next     Opaque cursor to pass as {@code after} for the next page, or null on the last page.
+ */
+public record ContactPage(List<Contact> contacts, String next) {
+}
@@ -0,0 +1,293 @@
+package com.ust.elkstackdemo.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Protocol Buffers encoding of contacts, as described by {@code src/main/proto/contacts.proto},
+ * written by hand like {@link ContactJson} so that neither generated classes nor the protobuf
+ * runtime are needed. Null strings are left out and absent fields read as null; unknown fields
+ * are skipped.
+ * <p>
+ * A {@code ContactList} is nothing but its repeated {@code contacts} field, so lists are written
+ * and read one length-delimited contact at a time with {@link #writeListEntry} and
+ * {@link #readList}.
+ */
+public final class ContactProtobuf {
+
+    /**
+     * Largest encoded contact accepted, far above any valid one.
+     */
+    static final int MAX_MESSAGE_BYTES = 64 * 1024;
+
+    private static final int CONTACTS = 1;
+    private static final int NEXT = 2;
+    private static final int NAME = 1;
+    private static final int EMAIL = 2;
+    private static final int PHONE_NUMBER = 3;
+
+    private static final int VARINT = 0;
+    private static final int FIXED64 = 1;
+    private static final int LENGTH_DELIMITED = 2;
+    private static final int FIXED32 = 5;
+
+    private ContactProtobuf() {
+    }
+
+    public static byte[] encode(Contact contact) {
+        byte[] name = utf8(contact.getName());
+        byte[] email = utf8(contact.getEmail());
+        byte[] phoneNumber = utf8(contact.getPhoneNumber());
+        byte[] encoded = new byte[fieldSize(name) + fieldSize(email) + fieldSize(phoneNumber)];
+        int position = writeField(encoded, 0, NAME, name);
+        position = writeField(encoded, position, EMAIL, email);
+        writeField(encoded, position, PHONE_NUMBER, phoneNumber);
+        return encoded;
+    }
+
+    /**
+     * Write {@code contact} as one entry of a {@code ContactList} or {@code ContactPage}.
+     */
+    public static void writeListEntry(Contact contact, OutputStream out) throws IOException {
+        byte[] encoded = encode(contact);
+        byte[] header = new byte[1 + varintSize(encoded.length)];
+        header[0] = CONTACTS << 3 | LENGTH_DELIMITED;
+        writeVarint(header, 1, encoded.length);
+        out.write(header);
+        out.write(encoded);
+    }
+
+    /**
+     * The contacts as a {@code ContactList}, in one array of exactly the right size.
+     */
+    public static byte[] list(List<Contact> contacts) {
+        return page(contacts, null);
+    }
+
+    /**
+     * The page as a {@code ContactPage}.
+     */
+    public static byte[] page(ContactPage page) {
+        return page(page.contacts(), utf8(page.next()));
+    }
+
+    /**
+     * Read a {@code Contact} message.
+     * @throws IllegalArgumentException If {@code encoded} is not one.
+     */
+    public static Contact decode(byte[] encoded) {
+        var contact = new Contact();
+        int position = 0;
+        while (position < encoded.length) {
+            long tag = varint(encoded, position);
+            position = (int) (tag >>> 32);
+            int field = (int) tag >>> 3;
+            if (field == 0) {
+                throw new IllegalArgumentException("Invalid protobuf contact: field 0");
+            }
+            if (((int) tag & 0x7) != LENGTH_DELIMITED) {
+                position = skip(encoded, position, (int) tag);
+                continue;
+            }
+            long length = varint(encoded, position);
+            position = (int) (length >>> 32);
+            int size = (int) length;
+            if (size < 0 || size > encoded.length - position) {
+                throw new IllegalArgumentException("Invalid protobuf contact: truncated field " + field);
+            }
+            String value = new String(encoded, position, size, StandardCharsets.UTF_8);
+            switch (field) {
+                case NAME -> contact.setName(value);
+                case EMAIL -> contact.setEmail(value);
+                case PHONE_NUMBER -> contact.setPhoneNumber(value);
+                default -> {
+                    // unknown, skipped
+                }
+            }
+            position += size;
+        }
+        return contact;
+    }
+
+    /**
+     * Lazily read the contacts of a {@code ContactList}, one at a time, so the body is never
+     * buffered in full. Malformed input fails the iteration with an {@link IllegalArgumentException}.
+     */
+    public static Iterator<Contact> readList(InputStream in) {
+        return new Iterator<>() {
+
+            private Contact next;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null) {
+                        int first = in.read();
+                        if (first < 0) {
+                            return false;
+                        }
+                        long tag = readVarint(in, first);
+                        // skipNBytes throws an EOFException when the input ends first
+                        switch ((int) tag & 0x7) {
+                            case VARINT -> readVarint(in, in.read());
+                            case FIXED64 -> in.skipNBytes(Long.BYTES);
+                            case FIXED32 -> in.skipNBytes(Integer.BYTES);
+                            case LENGTH_DELIMITED -> {
+                                byte[] value = readBytes(in);
+                                if (tag == (CONTACTS << 3 | LENGTH_DELIMITED)) {
+                                    next = decode(value);
+                                }
+                            }
+                            default -> throw new EOFException("unsupported wire type " + (tag & 0x7));
+                        }
+                    }
+                    return true;
+                } catch (EOFException e) {
+                    throw new IllegalArgumentException("Invalid protobuf contact list: " + e.getMessage());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public Contact next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var contact = next;
+                next = null;
+                return contact;
+            }
+        };
+    }
+
+    private static byte[] page(List<Contact> contacts, byte[] next) {
+        byte[][] encoded = new byte[contacts.size()][];
+        int length = fieldSize(next);
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = encode(contacts.get(i));
+            length += fieldSize(encoded[i]);
+        }
+        byte[] page = new byte[length];
+        int position = 0;
+        for (byte[] contact : encoded) {
+            position = writeField(page, position, CONTACTS, contact);
+        }
+        writeField(page, position, NEXT, next);
+        return page;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Bytes taken by {@code value} as a length-delimited field; the tags of fields below 16 are one
+     * byte.
+     */
+    private static int fieldSize(byte[] value) {
+        return value == null ? 0 : 1 + varintSize(value.length) + value.length;
+    }
+
+    private static int writeField(byte[] out, int position, int field, byte[] value) {
+        if (value == null) {
+            return position;
+        }
+        out[position++] = (byte) (field << 3 | LENGTH_DELIMITED);
+        position = writeVarint(out, position, value.length);
+        System.arraycopy(value, 0, out, position, value.length);
+        return position + value.length;
+    }
+
+    private static int varintSize(int value) {
+        return (31 - Integer.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    private static int writeVarint(byte[] out, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Read a varint of at most 32 bits, as tags and lengths are, from {@code bytes}.
+     * @return The position after it in the high half, the value in the low half.
+     */
+    private static long varint(byte[] bytes, int position) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position >= bytes.length) {
+                throw new IllegalArgumentException("Invalid protobuf contact: truncated varint");
+            }
+            byte b = bytes[position++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (long) position << 32 | (value & 0xFFFFFFFFL);
+            }
+        }
+        throw new IllegalArgumentException("Invalid protobuf contact: varint too long");
+    }
+
+    /**
+     * @return The position after the value of a field that is not length-delimited.
+     */
+    private static int skip(byte[] bytes, int position, int tag) {
+        int end = switch (tag & 0x7) {
+            case VARINT -> {
+                // up to 64 bits, more than varint() reads
+                int last = position;
+                while (last < bytes.length && bytes[last] < 0) {
+                    last++;
+                }
+                yield last + 1;
+            }
+            case FIXED64 -> position + Long.BYTES;
+            case FIXED32 -> position + Integer.BYTES;
+            default -> throw new IllegalArgumentException("Invalid protobuf contact: unsupported wire type " + (tag & 0x7));
+        };
+        if (end > bytes.length) {
+            throw new IllegalArgumentException("Invalid protobuf contact: truncated field " + (tag >>> 3));
+        }
+        return end;
+    }
+
+    private static long readVarint(InputStream in, int first) throws IOException {
+        if (first < 0) {
+            throw new EOFException("truncated varint");
+        }
+        long value = first & 0x7F;
+        for (int shift = 7, b = first; (b & 0x80) != 0; shift += 7) {
+            if (shift >= 64) {
+                throw new EOFException("varint too long");
+            }
+            b = in.read();
+            if (b < 0) {
+                throw new EOFException("truncated varint");
+            }
+            value |= (long) (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    private static byte[] readBytes(InputStream in) throws IOException {
+        long length = readVarint(in, in.read());
+        if (length < 0 || length > MAX_MESSAGE_BYTES) {
+            throw new EOFException("length " + length + " out of range");
+        }
+        byte[] bytes = in.readNBytes((int) length);
+        if (bytes.length != length) {
+            throw new EOFException("truncated field");
+        }
+        return bytes;
+    }
+}
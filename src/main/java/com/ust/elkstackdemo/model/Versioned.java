@@ -0,0 +1,11 @@
+package com.ust.elkstackdemo.model;
+
+/**
+ * A read result together with the version of the store snapshot it was read from.
+ *
+ * @param version The store version the whole result is consistent with.
+ * @param value   The result.
+ * @param <T>     The type of the result.
+ */
+public record Versioned<T>(long version, T value) {
+}
@@ -0,0 +1,216 @@
+package com.ust.elkstackdemo.persistence;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.repository.ContactChangeListener;
+import com.ust.elkstackdemo.repository.ContactSnapshot;
+import com.ust.elkstackdemo.repository.ContactStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes the {@link ContactStore} durable. On startup the repository is rebuilt from the
+ * latest snapshot plus the write-ahead log records after it; from then on every add and remove is
+ * appended to the log, and a fresh snapshot is written periodically and on shutdown so that the
+ * log stays short. While the log cannot be written, changes are rejected before they are applied.
+ * <p>
+ * Snapshots are taken without stopping writers: the log is rotated first and the snapshot then
+ * reads the store once it has committed every change logged up to the rotation, as a change is
+ * logged before the store commits it. The snapshot may already contain some changes logged after
+ * its LSN; replaying those is harmless because re-adding an existing contact and removing an absent
+ * phone number are both no-ops.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contacts.persistence", name = "enabled", havingValue = "true")
+public class ContactPersistence implements ContactChangeListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContactPersistence.class);
+
+    private static final int RECOVERY_BATCH_SIZE = 10_000;
+
+    private final ContactStore contactStore;
+    private final PersistenceProperties properties;
+
+    /**
+     * LSN of the last record appended by each thread, awaited in {@link #afterChange()}.
+     */
+    private final ThreadLocal<long[]> lastAppended = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Flushes the log on a short timer; kept apart from {@link #snapshotter} so that a long
+     * snapshot never holds up the group commits that writers without synchronous writes rely on.
+     */
+    private ScheduledExecutorService flusher;
+    private ScheduledExecutorService snapshotter;
+    private WriteAheadLog writeAheadLog;
+    private long lastSnapshotLsn;
+
+    public ContactPersistence(ContactStore contactStore, PersistenceProperties properties) {
+        this.contactStore = contactStore;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        var directory = properties.directory();
+        Files.createDirectories(directory);
+        long started = System.nanoTime();
+        List<Contact> batch = new ArrayList<>(RECOVERY_BATCH_SIZE);
+
+        var snapshot = SnapshotFile.latest(directory);
+        if (snapshot.isPresent()) {
+            lastSnapshotLsn = SnapshotFile.read(snapshot.get(), contact -> {
+                batch.add(contact);
+                if (batch.size() == RECOVERY_BATCH_SIZE) {
+                    applyAdds(batch);
+                }
+            });
+            applyAdds(batch);
+        }
+        long lastLsn = WriteAheadLog.replay(directory, lastSnapshotLsn, record -> {
+            if (record.type() == WriteAheadLog.ADD) {
+                batch.add(record.contact());
+                if (batch.size() == RECOVERY_BATCH_SIZE) {
+                    applyAdds(batch);
+                }
+            } else {
+                applyAdds(batch);
+                try {
+                    contactStore.removeContactByPhoneNumber(record.phoneNumber());
+                } catch (IllegalArgumentException e) {
+                    // already absent from the snapshot
+                }
+            }
+        });
+        applyAdds(batch);
+        LOGGER.info("Recovered {} contacts up to LSN {} from {} in {} ms", contactStore.size(), lastLsn,
+                directory, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        writeAheadLog = new WriteAheadLog(directory, lastLsn);
+        contactStore.addChangeListener(this);
+        flusher = scheduler("contact-wal-flush");
+        long commitMicros = properties.commitInterval().toNanos() / 1000;
+        flusher.scheduleWithFixedDelay(writeAheadLog::flush, commitMicros, commitMicros, TimeUnit.MICROSECONDS);
+        snapshotter = scheduler("contact-snapshot");
+        long snapshotMillis = properties.snapshotInterval().toMillis();
+        snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        snapshotter.shutdown();
+        flusher.shutdown();
+        snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        flusher.awaitTermination(1, TimeUnit.MINUTES);
+        contactStore.removeChangeListener(this);
+        snapshot();
+        writeAheadLog.close();
+    }
+
+    /**
+     * Write a snapshot of the repository if anything was logged since the last one, then drop the
+     * snapshots and log segments it makes obsolete.
+     */
+    public synchronized void snapshot() throws IOException {
+        if (writeAheadLog.lastLsn() == lastSnapshotLsn) {
+            return;
+        }
+        long started = System.nanoTime();
+        var cut = writeAheadLog.rotate();
+        long lsn = cut.lsn();
+        long count;
+        try (var snapshot = snapshotAt(cut.version()); var contacts = snapshot.streamContacts()) {
+            count = SnapshotFile.write(properties.directory(), lsn, contacts.iterator());
+        }
+        SnapshotFile.deleteOlderThan(properties.directory(), lsn);
+        writeAheadLog.deleteSegmentsThrough(lsn);
+        lastSnapshotLsn = lsn;
+        LOGGER.info("Snapshot of {} contacts at LSN {} took {} ms", count, lsn,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * A snapshot of the store at {@code version} or later, waiting for writers that logged their
+     * change but have not committed it yet.
+     */
+    private ContactSnapshot snapshotAt(long version) throws InterruptedIOException {
+        while (true) {
+            var snapshot = contactStore.snapshot();
+            if (snapshot.version() >= version) {
+                return snapshot;
+            }
+            snapshot.close();
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for version " + version);
+            }
+        }
+    }
+
+    /**
+     * Reject the change while the log cannot be written, before the store or any other listener
+     * sees it.
+     */
+    @Override
+    public void beforeChange() {
+        writeAheadLog.checkWritable();
+    }
+
+    @Override
+    public void contactAdded(long version, Contact contact) {
+        lastAppended.get()[0] = writeAheadLog.append(version, WriteAheadLog.ADD,
+                contact.getName(), contact.getEmail(), contact.getPhoneNumber());
+    }
+
+    @Override
+    public void contactsRemoved(long version, String phoneNumber, List<Contact> contacts) {
+        lastAppended.get()[0] = writeAheadLog.append(version, WriteAheadLog.REMOVE, null, null, phoneNumber);
+    }
+
+    @Override
+    public void afterChange() {
+        long[] lsn = lastAppended.get();
+        if (properties.syncWrites() && lsn[0] > 0) {
+            writeAheadLog.sync(lsn[0]);
+        }
+        lsn[0] = 0;
+    }
+
+    private void applyAdds(List<Contact> batch) {
+        if (!batch.isEmpty()) {
+            contactStore.addContacts(batch);
+            batch.clear();
+        }
+    }
+
+    private static ScheduledExecutorService scheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Could not write snapshot", e);
+        }
+    }
+}
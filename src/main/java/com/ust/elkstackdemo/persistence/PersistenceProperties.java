@@ -0,0 +1,27 @@
+package com.ust.elkstackdemo.persistence;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for the write-ahead log and snapshots, under {@code contacts.persistence}.
+ *
+ * @param enabled          Whether contacts are persisted at all. Off by default, which keeps the
+ *                         repository purely in memory.
+ * @param directory        Where log segments and snapshots are kept.
+ * @param syncWrites       Whether a write waits until its log record has been fsynced before
+ *                         returning. Concurrent writers share one fsync (group commit).
+ * @param commitInterval   How often buffered log records are written and fsynced in the background.
+ * @param snapshotInterval How often a snapshot is written if the log has grown since the last one.
+ */
+@ConfigurationProperties("contacts.persistence")
+public record PersistenceProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data") Path directory,
+        @DefaultValue("true") boolean syncWrites,
+        @DefaultValue("10ms") Duration commitInterval,
+        @DefaultValue("5m") Duration snapshotInterval) {
+}
@@ -0,0 +1,49 @@
+package com.ust.elkstackdemo.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encoding of the strings shared by log records and snapshots: an int byte length, or -1 for
+ * null, followed by the UTF-8 bytes.
+ */
+final class RecordCodec {
+
+    private RecordCodec() {
+    }
+
+    static int sizeOf(byte[] encoded) {
+        return Integer.BYTES + (encoded == null ? 0 : encoded.length);
+    }
+
+    static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void put(ByteBuffer buffer, byte[] encoded) {
+        if (encoded == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(encoded.length);
+            buffer.put(encoded);
+        }
+    }
+
+    static String get(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalStateException("String length " + length + " exceeds record");
+        }
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
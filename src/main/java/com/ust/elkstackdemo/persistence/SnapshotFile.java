@@ -0,0 +1,194 @@
+package com.ust.elkstackdemo.persistence;
+
+import com.ust.elkstackdemo.model.Contact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Compact binary snapshot of every contact, tagged with the write-ahead log LSN it was started at.
+ * <p>
+ * Layout: {@code int magic, long lsn}, then one {@code int length, name, email, phoneNumber} record
+ * per contact, then {@code int 0, long count} as a trailer. A snapshot without its trailer was
+ * never completed and is ignored. Snapshots are written to a temporary file and atomically moved
+ * into place, and read back through a memory-mapped window that slides over the file.
+ */
+final class SnapshotFile {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotFile.class);
+
+    private static final int MAGIC = 0x434E5431;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final long MAP_WINDOW_SIZE = 256L << 20;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Write every contact to a new snapshot for {@code lsn}.
+     * @return The number of contacts written.
+     */
+    static long write(Path directory, long lsn, Iterator<Contact> contacts) throws IOException {
+        Path target = directory.resolve(PREFIX + String.format("%020d", lsn) + SUFFIX);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            buffer.putInt(MAGIC).putLong(lsn);
+            while (contacts.hasNext()) {
+                Contact contact = contacts.next();
+                byte[] n = RecordCodec.encode(contact.getName());
+                byte[] e = RecordCodec.encode(contact.getEmail());
+                byte[] p = RecordCodec.encode(contact.getPhoneNumber());
+                int length = RecordCodec.sizeOf(n) + RecordCodec.sizeOf(e) + RecordCodec.sizeOf(p);
+                if (buffer.remaining() < Integer.BYTES + length) {
+                    drain(channel, buffer);
+                    if (buffer.remaining() < Integer.BYTES + length) {
+                        buffer = ByteBuffer.allocateDirect(Integer.BYTES + length);
+                    }
+                }
+                buffer.putInt(length);
+                RecordCodec.put(buffer, n);
+                RecordCodec.put(buffer, e);
+                RecordCodec.put(buffer, p);
+                count++;
+            }
+            if (buffer.remaining() < Integer.BYTES + Long.BYTES) {
+                drain(channel, buffer);
+            }
+            buffer.putInt(0).putLong(count);
+            drain(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        LOGGER.debug("Wrote snapshot {} with {} contacts", target, count);
+        return count;
+    }
+
+    /**
+     * The most recent snapshot in {@code directory}, if any.
+     */
+    static Optional<Path> latest(Path directory) throws IOException {
+        List<Path> snapshots = snapshots(directory);
+        return snapshots.isEmpty() ? Optional.empty() : Optional.of(snapshots.get(snapshots.size() - 1));
+    }
+
+    /**
+     * Read every contact in {@code snapshot}.
+     * @return The LSN the snapshot was started at.
+     * @throws IOException If the snapshot is unreadable or incomplete.
+     */
+    static long read(Path snapshot, Consumer<Contact> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            var window = new Window(channel);
+            if (window.ensure(Integer.BYTES + Long.BYTES).getInt() != MAGIC) {
+                throw new IOException("Not a contact snapshot: " + snapshot);
+            }
+            long lsn = window.buffer.getLong();
+            long count = 0;
+            while (true) {
+                int length = window.ensure(Integer.BYTES).getInt();
+                if (length == 0) {
+                    long expected = window.ensure(Long.BYTES).getLong();
+                    if (expected != count) {
+                        throw new IOException("Snapshot " + snapshot + " holds " + count + " contacts, expected " + expected);
+                    }
+                    return lsn;
+                }
+                ByteBuffer record = window.ensure(length);
+                consumer.accept(new Contact(RecordCodec.get(record), RecordCodec.get(record), RecordCodec.get(record)));
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Delete every snapshot older than the one for {@code lsn}, and any abandoned temporary file.
+     */
+    static void deleteOlderThan(Path directory, long lsn) throws IOException {
+        for (Path snapshot : snapshots(directory)) {
+            if (lsn(snapshot) < lsn) {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path temp : files.filter(p -> p.getFileName().toString().endsWith(SUFFIX + ".tmp")).toList()) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static List<Path> snapshots(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().startsWith(PREFIX)
+                            && p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long lsn(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * A read-only mapping of part of the snapshot, moved forward whenever a read would run past it.
+     */
+    private static final class Window {
+
+        private final FileChannel channel;
+        private final long size;
+        private long offset;
+        private MappedByteBuffer buffer;
+
+        Window(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        /**
+         * Make sure the next {@code bytes} bytes are mapped and return the buffer positioned at them.
+         */
+        ByteBuffer ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                long position = offset + buffer.position();
+                if (size - position < bytes) {
+                    throw new IOException("Snapshot is truncated");
+                }
+                map(position);
+            }
+            return buffer;
+        }
+
+        private void map(long position) throws IOException {
+            offset = position;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW_SIZE, size - position));
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.ust.elkstackdemo.persistence;
+
+import com.ust.elkstackdemo.model.Contact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of contact adds and removes, split into segment files named after the log
+ * sequence number (LSN) of their first record.
+ * <p>
+ * {@link #append} only copies an encoded record into an in-memory buffer, so it is cheap enough to
+ * call while the repository holds a phone number. Buffered records are written and fsynced by
+ * {@link #flush()}, either from a background timer or from a writer waiting in {@link #sync}: the
+ * first waiter to get in flushes for everyone queued behind it, so concurrent writers share one
+ * fsync (group commit).
+ * <p>
+ * If a write or fsync fails, the records are kept and written again, all of them and to a fresh
+ * segment, by every later flush until one succeeds; {@link #durableLsn} only ever covers records
+ * that reached the disk. Until then {@link #checkWritable()} throws, so that the store rejects new
+ * changes rather than committing changes the log cannot hold. Replay skips the copies a failed
+ * attempt may have left behind.
+ * <p>
+ * Record layout: {@code int payloadLength, long lsn, int crc32c(payload), payload} where the
+ * payload is a type byte followed by its strings. A torn or corrupt record ends the segment.
+ */
+final class WriteAheadLog implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * A decoded log record. {@code name} and {@code email} are null for removes.
+     */
+    record Record(long lsn, byte type, String name, String email, String phoneNumber) {
+
+        Contact contact() {
+            return new Contact(name, email, phoneNumber);
+        }
+    }
+
+    /**
+     * Where {@link #rotate()} cut the log.
+     *
+     * @param lsn     LSN of the last record before the cut.
+     * @param version Highest store version of the records up to {@code lsn}.
+     */
+    record Cut(long lsn, long version) {
+    }
+
+    /**
+     * Opens a segment file for writing, creating it or truncating an existing one.
+     */
+    interface SegmentOpener {
+        FileChannel open(Path path) throws IOException;
+    }
+
+    private final Path directory;
+    private final SegmentOpener opener;
+
+    /**
+     * Held while writing buffered records to the current segment, and while switching segments.
+     * Always acquired before {@link #appendLock}.
+     */
+    private final ReentrantLock ioLock = new ReentrantLock();
+
+    /**
+     * Guards the append buffer and LSN assignment.
+     */
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    /**
+     * Guards {@link #durable}, signalled whenever {@link #durableLsn} advances. A lock rather than a
+     * monitor so that request threads waiting for a group commit do not pin virtual thread carriers.
+     */
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durable = durableLock.newCondition();
+
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long lastLsn;
+    private long lastVersion;
+    /**
+     * {@link #lastVersion} as of the last flush, read under {@link #ioLock}.
+     */
+    private long flushedVersion;
+    /**
+     * Records taken from the append buffer that are not on disk yet, up to {@link #unwrittenLsn};
+     * null unless a failed flush left them to be retried. Guarded by {@link #ioLock}.
+     */
+    private ByteBuffer unwritten;
+    private long unwrittenLsn;
+    private volatile long durableLsn;
+    /**
+     * Why the last flush failed, or null once one succeeds.
+     */
+    private volatile IOException failure;
+    private FileChannel segment;
+
+    /**
+     * Open a new segment in {@code directory} whose first record will get LSN {@code lastLsn + 1}.
+     */
+    WriteAheadLog(Path directory, long lastLsn) throws IOException {
+        // a segment with this name can only hold records that never became durable, e.g. ones torn
+        // by a crash or left by a failed flush
+        this(directory, lastLsn, path -> FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Like {@link #WriteAheadLog(Path, long)}, opening segments through {@code opener}.
+     */
+    WriteAheadLog(Path directory, long lastLsn, SegmentOpener opener) throws IOException {
+        this.directory = directory;
+        this.lastLsn = lastLsn;
+        this.durableLsn = lastLsn;
+        this.opener = opener;
+        this.segment = openSegment(lastLsn + 1);
+    }
+
+    /**
+     * Append a record of the change the store makes as {@code version}. The version is not written,
+     * only remembered for {@link #rotate()}.
+     * @return The LSN of the record.
+     */
+    long append(long version, byte type, String name, String email, String phoneNumber) {
+        byte[] n = RecordCodec.encode(name);
+        byte[] e = RecordCodec.encode(email);
+        byte[] p = RecordCodec.encode(phoneNumber);
+        int payloadLength = 1 + RecordCodec.sizeOf(n) + RecordCodec.sizeOf(e) + RecordCodec.sizeOf(p);
+        ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+        payload.put(type);
+        RecordCodec.put(payload, n);
+        RecordCodec.put(payload, e);
+        RecordCodec.put(payload, p);
+        var crc = new CRC32C();
+        crc.update(payload.array());
+
+        appendLock.lock();
+        try {
+            if (buffer.remaining() < HEADER_SIZE + payloadLength) {
+                buffer = grow(buffer, HEADER_SIZE + payloadLength);
+            }
+            long lsn = ++lastLsn;
+            lastVersion = Math.max(lastVersion, version);
+            buffer.putInt(payloadLength).putLong(lsn).putInt((int) crc.getValue()).put(payload.array());
+            return lsn;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    long lastLsn() {
+        appendLock.lock();
+        try {
+            return lastLsn;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Wait until every record up to {@code lsn} is on disk, flushing them if no one else is.
+     * @throws UncheckedIOException If the log could not be written. The records are kept, and a
+     *                              later flush writes them once the log recovers.
+     */
+    void sync(long lsn) {
+        while (durableLsn < lsn) {
+            if (ioLock.tryLock()) {
+                try {
+                    if (durableLsn < lsn) {
+                        flushLocked();
+                    }
+                } finally {
+                    ioLock.unlock();
+                }
+                checkWritable();
+            } else {
+                checkWritable();
+                durableLock.lock();
+                try {
+                    if (durableLsn < lsn) {
+                        durable.await(1, TimeUnit.MILLISECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted waiting for the write-ahead log", e);
+                } finally {
+                    durableLock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Write and fsync everything appended so far.
+     */
+    void flush() {
+        ioLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Flush and start a new segment.
+     * @return The last record in the closed segments; later records go to the new one.
+     * @throws IOException If the records could not be flushed; the log is not rotated.
+     */
+    Cut rotate() throws IOException {
+        ioLock.lock();
+        try {
+            long last = flushLocked();
+            IOException failed = failure;
+            if (failed != null) {
+                throw new IOException("Write-ahead log failed", failed);
+            }
+            segment.close();
+            segment = openSegment(last + 1);
+            return new Cut(last, flushedVersion);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Delete the segments that only hold records up to {@code lsn}.
+     */
+    void deleteSegmentsThrough(long lsn) throws IOException {
+        List<Path> segments = segments(directory);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstLsn(segments.get(i + 1)) - 1 <= lsn) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ioLock.lock();
+        try {
+            flushLocked();
+            segment.close();
+        } finally {
+            ioLock.unlock();
+        }
+        checkWritable();
+    }
+
+    /**
+     * Replay, in LSN order, every record in {@code directory} with an LSN greater than {@code afterLsn}.
+     * Records already replayed, left by a flush that failed and was retried, are skipped, and replay
+     * stops at the first missing LSN rather than apply later changes without it.
+     * @return The highest LSN replayed, or {@code afterLsn} if there was none.
+     */
+    static long replay(Path directory, long afterLsn, Consumer<Record> consumer) throws IOException {
+        long last = afterLsn;
+        for (Path path : segments(directory)) {
+            ByteBuffer data;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            while (data.remaining() >= HEADER_SIZE) {
+                int payloadLength = data.getInt();
+                long lsn = data.getLong();
+                int checksum = data.getInt();
+                if (payloadLength <= 0 || payloadLength > data.remaining()) {
+                    LOGGER.warn("Truncated write-ahead log record {} in {}", lsn, path);
+                    break;
+                }
+                ByteBuffer payload = data.slice(data.position(), payloadLength);
+                data.position(data.position() + payloadLength);
+                var crc = new CRC32C();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    LOGGER.warn("Corrupt write-ahead log record {} in {}", lsn, path);
+                    break;
+                }
+                if (lsn <= last) {
+                    continue;
+                }
+                if (lsn > last + 1) {
+                    LOGGER.error("Write-ahead log records {} to {} are missing before {}; ignoring the rest of the log",
+                            last + 1, lsn - 1, path);
+                    return last;
+                }
+                byte type = payload.get();
+                consumer.accept(new Record(lsn, type, RecordCodec.get(payload), RecordCodec.get(payload), RecordCodec.get(payload)));
+                last = lsn;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Write and fsync the records appended so far, or retry those a failed flush left unwritten.
+     * @return The last LSN on disk.
+     */
+    private long flushLocked() {
+        if (unwritten == null) {
+            appendLock.lock();
+            try {
+                unwritten = buffer;
+                buffer = spare;
+                spare = unwritten;
+                unwrittenLsn = lastLsn;
+                flushedVersion = lastVersion;
+            } finally {
+                appendLock.unlock();
+            }
+            unwritten.flip();
+        }
+        if (unwritten.hasRemaining()) {
+            try {
+                if (failure != null) {
+                    // the failed segment may hold any part of these records, and after a failed fsync
+                    // the kernel may have dropped the rest: write them all again to a segment of their own
+                    segment.close();
+                    segment = openSegment(durableLsn + 1);
+                    unwritten.rewind();
+                }
+                while (unwritten.hasRemaining()) {
+                    segment.write(unwritten);
+                }
+                segment.force(false);
+            } catch (IOException e) {
+                if (failure == null) {
+                    LOGGER.error("Could not write the write-ahead log; rejecting changes until it can", e);
+                }
+                failure = e;
+                return durableLsn;
+            }
+            if (failure != null) {
+                LOGGER.info("Write-ahead log written again up to LSN {}", unwrittenLsn);
+                failure = null;
+            }
+        }
+        long last = unwrittenLsn;
+        unwritten.clear();
+        unwritten = null;
+        durableLock.lock();
+        try {
+            durableLsn = last;
+            durable.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+        return last;
+    }
+
+    /**
+     * @throws UncheckedIOException If the last flush failed, until a later one succeeds.
+     */
+    void checkWritable() {
+        IOException failed = failure;
+        if (failed != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failed);
+        }
+    }
+
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%020d", firstLsn) + SEGMENT_SUFFIX);
+        LOGGER.debug("Opening write-ahead log segment {}", path);
+        return opener.open(path);
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files
+                    .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        var grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
@@ -0,0 +1,315 @@
+package com.ust.elkstackdemo.replication;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.replication.ReplicationProtocol.Operation;
+import com.ust.elkstackdemo.repository.ContactStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the {@link ContactStore} of this instance a copy of a {@link ReplicationPrimary}'s, so
+ * that reads served here see what was written there.
+ * <p>
+ * A single thread connects to the primary, loads a snapshot when the primary asks for one and then
+ * applies the operations as they arrive, acknowledging each frame. When the connection breaks, or
+ * nothing, not even a heartbeat, arrives for three heartbeat intervals, it reconnects and resumes
+ * after the last offset applied.
+ * <p>
+ * A snapshot is loaded off to the side and swapped in once complete, by changing only the phone
+ * numbers whose contacts differ from it, so reads never see the directory emptied or half filled
+ * and listeners only hear of real differences. If the connection breaks during the load, the store
+ * keeps its previous state and offset. Until the first snapshot is in, {@link ReplicaWriteFilter}
+ * answers reads with 503.
+ * <p>
+ * Everything else that listens to the store, such as the search cache and the change log, sees the
+ * replicated changes like local ones. Writes from clients are kept away by
+ * {@link ReplicaWriteFilter}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contacts.replication", name = "role", havingValue = "replica")
+public class ContactReplica implements Replication {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContactReplica.class);
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int HEARTBEATS_MISSED = 3;
+
+    private final ContactStore contactStore;
+    private final ReplicationProperties properties;
+    private final LongAdder snapshots = new LongAdder();
+
+    /**
+     * Run of the primary that {@link #offset} belongs to, 0 while the store holds no consistent
+     * state of any.
+     */
+    private volatile long runId;
+    private volatile long offset;
+    private volatile long primaryOffset;
+
+    /**
+     * Primary clock when it sent the latest operations frame applied, 0 before the first.
+     */
+    private volatile long appliedSentMillis;
+    private volatile boolean connected;
+
+    private volatile boolean running;
+    private volatile Socket socket;
+    private Thread thread;
+
+    public ContactReplica(ContactStore contactStore, ReplicationProperties properties) {
+        this.contactStore = contactStore;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        thread = Thread.ofPlatform().name("contact-replica").daemon().start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        var current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+        thread.interrupt();
+        thread.join();
+    }
+
+    /**
+     * Whether the store holds a consistent copy of the primary's, which it does not before the
+     * first snapshot is in, nor while one is being swapped in.
+     */
+    public boolean consistent() {
+        return runId != 0;
+    }
+
+    /**
+     * {@code lagMillis} is -1 until the first operations frame has been applied.
+     */
+    @Override
+    public ReplicationStatus status() {
+        long applied = offset;
+        long lag = Math.max(0, primaryOffset - applied);
+        long sent = appliedSentMillis;
+        long lagMillis;
+        if (sent == 0) {
+            lagMillis = -1;
+        } else if (connected && lag == 0) {
+            lagMillis = 0;
+        } else {
+            lagMillis = Math.max(0, System.currentTimeMillis() - sent);
+        }
+        return new ReplicationStatus("replica", applied, primaryOffset, lag, lagMillis, connected, snapshots.sum(),
+                List.of());
+    }
+
+    private void run() {
+        var primary = new InetSocketAddress(properties.host(), properties.port());
+        int timeout = Math.toIntExact(properties.heartbeatInterval().toMillis() * HEARTBEATS_MISSED);
+        while (running) {
+            try (var connection = new Socket()) {
+                socket = connection;
+                connection.connect(primary, timeout);
+                connection.setTcpNoDelay(true);
+                connection.setSoTimeout(timeout);
+                follow(connection);
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.warn("Lost primary {}: {}", primary, e.toString());
+                }
+            } finally {
+                connected = false;
+                socket = null;
+            }
+            try {
+                Thread.sleep(properties.reconnectInterval().toMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void follow(Socket connection) throws IOException {
+        var in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), BUFFER_BYTES));
+        var out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        out.writeInt(ReplicationProtocol.MAGIC);
+        out.writeLong(runId);
+        out.writeLong(offset);
+        out.flush();
+        long primaryRun = 0;
+        long snapshotOffset = 0;
+        Map<String, List<Contact>> loading = null;
+        while (running) {
+            byte type = in.readByte();
+            int length = in.readInt();
+            if (length < 0 || length > ReplicationProtocol.MAX_FRAME_BYTES) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            var frame = new DataInputStream(new ByteArrayInputStream(payload));
+            switch (type) {
+                case ReplicationProtocol.HELLO -> {
+                    primaryRun = frame.readLong();
+                    primaryOffset = frame.readLong();
+                    connected = true;
+                    LOGGER.info("Following primary {} run {} at offset {}", connection.getRemoteSocketAddress(),
+                            primaryRun, primaryOffset);
+                }
+                case ReplicationProtocol.SNAPSHOT -> {
+                    snapshotOffset = frame.readLong();
+                    loading = new LinkedHashMap<>();
+                }
+                case ReplicationProtocol.CONTACTS -> {
+                    if (loading == null) {
+                        throw new IOException("Contacts outside a snapshot");
+                    }
+                    while (frame.available() > 0) {
+                        var contact = ReplicationProtocol.readContact(frame);
+                        loading.computeIfAbsent(contact.getPhoneNumber(), p -> new ArrayList<>(1)).add(contact);
+                    }
+                }
+                case ReplicationProtocol.SNAPSHOT_END -> {
+                    if (loading == null) {
+                        throw new IOException("Snapshot end without a snapshot");
+                    }
+                    // the store is inconsistent until the snapshot is swapped in
+                    runId = 0;
+                    swapIn(loading);
+                    loading = null;
+                    offset = snapshotOffset;
+                    runId = primaryRun;
+                    snapshots.increment();
+                    LOGGER.info("Loaded a snapshot of {} contacts at offset {}", contactStore.size(), snapshotOffset);
+                    acknowledge(out);
+                }
+                case ReplicationProtocol.OPERATIONS -> {
+                    long head = frame.readLong();
+                    long sent = frame.readLong();
+                    long first = frame.readLong();
+                    int count = frame.readInt();
+                    if (first != offset + 1) {
+                        throw new IOException("Expected offset " + (offset + 1) + " but got " + first);
+                    }
+                    apply(frame, first, count);
+                    offset = first + count - 1;
+                    primaryOffset = head;
+                    appliedSentMillis = sent;
+                    acknowledge(out);
+                }
+                default -> throw new IOException("Unknown frame type " + type);
+            }
+        }
+    }
+
+    /**
+     * Apply the operations of a frame, adding runs of consecutive contacts as one batch. Adding a
+     * contact that is already there and removing an absent phone number are skipped, as they happen
+     * when operations included in a snapshot are replayed.
+     */
+    private void apply(DataInputStream frame, long first, int count) throws IOException {
+        List<Contact> adds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Operation operation = ReplicationProtocol.readOperation(frame, first + i);
+            if (operation.type() == ReplicationProtocol.ADD) {
+                adds.add(operation.contact());
+                continue;
+            }
+            applyAdds(adds);
+            try {
+                contactStore.removeContactByPhoneNumber(operation.phoneNumber());
+            } catch (IllegalArgumentException e) {
+                // already absent
+            }
+        }
+        applyAdds(adds);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Applied operations {} to {}", first, first + count - 1);
+        }
+    }
+
+    private void applyAdds(List<Contact> adds) {
+        if (!adds.isEmpty()) {
+            contactStore.addContacts(adds);
+            adds.clear();
+        }
+    }
+
+    /**
+     * Make the store hold exactly the loaded snapshot. Phone numbers whose contacts already match it
+     * are left alone; the others are removed and, if the snapshot has them, added back as it has them.
+     */
+    private void swapIn(Map<String, List<Contact>> loaded) {
+        Map<String, List<Contact>> current = new HashMap<>();
+        try (var contacts = contactStore.streamContacts()) {
+            contacts.forEach(contact -> current.computeIfAbsent(contact.getPhoneNumber(), p -> new ArrayList<>(1)).add(contact));
+        }
+        int removed = 0;
+        for (var entry : current.entrySet()) {
+            var wanted = loaded.get(entry.getKey());
+            if (wanted != null && identities(wanted).equals(identities(entry.getValue()))) {
+                loaded.remove(entry.getKey());
+                continue;
+            }
+            try {
+                contactStore.removeContactByPhoneNumber(entry.getKey());
+                removed++;
+            } catch (IllegalArgumentException e) {
+                // already absent
+            }
+        }
+        List<Contact> adds = new ArrayList<>(properties.batchSize());
+        for (List<Contact> contacts : loaded.values()) {
+            for (Contact contact : contacts) {
+                adds.add(contact);
+                if (adds.size() == properties.batchSize()) {
+                    applyAdds(adds);
+                }
+            }
+        }
+        applyAdds(adds);
+        LOGGER.debug("Swapped in a snapshot: {} phone numbers removed, {} added", removed, loaded.size());
+    }
+
+    private static Set<List<String>> identities(List<Contact> contacts) {
+        Set<List<String>> identities = new HashSet<>();
+        for (Contact contact : contacts) {
+            identities.add(Arrays.asList(contact.getName(), contact.getEmail()));
+        }
+        return identities;
+    }
+
+    private void acknowledge(DataOutputStream out) throws IOException {
+        out.writeLong(offset);
+        out.flush();
+    }
+}
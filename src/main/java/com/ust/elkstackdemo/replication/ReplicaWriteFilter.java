@@ -0,0 +1,68 @@
+package com.ust.elkstackdemo.replication;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Keeps clients from writing to a replica's contacts, which would only be overwritten by the
+ * primary's. A write is redirected to the primary with 307, which makes clients repeat the method
+ * and body there, or refused with 503 when {@code contacts.replication.primary-url} is not set.
+ * Reads are refused with 503 while the replica holds no consistent copy of the primary's contacts,
+ * until its first snapshot is in.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contacts.replication", name = "role", havingValue = "replica")
+public class ReplicaWriteFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaWriteFilter.class);
+
+    private final String primaryUrl;
+    private final ContactReplica replica;
+
+    public ReplicaWriteFilter(ReplicationProperties properties, ContactReplica replica) {
+        this.replica = replica;
+        String url = properties.primaryUrl();
+        this.primaryUrl = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return HttpMethod.OPTIONS.matches(request.getMethod())
+                || !request.getRequestURI().startsWith(request.getContextPath() + "/contacts");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String method = request.getMethod();
+        if (HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method)) {
+            if (replica.consistent()) {
+                chain.doFilter(request, response);
+            } else {
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Replica is loading a snapshot");
+            }
+            return;
+        }
+        if (primaryUrl.isEmpty()) {
+            LOGGER.warn("Refused {} {} on a replica", request.getMethod(), request.getRequestURI());
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Writes go to the primary");
+            return;
+        }
+        String query = request.getQueryString();
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+        response.setHeader(HttpHeaders.LOCATION, primaryUrl + path + (query == null ? "" : "?" + query));
+    }
+}
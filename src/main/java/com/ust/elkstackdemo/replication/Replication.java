@@ -0,0 +1,10 @@
+package com.ust.elkstackdemo.replication;
+
+/**
+ * The replication role this instance plays: {@link ReplicationPrimary} or {@link ContactReplica},
+ * whichever {@code contacts.replication.role} enables.
+ */
+public interface Replication {
+
+    ReplicationStatus status();
+}
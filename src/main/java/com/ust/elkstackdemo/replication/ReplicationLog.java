@@ -0,0 +1,130 @@
+package com.ust.elkstackdemo.replication;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.replication.ReplicationProtocol.Operation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The latest operations of a primary by offset, in a ring of fixed capacity, for the sessions that
+ * stream them to replicas.
+ * <p>
+ * Operations are appended by the store's change listener while the store holds the phone number
+ * they change, so operations on one phone number get offsets in the order they were applied. The
+ * version each one is committed at is tracked as well, so that a snapshot can be matched to an
+ * offset; see {@link #position()}.
+ */
+final class ReplicationLog {
+
+    /**
+     * An offset and the store version that every operation up to it is committed at or below.
+     */
+    record Position(long offset, long version) {
+    }
+
+    private final Operation[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+
+    /**
+     * Offset of the latest operation, 0 before the first.
+     */
+    private long head;
+    private long maxVersion;
+
+    ReplicationLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid backlog: " + capacity);
+        }
+        this.ring = new Operation[capacity];
+    }
+
+    void added(long version, Contact contact) {
+        append(version, ReplicationProtocol.ADD, contact, null);
+    }
+
+    void removed(long version, String phoneNumber) {
+        append(version, ReplicationProtocol.REMOVE, null, phoneNumber);
+    }
+
+    long head() {
+        lock.lock();
+        try {
+            return head;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The latest offset, with the highest version of any operation up to it. A snapshot read at
+     * that version or later holds every one of those operations, and maybe some later ones.
+     */
+    Position position() {
+        lock.lock();
+        try {
+            return new Position(head, maxVersion);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Whether the operation at {@code offset} is still kept, or is the next one to come.
+     */
+    boolean contains(long offset) {
+        lock.lock();
+        try {
+            return offset >= oldest() && offset <= head + 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Up to {@code max} operations from offset {@code from} on, waiting up to {@code timeout} for
+     * the first one to be appended.
+     * @return The operations, empty if none came in time, or null if the one at {@code from} is no
+     * longer kept.
+     */
+    List<Operation> read(long from, int max, long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = unit.toNanos(timeout);
+            while (head < from && nanos > 0) {
+                nanos = appended.awaitNanos(nanos);
+            }
+            if (from < oldest()) {
+                return null;
+            }
+            int count = (int) Math.min(max, head - from + 1);
+            List<Operation> operations = new ArrayList<>(Math.max(count, 0));
+            for (long offset = from; offset < from + count; offset++) {
+                operations.add(ring[(int) (offset % ring.length)]);
+            }
+            return operations;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long oldest() {
+        return Math.max(1, head - ring.length + 1);
+    }
+
+    private void append(long version, byte type, Contact contact, String phoneNumber) {
+        lock.lock();
+        try {
+            head++;
+            ring[(int) (head % ring.length)] = new Operation(head, type, contact, phoneNumber);
+            maxVersion = Math.max(maxVersion, version);
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.ust.elkstackdemo.replication;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.replication.ReplicationProtocol.Frame;
+import com.ust.elkstackdemo.replication.ReplicationProtocol.Operation;
+import com.ust.elkstackdemo.repository.ContactChangeListener;
+import com.ust.elkstackdemo.repository.ContactSnapshot;
+import com.ust.elkstackdemo.repository.ContactStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams every change of the {@link ContactStore} to replicas over TCP, in the format of
+ * {@link ReplicationProtocol}.
+ * <p>
+ * Changes are numbered by offset in a {@link ReplicationLog} as the store applies them. Each
+ * connected replica has a session thread that sends them in frames of up to {@code batchSize}
+ * operations, or a heartbeat when nothing changed for {@code heartbeatInterval}. A replica that
+ * reconnects resumes after the last offset it applied if the backlog still holds what follows;
+ * otherwise, and on its first connection or after this primary restarted, it is sent a snapshot of
+ * the store first.
+ * <p>
+ * Snapshots are read without stopping writers: the offset is taken first and the snapshot is read
+ * once every operation up to it is committed, so it may already hold some later operations.
+ * Replaying those on the replica is harmless, as with {@code ContactPersistence}: a removal takes
+ * away every contact with the phone number and re-adding an existing contact is rejected.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contacts.replication", name = "role", havingValue = "primary")
+public class ReplicationPrimary implements ContactChangeListener, Replication, SmartInitializingSingleton {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationPrimary.class);
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final ContactStore contactStore;
+    private final ReplicationProperties properties;
+    private final ReplicationLog log;
+
+    /**
+     * Identifies this run, so that a replica's offset from an earlier run is not taken for one of
+     * this run's.
+     */
+    private final long runId;
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger sessionIds = new AtomicInteger();
+    private final LongAdder snapshots = new LongAdder();
+
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+
+    public ReplicationPrimary(ContactStore contactStore, ReplicationProperties properties) {
+        if (properties.batchSize() < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + properties.batchSize());
+        }
+        this.contactStore = contactStore;
+        this.properties = properties;
+        this.log = new ReplicationLog(properties.backlog());
+        this.runId = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    }
+
+    /**
+     * Start once every singleton exists, after persistence has recovered the store: replicas get
+     * recovered contacts in snapshots, and logging them as changes would only fill the backlog.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void start() throws IOException {
+        // changes made before now are only ever sent in snapshots, as no replica knows this run yet
+        contactStore.addChangeListener(this);
+        serverSocket = new ServerSocket(properties.port());
+        running = true;
+        acceptor = Thread.ofPlatform().name("replication-acceptor").daemon().start(this::accept);
+        LOGGER.info("Replication primary listening on port {}, run {}", port(), runId);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        serverSocket.close();
+        acceptor.join();
+        for (Session session : sessions) {
+            session.close();
+        }
+        contactStore.removeChangeListener(this);
+    }
+
+    /**
+     * The port replicas connect to, the one chosen when {@code port} is 0.
+     */
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public ReplicationStatus status() {
+        long head = log.head();
+        List<ReplicationStatus.Replica> replicas = sessions.stream()
+                .map(session -> new ReplicationStatus.Replica(session.address, session.acked,
+                        Math.max(0, head - session.acked)))
+                .toList();
+        return new ReplicationStatus("primary", head, head, 0, 0, true, snapshots.sum(), replicas);
+    }
+
+    @Override
+    public void contactAdded(long version, Contact contact) {
+        log.added(version, contact);
+    }
+
+    @Override
+    public void contactsRemoved(long version, String phoneNumber, List<Contact> contacts) {
+        log.removed(version, phoneNumber);
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                var session = new Session(serverSocket.accept());
+                sessions.add(session);
+                session.thread = Thread.ofPlatform()
+                        .name("replication-session-" + sessionIds.incrementAndGet())
+                        .daemon()
+                        .start(session::run);
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.warn("Could not accept a replica", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A snapshot holding every operation up to {@code version}, opened once the store has
+     * committed it; writers commit versions in order and only briefly after notifying listeners.
+     */
+    private ContactSnapshot snapshotAt(long version) throws InterruptedException {
+        while (true) {
+            var snapshot = contactStore.snapshot();
+            if (snapshot.version() >= version) {
+                return snapshot;
+            }
+            snapshot.close();
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * One connected replica, sent frames by its own thread while a virtual thread reads what it
+     * acknowledges.
+     */
+    private final class Session {
+
+        private final Socket socket;
+        private final String address;
+        private volatile long acked;
+        private volatile Thread thread;
+
+        Session(Socket socket) {
+            this.socket = socket;
+            this.address = socket.getRemoteSocketAddress().toString();
+        }
+
+        void run() {
+            try (socket) {
+                socket.setTcpNoDelay(true);
+                var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                var out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_BYTES);
+                if (in.readInt() != ReplicationProtocol.MAGIC) {
+                    throw new IOException("Not a replica");
+                }
+                long replicaRun = in.readLong();
+                long replicaOffset = in.readLong();
+
+                var hello = new Frame(ReplicationProtocol.HELLO);
+                hello.writeLong(runId);
+                hello.writeLong(log.head());
+                hello.writeTo(out);
+                long next;
+                if (replicaRun == runId && log.contains(replicaOffset + 1)) {
+                    next = replicaOffset + 1;
+                    acked = replicaOffset;
+                    LOGGER.info("Replica {} resumed at offset {}", address, next);
+                } else {
+                    next = sendSnapshot(out);
+                }
+                Thread.ofVirtual().name(Thread.currentThread().getName() + "-acks").start(() -> readAcknowledgements(in));
+                long heartbeatMillis = properties.heartbeatInterval().toMillis();
+                while (running) {
+                    List<Operation> operations = log.read(next, properties.batchSize(), heartbeatMillis, TimeUnit.MILLISECONDS);
+                    if (operations == null) {
+                        LOGGER.warn("Replica {} fell out of the backlog at offset {}", address, next);
+                        next = sendSnapshot(out);
+                        continue;
+                    }
+                    var frame = new Frame(ReplicationProtocol.OPERATIONS);
+                    frame.writeLong(log.head());
+                    frame.writeLong(System.currentTimeMillis());
+                    frame.writeLong(next);
+                    frame.writeInt(operations.size());
+                    for (Operation operation : operations) {
+                        ReplicationProtocol.writeOperation(frame, operation);
+                    }
+                    frame.writeTo(out);
+                    out.flush();
+                    next += operations.size();
+                }
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.info("Replica {} disconnected: {}", address, e.toString());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                sessions.remove(this);
+            }
+        }
+
+        /**
+         * Record each offset the replica acknowledges until it disconnects, and then close the
+         * socket so that the sending thread stops too.
+         */
+        private void readAcknowledgements(DataInputStream in) {
+            try {
+                while (true) {
+                    acked = in.readLong();
+                }
+            } catch (IOException e) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // closing anyway
+                }
+            }
+        }
+
+        /**
+         * @return The offset to continue from.
+         */
+        private long sendSnapshot(OutputStream out) throws IOException, InterruptedException {
+            long started = System.nanoTime();
+            var position = log.position();
+            long count = 0;
+            try (var snapshot = snapshotAt(position.version()); var contacts = snapshot.streamContacts()) {
+                var start = new Frame(ReplicationProtocol.SNAPSHOT);
+                start.writeLong(position.offset());
+                start.writeTo(out);
+                Iterator<Contact> iterator = contacts.iterator();
+                while (iterator.hasNext()) {
+                    var frame = new Frame(ReplicationProtocol.CONTACTS);
+                    for (int i = 0; i < properties.batchSize() && iterator.hasNext(); i++) {
+                        frame.writeContact(iterator.next());
+                        count++;
+                    }
+                    frame.writeTo(out);
+                }
+            }
+            new Frame(ReplicationProtocol.SNAPSHOT_END).writeTo(out);
+            out.flush();
+            snapshots.increment();
+            LOGGER.info("Sent a snapshot of {} contacts at offset {} to replica {} in {} ms", count,
+                    position.offset(), address, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            return position.offset() + 1;
+        }
+
+        void close() throws InterruptedException {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+            if (thread != null) {
+                thread.interrupt();
+                thread.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.ust.elkstackdemo.replication;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for primary/replica replication of the contact store, under
+ * {@code contacts.replication}.
+ *
+ * @param role              {@code none} (the default) keeps the store to this instance,
+ *                          {@code primary} streams its changes to replicas and {@code replica}
+ *                          follows a primary and refuses writes of its own.
+ * @param host              Host of the primary a replica follows.
+ * @param port              Port the primary listens on for replicas, and the one replicas connect
+ *                          to; 0 lets the primary pick a free one.
+ * @param batchSize         Operations per frame at most.
+ * @param backlog           Latest operations the primary keeps so that a replica that reconnects
+ *                          resumes from its offset; one further behind is sent a snapshot.
+ * @param heartbeatInterval How often an idle primary tells its replicas that nothing changed. A
+ *                          replica that hears nothing for three intervals reconnects.
+ * @param reconnectInterval Wait before a replica reconnects after losing its primary.
+ * @param primaryUrl        Base HTTP URL of the primary, where a replica redirects the writes it
+ *                          receives; when empty they are refused with 503.
+ */
+@ConfigurationProperties("contacts.replication")
+public record ReplicationProperties(
+        @DefaultValue("none") String role,
+        @DefaultValue("localhost") String host,
+        @DefaultValue("7070") int port,
+        @DefaultValue("1000") int batchSize,
+        @DefaultValue("100000") int backlog,
+        @DefaultValue("1s") Duration heartbeatInterval,
+        @DefaultValue("1s") Duration reconnectInterval,
+        @DefaultValue("") String primaryUrl) {
+}
@@ -0,0 +1,158 @@
+package com.ust.elkstackdemo.replication;
+
+import com.ust.elkstackdemo.model.Contact;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The wire format between a primary and its replicas, all integers big-endian.
+ * <p>
+ * A replica opens the connection with {@link #MAGIC}, the run id of the primary it last followed
+ * (0 for none) and the offset of the last operation it applied. Every operation the primary
+ * applies gets the next offset, starting from 1, and a new run id each time the primary starts,
+ * so an offset only means something together with its run id.
+ * <p>
+ * The primary answers with frames, each a type byte, an int payload length and the payload:
+ * <ul>
+ *     <li>{@link #HELLO}: run id and latest offset, once.</li>
+ *     <li>{@link #SNAPSHOT}: the offset the snapshot is consistent with. The replica empties its
+ *     store, adds the contacts of the {@link #CONTACTS} frames that follow, and resumes from the
+ *     offset at {@link #SNAPSHOT_END}.</li>
+ *     <li>{@link #OPERATIONS}: latest offset, primary clock in milliseconds, offset of the first
+ *     operation and the operations, each a type byte and its strings. An empty one is a
+ *     heartbeat.</li>
+ * </ul>
+ * After every {@link #SNAPSHOT_END} and {@link #OPERATIONS} frame the replica acknowledges the
+ * offset it has applied, as a bare long.
+ * <p>
+ * Strings are an int byte length, or -1 for null, followed by the UTF-8 bytes.
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x43525031;
+
+    static final byte HELLO = 1;
+    static final byte SNAPSHOT = 2;
+    static final byte CONTACTS = 3;
+    static final byte SNAPSHOT_END = 4;
+    static final byte OPERATIONS = 5;
+
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+
+    /**
+     * Largest frame accepted, far above what a batch of valid contacts takes.
+     */
+    static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    private ReplicationProtocol() {
+    }
+
+    /**
+     * One change applied by the primary: an added contact, or the removal of every contact with a
+     * phone number.
+     */
+    record Operation(long offset, byte type, Contact contact, String phoneNumber) {
+    }
+
+    /**
+     * Builds one frame in memory, so that it goes out with a single write.
+     */
+    static final class Frame extends DataOutputStream {
+
+        private final Buffer buffer;
+
+        Frame(byte type) throws IOException {
+            this(new Buffer());
+            writeByte(type);
+            writeInt(0);
+        }
+
+        private Frame(Buffer buffer) {
+            super(buffer);
+            this.buffer = buffer;
+        }
+
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeInt(-1);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeInt(bytes.length);
+                write(bytes);
+            }
+        }
+
+        void writeContact(Contact contact) throws IOException {
+            writeString(contact.getName());
+            writeString(contact.getEmail());
+            writeString(contact.getPhoneNumber());
+        }
+
+        /**
+         * The payload so far, in bytes.
+         */
+        int length() {
+            return buffer.size() - Byte.BYTES - Integer.BYTES;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            buffer.patchLength(length());
+            buffer.writeTo(out);
+        }
+    }
+
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(256);
+        }
+
+        void patchLength(int length) {
+            buf[1] = (byte) (length >>> 24);
+            buf[2] = (byte) (length >>> 16);
+            buf[3] = (byte) (length >>> 8);
+            buf[4] = (byte) length;
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_FRAME_BYTES) {
+            throw new IOException("String length " + length + " exceeds frame");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static Contact readContact(DataInput in) throws IOException {
+        return new Contact(readString(in), readString(in), readString(in));
+    }
+
+    static void writeOperation(Frame frame, Operation operation) throws IOException {
+        frame.writeByte(operation.type());
+        if (operation.type() == ADD) {
+            frame.writeContact(operation.contact());
+        } else {
+            frame.writeString(operation.phoneNumber());
+        }
+    }
+
+    static Operation readOperation(DataInput in, long offset) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case ADD -> new Operation(offset, ADD, readContact(in), null);
+            case REMOVE -> new Operation(offset, REMOVE, null, readString(in));
+            default -> throw new IOException("Unknown operation type " + type);
+        };
+    }
+}
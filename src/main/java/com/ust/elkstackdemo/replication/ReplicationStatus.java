@@ -0,0 +1,31 @@
+package com.ust.elkstackdemo.replication;
+
+import java.util.List;
+
+/**
+ * Replication progress of this instance.
+ *
+ * @param role          {@code primary} or {@code replica}.
+ * @param offset        Latest operation applied here.
+ * @param primaryOffset Latest operation of the primary, as last heard from it on a replica.
+ * @param lagOperations Operations the primary has applied that this replica has not.
+ * @param lagMillis     How far this replica's contents trail the primary's clock: 0 while it is
+ *                      connected and caught up, otherwise the time since the primary sent the
+ *                      latest frame applied here.
+ * @param connected     Whether a replica is connected to its primary; always true on a primary.
+ * @param snapshots     Snapshots sent by a primary, or loaded by a replica.
+ * @param replicas      The replicas connected to a primary, empty on a replica.
+ */
+public record ReplicationStatus(String role, long offset, long primaryOffset, long lagOperations, long lagMillis,
+                                boolean connected, long snapshots, List<Replica> replicas) {
+
+    /**
+     * A replica as its primary sees it.
+     *
+     * @param address       Where it connected from.
+     * @param ackedOffset   Latest operation it acknowledged having applied.
+     * @param lagOperations Operations of the primary it has not acknowledged.
+     */
+    public record Replica(String address, long ackedOffset, long lagOperations) {
+    }
+}
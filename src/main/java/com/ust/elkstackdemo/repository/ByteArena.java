@@ -0,0 +1,66 @@
+package com.ust.elkstackdemo.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only arena of length-prefixed byte strings in off-heap chunks. A string is addressed by a
+ * {@code long} reference holding its chunk index in the high 32 bits and its offset in the low 32.
+ * <p>
+ * Not thread-safe: {@link OffHeapContactStore} appends under its write lock and reads under its
+ * read lock. Reads only use absolute accessors, so concurrent readers never interfere.
+ */
+final class ByteArena {
+
+    private static final int CHUNK_SIZE = 16 << 20;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer current;
+    private long allocatedBytes;
+
+    long put(byte[] bytes) {
+        int needed = Integer.BYTES + bytes.length;
+        if (current == null || current.remaining() < needed) {
+            current = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, needed));
+            chunks.add(current);
+            allocatedBytes += current.capacity();
+        }
+        long ref = ((long) (chunks.size() - 1) << 32) | current.position();
+        current.putInt(bytes.length).put(bytes);
+        return ref;
+    }
+
+    long put(String value) {
+        return put(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    byte[] get(long ref) {
+        ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        byte[] bytes = new byte[chunk.getInt(offset)];
+        chunk.get(offset + Integer.BYTES, bytes);
+        return bytes;
+    }
+
+    String getString(long ref) {
+        return new String(get(ref), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Whether the string at {@code ref} is exactly {@code bytes}, compared in place.
+     */
+    boolean contentEquals(long ref, byte[] bytes) {
+        ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        if (chunk.getInt(offset) != bytes.length) {
+            return false;
+        }
+        return chunk.slice(offset + Integer.BYTES, bytes.length).equals(ByteBuffer.wrap(bytes));
+    }
+
+    long allocatedBytes() {
+        return allocatedBytes;
+    }
+}
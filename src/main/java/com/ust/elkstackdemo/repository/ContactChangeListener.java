@@ -0,0 +1,52 @@
+package com.ust.elkstackdemo.repository;
+
+import com.ust.elkstackdemo.model.Contact;
+
+import java.util.List;
+
+/**
+ * Observes every mutation of a {@link ContactStore}.
+ * <p>
+ * Each write is bracketed by {@link #beforeChange()} and {@link #afterChange()}. In between,
+ * {@link #contactAdded} and {@link #contactsRemoved} are called while the store holds the
+ * phone number being changed, so calls for the same phone number arrive in the order the changes
+ * were applied. They must be quick and must not call back into the repository. Anything slow,
+ * such as waiting for I/O, belongs in {@link #afterChange()}, which runs on the same thread once
+ * the store has released the phone number.
+ * <p>
+ * A listener that cannot accept changes, such as a write-ahead log that failed, rejects them in
+ * {@link #beforeChange()}. Once that has returned for every listener the change goes ahead, and
+ * {@link #contactAdded} and {@link #contactsRemoved} must not throw: the listeners told before
+ * one that throws have already recorded the change, and nothing takes it back from them.
+ */
+public interface ContactChangeListener {
+
+    /**
+     * Called before {@code addContact}, {@code addContacts} or {@code removeContactByPhoneNumber}
+     * looks at the store. If this throws, the store rethrows without changing anything or telling
+     * any listener about the change.
+     */
+    default void beforeChange() {
+    }
+
+    /**
+     * Called before the contact is stored. Must not throw.
+     * @param version The store version the contact becomes visible at. It is committed only after
+     *                this call returns, and a batch may add several contacts at one version.
+     */
+    void contactAdded(long version, Contact contact);
+
+    /**
+     * Called before the contacts are removed. Must not throw.
+     * @param version The store version from which the contacts are gone, committed after this call.
+     */
+    void contactsRemoved(long version, String phoneNumber, List<Contact> contacts);
+
+    /**
+     * Called once the write has applied its changes and notified this listener of them, and also
+     * when it failed or was rejected by {@link #beforeChange()}, so that state kept for the change
+     * is always cleared.
+     */
+    default void afterChange() {
+    }
+}
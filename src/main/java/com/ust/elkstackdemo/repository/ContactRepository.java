@@ -1,21 +1,163 @@
 package com.ust.elkstackdemo.repository;
 
+import com.ust.elkstackdemo.metrics.ContactMetrics;
 import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactPage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Fully indexed on-heap contact store with multi-version reads.
+ * <p>
+ * Every change is stamped with a version from a {@link VersionClock}: a stored contact records the
+ * version that added it and, once removed, the version that removed it. Readers pin the latest
+ * committed version in a {@link ContactSnapshot} and walk the shared concurrent indexes, skipping
+ * entries not visible at that version. Reads therefore take no locks, copy nothing but their
+ * results and never see half of a concurrent write. Removed contacts stay in the indexes until no
+ * open snapshot can see them and are then unlinked by the next writer.
+ */
 @Repository
-public class ContactRepository {
+@ConditionalOnProperty(name = "contacts.store.backend", havingValue = "heap", matchIfMissing = true)
+public class ContactRepository implements ContactStore {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ContactRepository.class);
-    private final List<Contact> contacts;
+
+    /**
+     * Rough heap footprints per entry of the identity map (map node and key), the sequence skip
+     * list (node, boxed key and index levels) and the phone number map (map node and bucket list).
+     */
+    private static final long IDENTITY_ENTRY_BYTES = 56;
+    private static final long SEQUENCE_ENTRY_BYTES = 56;
+    private static final long PHONE_ENTRY_BYTES = 64;
+
+    /**
+     * Slot of a snapshot that leaves pinning its version to someone else.
+     */
+    private static final int UNPINNED = -1;
+
+    /**
+     * Low bits of a sequence number counting the contacts added at one version.
+     */
+    private static final int ORDINAL_BITS = 20;
+
+    /**
+     * Most contacts one version adds, all to one phone number.
+     */
+    static final int MAX_PER_VERSION = 1 << ORDINAL_BITS;
+
+    /**
+     * Live contacts keyed on the (name, email, phoneNumber) identity used for duplicate detection.
+     * Only writers use this map; readers go through the versioned indexes below.
+     */
+    private final ConcurrentMap<ContactKey, StoredContact> contacts;
+
+    /**
+     * Stored contacts, including removed ones not yet reclaimed, ordered by the sequence number
+     * assigned on insert. Gives listing, paging and streaming a stable order and a cursor that
+     * survives concurrent inserts and removes.
+     * <p>
+     * The sequence number is the version that added the contact followed by its place among the
+     * contacts added at that version, so contacts list in the order they became visible and a
+     * contact that becomes visible after a page was read always lists after that page.
+     */
+    private final ConcurrentNavigableMap<Long, StoredContact> contactsBySequence;
+
+    /**
+     * Secondary index from phone number to every stored contact sharing it. Buckets are immutable
+     * and replaced atomically; every mutation of a phone number runs inside
+     * {@link ConcurrentMap#compute} on this map, so adds and removes of the same number are
+     * serialized while different numbers proceed in parallel. A bucket is dropped once all its
+     * contacts are removed and reclaimed.
+     */
+    private final ConcurrentMap<String, List<StoredContact>> contactsByPhoneNumber;
+
+    /**
+     * Substring index over the distinct phone numbers in {@link #contactsByPhoneNumber}. Updated
+     * inside the same {@code compute} that creates or drops a phone number's bucket.
+     */
+    private final PhoneNumberIndex phoneNumberIndex;
+
+    /**
+     * Trie over normalized names for exact, prefix and fuzzy name lookups.
+     */
+    private final NameIndex<StoredContact> nameIndex;
+
+    private final VersionClock versions;
+
+    /**
+     * Removed contacts waiting for every snapshot that can see them to close.
+     */
+    private final Queue<StoredContact> retired;
+
+    private final AtomicBoolean reclaiming;
+
+    private final List<ContactChangeListener> listeners;
+
+    private final ContactMetrics metrics;
+
+    /**
+     * Whether this is a shard of a {@link ShardedContactStore}, which reports empty results itself.
+     */
+    private final boolean shard;
 
     public ContactRepository() {
-        contacts = new LinkedList<>();
+        this(new ContactMetrics());
+    }
+
+    @Autowired
+    public ContactRepository(ContactMetrics metrics) {
+        this(metrics, new VersionClock(), false);
+    }
+
+    /**
+     * A shard of a {@link ShardedContactStore}. Versions come from the store, so that all its
+     * shards become visible in one order and, as sequence numbers follow versions, list in one order.
+     */
+    ContactRepository(ContactMetrics metrics, VersionClock versions) {
+        this(metrics, versions, true);
+    }
+
+    private ContactRepository(ContactMetrics metrics, VersionClock versions, boolean shard) {
+        this.metrics = metrics;
+        this.shard = shard;
+        contacts = new ConcurrentHashMap<>();
+        contactsBySequence = new ConcurrentSkipListMap<>();
+        contactsByPhoneNumber = new ConcurrentHashMap<>();
+        phoneNumberIndex = new PhoneNumberIndex();
+        nameIndex = new NameIndex<>();
+        this.versions = versions;
+        retired = new ConcurrentLinkedQueue<>();
+        reclaiming = new AtomicBoolean();
+        listeners = new CopyOnWriteArrayList<>();
         LOGGER.debug("ContactRepository initialized");
     }
 
@@ -25,106 +167,697 @@ public class ContactRepository {
      * log a warning and throw an exception.
      * @param contact The contact to add.
      */
+    @Override
     public void addContact(Contact contact) {
-        if (contact.getName() == null || contact.getName().isEmpty()) {
-            LOGGER.warn("Contact name is empty");
-            throw new IllegalArgumentException("Contact name is empty");
-        }
-        if (contact.getPhoneNumber() == null || contact.getPhoneNumber().isEmpty()) {
-            LOGGER.warn("Contact phone number is empty");
-            throw new IllegalArgumentException("Contact phone number is empty");
-        }
-        contacts.stream()
-                .filter(c ->    c.getName().equals(contact.getName()) &&
-                                c.getEmail().equals(contact.getEmail())&&
-                                c.getPhoneNumber().equals(contact.getPhoneNumber())
-
-                )
-                .findAny()
-                .ifPresent(c -> {
-                    LOGGER.warn("Contact already exists: {}", contact);
-                    throw new IllegalArgumentException("Contact already exists");
+        long start = System.nanoTime();
+        try {
+            ContactValidation.requireValid(contact, LOGGER);
+            var key = ContactKey.of(contact);
+            long[] version = new long[1];
+            try {
+                beforeChange();
+                contactsByPhoneNumber.compute(key.phoneNumber(), (phoneNumber, bucket) -> {
+                    if (contacts.containsKey(key)) {
+                        LOGGER.warn("Contact already exists: {}", contact);
+                        throw new IllegalArgumentException("Contact already exists");
+                    }
+                    version[0] = versions.next();
+                    var stored = insert(key, contact, version[0], 0);
+                    if (bucket == null) {
+                        phoneNumberIndex.add(phoneNumber);
+                    }
+                    return append(bucket, stored);
                 });
-        contacts.add(contact);
-        LOGGER.debug("Contact added: {}", contact);
+            } finally {
+                commit(version[0]);
+                afterChange(version[0]);
+            }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Contact added: {}", contact);
+            }
+        } finally {
+            metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.ADD, start);
+        }
     }
 
     /**
-     * Get all contacts in the repository. The list is a copy of the internal list.
-     * If the repository is empty, an empty list is returned.
+     * Add a batch of contacts. Each contact is validated and checked for duplicates, against the
+     * store and against the rest of the batch, exactly as {@link #addContact(Contact)} would, but
+     * rejected contacts are reported instead of thrown and the batch is applied with one update,
+     * and one version, per distinct phone number.
+     * @param batch The contacts to add.
+     * @return For each contact in the batch, in order, null if it was added or the reason it was
+     * rejected.
      */
-    public List<Contact> getContacts() {
-        if (contacts.isEmpty()) {
-            LOGGER.warn("No contacts in repository");
+    @Override
+    public List<String> addContacts(List<Contact> batch) {
+        long start = System.nanoTime();
+        try {
+            String[] outcomes = new String[batch.size()];
+            Map<String, List<Integer>> byPhoneNumber = new LinkedHashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                outcomes[i] = ContactValidation.invalidReason(batch.get(i));
+                if (outcomes[i] == null) {
+                    byPhoneNumber.computeIfAbsent(batch.get(i).getPhoneNumber(), p -> new ArrayList<>(1)).add(i);
+                }
+            }
+            int[] added = new int[1];
+            long[] version = new long[1];
+            long latest = 0;
+            RuntimeException[] failure = new RuntimeException[1];
+            try {
+                beforeChange();
+                for (var entry : byPhoneNumber.entrySet()) {
+                    var indexes = entry.getValue();
+                    version[0] = 0;
+                    try {
+                        contactsByPhoneNumber.compute(entry.getKey(), (p, bucket) -> {
+                            List<StoredContact> stored = bucket == null ? new ArrayList<>(indexes.size()) : new ArrayList<>(bucket);
+                            int ordinal = 0;
+                            for (int i : indexes) {
+                                var key = ContactKey.of(batch.get(i));
+                                if (contacts.containsKey(key)) {
+                                    outcomes[i] = "Contact already exists";
+                                    continue;
+                                }
+                                if (ordinal == MAX_PER_VERSION) {
+                                    outcomes[i] = "Too many contacts with this phone number in one batch";
+                                    continue;
+                                }
+                                if (version[0] == 0) {
+                                    version[0] = versions.next();
+                                }
+                                try {
+                                    stored.add(insert(key, batch.get(i), version[0], ordinal++));
+                                } catch (RuntimeException e) {
+                                    // keep the contacts already stored and announced; the rest of the batch is not applied
+                                    failure[0] = e;
+                                    break;
+                                }
+                                added[0]++;
+                            }
+                            if (stored.isEmpty()) {
+                                return null;
+                            }
+                            if (bucket == null) {
+                                phoneNumberIndex.add(p);
+                            }
+                            return List.copyOf(stored);
+                        });
+                    } finally {
+                        commit(version[0]);
+                        latest = Math.max(latest, version[0]);
+                    }
+                    if (failure[0] != null) {
+                        throw failure[0];
+                    }
+                }
+            } finally {
+                afterChange(latest);
+            }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Added {} of {} contacts in batch", added[0], batch.size());
+            }
+            return Arrays.asList(outcomes);
+        } finally {
+            metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.ADD_BULK, start);
         }
-        return List.copyOf(contacts);
     }
 
     /**
-     * Get a copy of list of contacts by name. If the contact does not exist, return an empty list.
-     * @param name The name of the contact to get.
+     * Remove a contact based on the phone number. If the contact does not exist, log a warning.
+     * @param phoneNumber The phone number of the contact to remove.
      */
-    public List<Contact> getContactsByName(String name) {
-        if(name == null || name.isEmpty()) {
-            LOGGER.warn("Name is null or empty");
-            throw new IllegalArgumentException("Name is null or empty.");
+    @Override
+    public void removeContactByPhoneNumber(String phoneNumber) {
+        long start = System.nanoTime();
+        try {
+            ContactValidation.requirePhoneNumber(phoneNumber, LOGGER);
+            int removed;
+            long[] latest = new long[1];
+            try {
+                beforeChange();
+                removed = remove(phoneNumber, key -> true, latest);
+            } finally {
+                afterChange(latest[0]);
+            }
+            if (removed == 0) {
+                LOGGER.warn("No contact with phone number: {}", phoneNumber);
+                throw new IllegalArgumentException("No contact with phone number: " + phoneNumber);
+            }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Contact removed by phone number: {}", phoneNumber);
+            }
+        } finally {
+            metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.REMOVE, start);
         }
-        List<Contact> contactsByName = new LinkedList<>();
-        contacts.stream()
-                .filter(c -> c.getName().equals(name))
-                .forEach(contactsByName::add);
-        if (contactsByName.isEmpty()) {
-            LOGGER.warn("No contacts with name: {}", name);
+    }
+
+    /**
+     * Remove exactly these contacts, with one update, and one version, per distinct phone number.
+     */
+    @Override
+    public int removeContacts(List<Contact> contacts) {
+        long start = System.nanoTime();
+        try {
+            Map<String, Set<ContactKey>> byPhoneNumber = new LinkedHashMap<>();
+            for (Contact contact : contacts) {
+                if (contact.getPhoneNumber() != null) {
+                    byPhoneNumber.computeIfAbsent(contact.getPhoneNumber(), p -> new HashSet<>()).add(ContactKey.of(contact));
+                }
+            }
+            int removed = 0;
+            long[] latest = new long[1];
+            try {
+                beforeChange();
+                for (var entry : byPhoneNumber.entrySet()) {
+                    removed += remove(entry.getKey(), entry.getValue()::contains, latest);
+                }
+            } finally {
+                afterChange(latest[0]);
+            }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Removed {} of {} contacts", removed, contacts.size());
+            }
+            return removed;
+        } finally {
+            metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.REMOVE, start);
         }
-        return List.copyOf(contactsByName);
     }
 
     /**
-     * Get a copy of list of contacts by phone number. If the contact does not exist, return an empty list.
-     *
-     * @param phoneNumber The phone number of the contact to get.
-     *                    Cannot be more the 10 characters long.
-     *                    Must be a number.
-     *
+     * Remove the live contacts of {@code phoneNumber} that {@code which} accepts, at one new version.
+     * @param latest Raised to that version, for {@link #afterChange(long)} to wait for.
+     * @return How many were removed.
      */
-    public List<Contact> getContactsByPhoneNumber(String phoneNumber) {
-        if (phoneNumber == null || phoneNumber.length() > 10) {
-            LOGGER.warn("Invalid phone number: {}", phoneNumber);
-            throw new IllegalArgumentException("Invalid phone number");
+    private int remove(String phoneNumber, Predicate<ContactKey> which, long[] latest) {
+        long[] version = new long[1];
+        int[] removed = new int[1];
+        try {
+            contactsByPhoneNumber.computeIfPresent(phoneNumber, (p, bucket) -> {
+                List<Contact> removedContacts = new ArrayList<>(bucket.size());
+                for (StoredContact stored : bucket) {
+                    if (stored.removed == StoredContact.LIVE && which.test(stored.key)) {
+                        removedContacts.add(stored.contact);
+                    }
+                }
+                if (removedContacts.isEmpty()) {
+                    return bucket;
+                }
+                version[0] = versions.next();
+                // told before anything changes, so that a listener breaking its contract by throwing leaves the contacts in place
+                for (ContactChangeListener listener : listeners) {
+                    listener.contactsRemoved(version[0], p, removedContacts);
+                }
+                for (StoredContact stored : bucket) {
+                    if (stored.removed == StoredContact.LIVE && which.test(stored.key)) {
+                        stored.removed = version[0];
+                        contacts.remove(stored.key);
+                        retired.add(stored);
+                    }
+                }
+                removed[0] = removedContacts.size();
+                return bucket;
+            });
+        } finally {
+            commit(version[0]);
+            latest[0] = Math.max(latest[0], version[0]);
         }
-        if (!phoneNumber.matches("[0-9]+")) {
-            LOGGER.warn("Phone number is not a number: {}", phoneNumber);
-            throw new IllegalArgumentException("Phone number is not a number");
+        return removed[0];
+    }
+
+    /**
+     * Pin the latest committed version. Opening and reading a snapshot never blocks, whatever
+     * writers are doing.
+     */
+    @Override
+    public ContactSnapshot snapshot() {
+        int slot = versions.pin();
+        return new Snapshot(slot, versions.version(slot));
+    }
+
+    /**
+     * Read at {@code version} without pinning it, for a {@link ShardedContactStore} whose own
+     * snapshot holds the pin on the shared clock.
+     */
+    ContactSnapshot snapshot(long version) {
+        return new Snapshot(UNPINNED, version);
+    }
+
+    /**
+     * Stored contacts visible at {@code version} with a sequence number above {@code after}, in
+     * sequence order, so that a {@link ShardedContactStore} can merge the listings of its shards.
+     * Only valid while {@code version} is pinned.
+     */
+    Iterator<StoredContact> sequenced(long version, long after) {
+        return visible(contactsBySequence.tailMap(after, false).values().iterator(), version);
+    }
+
+    @Override
+    public long version() {
+        return versions.committed();
+    }
+
+    /**
+     * Register a listener to be told about every later change to the repository.
+     */
+    @Override
+    public void addChangeListener(ContactChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ContactChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Number of contacts currently in the repository.
+     */
+    @Override
+    public int size() {
+        return contacts.size();
+    }
+
+    /**
+     * Estimated heap bytes of each index, from entry counts and typical per-entry footprints.
+     */
+    @Override
+    public void indexMemory(ObjLongConsumer<String> sink) {
+        sink.accept("identity", (long) contacts.size() * IDENTITY_ENTRY_BYTES);
+        sink.accept("sequence", (long) contactsBySequence.size() * SEQUENCE_ENTRY_BYTES);
+        sink.accept("phone", (long) contactsByPhoneNumber.size() * PHONE_ENTRY_BYTES);
+        sink.accept("phone_ngram", phoneNumberIndex.memoryBytes());
+        sink.accept("name_trie", nameIndex.memoryBytes());
+    }
+
+    /**
+     * Store a contact known not to exist yet. Must run inside the {@code compute} of its phone number.
+     * Listeners are told first, so that if one breaks its contract and throws, the contact is in no
+     * index, rather than listed and found by name but missing from its phone number's bucket.
+     */
+    private StoredContact insert(ContactKey key, Contact contact, long version, int ordinal) {
+        // encoded once here rather than by every response that lists or finds it
+        contact.toJson();
+        for (ContactChangeListener listener : listeners) {
+            listener.contactAdded(version, contact);
+        }
+        var stored = new StoredContact(key, version << ORDINAL_BITS | ordinal, contact, version);
+        contacts.put(key, stored);
+        contactsBySequence.put(stored.sequence, stored);
+        nameIndex.add(key.name(), stored);
+        return stored;
+    }
+
+    private void commit(long version) {
+        if (version != 0) {
+            versions.commit(version);
         }
-        List<Contact> contactsByPhoneNumber = new LinkedList<>();
-        contacts.stream()
-                .filter(c -> c.getPhoneNumber().contains(phoneNumber))
-                .forEach(contactsByPhoneNumber::add);
-        if (contactsByPhoneNumber.isEmpty()) {
-            LOGGER.warn("No contacts with phone number: {}", phoneNumber);
+    }
+
+    private void beforeChange() {
+        for (ContactChangeListener listener : listeners) {
+            listener.beforeChange();
         }
-        return List.copyOf(contactsByPhoneNumber);
     }
 
     /**
-     * Remove a contact based on the phone number. If the contact does not exist, log a warning.
-     * @param phoneNumber The phone number of the contact to remove.
+     * Wait until the write is visible, so that whoever made it reads it from now on, then tell the
+     * listeners it is done.
+     * @param latest The last version the write committed, or 0 if it committed none.
      */
-    public void removeContactByPhoneNumber(String phoneNumber) {
-        if (phoneNumber == null || phoneNumber.length() > 10) {
-            LOGGER.warn("Invalid phone number: {}", phoneNumber);
-            throw new IllegalArgumentException("Invalid phone number");
+    private void afterChange(long latest) {
+        if (latest != 0) {
+            versions.await(latest);
+        }
+        for (ContactChangeListener listener : listeners) {
+            listener.afterChange();
+        }
+        reclaim();
+    }
+
+    /**
+     * Unlink removed contacts that no open snapshot can see any more. Runs on one writer at a time;
+     * the others skip it rather than wait.
+     */
+    private void reclaim() {
+        if (retired.isEmpty() || !reclaiming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long oldest = versions.oldestPinned();
+            StoredContact stored;
+            while ((stored = retired.peek()) != null && stored.removed <= oldest) {
+                retired.poll();
+                unlink(stored);
+            }
+        } finally {
+            reclaiming.set(false);
+        }
+    }
+
+    private void unlink(StoredContact stored) {
+        contactsBySequence.remove(stored.sequence);
+        nameIndex.remove(stored.key.name(), stored);
+        contactsByPhoneNumber.computeIfPresent(stored.key.phoneNumber(), (p, bucket) -> {
+            List<StoredContact> kept = new ArrayList<>(bucket);
+            kept.remove(stored);
+            if (kept.isEmpty()) {
+                phoneNumberIndex.remove(p);
+                return null;
+            }
+            return List.copyOf(kept);
+        });
+    }
+
+    private static long parseCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid cursor: {}", cursor);
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * The stored contacts of {@code all} that are visible at {@code version}.
+     */
+    private static Iterator<StoredContact> visible(Iterator<StoredContact> all, long version) {
+        return new Iterator<>() {
+
+            private StoredContact next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && all.hasNext()) {
+                    var stored = all.next();
+                    if (stored.visibleAt(version)) {
+                        next = stored;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public StoredContact next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var stored = next;
+                next = null;
+                return stored;
+            }
+        };
+    }
+
+    private static List<StoredContact> append(List<StoredContact> bucket, StoredContact stored) {
+        if (bucket == null) {
+            return List.of(stored);
+        }
+        var entries = new StoredContact[bucket.size() + 1];
+        bucket.toArray(entries);
+        entries[bucket.size()] = stored;
+        return List.of(entries);
+    }
+
+    /**
+     * Reads pinned at one version. Results are fresh lists handed over without a defensive copy.
+     */
+    private final class Snapshot implements ContactSnapshot {
+
+        private final int slot;
+        private final long version;
+        private boolean closed;
+
+        Snapshot(int slot, long version) {
+            this.slot = slot;
+            this.version = version;
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+
+        /**
+         * Get all contacts in the repository in insertion order. If the repository is empty, an
+         * empty list is returned.
+         */
+        @Override
+        public List<Contact> getContacts() {
+            long start = System.nanoTime();
+            try {
+                List<Contact> all = new ArrayList<>(contacts.size());
+                for (StoredContact stored : contactsBySequence.values()) {
+                    addIfVisible(all, stored);
+                }
+                if (all.isEmpty() && !shard) {
+                    LOGGER.warn("No contacts in repository");
+                }
+                return Collections.unmodifiableList(all);
+            } finally {
+                metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.LIST, start);
+            }
+        }
+
+        /**
+         * Get one page of contacts in insertion order, starting after the given cursor. Pages are
+         * read straight from the ordered store without copying the rest of it, and a cursor stays
+         * valid across concurrent inserts and removes.
+         * @param after The {@link ContactPage#next()} cursor of the previous page, or null for the first page.
+         * @param limit The maximum number of contacts to return, between 1 and {@link #MAX_PAGE_SIZE}.
+         */
+        @Override
+        public ContactPage getContacts(String after, int limit) {
+            long start = System.nanoTime();
+            try {
+                if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                    LOGGER.warn("Invalid page size: {}", limit);
+                    throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+                }
+                long from = parseCursor(after);
+                List<Contact> page = new ArrayList<>(Math.min(limit, contacts.size()));
+                long last = from;
+                for (StoredContact stored : contactsBySequence.tailMap(from, false).values()) {
+                    if (!stored.visibleAt(version)) {
+                        continue;
+                    }
+                    if (page.size() == limit) {
+                        return new ContactPage(Collections.unmodifiableList(page), Long.toString(last));
+                    }
+                    page.add(stored.contact);
+                    last = stored.sequence;
+                }
+                return new ContactPage(Collections.unmodifiableList(page), null);
+            } finally {
+                metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.LIST_PAGE, start);
+            }
+        }
+
+        /**
+         * Stream every contact in insertion order without copying the store. Removed contacts stay
+         * reachable while the snapshot is open, so the stream is exact even under concurrent writes.
+         */
+        @Override
+        public Stream<Contact> streamContacts() {
+            // a source without intermediate operations, which would add stages and a buffer per stream
+            var visible = visible(contactsBySequence.values().iterator(), version);
+            return StreamSupport.stream(new Spliterators.AbstractSpliterator<Contact>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Contact> action) {
+                    if (!visible.hasNext()) {
+                        return false;
+                    }
+                    action.accept(visible.next().contact);
+                    return true;
+                }
+            }, false);
+        }
+
+        /**
+         * Get the list of contacts by name. If the contact does not exist, return an empty list.
+         * @param name The name of the contact to get.
+         */
+        @Override
+        public List<Contact> getContactsByName(String name) {
+            long start = System.nanoTime();
+            try {
+                ContactValidation.requireName(name, LOGGER);
+                List<Contact> contactsByName = new ArrayList<>();
+                nameIndex.exact(name, stored -> {
+                    if (stored.key.name().equals(name)) {
+                        addIfVisible(contactsByName, stored);
+                    }
+                });
+                if (contactsByName.isEmpty() && !shard) {
+                    LOGGER.warn("No contacts with name: {}", name);
+                }
+                return Collections.unmodifiableList(contactsByName);
+            } finally {
+                metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.SEARCH_NAME, start);
+            }
+        }
+
+        /**
+         * Get the list of contacts whose name equals the given name ignoring case and accents.
+         * If no contact matches, return an empty list.
+         * @param name The name of the contacts to get.
+         */
+        @Override
+        public List<Contact> getContactsByNameIgnoreCase(String name) {
+            long start = System.nanoTime();
+            try {
+                ContactValidation.requireName(name, LOGGER);
+                List<Contact> contactsByName = new ArrayList<>();
+                nameIndex.exact(name, stored -> addIfVisible(contactsByName, stored));
+                if (contactsByName.isEmpty() && !shard) {
+                    LOGGER.warn("No contacts with name ignoring case: {}", name);
+                }
+                return Collections.unmodifiableList(contactsByName);
+            } finally {
+                metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.SEARCH_NAME_IGNORE_CASE, start);
+            }
+        }
+
+        /**
+         * Get the list of contacts whose name starts with the given prefix, ignoring case and
+         * accents. If no contact matches, return an empty list.
+         * @param prefix The start of the name of the contacts to get.
+         */
+        @Override
+        public List<Contact> getContactsByNamePrefix(String prefix) {
+            long start = System.nanoTime();
+            try {
+                ContactValidation.requireName(prefix, LOGGER);
+                List<Contact> contactsByName = new ArrayList<>();
+                nameIndex.prefix(prefix, stored -> addIfVisible(contactsByName, stored));
+                if (contactsByName.isEmpty() && !shard) {
+                    LOGGER.warn("No contacts with name prefix: {}", prefix);
+                }
+                return Collections.unmodifiableList(contactsByName);
+            } finally {
+                metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.SEARCH_NAME_PREFIX, start);
+            }
+        }
+
+        /**
+         * Get the list of contacts whose name is within a few edits of the given name, ignoring
+         * case and accents. The number of edits allowed grows with the length of the name, as with
+         * Elasticsearch's {@code AUTO} fuzziness. If no contact matches, return an empty list.
+         * @param name The approximate name of the contacts to get.
+         */
+        @Override
+        public List<Contact> getContactsByNameFuzzy(String name) {
+            long start = System.nanoTime();
+            try {
+                ContactValidation.requireName(name, LOGGER);
+                List<Contact> contactsByName = new ArrayList<>();
+                nameIndex.fuzzy(name, NameIndex.autoFuzziness(name), stored -> addIfVisible(contactsByName, stored));
+                if (contactsByName.isEmpty() && !shard) {
+                    LOGGER.warn("No contacts with name like: {}", name);
+                }
+                return Collections.unmodifiableList(contactsByName);
+            } finally {
+                metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.SEARCH_NAME_FUZZY, start);
+            }
+        }
+
+        /**
+         * Get the list of contacts by phone number. If the contact does not exist, return an empty list.
+         *
+         * @param phoneNumber The phone number of the contact to get.
+         *                    Cannot be more the 10 characters long.
+         *                    Must be a number.
+         *
+         */
+        @Override
+        public List<Contact> getContactsByPhoneNumber(String phoneNumber) {
+            long start = System.nanoTime();
+            try {
+                ContactValidation.requirePhoneNumber(phoneNumber, LOGGER);
+                Set<String> candidates = phoneNumberIndex.candidates(phoneNumber);
+                if (candidates == null) {
+                    candidates = contactsByPhoneNumber.keySet();
+                }
+                List<Contact> matches = new ArrayList<>();
+                for (String candidate : candidates) {
+                    if (!candidate.contains(phoneNumber)) {
+                        continue;
+                    }
+                    for (StoredContact stored : contactsByPhoneNumber.getOrDefault(candidate, List.of())) {
+                        addIfVisible(matches, stored);
+                    }
+                }
+                if (matches.isEmpty() && !shard) {
+                    LOGGER.warn("No contacts with phone number: {}", phoneNumber);
+                }
+                return Collections.unmodifiableList(matches);
+            } finally {
+                metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.SEARCH_PHONE, start);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                if (slot != UNPINNED) {
+                    versions.unpin(slot);
+                }
+            }
+        }
+
+        private void addIfVisible(List<Contact> list, StoredContact stored) {
+            if (stored.visibleAt(version)) {
+                list.add(stored.contact);
+            }
+        }
+    }
+
+    /**
+     * The identity of a contact as checked by {@link #addContact(Contact)}. Captured once on insert so
+     * later mutation of the {@link Contact} bean cannot strand its index entries.
+     */
+    private record ContactKey(String name, String email, String phoneNumber) {
+
+        static ContactKey of(Contact contact) {
+            return new ContactKey(contact.getName(), contact.getEmail(), contact.getPhoneNumber());
         }
-        if (!phoneNumber.matches("[0-9]+")) {
-            LOGGER.warn("Phone number is not a number: {}", phoneNumber);
-            throw new IllegalArgumentException("Phone number is not a number");
+    }
+
+    /**
+     * A contact with its insertion sequence number and the versions that added and removed it.
+     * Compared by identity, so a contact removed and added again is a separate entry.
+     */
+    static final class StoredContact {
+
+        static final long LIVE = Long.MAX_VALUE;
+
+        final ContactKey key;
+        final long sequence;
+        final Contact contact;
+        final long added;
+
+        /**
+         * Version that removed the contact, or {@link #LIVE}. Written inside the {@code compute}
+         * of its phone number before that version is committed.
+         */
+        volatile long removed = LIVE;
+
+        StoredContact(ContactKey key, long sequence, Contact contact, long added) {
+            this.key = key;
+            this.sequence = sequence;
+            this.contact = contact;
+            this.added = added;
         }
-        var removed = contacts.removeIf(c -> c.getPhoneNumber().equals(phoneNumber));
-        if (!removed) {
-            LOGGER.warn("No contact with phone number: {}", phoneNumber);
-            throw new IllegalArgumentException("No contact with phone number: " + phoneNumber);
+
+        boolean visibleAt(long version) {
+            return added <= version && version < removed;
         }
-        LOGGER.debug("Contact removed by phone number: {}", phoneNumber);
     }
 
 }
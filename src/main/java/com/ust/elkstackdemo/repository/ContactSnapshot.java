@@ -0,0 +1,46 @@
+package com.ust.elkstackdemo.repository;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactPage;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A read-only, point-in-time view of a {@link ContactStore}. Every read through the same snapshot
+ * sees exactly the changes committed up to {@link #version()}, however many writes happen while it
+ * is open, so a listing and a search made through one snapshot always agree.
+ * <p>
+ * Snapshots must be closed, after any stream obtained from them has been consumed, so that the
+ * store can reclaim the contacts removed since.
+ */
+public interface ContactSnapshot extends AutoCloseable {
+
+    /**
+     * The store version this snapshot reads at. Versions only grow; every committed add, batch or
+     * remove advances it.
+     */
+    long version();
+
+    List<Contact> getContacts();
+
+    ContactPage getContacts(String after, int limit);
+
+    /**
+     * Stream every contact in insertion order. Only valid until the snapshot is closed.
+     */
+    Stream<Contact> streamContacts();
+
+    List<Contact> getContactsByName(String name);
+
+    List<Contact> getContactsByNameIgnoreCase(String name);
+
+    List<Contact> getContactsByNamePrefix(String prefix);
+
+    List<Contact> getContactsByNameFuzzy(String name);
+
+    List<Contact> getContactsByPhoneNumber(String phoneNumber);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,143 @@
+package com.ust.elkstackdemo.repository;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactPage;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The contact storage operations used by the service layer. {@link ContactRepository} is the
+ * default, fully indexed on-heap implementation; {@link OffHeapContactStore} trades search speed
+ * for a much smaller heap, and {@link ShardedContactStore} partitions contacts across several
+ * repositories so that writers on many cores do not contend. The backend is chosen with
+ * {@code contacts.store.backend}.
+ * <p>
+ * All reads go through a {@link ContactSnapshot}; the single-read methods here open one, read and
+ * close it. All implementations validate their arguments and report problems the same way, with
+ * {@link IllegalArgumentException}s carrying identical messages.
+ */
+public interface ContactStore {
+
+    /**
+     * Largest page that {@link #getContacts(String, int)} will return.
+     */
+    int MAX_PAGE_SIZE = 1000;
+
+    void addContact(Contact contact);
+
+    /**
+     * @return For each contact in the batch, in order, null if it was added or the reason it was
+     * rejected.
+     */
+    List<String> addContacts(List<Contact> batch);
+
+    void removeContactByPhoneNumber(String phoneNumber);
+
+    /**
+     * Remove exactly these contacts, matched by name, email and phone number, leaving any other
+     * contact with the same phone number in place. Contacts no longer stored are skipped.
+     * @return How many were removed.
+     */
+    int removeContacts(List<Contact> contacts);
+
+    /**
+     * Open a consistent view of the store as of the latest committed version.
+     */
+    ContactSnapshot snapshot();
+
+    /**
+     * The latest committed version, the one a snapshot opened now would read.
+     */
+    default long version() {
+        try (var snapshot = snapshot()) {
+            return snapshot.version();
+        }
+    }
+
+    default List<Contact> getContacts() {
+        try (var snapshot = snapshot()) {
+            return snapshot.getContacts();
+        }
+    }
+
+    default ContactPage getContacts(String after, int limit) {
+        try (var snapshot = snapshot()) {
+            return snapshot.getContacts(after, limit);
+        }
+    }
+
+    /**
+     * Stream every contact in insertion order as of now. The snapshot behind the stream is closed
+     * when the stream is exhausted or closed, whichever comes first.
+     */
+    default Stream<Contact> streamContacts() {
+        var snapshot = snapshot();
+        var contacts = snapshot.streamContacts().iterator();
+        var closing = new Iterator<Contact>() {
+            @Override
+            public boolean hasNext() {
+                if (contacts.hasNext()) {
+                    return true;
+                }
+                snapshot.close();
+                return false;
+            }
+
+            @Override
+            public Contact next() {
+                return contacts.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(closing, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(snapshot::close);
+    }
+
+    default List<Contact> getContactsByName(String name) {
+        try (var snapshot = snapshot()) {
+            return snapshot.getContactsByName(name);
+        }
+    }
+
+    default List<Contact> getContactsByNameIgnoreCase(String name) {
+        try (var snapshot = snapshot()) {
+            return snapshot.getContactsByNameIgnoreCase(name);
+        }
+    }
+
+    default List<Contact> getContactsByNamePrefix(String prefix) {
+        try (var snapshot = snapshot()) {
+            return snapshot.getContactsByNamePrefix(prefix);
+        }
+    }
+
+    default List<Contact> getContactsByNameFuzzy(String name) {
+        try (var snapshot = snapshot()) {
+            return snapshot.getContactsByNameFuzzy(name);
+        }
+    }
+
+    default List<Contact> getContactsByPhoneNumber(String phoneNumber) {
+        try (var snapshot = snapshot()) {
+            return snapshot.getContactsByPhoneNumber(phoneNumber);
+        }
+    }
+
+    void addChangeListener(ContactChangeListener listener);
+
+    void removeChangeListener(ContactChangeListener listener);
+
+    int size();
+
+    /**
+     * Report the estimated heap bytes held by each index, keyed by index name. Stores without
+     * secondary indexes report nothing.
+     */
+    default void indexMemory(ObjLongConsumer<String> sink) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.ust.elkstackdemo.repository;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the contact store, under {@code contacts.store}. The backend itself is chosen with
+ * {@code contacts.store.backend}.
+ *
+ * @param shards Shards of the {@code sharded} backend, or 0 for one per available processor.
+ */
+@ConfigurationProperties("contacts.store")
+public record ContactStoreProperties(
+        @DefaultValue("0") int shards) {
+}
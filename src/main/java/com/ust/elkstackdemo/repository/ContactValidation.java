@@ -0,0 +1,74 @@
+package com.ust.elkstackdemo.repository;
+
+import com.ust.elkstackdemo.model.Contact;
+import org.slf4j.Logger;
+
+/**
+ * Argument checks shared by the {@link ContactStore} implementations, so that every backend
+ * rejects the same input with the same message. Each check logs a warning to the calling store's
+ * logger before throwing.
+ */
+final class ContactValidation {
+
+    private ContactValidation() {
+    }
+
+    /**
+     * The reason {@code contact} cannot be added, or null if it is valid.
+     */
+    static String invalidReason(Contact contact) {
+        if (contact.getName() == null || contact.getName().isEmpty()) {
+            return "Contact name is empty";
+        }
+        if (contact.getPhoneNumber() == null || contact.getPhoneNumber().isEmpty()) {
+            return "Contact phone number is empty";
+        }
+        return null;
+    }
+
+    static void requireValid(Contact contact, Logger logger) {
+        String invalid = invalidReason(contact);
+        if (invalid != null) {
+            logger.warn(invalid);
+            throw new IllegalArgumentException(invalid);
+        }
+    }
+
+    static void requireName(String name, Logger logger) {
+        if(name == null || name.isEmpty()) {
+            logger.warn("Name is null or empty");
+            throw new IllegalArgumentException("Name is null or empty.");
+        }
+    }
+
+    /**
+     * A searchable phone number is at most 10 characters long and made of digits only.
+     */
+    static void requirePhoneNumber(String phoneNumber, Logger logger) {
+        if (phoneNumber == null || phoneNumber.length() > 10) {
+            logger.warn("Invalid phone number: {}", phoneNumber);
+            throw new IllegalArgumentException("Invalid phone number");
+        }
+        if (!isDigits(phoneNumber)) {
+            logger.warn("Phone number is not a number: {}", phoneNumber);
+            throw new IllegalArgumentException("Phone number is not a number");
+        }
+    }
+
+    /**
+     * Whether {@code value} is one or more ASCII digits; a loop rather than a regular expression,
+     * which would be compiled again on every search.
+     */
+    private static boolean isDigits(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,111 @@
+package com.ust.elkstackdemo.repository;
+
+/**
+ * Open-addressing hash map from non-zero {@code long} keys to {@code int} values, backed by two
+ * primitive arrays so that millions of entries cost two objects rather than millions. Uses linear
+ * probing with backward-shift deletion, so there are no tombstones to clean up. Not thread-safe.
+ */
+final class LongIntHashMap {
+
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    LongIntHashMap() {
+        this(16);
+    }
+
+    LongIntHashMap(int capacity) {
+        int tableSize = Integer.highestOneBit(Math.max(16, (int) (capacity / MAX_LOAD)) - 1) << 1;
+        keys = new long[tableSize];
+        values = new int[tableSize];
+        mask = tableSize - 1;
+    }
+
+    int get(long key, int missing) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            if (keys[i] == 0) {
+                return missing;
+            }
+        }
+    }
+
+    void put(long key, int value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key must not be zero");
+        }
+        int i = slot(key);
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == 0) {
+            keys[i] = key;
+            if (++size > mask * MAX_LOAD) {
+                values[i] = value;
+                resize();
+                return;
+            }
+        }
+        values[i] = value;
+    }
+
+    void remove(long key) {
+        int i = slot(key);
+        while (keys[i] != key) {
+            if (keys[i] == 0) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        size--;
+        // shift later entries of the same probe run back into the hole
+        for (int next = (i + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - i) & mask)) {
+                keys[i] = keys[next];
+                values[i] = values[next];
+                i = next;
+            }
+        }
+        keys[i] = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long memoryBytes() {
+        return (long) keys.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = slot(oldKeys[i]);
+                while (keys[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private int slot(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
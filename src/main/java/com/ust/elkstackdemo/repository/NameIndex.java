@@ -0,0 +1,285 @@
+package com.ust.elkstackdemo.repository;
+
+import java.text.Normalizer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent trie over normalized contact names, used by {@link ContactRepository} for exact,
+ * prefix and bounded edit-distance lookups. Every node tracks how many keys live in its subtree,
+ * and a remove that empties a branch unlinks it, so the trie only ever holds the names in use and
+ * lookups stay proportional to the query length and the number of results.
+ * <p>
+ * A branch is unlinked by marking its emptied top node as pruned before removing it from its
+ * parent. An add counts itself into each node on its path, and one that meets a pruned node
+ * replaces it with a fresh one instead, so no key is ever stored below an unlinked node.
+ * <p>
+ * Callers must serialize {@code add} and {@code remove} of the same key; different keys may be
+ * added and removed concurrently.
+ *
+ * @param <K> The key stored against each name.
+ */
+final class NameIndex<K> {
+
+    /**
+     * Rough heap footprint of a node with a small children map and its key set allocated.
+     */
+    private static final long NODE_BYTES = 200;
+
+    /**
+     * Rough heap footprint of one entry in a node's key set.
+     */
+    private static final long KEY_BYTES = 32;
+
+    private final Node<K> root = new Node<>();
+
+    /**
+     * Size of a node whose branch has been unlinked; it never takes a key again.
+     */
+    private static final int PRUNED = -1;
+
+    /**
+     * Nodes in the trie, besides the root.
+     */
+    private final LongAdder nodes = new LongAdder();
+
+    private final LongAdder keys = new LongAdder();
+
+    /**
+     * Lower-case {@code name} and strip combining marks, so that "José" and "jose" index alike.
+     */
+    static String normalize(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Fuzziness used for a query of the given length, following Elasticsearch's {@code AUTO}
+     * setting: exact for up to two characters, one edit up to five, two edits beyond.
+     */
+    static int autoFuzziness(String query) {
+        if (query.length() <= 2) {
+            return 0;
+        }
+        return query.length() <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Whether normalized strings {@code a} and {@code b} are within {@code maxEdits} Levenshtein
+     * edits of each other. For stores that scan rather than walk the trie.
+     */
+    static boolean withinEditDistance(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits) {
+            return false;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] row = new int[b.length() + 1];
+        for (int j = 0; j < previous.length; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            row[0] = i;
+            int min = row[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                row[j] = Math.min(Math.min(row[j - 1] + 1, previous[j] + 1), substitution);
+                min = Math.min(min, row[j]);
+            }
+            if (min > maxEdits) {
+                return false;
+            }
+            int[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+        return previous[b.length()] <= maxEdits;
+    }
+
+    void add(String name, K key) {
+        Node<K> node = root;
+        node.size.incrementAndGet();
+        String normalized = normalize(name);
+        for (int i = 0; i < normalized.length(); i++) {
+            node = enter(node, normalized.charAt(i));
+        }
+        node.keys().add(key);
+        keys.increment();
+    }
+
+    /**
+     * Count one more key into the child of {@code parent} for {@code c}, creating it, or replacing
+     * it if a remove has just pruned it.
+     */
+    private Node<K> enter(Node<K> parent, char c) {
+        while (true) {
+            Node<K> child = parent.children.computeIfAbsent(c, k -> {
+                nodes.increment();
+                return new Node<>();
+            });
+            for (int size = child.size.get(); size != PRUNED; size = child.size.get()) {
+                if (child.size.compareAndSet(size, size + 1)) {
+                    return child;
+                }
+            }
+            parent.children.remove(c, child);
+        }
+    }
+
+    void remove(String name, K key) {
+        String normalized = normalize(name);
+        Node<K> node = find(normalized);
+        if (node == null || node.keys == null || !node.keys.remove(key)) {
+            return;
+        }
+        keys.decrement();
+        Node<K> parent = root;
+        parent.size.decrementAndGet();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            // still counts this key, so no other remove can have pruned it
+            Node<K> child = parent.children.get(c);
+            if (child.size.decrementAndGet() == 0 && child.size.compareAndSet(0, PRUNED)) {
+                parent.children.remove(c, child);
+                nodes.add(-count(child));
+                return;
+            }
+            parent = child;
+        }
+    }
+
+    private static int count(Node<?> node) {
+        int count = 1;
+        for (Node<?> child : node.children.values()) {
+            count += count(child);
+        }
+        return count;
+    }
+
+    /**
+     * Emit every key whose normalized name equals the normalized {@code name}.
+     */
+    void exact(String name, Consumer<K> sink) {
+        Node<K> node = find(normalize(name));
+        if (node != null && node.keys != null) {
+            node.keys.forEach(sink);
+        }
+    }
+
+    /**
+     * Emit every key whose normalized name starts with the normalized {@code prefix}.
+     */
+    void prefix(String prefix, Consumer<K> sink) {
+        Node<K> node = find(normalize(prefix));
+        if (node != null) {
+            collect(node, sink);
+        }
+    }
+
+    /**
+     * Emit every key whose normalized name is within {@code maxEdits} Levenshtein edits of the
+     * normalized {@code name}. Walks the trie with one dynamic-programming row per node and prunes
+     * branches whose row minimum already exceeds {@code maxEdits}.
+     */
+    void fuzzy(String name, int maxEdits, Consumer<K> sink) {
+        String query = normalize(name);
+        int[] row = new int[query.length() + 1];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i;
+        }
+        if (row[query.length()] <= maxEdits && root.keys != null) {
+            root.keys.forEach(sink);
+        }
+        for (Map.Entry<Character, Node<K>> child : root.children.entrySet()) {
+            fuzzy(child.getValue(), child.getKey(), query, row, maxEdits, sink);
+        }
+    }
+
+    private void fuzzy(Node<K> node, char c, String query, int[] previous, int maxEdits, Consumer<K> sink) {
+        if (node.size.get() <= 0) {
+            return;
+        }
+        int[] row = new int[previous.length];
+        row[0] = previous[0] + 1;
+        int min = row[0];
+        for (int i = 1; i < row.length; i++) {
+            int substitution = previous[i - 1] + (query.charAt(i - 1) == c ? 0 : 1);
+            row[i] = Math.min(Math.min(row[i - 1] + 1, previous[i] + 1), substitution);
+            min = Math.min(min, row[i]);
+        }
+        if (row[row.length - 1] <= maxEdits && node.keys != null) {
+            node.keys.forEach(sink);
+        }
+        if (min <= maxEdits) {
+            for (Map.Entry<Character, Node<K>> child : node.children.entrySet()) {
+                fuzzy(child.getValue(), child.getKey(), query, row, maxEdits, sink);
+            }
+        }
+    }
+
+    /**
+     * Estimated heap bytes held by the trie, from its node and key counts.
+     */
+    long memoryBytes() {
+        return (nodes.sum() + 1) * NODE_BYTES + keys.sum() * KEY_BYTES;
+    }
+
+    private Node<K> find(String normalized) {
+        Node<K> node = root;
+        for (int i = 0; i < normalized.length() && node != null; i++) {
+            node = node.children.get(normalized.charAt(i));
+        }
+        return node;
+    }
+
+    private void collect(Node<K> node, Consumer<K> sink) {
+        if (node.size.get() <= 0) {
+            return;
+        }
+        if (node.keys != null) {
+            node.keys.forEach(sink);
+        }
+        for (Node<K> child : node.children.values()) {
+            collect(child, sink);
+        }
+    }
+
+    private static final class Node<K> {
+
+        final ConcurrentHashMap<Character, Node<K>> children = new ConcurrentHashMap<>(4);
+
+        /**
+         * Number of keys stored in this node and its descendants.
+         */
+        final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * Keys whose normalized name ends at this node, created on first use.
+         */
+        volatile Set<K> keys;
+
+        Set<K> keys() {
+            Set<K> k = keys;
+            if (k == null) {
+                synchronized (this) {
+                    k = keys;
+                    if (k == null) {
+                        k = ConcurrentHashMap.newKeySet(2);
+                        keys = k;
+                    }
+                }
+            }
+            return k;
+        }
+    }
+}
@@ -0,0 +1,780 @@
+package com.ust.elkstackdemo.repository;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Contact store for very large directories that keeps contacts out of the Java heap.
+ * <p>
+ * Every contact is a fixed 48-byte row in off-heap row chunks: the phone number packed into a
+ * {@code long}, references to the name and email in a length-prefixed {@link ByteArena}, the
+ * links of two intrusive hash chains, the version that removed it, if any, and its insertion
+ * sequence number. Phone numbers of up to 17 digits are packed as their value
+ * plus their digit count, which keeps leading zeros; anything else is kept in the arena. The only
+ * on-heap structures are two {@link LongIntHashMap}s from phone number and normalized-name hash
+ * to the first row of each chain, so the heap footprint and GC work do not grow with the number of
+ * contacts. {@link Contact} objects are only created for results.
+ * <p>
+ * Duplicate checks, removes and exact name lookups follow a hash chain. Substring phone searches
+ * scan the packed phone column without decoding rows, and prefix and fuzzy name searches scan the
+ * name column: there is no n-gram index or trie here, trading search latency for memory.
+ * <p>
+ * Rows are append-only and cursors are sequence numbers. A removed row is stamped with its removal
+ * version and left in place, so snapshots taken before the remove still see it. Once removed rows
+ * outnumber the live ones, the next remove compacts: it copies the live rows, in order, into a new
+ * table of rows, arena and hash chains and writes to that from then on. Snapshots keep reading the
+ * table they were opened on, which is freed with the last of them, so removed rows, their arena
+ * bytes and their places in the name chains are reclaimed without tracking which snapshots are
+ * open. A single read-write lock guards the store; readers hold it only while they scan.
+ */
+@Repository
+@ConditionalOnProperty(name = "contacts.store.backend", havingValue = "offheap")
+public class OffHeapContactStore implements ContactStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapContactStore.class);
+
+    private static final int ROW_SIZE = 48;
+    private static final int PHONE = 0;
+    private static final int NAME = 8;
+    private static final int EMAIL = 16;
+    private static final int NEXT_BY_PHONE = 24;
+    private static final int NEXT_BY_NAME = 28;
+    private static final int REMOVED = 32;
+    private static final int SEQUENCE = 40;
+    private static final int ROWS_PER_CHUNK = 1 << 16;
+
+    private static final int NO_ROW = -1;
+    private static final long NULL_REF = -1;
+
+    /**
+     * Removal version of a row that has not been removed.
+     */
+    private static final long LIVE = 0;
+
+    private static final int MAX_PACKED_DIGITS = 17;
+    private static final int DIGITS_SHIFT = 58;
+    private static final long VALUE_MASK = (1L << DIGITS_SHIFT) - 1;
+
+    /**
+     * Set in the phone column when the number is kept in the arena instead of being packed.
+     */
+    private static final long ARENA_PHONE = Long.MIN_VALUE;
+
+    private static final int STREAM_BATCH_SIZE = 1024;
+
+    /**
+     * Removed rows below which the store does not compact, however few rows are live.
+     */
+    private static final int MIN_COMPACTION_ROWS = ROWS_PER_CHUNK;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<ContactChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final int minCompactionRows;
+    private Table table = new Table();
+    private int size;
+    private long sequence;
+
+    /**
+     * Bumped once per committed write. Rows of a snapshot's table below its row limit with no removal
+     * version at or below its version are exactly the contacts that snapshot sees.
+     */
+    private long version;
+
+    public OffHeapContactStore() {
+        this(MIN_COMPACTION_ROWS);
+    }
+
+    OffHeapContactStore(int minCompactionRows) {
+        this.minCompactionRows = minCompactionRows;
+        LOGGER.debug("OffHeapContactStore initialized");
+    }
+
+    @Override
+    public void addContact(Contact contact) {
+        ContactValidation.requireValid(contact, LOGGER);
+        lock.writeLock().lock();
+        try {
+            beforeChange();
+            if (exists(contact)) {
+                LOGGER.warn("Contact already exists: {}", contact);
+                throw new IllegalArgumentException("Contact already exists");
+            }
+            insert(contact);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+            afterChange();
+        }
+        LOGGER.debug("Contact added: {}", contact);
+    }
+
+    @Override
+    public List<String> addContacts(List<Contact> batch) {
+        String[] outcomes = new String[batch.size()];
+        int added = 0;
+        lock.writeLock().lock();
+        try {
+            beforeChange();
+            for (int i = 0; i < batch.size(); i++) {
+                Contact contact = batch.get(i);
+                outcomes[i] = ContactValidation.invalidReason(contact);
+                if (outcomes[i] == null && exists(contact)) {
+                    outcomes[i] = "Contact already exists";
+                }
+                if (outcomes[i] == null) {
+                    insert(contact);
+                    added++;
+                }
+            }
+        } finally {
+            // commit what was stored and announced, even when a listener broke its contract and threw part way
+            if (added > 0) {
+                version++;
+            }
+            lock.writeLock().unlock();
+            afterChange();
+        }
+        LOGGER.debug("Added {} of {} contacts in batch", added, batch.size());
+        return Arrays.asList(outcomes);
+    }
+
+    @Override
+    public void removeContactByPhoneNumber(String phoneNumber) {
+        ContactValidation.requirePhoneNumber(phoneNumber, LOGGER);
+        lock.writeLock().lock();
+        try {
+            beforeChange();
+            if (removeRows(phoneNumber, row -> true) == 0) {
+                LOGGER.warn("No contact with phone number: {}", phoneNumber);
+                throw new IllegalArgumentException("No contact with phone number: " + phoneNumber);
+            }
+            version++;
+            compactIfMostlyRemoved();
+        } finally {
+            lock.writeLock().unlock();
+            afterChange();
+        }
+        LOGGER.debug("Contact removed by phone number: {}", phoneNumber);
+    }
+
+    @Override
+    public int removeContacts(List<Contact> contacts) {
+        Map<String, List<byte[][]>> byPhoneNumber = new LinkedHashMap<>();
+        for (Contact contact : contacts) {
+            if (contact.getPhoneNumber() != null && contact.getName() != null) {
+                byPhoneNumber.computeIfAbsent(contact.getPhoneNumber(), p -> new ArrayList<>(1)).add(new byte[][]{
+                        contact.getName().getBytes(StandardCharsets.UTF_8),
+                        contact.getEmail() == null ? null : contact.getEmail().getBytes(StandardCharsets.UTF_8)});
+            }
+        }
+        int removed = 0;
+        lock.writeLock().lock();
+        try {
+            beforeChange();
+            for (var entry : byPhoneNumber.entrySet()) {
+                removed += removeRows(entry.getKey(), row -> entry.getValue().stream()
+                        .anyMatch(identity -> table.matches(row, identity[0], identity[1])));
+            }
+        } finally {
+            if (removed > 0) {
+                version++;
+                compactIfMostlyRemoved();
+            }
+            lock.writeLock().unlock();
+            afterChange();
+        }
+        LOGGER.debug("Removed {} of {} contacts", removed, contacts.size());
+        return removed;
+    }
+
+    /**
+     * Capture the current version and row count. Reads through the snapshot take the read lock
+     * briefly for each call, or each batch of a stream, rather than for the snapshot's lifetime;
+     * rows are append-only and removals are versioned, so they still see one consistent state.
+     */
+    @Override
+    public ContactSnapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            return new Snapshot(version, table, table.rowCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addChangeListener(ContactChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ContactChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes held outside the heap by the rows and arena written to, not counting the tables that
+     * snapshots opened before a compaction still read.
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) table.rowChunks.size() * ROWS_PER_CHUNK * ROW_SIZE + table.arena.allocatedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void indexMemory(ObjLongConsumer<String> sink) {
+        long phone;
+        long name;
+        lock.readLock().lock();
+        try {
+            phone = table.firstRowByPhone.memoryBytes();
+            name = table.firstRowByName.memoryBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+        sink.accept("phone", phone);
+        sink.accept("name", name);
+    }
+
+    /**
+     * Bytes held on the heap by the two hash indexes.
+     */
+    public long heapIndexBytes() {
+        lock.readLock().lock();
+        try {
+            return table.firstRowByPhone.memoryBytes() + table.firstRowByName.memoryBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- rows ---
+
+    private boolean exists(Contact contact) {
+        byte[] name = contact.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] email = contact.getEmail() == null ? null : contact.getEmail().getBytes(StandardCharsets.UTF_8);
+        for (int row = table.firstRowByPhone.get(phoneKey(contact.getPhoneNumber()), NO_ROW); row != NO_ROW;
+             row = table.rowInt(row, NEXT_BY_PHONE)) {
+            if (table.rowLong(row, REMOVED) == LIVE
+                    && table.phoneEquals(row, contact.getPhoneNumber())
+                    && table.matches(row, name, email)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stamp the rows of {@code phoneNumber} that {@code which} accepts as removed at the next version
+     * and unlink them from the phone chain, telling the listeners first. The caller holds the write
+     * lock and bumps the version if anything was removed.
+     * @return How many rows were removed.
+     */
+    private int removeRows(String phoneNumber, IntPredicate which) {
+        long key = phoneKey(phoneNumber);
+        List<Contact> removed = new ArrayList<>(1);
+        for (int row = table.firstRowByPhone.get(key, NO_ROW); row != NO_ROW; row = table.rowInt(row, NEXT_BY_PHONE)) {
+            if (table.phoneEquals(row, phoneNumber) && which.test(row)) {
+                removed.add(table.contactAt(row));
+            }
+        }
+        if (removed.isEmpty()) {
+            return 0;
+        }
+        // told before anything changes, so that a listener breaking its contract by throwing leaves the contacts in place
+        for (ContactChangeListener listener : listeners) {
+            listener.contactsRemoved(version + 1, phoneNumber, removed);
+        }
+        int kept = NO_ROW;
+        for (int row = table.firstRowByPhone.get(key, NO_ROW); row != NO_ROW; ) {
+            int next = table.rowInt(row, NEXT_BY_PHONE);
+            if (table.phoneEquals(row, phoneNumber) && which.test(row)) {
+                table.putRow(row, REMOVED, version + 1);
+                size--;
+            } else {
+                // kept: another contact with this number, or another long number with the same hash
+                table.putRowInt(row, NEXT_BY_PHONE, kept);
+                kept = row;
+            }
+            row = next;
+        }
+        if (kept == NO_ROW) {
+            table.firstRowByPhone.remove(key);
+        } else {
+            table.firstRowByPhone.put(key, kept);
+        }
+        return removed.size();
+    }
+
+    /**
+     * Store a contact, telling the listeners first so that one breaking its contract by throwing leaves
+     * no row behind.
+     */
+    private void insert(Contact contact) {
+        // visible from the version this write commits
+        for (ContactChangeListener listener : listeners) {
+            listener.contactAdded(version + 1, contact);
+        }
+        table.append(contact, ++sequence);
+        size++;
+    }
+
+    /**
+     * Move the live rows to a new table once the removed ones outnumber them. The caller holds the
+     * write lock; the old table stays as it is for the snapshots reading it.
+     */
+    private void compactIfMostlyRemoved() {
+        int removed = table.rowCount - size;
+        if (removed < minCompactionRows || removed < size) {
+            return;
+        }
+        long started = System.nanoTime();
+        var compacted = new Table();
+        for (int row = 0; row < table.rowCount; row++) {
+            if (table.rowLong(row, REMOVED) == LIVE) {
+                compacted.copy(table, row);
+            }
+        }
+        table = compacted;
+        LOGGER.info("Compacted away {} removed contacts, keeping {}, in {} ms", removed, size,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private void beforeChange() {
+        for (ContactChangeListener listener : listeners) {
+            listener.beforeChange();
+        }
+    }
+
+    private void afterChange() {
+        for (ContactChangeListener listener : listeners) {
+            listener.afterChange();
+        }
+    }
+
+    // --- keys ---
+
+    /**
+     * Key of {@code phoneNumber} in {@link #firstRowByPhone}. Numbers of up to 17 digits are packed
+     * as {@code digitCount << 58 | value}, which is also what the phone column stores; anything
+     * else is keyed by a hash with the top bit set, and rows sharing it are told apart by comparing
+     * the numbers themselves.
+     */
+    static long phoneKey(String phoneNumber) {
+        if (phoneNumber.length() <= MAX_PACKED_DIGITS) {
+            long value = 0;
+            boolean digits = true;
+            for (int i = 0; i < phoneNumber.length() && digits; i++) {
+                char c = phoneNumber.charAt(i);
+                digits = c >= '0' && c <= '9';
+                value = value * 10 + (c - '0');
+            }
+            if (digits) {
+                return ((long) phoneNumber.length() << DIGITS_SHIFT) | value;
+            }
+        }
+        return ARENA_PHONE | (hash(phoneNumber) & ~ARENA_PHONE);
+    }
+
+    private static long nameKey(String name) {
+        return hash(NameIndex.normalize(name)) | 1;
+    }
+
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Whether the packed number contains {@code query}, checked on its digits without allocating.
+     */
+    private static boolean containsDigits(long phone, char[] digits, char[] query) {
+        int length = (int) (phone >>> DIGITS_SHIFT);
+        long value = phone & VALUE_MASK;
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        outer:
+        for (int start = 0; start + query.length <= length; start++) {
+            for (int j = 0; j < query.length; j++) {
+                if (digits[start + j] != query[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static long parseCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid cursor: {}", cursor);
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Reads at one version of the table current when it was opened: rows added after the snapshot
+     * lie beyond its row limit, and rows removed after it carry a later removal version, unless a
+     * compaction moved writes to another table first, in which case this one no longer changes.
+     */
+    private final class Snapshot implements ContactSnapshot {
+
+        private final long version;
+        private final Table table;
+        private final int rowLimit;
+
+        Snapshot(long version, Table table, int rowLimit) {
+            this.version = version;
+            this.table = table;
+            this.rowLimit = rowLimit;
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public List<Contact> getContacts() {
+            List<Contact> contacts = scan(row -> true);
+            if (contacts.isEmpty()) {
+                LOGGER.warn("No contacts in repository");
+            }
+            return contacts;
+        }
+
+        @Override
+        public ContactPage getContacts(String after, int limit) {
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                LOGGER.warn("Invalid page size: {}", limit);
+                throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+            }
+            long from = parseCursor(after);
+            List<Contact> page = new ArrayList<>(limit);
+            lock.readLock().lock();
+            try {
+                long last = from;
+                for (int row = table.firstRowAfter(from, rowLimit); row < rowLimit; row++) {
+                    if (!visible(row)) {
+                        continue;
+                    }
+                    if (page.size() == limit) {
+                        return new ContactPage(Collections.unmodifiableList(page), Long.toString(last));
+                    }
+                    page.add(table.contactAt(row));
+                    last = table.rowLong(row, SEQUENCE);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return new ContactPage(Collections.unmodifiableList(page), null);
+        }
+
+        /**
+         * Stream every contact in insertion order. Rows are decoded a batch at a time under the read
+         * lock, so the stream never holds the lock between batches.
+         */
+        @Override
+        public Stream<Contact> streamContacts() {
+            return IntStream.range(0, (rowLimit + STREAM_BATCH_SIZE - 1) / STREAM_BATCH_SIZE)
+                    .mapToObj(batch -> readRows(batch * STREAM_BATCH_SIZE, Math.min(rowLimit, (batch + 1) * STREAM_BATCH_SIZE)))
+                    .flatMap(List::stream);
+        }
+
+        @Override
+        public List<Contact> getContactsByName(String name) {
+            ContactValidation.requireName(name, LOGGER);
+            byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            List<Contact> contactsByName = nameChain(name, row -> table.arena.contentEquals(table.rowLong(row, NAME), encoded));
+            if (contactsByName.isEmpty()) {
+                LOGGER.warn("No contacts with name: {}", name);
+            }
+            return contactsByName;
+        }
+
+        @Override
+        public List<Contact> getContactsByNameIgnoreCase(String name) {
+            ContactValidation.requireName(name, LOGGER);
+            String normalized = NameIndex.normalize(name);
+            List<Contact> contactsByName = nameChain(name,
+                    row -> NameIndex.normalize(table.arena.getString(table.rowLong(row, NAME))).equals(normalized));
+            if (contactsByName.isEmpty()) {
+                LOGGER.warn("No contacts with name ignoring case: {}", name);
+            }
+            return contactsByName;
+        }
+
+        @Override
+        public List<Contact> getContactsByNamePrefix(String prefix) {
+            ContactValidation.requireName(prefix, LOGGER);
+            String normalized = NameIndex.normalize(prefix);
+            List<Contact> contactsByName = scan(row -> NameIndex.normalize(table.arena.getString(table.rowLong(row, NAME))).startsWith(normalized));
+            if (contactsByName.isEmpty()) {
+                LOGGER.warn("No contacts with name prefix: {}", prefix);
+            }
+            return contactsByName;
+        }
+
+        @Override
+        public List<Contact> getContactsByNameFuzzy(String name) {
+            ContactValidation.requireName(name, LOGGER);
+            String normalized = NameIndex.normalize(name);
+            int maxEdits = NameIndex.autoFuzziness(name);
+            List<Contact> contactsByName = scan(row -> NameIndex.withinEditDistance(
+                    NameIndex.normalize(table.arena.getString(table.rowLong(row, NAME))), normalized, maxEdits));
+            if (contactsByName.isEmpty()) {
+                LOGGER.warn("No contacts with name like: {}", name);
+            }
+            return contactsByName;
+        }
+
+        @Override
+        public List<Contact> getContactsByPhoneNumber(String phoneNumber) {
+            ContactValidation.requirePhoneNumber(phoneNumber, LOGGER);
+            char[] query = phoneNumber.toCharArray();
+            char[] digits = new char[MAX_PACKED_DIGITS];
+            List<Contact> matches = scan(row -> {
+                long phone = table.rowLong(row, PHONE);
+                if ((phone & ARENA_PHONE) != 0) {
+                    return table.arena.getString(phone & ~ARENA_PHONE).contains(phoneNumber);
+                }
+                return containsDigits(phone, digits, query);
+            });
+            if (matches.isEmpty()) {
+                LOGGER.warn("No contacts with phone number: {}", phoneNumber);
+            }
+            return matches;
+        }
+
+        @Override
+        public void close() {
+            // nothing is pinned: a compaction leaves this snapshot's table to it, to be freed with it
+        }
+
+        private boolean visible(int row) {
+            long removed = table.rowLong(row, REMOVED);
+            return removed == LIVE || removed > version;
+        }
+
+        private List<Contact> nameChain(String name, Predicate<Integer> matches) {
+            List<Contact> contacts = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                for (int row = table.firstRowByName.get(nameKey(name), NO_ROW); row != NO_ROW; row = table.rowInt(row, NEXT_BY_NAME)) {
+                    if (row < rowLimit && visible(row) && matches.test(row)) {
+                        contacts.add(table.contactAt(row));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            // chains are newest first; report in insertion order like the other lookups
+            return Collections.unmodifiableList(contacts.reversed());
+        }
+
+        private List<Contact> scan(Predicate<Integer> matches) {
+            List<Contact> contacts = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                for (int row = 0; row < rowLimit; row++) {
+                    if (visible(row) && matches.test(row)) {
+                        contacts.add(table.contactAt(row));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return Collections.unmodifiableList(contacts);
+        }
+
+        private List<Contact> readRows(int from, int to) {
+            List<Contact> contacts = new ArrayList<>(to - from);
+            lock.readLock().lock();
+            try {
+                for (int row = from; row < to; row++) {
+                    if (visible(row)) {
+                        contacts.add(table.contactAt(row));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return contacts;
+        }
+    }
+
+    /**
+     * One generation of rows, their arena and the hash chains over them. Writes go to the current
+     * table until a compaction replaces it; a replaced table is never written again.
+     */
+    private static final class Table {
+
+        private final List<ByteBuffer> rowChunks = new ArrayList<>();
+        private final ByteArena arena = new ByteArena();
+        private final LongIntHashMap firstRowByPhone = new LongIntHashMap();
+        private final LongIntHashMap firstRowByName = new LongIntHashMap();
+        private int rowCount;
+
+        void append(Contact contact, long sequence) {
+            long phoneKey = phoneKey(contact.getPhoneNumber());
+            int row = newRow(sequence);
+            putRow(row, PHONE, (phoneKey & ARENA_PHONE) == 0 ? phoneKey : ARENA_PHONE | arena.put(contact.getPhoneNumber()));
+            putRow(row, NAME, arena.put(contact.getName()));
+            putRow(row, EMAIL, contact.getEmail() == null ? NULL_REF : arena.put(contact.getEmail()));
+            link(row, phoneKey, nameKey(contact.getName()));
+        }
+
+        /**
+         * Append a live row of {@code from}, keeping its sequence number so that page cursors carry over.
+         */
+        void copy(Table from, int fromRow) {
+            long phone = from.rowLong(fromRow, PHONE);
+            String name = from.arena.getString(from.rowLong(fromRow, NAME));
+            long email = from.rowLong(fromRow, EMAIL);
+            int row = newRow(from.rowLong(fromRow, SEQUENCE));
+            long phoneKey = phone;
+            if ((phone & ARENA_PHONE) != 0) {
+                String phoneNumber = from.arena.getString(phone & ~ARENA_PHONE);
+                phoneKey = phoneKey(phoneNumber);
+                phone = ARENA_PHONE | arena.put(phoneNumber);
+            }
+            putRow(row, PHONE, phone);
+            putRow(row, NAME, arena.put(name));
+            putRow(row, EMAIL, email == NULL_REF ? NULL_REF : arena.put(from.arena.getString(email)));
+            link(row, phoneKey, nameKey(name));
+        }
+
+        private int newRow(long sequence) {
+            int row = rowCount;
+            if (row / ROWS_PER_CHUNK == rowChunks.size()) {
+                rowChunks.add(ByteBuffer.allocateDirect(ROWS_PER_CHUNK * ROW_SIZE));
+            }
+            rowCount++;
+            putRow(row, REMOVED, LIVE);
+            putRow(row, SEQUENCE, sequence);
+            return row;
+        }
+
+        private void link(int row, long phoneKey, long nameKey) {
+            putRowInt(row, NEXT_BY_PHONE, firstRowByPhone.get(phoneKey, NO_ROW));
+            firstRowByPhone.put(phoneKey, row);
+            putRowInt(row, NEXT_BY_NAME, firstRowByName.get(nameKey, NO_ROW));
+            firstRowByName.put(nameKey, row);
+        }
+
+        /**
+         * First row below {@code rowLimit} whose sequence number is above {@code after}, or
+         * {@code rowLimit}; sequence numbers grow with the row number.
+         */
+        int firstRowAfter(long after, int rowLimit) {
+            int low = 0;
+            int high = rowLimit;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (rowLong(middle, SEQUENCE) <= after) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        Contact contactAt(int row) {
+            long email = rowLong(row, EMAIL);
+            return new Contact(arena.getString(rowLong(row, NAME)),
+                    email == NULL_REF ? null : arena.getString(email),
+                    phoneAt(row));
+        }
+
+        private String phoneAt(int row) {
+            long phone = rowLong(row, PHONE);
+            if ((phone & ARENA_PHONE) != 0) {
+                return arena.getString(phone & ~ARENA_PHONE);
+            }
+            int digits = (int) (phone >>> DIGITS_SHIFT);
+            String value = Long.toString(phone & VALUE_MASK);
+            return "0".repeat(digits - value.length()) + value;
+        }
+
+        boolean phoneEquals(int row, String phoneNumber) {
+            long phone = rowLong(row, PHONE);
+            if ((phone & ARENA_PHONE) != 0) {
+                return arena.contentEquals(phone & ~ARENA_PHONE, phoneNumber.getBytes(StandardCharsets.UTF_8));
+            }
+            return phone == phoneKey(phoneNumber);
+        }
+
+        boolean matches(int row, byte[] name, byte[] email) {
+            return arena.contentEquals(rowLong(row, NAME), name) && refEquals(rowLong(row, EMAIL), email);
+        }
+
+        private boolean refEquals(long ref, byte[] bytes) {
+            if (ref == NULL_REF || bytes == null) {
+                return ref == NULL_REF && bytes == null;
+            }
+            return arena.contentEquals(ref, bytes);
+        }
+
+        long rowLong(int row, int column) {
+            return rowChunks.get(row / ROWS_PER_CHUNK).getLong((row % ROWS_PER_CHUNK) * ROW_SIZE + column);
+        }
+
+        int rowInt(int row, int column) {
+            return rowChunks.get(row / ROWS_PER_CHUNK).getInt((row % ROWS_PER_CHUNK) * ROW_SIZE + column);
+        }
+
+        void putRow(int row, int column, long value) {
+            rowChunks.get(row / ROWS_PER_CHUNK).putLong((row % ROWS_PER_CHUNK) * ROW_SIZE + column, value);
+        }
+
+        void putRowInt(int row, int column, int value) {
+            rowChunks.get(row / ROWS_PER_CHUNK).putInt((row % ROWS_PER_CHUNK) * ROW_SIZE + column, value);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.ust.elkstackdemo.repository;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Posting index from digit bigrams and trigrams to the distinct phone numbers containing them.
+ * Used by {@link ContactRepository} to answer "phone number contains" queries without scanning
+ * every contact: the numbers holding all of the query's grams form a small candidate set which the
+ * caller then verifies with {@link String#contains}, so results are exactly those of a full scan.
+ * <p>
+ * Grams are encoded as base-11 integers (digit + 1 per position) so bigrams and trigrams share a
+ * single flat posting array. Grams containing non-digit characters are never indexed because a
+ * query is always all digits and could not match them.
+ */
+final class PhoneNumberIndex {
+
+    private static final int MIN_GRAM = 2;
+    private static final int MAX_GRAM = 3;
+    private static final int RADIX = 11;
+
+    /**
+     * Rough heap footprint of an empty posting set, and of each entry in one.
+     */
+    private static final long POSTING_BYTES = 100;
+    private static final long ENTRY_BYTES = 32;
+
+    private final Set<String>[] postings;
+
+    private final LongAdder entries = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    PhoneNumberIndex() {
+        postings = new Set[RADIX * RADIX * RADIX];
+        for (int i = 0; i < postings.length; i++) {
+            postings[i] = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    /**
+     * Index a phone number. Callers must serialize {@code add} and {@code remove} of the same number.
+     */
+    void add(String phoneNumber) {
+        for (int n = MIN_GRAM; n <= MAX_GRAM; n++) {
+            for (int i = 0; i + n <= phoneNumber.length(); i++) {
+                int code = encode(phoneNumber, i, n);
+                if (code >= 0 && postings[code].add(phoneNumber)) {
+                    entries.increment();
+                }
+            }
+        }
+    }
+
+    void remove(String phoneNumber) {
+        for (int n = MIN_GRAM; n <= MAX_GRAM; n++) {
+            for (int i = 0; i + n <= phoneNumber.length(); i++) {
+                int code = encode(phoneNumber, i, n);
+                if (code >= 0 && postings[code].remove(phoneNumber)) {
+                    entries.decrement();
+                }
+            }
+        }
+    }
+
+    /**
+     * Phone numbers that may contain {@code query}: those in the posting lists of all of the query's
+     * grams. The postings are intersected smallest first, so most numbers are ruled out by the first
+     * check, and an empty posting ends the lookup at once. A query of a single gram gets its posting
+     * as a live view. The candidates are a superset of the matching numbers, as a number can hold
+     * every gram without holding them in order, so each must still be checked with
+     * {@link String#contains}.
+     *
+     * @param query An all-digit query.
+     * @return The candidates, or {@code null} if the query is shorter than the smallest indexed
+     * gram and the caller has to scan.
+     */
+    Set<String> candidates(String query) {
+        if (query.length() < MIN_GRAM) {
+            return null;
+        }
+        int n = Math.min(query.length(), MAX_GRAM);
+        int grams = query.length() - n + 1;
+        if (grams == 1) {
+            return postings[encode(query, 0, n)];
+        }
+        // the query's postings by ascending size, sorted by insertion as there are only a few
+        @SuppressWarnings("unchecked")
+        Set<String>[] sorted = new Set[grams];
+        int[] sizes = new int[grams];
+        for (int i = 0; i < grams; i++) {
+            var posting = postings[encode(query, i, n)];
+            int size = posting.size();
+            if (size == 0) {
+                return Set.of();
+            }
+            int j = i;
+            for (; j > 0 && sizes[j - 1] > size; j--) {
+                sorted[j] = sorted[j - 1];
+                sizes[j] = sizes[j - 1];
+            }
+            sorted[j] = posting;
+            sizes[j] = size;
+        }
+        Set<String> candidates = null;
+        for (String phoneNumber : sorted[0]) {
+            if (containedInAll(sorted, phoneNumber)) {
+                if (candidates == null) {
+                    candidates = new HashSet<>();
+                }
+                candidates.add(phoneNumber);
+            }
+        }
+        return candidates == null ? Set.of() : candidates;
+    }
+
+    private static boolean containedInAll(Set<String>[] sorted, String phoneNumber) {
+        for (int i = 1; i < sorted.length; i++) {
+            if (!sorted[i].contains(phoneNumber)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimated heap bytes held by the posting sets, from their entry count.
+     */
+    long memoryBytes() {
+        return postings.length * POSTING_BYTES + entries.sum() * ENTRY_BYTES;
+    }
+
+    /**
+     * Encode {@code s[from, from + n)} as a gram code, or -1 if it contains a non-digit.
+     */
+    private static int encode(String s, int from, int n) {
+        int code = 0;
+        for (int i = from; i < from + n; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            code = code * RADIX + digit + 1;
+        }
+        return code;
+    }
+}
@@ -0,0 +1,456 @@
+package com.ust.elkstackdemo.repository;
+
+import com.ust.elkstackdemo.metrics.ContactMetrics;
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactPage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Contact store for hosts with many cores, partitioned by phone number across independent
+ * {@link ContactRepository} shards.
+ * <p>
+ * A contact lives in the shard its phone number hashes to, so adds, removes and duplicate checks
+ * touch the maps and indexes of one shard only, and writers on different shards share nothing but
+ * the {@link VersionClock}. That keeps the shards one store: a snapshot pins one version for every
+ * shard, writes become visible in one order, and listings merge the shards by sequence number,
+ * which follows the version, back into insertion order, with the same cursors. Versions being
+ * visible in one order is what a listing's version, the change log and the write-ahead log count
+ * on, but writers do not commit in that order: each commits its version as soon as its shard is
+ * updated, never waiting for writers on other shards that took earlier versions, and waits for
+ * its write to be visible only once it is done with its shard.
+ * <p>
+ * Searches, phone number ones included since they match substrings, have to ask every shard. They
+ * run on all shards in parallel on a dedicated {@link ForkJoinPool}, and their results come shard
+ * by shard rather than in insertion order. A full listing is read in parallel too, then merged.
+ */
+@Repository
+@ConditionalOnProperty(name = "contacts.store.backend", havingValue = "sharded")
+public class ShardedContactStore implements ContactStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedContactStore.class);
+
+    private final ContactRepository[] shards;
+    private final VersionClock versions = new VersionClock();
+    private final ForkJoinPool pool;
+    private final ContactMetrics metrics;
+
+    public ShardedContactStore(int shards) {
+        this(new ContactMetrics(), shards);
+    }
+
+    @Autowired
+    public ShardedContactStore(ContactMetrics metrics, ContactStoreProperties properties) {
+        this(metrics, properties.shards() == 0 ? Runtime.getRuntime().availableProcessors() : properties.shards());
+    }
+
+    private ShardedContactStore(ContactMetrics metrics, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Invalid shard count: " + shardCount);
+        }
+        this.metrics = metrics;
+        // shards record into their own metrics; this store records each operation once
+        var shardMetrics = new ContactMetrics();
+        shards = new ContactRepository[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ContactRepository(shardMetrics, versions);
+        }
+        pool = new ForkJoinPool(Math.min(shardCount, Runtime.getRuntime().availableProcessors()), p -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("contact-shards-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        LOGGER.debug("ShardedContactStore initialized with {} shards", shardCount);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdown();
+    }
+
+    @Override
+    public void addContact(Contact contact) {
+        long start = System.nanoTime();
+        try {
+            shards[shardOf(contact)].addContact(contact);
+        } finally {
+            metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.ADD, start);
+        }
+    }
+
+    /**
+     * Add a batch of contacts with one {@link ContactRepository#addContacts(List)} call per shard
+     * it touches, taking the shards in the order the batch first reaches them.
+     */
+    @Override
+    public List<String> addContacts(List<Contact> batch) {
+        long start = System.nanoTime();
+        try {
+            Map<Integer, List<Integer>> byShard = new LinkedHashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                byShard.computeIfAbsent(shardOf(batch.get(i)), shard -> new ArrayList<>()).add(i);
+            }
+            String[] outcomes = new String[batch.size()];
+            byShard.forEach((shard, indexes) -> {
+                List<Contact> part = new ArrayList<>(indexes.size());
+                for (int i : indexes) {
+                    part.add(batch.get(i));
+                }
+                List<String> partOutcomes = shards[shard].addContacts(part);
+                for (int j = 0; j < indexes.size(); j++) {
+                    outcomes[indexes.get(j)] = partOutcomes.get(j);
+                }
+            });
+            return Arrays.asList(outcomes);
+        } finally {
+            metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.ADD_BULK, start);
+        }
+    }
+
+    @Override
+    public void removeContactByPhoneNumber(String phoneNumber) {
+        long start = System.nanoTime();
+        try {
+            shards[shardOf(phoneNumber)].removeContactByPhoneNumber(phoneNumber);
+        } finally {
+            metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.REMOVE, start);
+        }
+    }
+
+    /**
+     * Remove the contacts with one {@link ContactRepository#removeContacts(List)} call per shard
+     * they are on.
+     */
+    @Override
+    public int removeContacts(List<Contact> contacts) {
+        long start = System.nanoTime();
+        try {
+            Map<Integer, List<Contact>> byShard = new LinkedHashMap<>();
+            for (Contact contact : contacts) {
+                byShard.computeIfAbsent(shardOf(contact), shard -> new ArrayList<>()).add(contact);
+            }
+            int removed = 0;
+            for (var entry : byShard.entrySet()) {
+                removed += shards[entry.getKey()].removeContacts(entry.getValue());
+            }
+            return removed;
+        } finally {
+            metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.REMOVE, start);
+        }
+    }
+
+    /**
+     * Pin the latest committed version once for every shard.
+     */
+    @Override
+    public ContactSnapshot snapshot() {
+        return new Snapshot(versions.pin());
+    }
+
+    @Override
+    public long version() {
+        return versions.committed();
+    }
+
+    /**
+     * Register a listener with every shard. A write changes one shard, so the listener hears about
+     * it once; a batch spanning several shards is reported shard by shard.
+     */
+    @Override
+    public void addChangeListener(ContactChangeListener listener) {
+        for (ContactRepository shard : shards) {
+            shard.addChangeListener(listener);
+        }
+    }
+
+    @Override
+    public void removeChangeListener(ContactChangeListener listener) {
+        for (ContactRepository shard : shards) {
+            shard.removeChangeListener(listener);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (ContactRepository shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * The estimates of every index, summed over the shards.
+     */
+    @Override
+    public void indexMemory(ObjLongConsumer<String> sink) {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (ContactRepository shard : shards) {
+            shard.indexMemory((index, bytes) -> totals.merge(index, bytes, Long::sum));
+        }
+        totals.forEach(sink::accept);
+    }
+
+    public int shards() {
+        return shards.length;
+    }
+
+    private int shardOf(Contact contact) {
+        return shardOf(contact == null ? null : contact.getPhoneNumber());
+    }
+
+    /**
+     * The shard {@code phoneNumber} belongs to. Invalid contacts without one go to the first shard,
+     * which rejects them.
+     */
+    private int shardOf(String phoneNumber) {
+        if (phoneNumber == null) {
+            return 0;
+        }
+        // numbers differing in their last digits differ in the low bits of their hash only
+        int hash = phoneNumber.hashCode() * 0x9E3779B9;
+        return (int) (((hash & 0xFFFFFFFFL) * shards.length) >>> 32);
+    }
+
+    /**
+     * Apply {@code read} to every shard, the first on the calling thread and the others in
+     * parallel on the pool.
+     * @return The results by shard.
+     */
+    private <T> List<T> fanOut(IntFunction<T> read) {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(shards.length - 1);
+        for (int i = 1; i < shards.length; i++) {
+            int shard = i;
+            tasks.add(pool.submit(() -> read.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(shards.length);
+        results.add(read.apply(0));
+        for (ForkJoinTask<T> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    /**
+     * Merge iterators that are each in sequence order into one in sequence order.
+     */
+    private static Iterator<ContactRepository.StoredContact> merge(List<Iterator<ContactRepository.StoredContact>> parts) {
+        var heads = new PriorityQueue<Head>(Math.max(parts.size(), 1),
+                Comparator.comparingLong(head -> head.stored().sequence));
+        for (var part : parts) {
+            if (part.hasNext()) {
+                heads.add(new Head(part.next(), part));
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public ContactRepository.StoredContact next() {
+                Head head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                if (head.rest().hasNext()) {
+                    heads.add(new Head(head.rest().next(), head.rest()));
+                }
+                return head.stored();
+            }
+        };
+    }
+
+    private static long parseCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid cursor: {}", cursor);
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * The next contact of one shard's listing and the rest of it.
+     */
+    private record Head(ContactRepository.StoredContact stored, Iterator<ContactRepository.StoredContact> rest) {
+    }
+
+    /**
+     * One pin on the shared clock, read through an unpinned snapshot of each shard at its version.
+     */
+    private final class Snapshot implements ContactSnapshot {
+
+        private final int slot;
+        private final long version;
+        private final ContactSnapshot[] shardSnapshots;
+        private boolean closed;
+
+        Snapshot(int slot) {
+            this.slot = slot;
+            this.version = versions.version(slot);
+            shardSnapshots = new ContactSnapshot[shards.length];
+            for (int i = 0; i < shards.length; i++) {
+                shardSnapshots[i] = shards[i].snapshot(version);
+            }
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+
+        /**
+         * Read every shard in parallel and merge them into insertion order.
+         */
+        @Override
+        public List<Contact> getContacts() {
+            long start = System.nanoTime();
+            try {
+                List<List<ContactRepository.StoredContact>> parts = fanOut(shard -> {
+                    List<ContactRepository.StoredContact> part = new ArrayList<>(shards[shard].size());
+                    shards[shard].sequenced(version, 0).forEachRemaining(part::add);
+                    return part;
+                });
+                List<Contact> all = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+                merge(parts.stream().map(List::iterator).toList()).forEachRemaining(stored -> all.add(stored.contact));
+                if (all.isEmpty()) {
+                    LOGGER.warn("No contacts in repository");
+                }
+                return Collections.unmodifiableList(all);
+            } finally {
+                metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.LIST, start);
+            }
+        }
+
+        @Override
+        public ContactPage getContacts(String after, int limit) {
+            long start = System.nanoTime();
+            try {
+                if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                    LOGGER.warn("Invalid page size: {}", limit);
+                    throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+                }
+                var contacts = sequenced(parseCursor(after));
+                List<Contact> page = new ArrayList<>(Math.min(limit, size()));
+                long last = 0;
+                while (contacts.hasNext()) {
+                    var stored = contacts.next();
+                    if (page.size() == limit) {
+                        return new ContactPage(Collections.unmodifiableList(page), Long.toString(last));
+                    }
+                    page.add(stored.contact);
+                    last = stored.sequence;
+                }
+                return new ContactPage(Collections.unmodifiableList(page), null);
+            } finally {
+                metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.LIST_PAGE, start);
+            }
+        }
+
+        @Override
+        public Stream<Contact> streamContacts() {
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(sequenced(0),
+                            Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .map(stored -> stored.contact);
+        }
+
+        @Override
+        public List<Contact> getContactsByName(String name) {
+            ContactValidation.requireName(name, LOGGER);
+            return search(ContactMetrics.Operation.SEARCH_NAME, "No contacts with name: {}", name,
+                    ContactSnapshot::getContactsByName);
+        }
+
+        @Override
+        public List<Contact> getContactsByNameIgnoreCase(String name) {
+            ContactValidation.requireName(name, LOGGER);
+            return search(ContactMetrics.Operation.SEARCH_NAME_IGNORE_CASE, "No contacts with name ignoring case: {}", name,
+                    ContactSnapshot::getContactsByNameIgnoreCase);
+        }
+
+        @Override
+        public List<Contact> getContactsByNamePrefix(String prefix) {
+            ContactValidation.requireName(prefix, LOGGER);
+            return search(ContactMetrics.Operation.SEARCH_NAME_PREFIX, "No contacts with name prefix: {}", prefix,
+                    ContactSnapshot::getContactsByNamePrefix);
+        }
+
+        @Override
+        public List<Contact> getContactsByNameFuzzy(String name) {
+            ContactValidation.requireName(name, LOGGER);
+            return search(ContactMetrics.Operation.SEARCH_NAME_FUZZY, "No contacts with name like: {}", name,
+                    ContactSnapshot::getContactsByNameFuzzy);
+        }
+
+        @Override
+        public List<Contact> getContactsByPhoneNumber(String phoneNumber) {
+            ContactValidation.requirePhoneNumber(phoneNumber, LOGGER);
+            return search(ContactMetrics.Operation.SEARCH_PHONE, "No contacts with phone number: {}", phoneNumber,
+                    ContactSnapshot::getContactsByPhoneNumber);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                versions.unpin(slot);
+            }
+        }
+
+        private Iterator<ContactRepository.StoredContact> sequenced(long after) {
+            List<Iterator<ContactRepository.StoredContact>> parts = new ArrayList<>(shards.length);
+            for (ContactRepository shard : shards) {
+                parts.add(shard.sequenced(version, after));
+            }
+            return merge(parts);
+        }
+
+        /**
+         * Run an already validated search on every shard in parallel and concatenate the results.
+         */
+        private List<Contact> search(ContactMetrics.Operation operation, String notFound, String key,
+                                     BiFunction<ContactSnapshot, String, List<Contact>> search) {
+            long start = System.nanoTime();
+            try {
+                List<List<Contact>> parts = fanOut(shard -> search.apply(shardSnapshots[shard], key));
+                List<Contact> matches = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+                parts.forEach(matches::addAll);
+                if (matches.isEmpty()) {
+                    LOGGER.warn(notFound, key);
+                }
+                return Collections.unmodifiableList(matches);
+            } finally {
+                metrics.record(ContactMetrics.Layer.REPOSITORY, operation, start);
+            }
+        }
+    }
+}
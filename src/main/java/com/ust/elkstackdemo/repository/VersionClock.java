@@ -0,0 +1,188 @@
+package com.ust.elkstackdemo.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out store versions to writers and tracks which versions readers still have pinned.
+ * <p>
+ * Writers take the next version with {@link #next()} and must {@link #commit(long)} it once their
+ * change is fully applied. Versions become visible strictly in order, so a reader that sees version
+ * {@code v} sees every change up to and including {@code v}, but a commit does not wait for that:
+ * it marks the version done, and the committed version moves past every version done in a row,
+ * whichever writer completes the row. A writer that committed while an earlier one was still
+ * applying its change therefore holds up nobody, and {@link #await(long)}s its own version only
+ * when it needs to see it.
+ * <p>
+ * Readers {@link #pin()} the latest committed version into one of a set of padded slots and
+ * {@link #unpin(int)} it when done. {@link #oldestPinned()} tells the store which removed contacts no
+ * reader can still see. Pinning is a single CAS on a slot picked from the thread id, so readers do
+ * not contend with each other or with writers.
+ * <p>
+ * Slots come in segments. A reader that finds no free slot in any segment adds another segment
+ * rather than wait, since a snapshot may stay open for as long as a client takes to read a
+ * response, and there can be far more of those than cores. Segments are never dropped, so the
+ * table stays as large as the most readers ever open at once.
+ */
+final class VersionClock {
+
+    /**
+     * Slots per segment.
+     */
+    static final int SEGMENT_SLOTS = 1024;
+    private static final int SEGMENT_SHIFT = Integer.numberOfTrailingZeros(SEGMENT_SLOTS);
+
+    /**
+     * Slots tried in each segment, starting at the reader's own, before moving on to the next.
+     */
+    private static final int PROBES = 16;
+
+    /**
+     * Longs between two slots, so that every slot sits on its own cache line.
+     */
+    private static final int STRIDE = 8;
+
+    private static final long FREE = 0;
+
+    /**
+     * Versions that may be taken but not yet visible at once; {@link #next()} waits beyond it.
+     */
+    static final int IN_FLIGHT = 4096;
+
+    private final AtomicLong next = new AtomicLong();
+    /**
+     * Version {@code v} once it is done, at {@code v % IN_FLIGHT}.
+     */
+    private final AtomicLongArray done = new AtomicLongArray(IN_FLIGHT);
+    private final AtomicReference<AtomicLongArray[]> segments =
+            new AtomicReference<>(new AtomicLongArray[]{new AtomicLongArray(SEGMENT_SLOTS * STRIDE)});
+    private final AtomicLong committed = new AtomicLong();
+
+    /**
+     * Reserve the version for a write. The caller must commit it, even if the write fails.
+     */
+    long next() {
+        long version = next.incrementAndGet();
+        // its slot in done is free once the version IN_FLIGHT before it is visible
+        awaitCommitted(version - IN_FLIGHT);
+        return version;
+    }
+
+    /**
+     * Mark {@code version} done without waiting for earlier versions: it becomes visible to new
+     * readers once they are all done too.
+     */
+    void commit(long version) {
+        done.set((int) (version % IN_FLIGHT), version);
+        for (long visible = committed.get(); done.get((int) ((visible + 1) % IN_FLIGHT)) == visible + 1;
+             visible = committed.get()) {
+            committed.compareAndSet(visible, visible + 1);
+        }
+    }
+
+    /**
+     * Wait until {@code version}, committed by the caller, is visible, which takes as long as the
+     * writers of earlier versions still applying their changes.
+     */
+    void await(long version) {
+        awaitCommitted(version);
+    }
+
+    private void awaitCommitted(long version) {
+        for (int spins = 0; committed.get() < version; spins++) {
+            if (spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    long committed() {
+        return committed.get();
+    }
+
+    /**
+     * Pin the latest committed version.
+     * @return The slot holding the pin, for {@link #version(int)} and {@link #unpin(int)}.
+     */
+    int pin() {
+        long version = committed.get();
+        int home = (int) ((Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L) >>> 54) & (SEGMENT_SLOTS - 1);
+        AtomicLongArray[] current = segments.get();
+        int slot = claim(current, home, PROBES, version);
+        while (slot < 0) {
+            // crowded around our own slot: look at every slot before adding more
+            slot = claim(current, home, SEGMENT_SLOTS, version);
+            if (slot < 0) {
+                current = grow(current);
+                slot = claim(current, home, PROBES, version);
+            }
+        }
+        var segment = current[slot >>> SEGMENT_SHIFT];
+        int offset = (slot & (SEGMENT_SLOTS - 1)) * STRIDE;
+        // re-read after publishing the pin: a reclaim that missed the pin started before it, when
+        // the committed version was at most the one read here, so it cannot touch what we see
+        for (long latest = committed.get(); latest != version; latest = committed.get()) {
+            version = latest;
+            segment.set(offset, version + 1);
+        }
+        return slot;
+    }
+
+    /**
+     * Pin {@code version} in the first free slot among the {@code probes} slots from {@code home}
+     * in each segment.
+     * @return The slot, or -1 if none of them was free.
+     */
+    private static int claim(AtomicLongArray[] segments, int home, int probes, long version) {
+        for (int s = 0; s < segments.length; s++) {
+            for (int probe = 0; probe < probes; probe++) {
+                int index = (home + probe) & (SEGMENT_SLOTS - 1);
+                int offset = index * STRIDE;
+                if (segments[s].get(offset) == FREE && segments[s].compareAndSet(offset, FREE, version + 1)) {
+                    return s << SEGMENT_SHIFT | index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add a segment to {@code seen}, unless another reader already has.
+     * @return The segments now in use.
+     */
+    private AtomicLongArray[] grow(AtomicLongArray[] seen) {
+        var grown = Arrays.copyOf(seen, seen.length + 1);
+        grown[seen.length] = new AtomicLongArray(SEGMENT_SLOTS * STRIDE);
+        return segments.compareAndSet(seen, grown) ? grown : segments.get();
+    }
+
+    long version(int slot) {
+        return segments.get()[slot >>> SEGMENT_SHIFT].get((slot & (SEGMENT_SLOTS - 1)) * STRIDE) - 1;
+    }
+
+    void unpin(int slot) {
+        segments.get()[slot >>> SEGMENT_SHIFT].set((slot & (SEGMENT_SLOTS - 1)) * STRIDE, FREE);
+    }
+
+    /**
+     * The oldest version any reader may still be reading. Contacts removed at or before this
+     * version are invisible to every current and future reader.
+     */
+    long oldestPinned() {
+        // committed before the segments: a segment added since holds only pins taken after this read
+        long oldest = committed.get();
+        for (AtomicLongArray segment : segments.get()) {
+            for (int slot = 0; slot < SEGMENT_SLOTS; slot++) {
+                long pinned = segment.get(slot * STRIDE);
+                if (pinned != FREE) {
+                    oldest = Math.min(oldest, pinned - 1);
+                }
+            }
+        }
+        return oldest;
+    }
+}
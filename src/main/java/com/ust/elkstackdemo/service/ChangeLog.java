@@ -0,0 +1,155 @@
+package com.ust.elkstackdemo.service;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactChange;
+import com.ust.elkstackdemo.model.ContactChanges;
+import com.ust.elkstackdemo.repository.ContactChangeListener;
+import com.ust.elkstackdemo.repository.ContactStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The latest contact changes by store version, so that clients can catch up with
+ * {@link #since(long, int)} instead of reading every contact again.
+ * <p>
+ * Changes are recorded as the store applies them, which is not strictly in version order when
+ * writers run concurrently, so they are kept in a sorted map and read only up to the latest
+ * committed version; every change at or below it is already recorded. Once more than the
+ * configured capacity is kept, the oldest committed versions are dropped, and clients behind them
+ * are told to start over. Versions count from zero again when the application restarts.
+ */
+@Component
+public class ChangeLog implements ContactChangeListener, SmartInitializingSingleton {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeLog.class);
+
+    private final ContactStore contactStore;
+    private final int capacity;
+    private final ConcurrentSkipListMap<Long, List<ContactChange>> changes = new ConcurrentSkipListMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Every change at or below this version may have been dropped.
+     */
+    private final AtomicLong truncated = new AtomicLong();
+
+    public ChangeLog(ContactStore contactStore, ChangeLogProperties properties) {
+        if (properties.capacity() < 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + properties.capacity());
+        }
+        this.contactStore = contactStore;
+        this.capacity = properties.capacity();
+    }
+
+    /**
+     * Start recording once every singleton exists, and so after persistence has recovered the
+     * store: recovered contacts are where the log starts, not changes for clients to replay.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        start();
+    }
+
+    public void start() {
+        contactStore.addChangeListener(this);
+        // whatever the store already holds, such as contacts recovered at startup, is where the log begins
+        truncated.set(contactStore.version());
+        LOGGER.debug("Change log started at version {} with capacity {}", truncated.get(), capacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        contactStore.removeChangeListener(this);
+    }
+
+    /**
+     * The changes committed after version {@code since}, whole versions at a time until at least
+     * {@code limit} changes are collected.
+     * @param limit Changes wanted, between 1 and {@link ContactStore#MAX_PAGE_SIZE}.
+     * @return The changes, or null if some of them are no longer kept or {@code since} is a version
+     * this store never reached.
+     */
+    public ContactChanges since(long since, int limit) {
+        if (limit < 1 || limit > ContactStore.MAX_PAGE_SIZE) {
+            LOGGER.warn("Invalid page size: {}", limit);
+            throw new IllegalArgumentException("Invalid page size: " + limit);
+        }
+        long committed = contactStore.version();
+        if (since > committed || since < truncated.get()) {
+            return null;
+        }
+        List<ContactChange> found = new ArrayList<>();
+        long version = since;
+        boolean more = false;
+        for (var entry : changes.subMap(since, false, committed, true).entrySet()) {
+            if (found.size() >= limit) {
+                more = true;
+                break;
+            }
+            found.addAll(entry.getValue());
+            version = entry.getKey();
+        }
+        // versions dropped while reading may have been skipped
+        if (since < truncated.get()) {
+            return null;
+        }
+        return new ContactChanges(found, more ? version : committed, more);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void contactAdded(long version, Contact contact) {
+        record(new ContactChange(version, ContactChange.Type.ADD, contact));
+    }
+
+    @Override
+    public void contactsRemoved(long version, String phoneNumber, List<Contact> contacts) {
+        for (Contact contact : contacts) {
+            record(new ContactChange(version, ContactChange.Type.REMOVE, contact));
+        }
+    }
+
+    /**
+     * Drop the oldest versions beyond capacity, now that the write is committed. Uncommitted
+     * versions may still be growing and are left alone.
+     */
+    @Override
+    public void afterChange() {
+        if (size.get() <= capacity) {
+            return;
+        }
+        long committed = contactStore.version();
+        while (size.get() > capacity) {
+            var oldest = changes.firstEntry();
+            if (oldest == null || oldest.getKey() > committed) {
+                break;
+            }
+            // before the removal, so that a reader who missed the version notices
+            truncated.accumulateAndGet(oldest.getKey(), Math::max);
+            if (changes.remove(oldest.getKey(), oldest.getValue())) {
+                size.addAndGet(-oldest.getValue().size());
+            }
+        }
+    }
+
+    /**
+     * Changes of one version all come from the writer holding it, so its list needs no locking;
+     * readers only see it once the version is committed.
+     */
+    private void record(ContactChange change) {
+        changes.computeIfAbsent(change.version(), v -> new ArrayList<>(1)).add(change);
+        size.incrementAndGet();
+    }
+}
@@ -0,0 +1,15 @@
+package com.ust.elkstackdemo.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the in-memory change log behind {@code GET /contacts/changes}, under
+ * {@code contacts.changes}.
+ *
+ * @param capacity Changes kept. Clients further behind than this must fetch the full list again.
+ */
+@ConfigurationProperties("contacts.changes")
+public record ChangeLogProperties(
+        @DefaultValue("100000") int capacity) {
+}
@@ -1,58 +1,232 @@
 package com.ust.elkstackdemo.service;
 
+import com.ust.elkstackdemo.metrics.ContactMetrics;
+import com.ust.elkstackdemo.model.BulkResult;
 import com.ust.elkstackdemo.model.Contact;
-import com.ust.elkstackdemo.repository.ContactRepository;
+import com.ust.elkstackdemo.model.ContactChanges;
+import com.ust.elkstackdemo.model.ContactPage;
+import com.ust.elkstackdemo.model.Versioned;
+import com.ust.elkstackdemo.repository.ContactStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 public class ContactService {
 
-    private final ContactRepository contactRepository;
+    /**
+     * Contacts handed to the repository per {@link ContactStore#addContacts(List)} call.
+     */
+    static final int BULK_BATCH_SIZE = 1000;
+
+    /**
+     * Rejected contacts listed individually in a {@link BulkResult}; the rest are only counted.
+     */
+    public static final int BULK_MAX_FAILURES = 1000;
+
+    private final ContactStore contactRepository;
+    private final ContactMetrics metrics;
+    private final SearchCache searchCache;
+    private final ChangeLog changeLog;
     private final Logger LOGGER = LoggerFactory.getLogger(ContactService.class);
 
-    public ContactService(ContactRepository contactRepository) {
+    public ContactService(ContactStore contactRepository, ContactMetrics metrics, SearchCache searchCache,
+                          ChangeLog changeLog) {
         this.contactRepository = contactRepository;
+        this.metrics = metrics;
+        this.searchCache = searchCache;
+        this.changeLog = changeLog;
         LOGGER.debug("ContactService instantiated with contactRepository: {}", contactRepository);
     }
 
     public void addContact(String name, String email, String phoneNumber) {
-        LOGGER.debug("Adding contact with name: {}, email: {}, phoneNumber: {}", name, email, phoneNumber);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Adding contact with name: {}, email: {}, phoneNumber: {}", name, email, phoneNumber);
+        }
         contactRepository.addContact(new Contact(name, email, phoneNumber));
     }
 
+    /**
+     * Add contacts in batches of {@link #BULK_BATCH_SIZE} as they are read, so that a large import
+     * never holds more than one batch in memory.
+     * @param contacts The contacts to add, typically parsed lazily from a request body.
+     */
+    public BulkResult addContacts(Iterator<Contact> contacts) {
+        LOGGER.debug("Adding contacts in bulk");
+        long received = 0;
+        long added = 0;
+        List<BulkResult.Failure> failures = new ArrayList<>();
+        // grown as contacts arrive, so that a small import does not allocate a full batch up front
+        List<Contact> batch = new ArrayList<>();
+        while (contacts.hasNext()) {
+            batch.add(contacts.next());
+            if (batch.size() == BULK_BATCH_SIZE || !contacts.hasNext()) {
+                var outcomes = contactRepository.addContacts(batch);
+                for (int i = 0; i < outcomes.size(); i++) {
+                    if (outcomes.get(i) == null) {
+                        added++;
+                    } else if (failures.size() < BULK_MAX_FAILURES) {
+                        failures.add(new BulkResult.Failure(received + i, outcomes.get(i)));
+                    }
+                }
+                received += batch.size();
+                batch.clear();
+            }
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Bulk added {} of {} contacts", added, received);
+        }
+        return new BulkResult(received, added, received - added, Collections.unmodifiableList(failures));
+    }
+
     public void removeContactByPhoneNumber(String phoneNumber) {
-        LOGGER.debug("Removing contact with phoneNumber: {}", phoneNumber);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Removing contact with phoneNumber: {}", phoneNumber);
+        }
         contactRepository.removeContactByPhoneNumber(phoneNumber);
     }
 
-    public List<Contact> getContacts() {
+    public Versioned<List<Contact>> getContacts() {
         LOGGER.debug("Getting all contacts");
-        var cx = contactRepository.getContacts();
-        if (cx.isEmpty()) {
-            LOGGER.debug("No contacts found");
+        try (var snapshot = contactRepository.snapshot()) {
+            var cx = snapshot.getContacts();
+            if (cx.isEmpty()) {
+                LOGGER.debug("No contacts found");
+            }
+            return new Versioned<>(snapshot.version(), cx);
+        }
+    }
+
+    public Versioned<ContactPage> getContacts(String after, int limit) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Getting contacts after: {}, limit: {}", after, limit);
+        }
+        try (var snapshot = contactRepository.snapshot()) {
+            return new Versioned<>(snapshot.version(), snapshot.getContacts(after, limit));
         }
-        return cx;
     }
 
-    public List<Contact> getContactsByPhoneNumber(String phoneNumber) {
-        LOGGER.debug("Getting contact with phoneNumber: {}", phoneNumber);
-        var cx = contactRepository.getContactsByPhoneNumber(phoneNumber);
-        if (cx.isEmpty()) {
-            LOGGER.debug("No contacts found with phoneNumber: {}", phoneNumber);
+    /**
+     * Stream every contact as of now. The caller must close the stream to release its snapshot.
+     */
+    public Versioned<Stream<Contact>> streamContacts() {
+        LOGGER.debug("Streaming all contacts");
+        var snapshot = contactRepository.snapshot();
+        return new Versioned<>(snapshot.version(), snapshot.streamContacts().onClose(snapshot::close));
+    }
+
+    /**
+     * The adds and removes after store version {@code since}, at most about {@code limit} of them.
+     * @return The changes, or null if they are no longer all kept and the client must start over.
+     */
+    public ContactChanges getChanges(long since, int limit) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Getting changes since version: {}, limit: {}", since, limit);
+        }
+        return changeLog.since(since, limit);
+    }
+
+    public Versioned<List<Contact>> getContactsByPhoneNumber(String phoneNumber) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Getting contact with phoneNumber: {}", phoneNumber);
+        }
+        try (var snapshot = contactRepository.snapshot()) {
+            var cx = snapshot.getContactsByPhoneNumber(phoneNumber);
+            metrics.result(ContactMetrics.Operation.SEARCH_PHONE, !cx.isEmpty());
+            if (cx.isEmpty()) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("No contacts found with phoneNumber: {}", phoneNumber);
+                }
+            }
+            return new Versioned<>(snapshot.version(), cx);
         }
-        return cx;
     }
 
-    public List<Contact> getContactsByName(String name) {
-        LOGGER.debug("Getting contact with name: {}", name);
-        var cx = contactRepository.getContactsByName(name);
-        if (cx.isEmpty()) {
-            LOGGER.debug("No contacts found with name: {}", name);
+    /**
+     * {@link #getContactsByPhoneNumber(String)} serialized as a JSON array, from the search cache
+     * when it has the answer.
+     * @return The JSON, or no bytes if no contact matched.
+     */
+    public Versioned<byte[]> getContactsByPhoneNumberJson(String phoneNumber) {
+        return searchCache.get(ContactMetrics.Operation.SEARCH_PHONE, phoneNumber, this::getContactsByPhoneNumber);
+    }
+
+    public Versioned<List<Contact>> getContactsByName(String name) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Getting contact with name: {}", name);
+        }
+        try (var snapshot = contactRepository.snapshot()) {
+            var cx = snapshot.getContactsByName(name);
+            metrics.result(ContactMetrics.Operation.SEARCH_NAME, !cx.isEmpty());
+            if (cx.isEmpty()) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("No contacts found with name: {}", name);
+                }
+            }
+            return new Versioned<>(snapshot.version(), cx);
+        }
+    }
+
+    /**
+     * {@link #getContactsByName(String)} serialized as a JSON array, from the search cache when it
+     * has the answer.
+     * @return The JSON, or no bytes if no contact matched.
+     */
+    public Versioned<byte[]> getContactsByNameJson(String name) {
+        return searchCache.get(ContactMetrics.Operation.SEARCH_NAME, name, this::getContactsByName);
+    }
+
+    public Versioned<List<Contact>> getContactsByNameIgnoreCase(String name) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Getting contact with name ignoring case: {}", name);
+        }
+        try (var snapshot = contactRepository.snapshot()) {
+            var cx = snapshot.getContactsByNameIgnoreCase(name);
+            metrics.result(ContactMetrics.Operation.SEARCH_NAME_IGNORE_CASE, !cx.isEmpty());
+            if (cx.isEmpty()) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("No contacts found with name ignoring case: {}", name);
+                }
+            }
+            return new Versioned<>(snapshot.version(), cx);
+        }
+    }
+
+    public Versioned<List<Contact>> getContactsByNamePrefix(String prefix) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Getting contact with name prefix: {}", prefix);
+        }
+        try (var snapshot = contactRepository.snapshot()) {
+            var cx = snapshot.getContactsByNamePrefix(prefix);
+            metrics.result(ContactMetrics.Operation.SEARCH_NAME_PREFIX, !cx.isEmpty());
+            if (cx.isEmpty()) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("No contacts found with name prefix: {}", prefix);
+                }
+            }
+            return new Versioned<>(snapshot.version(), cx);
+        }
+    }
+
+    public Versioned<List<Contact>> getContactsByNameFuzzy(String name) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Getting contact with name like: {}", name);
+        }
+        try (var snapshot = contactRepository.snapshot()) {
+            var cx = snapshot.getContactsByNameFuzzy(name);
+            metrics.result(ContactMetrics.Operation.SEARCH_NAME_FUZZY, !cx.isEmpty());
+            if (cx.isEmpty()) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("No contacts found with name like: {}", name);
+                }
+            }
+            return new Versioned<>(snapshot.version(), cx);
         }
-        return cx;
     }
 }
@@ -0,0 +1,204 @@
+package com.ust.elkstackdemo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ust.elkstackdemo.metrics.ContactMetrics;
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactJson;
+import com.ust.elkstackdemo.model.Versioned;
+import com.ust.elkstackdemo.repository.ContactChangeListener;
+import com.ust.elkstackdemo.repository.ContactStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Serialized JSON responses of exact name and phone number searches, so that a repeated search
+ * costs one hash lookup and skips both the store and assembling the JSON.
+ * <p>
+ * Entries are bounded by weight, the bytes they hold, and evicted by Caffeine's W-TinyLFU policy,
+ * which keeps frequently searched keys over ones seen once. Every write to the store removes
+ * exactly the entries it could change once it is committed: the added or removed contact's name,
+ * and every fragment of its phone number of a length that has been searched. A search whose result
+ * was read before a write committed is only cached if no write committed while it ran, so an entry
+ * never outlives a change it misses.
+ */
+@Component
+public class SearchCache implements ContactChangeListener, SmartInitializingSingleton {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchCache.class);
+
+    /**
+     * Estimated heap bytes per entry besides the characters of its key and its JSON: the cache
+     * node, the key and value records, the key string and the array headers.
+     */
+    static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private static final byte[] NO_CONTACTS = new byte[0];
+
+    private final ContactStore contactStore;
+    private final ContactMetrics metrics;
+    private final Cache<Key, Versioned<byte[]>> cache;
+
+    /**
+     * Bit {@code n} is set once a phone number fragment of length {@code n} has been cached. Writes
+     * only invalidate fragments of these lengths; bits are never cleared.
+     */
+    private final AtomicInteger phoneKeyLengths = new AtomicInteger();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Contacts changed by the current thread's write, invalidated in {@link #afterChange()}.
+     */
+    private final ThreadLocal<List<Contact>> changed = ThreadLocal.withInitial(ArrayList::new);
+
+    record Key(ContactMetrics.Operation operation, String key) {
+    }
+
+    public SearchCache(ContactStore contactStore, ContactMetrics metrics, SearchCacheProperties properties) {
+        this.contactStore = contactStore;
+        this.metrics = metrics;
+        this.cache = !properties.enabled() ? null : Caffeine.newBuilder()
+                .maximumWeight(properties.maxSize().toBytes())
+                .weigher((Key key, Versioned<byte[]> value) ->
+                        ENTRY_OVERHEAD_BYTES + 2 * key.key().length() + value.value().length)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Start invalidating once every singleton exists, after persistence has recovered the store,
+     * rather than for each recovered contact while nothing is cached yet.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        start();
+    }
+
+    public void start() {
+        if (cache != null) {
+            contactStore.addChangeListener(this);
+            LOGGER.info("Search cache enabled");
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        contactStore.removeChangeListener(this);
+    }
+
+    /**
+     * The JSON array of contacts {@code search} finds for {@code key}, from the cache if it is
+     * there. Searches that fail are not cached.
+     * @param operation {@link ContactMetrics.Operation#SEARCH_NAME} or
+     *                  {@link ContactMetrics.Operation#SEARCH_PHONE}.
+     * @return The serialized contacts with the version they were read at, or no bytes at all if
+     * nothing matched.
+     */
+    public Versioned<byte[]> get(ContactMetrics.Operation operation, String key,
+                                 Function<String, Versioned<List<Contact>>> search) {
+        if (operation != ContactMetrics.Operation.SEARCH_NAME && operation != ContactMetrics.Operation.SEARCH_PHONE) {
+            throw new IllegalArgumentException("Invalid cached search: " + operation);
+        }
+        if (cache == null) {
+            return serialize(search.apply(key));
+        }
+        var cacheKey = new Key(operation, key);
+        var cached = cache.getIfPresent(cacheKey);
+        if (cached != null) {
+            metrics.result(operation, cached.value().length > 0);
+            return cached;
+        }
+        var result = serialize(search.apply(key));
+        if (operation == ContactMetrics.Operation.SEARCH_PHONE) {
+            // published before the entry, so a write that finds the entry also finds its length
+            int length = 1 << Math.min(key.length(), Integer.SIZE - 1);
+            if ((phoneKeyLengths.get() & length) == 0) {
+                phoneKeyLengths.getAndAccumulate(length, (lengths, bit) -> lengths | bit);
+            }
+        }
+        cache.put(cacheKey, result);
+        // a write that committed after the search read its snapshot may have invalidated before the put
+        if (contactStore.version() != result.version()) {
+            cache.asMap().remove(cacheKey, result);
+        }
+        return result;
+    }
+
+    @Override
+    public void contactAdded(long version, Contact contact) {
+        changed.get().add(contact);
+    }
+
+    @Override
+    public void contactsRemoved(long version, String phoneNumber, List<Contact> contacts) {
+        changed.get().addAll(contacts);
+    }
+
+    /**
+     * Invalidate what the write changed, now that it is committed and new searches see it.
+     */
+    @Override
+    public void afterChange() {
+        List<Contact> contacts = changed.get();
+        for (Contact contact : contacts) {
+            invalidate(contact);
+        }
+        contacts.clear();
+    }
+
+    public CacheStats stats() {
+        return cache == null ? CacheStats.empty() : cache.stats();
+    }
+
+    public long invalidations() {
+        return invalidations.sum();
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.estimatedSize();
+    }
+
+    /**
+     * Estimated heap bytes held by the cached entries.
+     */
+    public long weightedSize() {
+        return cache == null ? 0 : cache.policy().eviction().orElseThrow().weightedSize().orElse(0);
+    }
+
+    private void invalidate(Contact contact) {
+        remove(new Key(ContactMetrics.Operation.SEARCH_NAME, contact.getName()));
+        String phoneNumber = contact.getPhoneNumber();
+        int lengths = phoneKeyLengths.get();
+        for (int length = 1; length <= phoneNumber.length() && (lengths >>> length) != 0; length++) {
+            if ((lengths & (1 << length)) == 0) {
+                continue;
+            }
+            for (int i = 0; i + length <= phoneNumber.length(); i++) {
+                remove(new Key(ContactMetrics.Operation.SEARCH_PHONE, phoneNumber.substring(i, i + length)));
+            }
+        }
+    }
+
+    private void remove(Key key) {
+        if (cache.asMap().remove(key) != null) {
+            invalidations.increment();
+        }
+    }
+
+    private Versioned<byte[]> serialize(Versioned<List<Contact>> result) {
+        if (result.value().isEmpty()) {
+            return new Versioned<>(result.version(), NO_CONTACTS);
+        }
+        return new Versioned<>(result.version(), ContactJson.array(result.value()));
+    }
+}
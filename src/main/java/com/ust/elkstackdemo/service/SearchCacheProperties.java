@@ -0,0 +1,18 @@
+package com.ust.elkstackdemo.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for the search result cache, under {@code contacts.search-cache}.
+ *
+ * @param enabled Whether exact name and phone number searches are cached.
+ * @param maxSize Heap the cached responses may take, counting their keys and bookkeeping. A single
+ *                result larger than this is served but never cached.
+ */
+@ConfigurationProperties("contacts.search-cache")
+public record SearchCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("64MB") DataSize maxSize) {
+}
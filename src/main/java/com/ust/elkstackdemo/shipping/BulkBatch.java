@@ -0,0 +1,125 @@
+package com.ust.elkstackdemo.shipping;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The body of one {@code _bulk} request: a {@code create} action line followed by the event itself
+ * for every log line, with the offsets of each pair kept so failed events can be resent alone.
+ */
+final class BulkBatch {
+
+    private static final byte[] ACTION = "{\"create\":{}}\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final int maxEvents;
+    private final int maxBytes;
+
+    private byte[] body;
+    private int size;
+    private int[] starts;
+    private int events;
+    private long firstAddedNanos;
+    private Checkpoint end;
+
+    BulkBatch(int maxEvents, int maxBytes) {
+        this.maxEvents = maxEvents;
+        this.maxBytes = maxBytes;
+        this.body = new byte[Math.min(maxBytes, 64 * 1024)];
+        this.starts = new int[Math.min(maxEvents, 1024)];
+    }
+
+    /**
+     * Add one log line. Lines that are not JSON objects cannot be indexed as they are and are left out.
+     *
+     * @return Whether the line was added.
+     */
+    boolean add(byte[] line, int offset, int length) {
+        if (line[offset] != '{') {
+            return false;
+        }
+        if (events == 0) {
+            firstAddedNanos = System.nanoTime();
+        }
+        if (events == starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+        }
+        starts[events++] = size;
+        append(ACTION, 0, ACTION.length);
+        append(line, offset, length);
+        append(NEWLINE, 0, 1);
+        return true;
+    }
+
+    boolean full() {
+        return events >= maxEvents || size >= maxBytes;
+    }
+
+    int events() {
+        return events;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * How long the first event has been waiting.
+     */
+    long ageNanos() {
+        return events == 0 ? 0 : System.nanoTime() - firstAddedNanos;
+    }
+
+    Checkpoint end() {
+        return end;
+    }
+
+    void end(Checkpoint end) {
+        this.end = end;
+    }
+
+    /**
+     * A batch with only the given events, in order, for resending those Elasticsearch asked to retry.
+     */
+    BulkBatch retain(int[] indexes, int count) {
+        var retained = new BulkBatch(count, size);
+        retained.starts = new int[count];
+        for (int i = 0; i < count; i++) {
+            int index = indexes[i];
+            int from = starts[index];
+            int to = index + 1 < events ? starts[index + 1] : size;
+            retained.starts[retained.events++] = retained.size;
+            retained.append(body, from, to - from);
+        }
+        retained.end = end;
+        return retained;
+    }
+
+    byte[] gzip() {
+        var out = new ByteArrayOutputStream(size / 4 + 64);
+        // fastest level: log lines compress well even so, and the sender stays ahead of the reader
+        try (var gzip = new GZIPOutputStream(out, 8192) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        }) {
+            gzip.write(body, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private void append(byte[] bytes, int offset, int length) {
+        if (size + length > body.length) {
+            body = Arrays.copyOf(body, Math.max(body.length * 2, size + length));
+        }
+        System.arraycopy(bytes, offset, body, size, length);
+        size += length;
+    }
+}
@@ -0,0 +1,57 @@
+package com.ust.elkstackdemo.shipping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * How far a log file has been shipped. Files are identified by a fingerprint of their first bytes
+ * rather than by name or inode, so a checkpoint still finds its file after it has been renamed and
+ * compressed by log rotation.
+ *
+ * @param fingerprintLength How many leading bytes the fingerprint covers; at most
+ *                          {@link #FINGERPRINT_BYTES}, fewer for files that were shorter.
+ * @param fingerprint       CRC-32 of those bytes.
+ * @param offset            Offset in the (uncompressed) file just after the last shipped line.
+ */
+record Checkpoint(int fingerprintLength, long fingerprint, long offset) {
+
+    static final int FINGERPRINT_BYTES = 1024;
+
+    static Optional<Checkpoint> read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        try {
+            return Optional.of(new Checkpoint(Integer.parseInt(properties.getProperty("fingerprint.length")),
+                    Long.parseLong(properties.getProperty("fingerprint.crc32")),
+                    Long.parseLong(properties.getProperty("offset"))));
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IOException("Invalid checkpoint file: " + file, e);
+        }
+    }
+
+    /**
+     * Replace the checkpoint file atomically, so a crash leaves either the old or the new one.
+     */
+    void write(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("fingerprint.length", Integer.toString(fingerprintLength));
+        properties.setProperty("fingerprint.crc32", Long.toString(fingerprint));
+        properties.setProperty("offset", Long.toString(offset));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,288 @@
+package com.ust.elkstackdemo.shipping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ships the application's own log file to an Elasticsearch {@code _bulk} endpoint, so no
+ * Filebeat or Logstash is needed in between.
+ * <p>
+ * A reader thread tails the file with a {@link LogTailer} and cuts the lines into batches by count,
+ * size and age. A sender thread posts each batch gzip-compressed, retrying with exponential backoff
+ * and jitter for as long as the endpoint fails or asks for events again, and writes the
+ * {@link Checkpoint} once a batch has been acknowledged. Delivery is therefore at least once: a
+ * crash may resend the batches after the last checkpoint, but never skips one.
+ * <p>
+ * Between the two threads sits a queue of at most {@code maxPendingBatches} batches. When the sink
+ * slows down the queue fills, the reader stops reading and the log file itself holds the backlog,
+ * so memory stays bounded however far behind the shipper falls.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contacts.shipper", name = "enabled", havingValue = "true")
+public class LogShipper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogShipper.class);
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final long STOP_GRACE_MILLIS = 5_000;
+
+    private final ShipperProperties properties;
+    private final URI endpoint;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<BulkBatch> pending;
+    private final AtomicInteger unacknowledged = new AtomicInteger();
+
+    private final LongAdder shippedEvents = new LongAdder();
+    private final LongAdder shippedBytes = new LongAdder();
+    private final LongAdder rejectedEvents = new LongAdder();
+    private final LongAdder skippedLines = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder backpressureNanos = new LongAdder();
+
+    private volatile boolean running;
+    private volatile long blockedSince;
+    private LogTailer tailer;
+    private Thread reader;
+    private Thread sender;
+    private long startedNanos;
+
+    public LogShipper(ShipperProperties properties) {
+        this.properties = properties;
+        String base = properties.url().toString();
+        this.endpoint = URI.create((base.endsWith("/") ? base : base + "/") + properties.index() + "/_bulk");
+        this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        this.pending = new ArrayBlockingQueue<>(properties.maxPendingBatches());
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        var checkpointFile = properties.checkpoint().toAbsolutePath();
+        Files.createDirectories(checkpointFile.getParent());
+        tailer = LogTailer.open(properties.file(), Checkpoint.read(checkpointFile),
+                (int) properties.batchBytes().toBytes());
+        running = true;
+        startedNanos = System.nanoTime();
+        reader = new Thread(this::read, "log-shipper-reader");
+        sender = new Thread(this::send, "log-shipper-sender");
+        reader.setDaemon(true);
+        sender.setDaemon(true);
+        reader.start();
+        sender.start();
+        LOGGER.info("Shipping {} to {}", properties.file(), endpoint);
+    }
+
+    /**
+     * Stop reading, then give the sender a few seconds to deliver what was already read. Anything
+     * still unacknowledged after that is read and sent again on the next start.
+     */
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        stopThread(reader);
+        stopThread(sender);
+        tailer.close();
+    }
+
+    public ShipperStatus status() {
+        long shipped = shippedEvents.sum();
+        long blocked = blockedSince;
+        long backpressure = backpressureNanos.sum() + (blocked == 0 ? 0 : System.nanoTime() - blocked);
+        double seconds = (System.nanoTime() - startedNanos) / 1e9;
+        return new ShipperStatus(shipped, shippedBytes.sum(), rejectedEvents.sum(),
+                skippedLines.sum() + tailer.skippedLines(), retries.sum(), unacknowledged.get(),
+                TimeUnit.NANOSECONDS.toMillis(backpressure), seconds > 0 ? shipped / seconds : 0);
+    }
+
+    private void read() {
+        int maxEvents = properties.batchSize();
+        int maxBytes = (int) properties.batchBytes().toBytes();
+        long flushNanos = properties.flushInterval().toNanos();
+        long pollNanos = properties.pollInterval().toNanos();
+        BulkBatch[] batch = {new BulkBatch(maxEvents, maxBytes)};
+        try {
+            while (running) {
+                int lines = 0;
+                try {
+                    lines = tailer.poll((bytes, offset, length) -> {
+                        if (!batch[0].add(bytes, offset, length)) {
+                            skippedLines.increment();
+                        }
+                        return !batch[0].full();
+                    });
+                    if (batch[0].events() > 0 && (batch[0].full() || batch[0].ageNanos() >= flushNanos)) {
+                        enqueue(batch[0]);
+                        batch[0] = new BulkBatch(maxEvents, maxBytes);
+                        continue;
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("Could not read {}", properties.file(), e);
+                }
+                if (lines == 0) {
+                    long wait = batch[0].events() > 0 ? Math.min(pollNanos, flushNanos - batch[0].ageNanos()) : pollNanos;
+                    LockSupport.parkNanos(this, Math.max(wait, 0));
+                }
+            }
+            if (batch[0].events() > 0) {
+                enqueue(batch[0]);
+            }
+        } catch (InterruptedException e) {
+            // stopping while the sink is behind; the checkpoint still marks where to pick up
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.warn("Could not read {}", properties.file(), e);
+        }
+    }
+
+    /**
+     * Hand a batch to the sender, waiting while it is {@code maxPendingBatches} behind.
+     */
+    private void enqueue(BulkBatch batch) throws InterruptedException, IOException {
+        batch.end(tailer.checkpoint());
+        unacknowledged.incrementAndGet();
+        if (!pending.offer(batch)) {
+            long blocked = System.nanoTime();
+            blockedSince = blocked;
+            try {
+                pending.put(batch);
+            } finally {
+                blockedSince = 0;
+                backpressureNanos.add(System.nanoTime() - blocked);
+            }
+        }
+    }
+
+    private void send() {
+        var checkpointFile = properties.checkpoint().toAbsolutePath();
+        try {
+            while (running || reader.isAlive() || !pending.isEmpty()) {
+                BulkBatch batch = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (batch == null) {
+                    continue;
+                }
+                deliver(batch);
+                try {
+                    batch.end().write(checkpointFile);
+                } catch (IOException e) {
+                    LOGGER.warn("Could not write checkpoint {}", checkpointFile, e);
+                }
+                unacknowledged.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Post the batch until every event in it has been accepted or rejected for good.
+     */
+    private void deliver(BulkBatch batch) throws InterruptedException {
+        long backoff = properties.initialBackoff().toNanos();
+        while (true) {
+            byte[] body = batch.gzip();
+            HttpResponse<byte[]> response = null;
+            try {
+                response = client.send(HttpRequest.newBuilder(endpoint)
+                        .timeout(REQUEST_TIMEOUT)
+                        .header("Content-Type", "application/x-ndjson")
+                        .header("Content-Encoding", "gzip")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                        .build(), HttpResponse.BodyHandlers.ofByteArray());
+            } catch (IOException e) {
+                LOGGER.debug("Bulk request to {} failed: {}", endpoint, e.toString());
+            }
+            if (response != null) {
+                int status = response.statusCode();
+                if (status == 200) {
+                    shippedBytes.add(body.length);
+                    BulkBatch retry = acknowledge(batch, response.body());
+                    if (retry == null) {
+                        return;
+                    }
+                    batch = retry;
+                } else if (status != 429 && status < 500) {
+                    LOGGER.error("Bulk endpoint {} answered {}; dropping {} log events", endpoint, status, batch.events());
+                    rejectedEvents.add(batch.events());
+                    return;
+                }
+            }
+            retries.increment();
+            // equal jitter: at least half the backoff, so retries from many instances spread out
+            TimeUnit.NANOSECONDS.sleep(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            backoff = Math.min(backoff * 2, properties.maxBackoff().toNanos());
+        }
+    }
+
+    /**
+     * Count what a {@code 200} response accepted and rejected.
+     *
+     * @return The events Elasticsearch asked to be sent again (429 or 5xx per item), or null if none.
+     */
+    private BulkBatch acknowledge(BulkBatch batch, byte[] body) {
+        JsonNode response;
+        try {
+            response = objectMapper.readTree(body);
+        } catch (IOException e) {
+            LOGGER.warn("Unreadable bulk response from {}; counting {} log events as shipped", endpoint, batch.events());
+            shippedEvents.add(batch.events());
+            return null;
+        }
+        if (!response.path("errors").asBoolean(false)) {
+            shippedEvents.add(batch.events());
+            return null;
+        }
+        int[] retry = new int[batch.events()];
+        int retryCount = 0;
+        int rejected = 0;
+        String reason = null;
+        Iterator<JsonNode> items = response.path("items").elements();
+        for (int i = 0; i < batch.events() && items.hasNext(); i++) {
+            JsonNode result = items.next().elements().next();
+            int status = result.path("status").asInt(200);
+            if (status == 429 || status >= 500) {
+                retry[retryCount++] = i;
+            } else if (status >= 300) {
+                rejected++;
+                if (reason == null) {
+                    reason = result.path("error").path("reason").asText(null);
+                }
+            }
+        }
+        shippedEvents.add(batch.events() - retryCount - rejected);
+        if (rejected > 0) {
+            rejectedEvents.add(rejected);
+            LOGGER.warn("Bulk endpoint {} rejected {} log events: {}", endpoint, rejected, reason);
+        }
+        return retryCount == 0 ? null : batch.retain(retry, retryCount);
+    }
+
+    private static void stopThread(Thread thread) throws InterruptedException {
+        thread.join(STOP_GRACE_MILLIS);
+        if (thread.isAlive()) {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+}
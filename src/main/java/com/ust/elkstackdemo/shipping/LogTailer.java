@@ -0,0 +1,499 @@
+package com.ust.elkstackdemo.shipping;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Follows a log file across rotations and hands out its complete lines.
+ * <p>
+ * The active file is read through a {@link FileChannel} that stays open while Logback renames and
+ * compresses it away, so the end of a rotated file is still read in full before the tailer moves on
+ * to the new file. After a restart, the {@link Checkpoint} is matched against the active file and
+ * the rotated ones next to it (plain or gzip), and reading resumes at its offset in whichever file
+ * it belongs to, followed by every file rotated after that one.
+ * <p>
+ * Not thread-safe; the shipper's reader thread owns it.
+ */
+final class LogTailer implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogTailer.class);
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Receives one line without its line terminator; the bytes are only valid during the call.
+     */
+    @FunctionalInterface
+    interface LineConsumer {
+
+        /**
+         * @return Whether more lines are wanted in this poll.
+         */
+        boolean accept(byte[] bytes, int offset, int length);
+    }
+
+    private final Path file;
+    private final int maxLineBytes;
+    private final Deque<Source> backlog = new ArrayDeque<>();
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private final ByteBuffer chunkBuffer = ByteBuffer.wrap(chunk);
+
+    /**
+     * Where to start in the active file the first time it is opened.
+     */
+    private long liveOffset;
+    private Source source;
+    private boolean draining;
+    private boolean finished;
+    private int start;
+    private int end;
+    private long chunkOffset;
+    private long lineEnd;
+    private Checkpoint lastCheckpoint = new Checkpoint(0, new CRC32().getValue(), 0);
+
+    private byte[] line = new byte[1024];
+    private int lineLength;
+    private boolean oversized;
+    private volatile long skippedLines;
+
+    private byte[] outBytes;
+    private int outOffset;
+    private int outLength;
+
+    private LogTailer(Path file, int maxLineBytes) {
+        this.file = file.toAbsolutePath();
+        this.maxLineBytes = maxLineBytes;
+    }
+
+    /**
+     * Open {@code file}, resuming at {@code checkpoint} if it matches the file or one of its rotations.
+     */
+    static LogTailer open(Path file, Optional<Checkpoint> checkpoint, int maxLineBytes) throws IOException {
+        var tailer = new LogTailer(file, maxLineBytes);
+        if (checkpoint.isEmpty()) {
+            return tailer;
+        }
+        List<Path> candidates = rotations(tailer.file);
+        if (Files.exists(tailer.file)) {
+            candidates.add(tailer.file);
+        }
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            if (!matches(candidates.get(i), checkpoint.get())) {
+                continue;
+            }
+            for (int j = i; j < candidates.size(); j++) {
+                Path candidate = candidates.get(j);
+                long offset = j == i ? checkpoint.get().offset() : 0;
+                if (candidate.equals(tailer.file)) {
+                    tailer.liveOffset = offset;
+                } else if (candidate.getFileName().toString().endsWith(".gz")) {
+                    tailer.backlog.add(GzipSource.open(candidate, offset));
+                } else {
+                    tailer.backlog.add(FileSource.open(candidate, offset, false));
+                }
+            }
+            LOGGER.info("Resuming {} at offset {}; {} rotated files to read before {}",
+                    candidates.get(i), checkpoint.get().offset(), tailer.backlog.size(), file);
+            return tailer;
+        }
+        LOGGER.warn("Checkpoint matches none of the log files; shipping {} from the start", file);
+        return tailer;
+    }
+
+    /**
+     * Hand complete lines to {@code consumer} until it wants no more or everything written so far
+     * has been read.
+     *
+     * @return The number of lines handed out.
+     */
+    int poll(LineConsumer consumer) throws IOException {
+        int lines = 0;
+        while (true) {
+            while (start < end) {
+                int newline = indexOf(chunk, start, end);
+                if (newline < 0) {
+                    appendPartial(start, end - start);
+                    start = end;
+                    break;
+                }
+                int from = start;
+                start = newline + 1;
+                lineEnd = chunkOffset + start;
+                if (complete(from, newline)) {
+                    lines++;
+                    if (!consumer.accept(outBytes, outOffset, outLength)) {
+                        return lines;
+                    }
+                }
+            }
+            if (!readChunk()) {
+                return lines;
+            }
+        }
+    }
+
+    /**
+     * Where the last line handed out ends, as a checkpoint to resume from.
+     */
+    Checkpoint checkpoint() throws IOException {
+        return source == null ? lastCheckpoint : source.checkpoint(lineEnd);
+    }
+
+    long skippedLines() {
+        return skippedLines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (source != null) {
+            source.close();
+        }
+        for (Source rotated : backlog) {
+            rotated.close();
+        }
+    }
+
+    /**
+     * Refill the chunk from the current file, moving on to the next one when it has been rotated away.
+     *
+     * @return Whether there is anything new in the chunk.
+     */
+    private boolean readChunk() throws IOException {
+        while (true) {
+            if (finished) {
+                lastCheckpoint = source.checkpoint(lineEnd);
+                source.close();
+                source = null;
+                finished = false;
+                draining = false;
+            }
+            if (source == null) {
+                source = backlog.poll();
+                if (source == null) {
+                    if (!Files.exists(file)) {
+                        return false;
+                    }
+                    source = FileSource.open(file, liveOffset, true);
+                    liveOffset = 0;
+                }
+                lineEnd = source.position();
+                lineLength = 0;
+                oversized = false;
+            }
+            chunkOffset = source.position();
+            chunkBuffer.clear();
+            int read = source.read(chunkBuffer);
+            if (read > 0) {
+                start = 0;
+                end = read;
+                return true;
+            }
+            if (source instanceof FileSource live && live.live && !draining) {
+                switch (live.state(file)) {
+                    case CURRENT:
+                        return false;
+                    case TRUNCATED:
+                        LOGGER.warn("{} was truncated; shipping it again from the start", file);
+                        source.close();
+                        source = null;
+                        continue;
+                    case ROTATED:
+                        // whatever was written before the rename is read by the next pass
+                        draining = true;
+                        continue;
+                }
+            }
+            finished = true;
+            if (lineLength > 0 || oversized) {
+                // the last line of a finished file has no terminator; end it here
+                chunk[0] = '\n';
+                chunkOffset = source.position() - 1;
+                start = 0;
+                end = 1;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Complete the line ending before {@code newline}, if it is worth handing out.
+     */
+    private boolean complete(int from, int newline) {
+        if (lineLength > 0 || oversized) {
+            appendPartial(from, newline - from);
+            outBytes = line;
+            outOffset = 0;
+            outLength = lineLength;
+            lineLength = 0;
+        } else {
+            outBytes = chunk;
+            outOffset = from;
+            outLength = newline - from;
+        }
+        if (oversized || outLength > maxLineBytes) {
+            oversized = false;
+            skippedLines++;
+            return false;
+        }
+        if (outLength > 0 && outBytes[outOffset + outLength - 1] == '\r') {
+            outLength--;
+        }
+        return outLength > 0;
+    }
+
+    private void appendPartial(int offset, int length) {
+        if (oversized) {
+            return;
+        }
+        if (lineLength + length > maxLineBytes) {
+            oversized = true;
+            lineLength = 0;
+            return;
+        }
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(chunk, offset, line, lineLength, length);
+        lineLength += length;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Files rotated out of {@code file}, oldest first.
+     */
+    static List<Path> rotations(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        String prefix = file.getFileName() + ".";
+        List<Path> rotated = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return rotated;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            // Logback compresses from a .tmp copy that it deletes once the .gz is complete
+            files.filter(path -> path.getFileName().toString().startsWith(prefix)
+                            && !path.getFileName().toString().endsWith(".tmp"))
+                    .forEach(rotated::add);
+        }
+        rotated.sort(Comparator.comparingLong(LogTailer::lastModified));
+        return rotated;
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static boolean matches(Path candidate, Checkpoint checkpoint) throws IOException {
+        try (InputStream in = candidate.getFileName().toString().endsWith(".gz")
+                ? new GZIPInputStream(Files.newInputStream(candidate)) : Files.newInputStream(candidate)) {
+            byte[] head = in.readNBytes(checkpoint.fingerprintLength());
+            return head.length == checkpoint.fingerprintLength() && crc(head, head.length) == checkpoint.fingerprint();
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private static long crc(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+
+    private sealed interface Source extends Closeable permits FileSource, GzipSource {
+
+        /**
+         * @return The number of bytes read; zero or less at the end of what is there.
+         */
+        int read(ByteBuffer buffer) throws IOException;
+
+        long position() throws IOException;
+
+        Checkpoint checkpoint(long offset) throws IOException;
+    }
+
+    private enum State {
+        CURRENT, TRUNCATED, ROTATED
+    }
+
+    /**
+     * An uncompressed file: the active one, or one rotated without compression.
+     */
+    private static final class FileSource implements Source {
+
+        final FileChannel channel;
+        final boolean live;
+        final Object identity;
+
+        private FileSource(FileChannel channel, boolean live, Object identity) {
+            this.channel = channel;
+            this.live = live;
+            this.identity = identity;
+        }
+
+        static FileSource open(Path path, long offset, boolean live) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                channel.position(Math.min(offset, channel.size()));
+                return new FileSource(channel, live, identity(Files.readAttributes(path, BasicFileAttributes.class)));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer buffer) throws IOException {
+            return channel.read(buffer);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public Checkpoint checkpoint(long offset) throws IOException {
+            ByteBuffer head = ByteBuffer.allocate((int) Math.min(Checkpoint.FINGERPRINT_BYTES, offset));
+            while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+                // positional reads leave the tailing position alone
+            }
+            return new Checkpoint(head.position(), crc(head.array(), head.position()), offset);
+        }
+
+        State state(Path path) throws IOException {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                return State.ROTATED;
+            }
+            if (!identity.equals(identity(attributes))) {
+                return State.ROTATED;
+            }
+            return attributes.size() < channel.position() ? State.TRUNCATED : State.CURRENT;
+        }
+
+        private static Object identity(BasicFileAttributes attributes) {
+            return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * A rotated file compressed by Logback; only read after a restart, when catching up.
+     */
+    private static final class GzipSource implements Source {
+
+        final ReadableByteChannel channel;
+        final byte[] head;
+        final ByteBuffer pending;
+        final Path path;
+        long position;
+
+        private GzipSource(Path path, ReadableByteChannel channel, byte[] head, ByteBuffer pending, long position) {
+            this.path = path;
+            this.channel = channel;
+            this.head = head;
+            this.pending = pending;
+            this.position = position;
+        }
+
+        static GzipSource open(Path path, long offset) throws IOException {
+            InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path)), CHUNK_SIZE);
+            try {
+                byte[] head = in.readNBytes(Checkpoint.FINGERPRINT_BYTES);
+                int headOffset = (int) Math.min(offset, head.length);
+                long toSkip = offset - headOffset;
+                while (toSkip > 0) {
+                    long skipped = in.skip(toSkip);
+                    if (skipped <= 0) {
+                        break;
+                    }
+                    toSkip -= skipped;
+                }
+                return new GzipSource(path, Channels.newChannel(in), head,
+                        ByteBuffer.wrap(head, headOffset, head.length - headOffset), offset - toSkip);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer buffer) throws IOException {
+            int read;
+            if (pending.hasRemaining()) {
+                read = Math.min(pending.remaining(), buffer.remaining());
+                buffer.put(buffer.position(), pending, pending.position(), read);
+                buffer.position(buffer.position() + read);
+                pending.position(pending.position() + read);
+            } else {
+                try {
+                    read = channel.read(buffer);
+                } catch (EOFException e) {
+                    LOGGER.warn("{} ends in the middle of its compressed data", path);
+                    return -1;
+                }
+            }
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public Checkpoint checkpoint(long offset) {
+            return new Checkpoint(head.length, crc(head, head.length), offset);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.ust.elkstackdemo.shipping;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for the embedded log shipper, under {@code contacts.shipper}.
+ *
+ * @param enabled           Whether the application ships its own log file. Off by default, leaving
+ *                          it to Filebeat or Logstash.
+ * @param file              The log file to tail; rotated files are found next to it by name prefix.
+ * @param url               Base URL of Elasticsearch or anything that speaks its {@code _bulk} API.
+ * @param index             Index or data stream the events are written to.
+ * @param batchSize         Events per bulk request at most.
+ * @param batchBytes        Uncompressed size of a bulk request at most.
+ * @param flushInterval     How long an incomplete batch may wait for more events.
+ * @param maxPendingBatches Batches that may wait for the sender before reading stops. This bounds
+ *                          memory; while the sink is slow the log file is the buffer.
+ * @param pollInterval      How often the file is checked for new lines once everything is read.
+ * @param initialBackoff    Wait before the first retry of a failed request; doubled on every retry.
+ * @param maxBackoff        Longest wait between retries.
+ * @param checkpoint        File recording how far the log has been shipped, written after every
+ *                          acknowledged batch.
+ */
+@ConfigurationProperties("contacts.shipper")
+public record ShipperProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("logs/application.dev.log") Path file,
+        @DefaultValue("http://localhost:9200") URI url,
+        @DefaultValue("elk-stack-demo-logs") String index,
+        @DefaultValue("1000") int batchSize,
+        @DefaultValue("1MB") DataSize batchBytes,
+        @DefaultValue("1s") Duration flushInterval,
+        @DefaultValue("4") int maxPendingBatches,
+        @DefaultValue("250ms") Duration pollInterval,
+        @DefaultValue("100ms") Duration initialBackoff,
+        @DefaultValue("30s") Duration maxBackoff,
+        @DefaultValue("data/shipper.checkpoint") Path checkpoint) {
+}
@@ -0,0 +1,18 @@
+package com.ust.elkstackdemo.shipping;
+
+/**
+ * Progress of the embedded log shipper since startup.
+ *
+ * @param shippedEvents      Events acknowledged by the bulk endpoint.
+ * @param shippedBytes       Compressed bytes of the requests that carried them.
+ * @param rejectedEvents     Events the endpoint refused for good, e.g. mapping errors.
+ * @param skippedLines       Lines that were not JSON objects or longer than a whole batch.
+ * @param retries            Requests repeated after a failure or a partial rejection.
+ * @param pendingBatches     Batches read but not yet acknowledged: the one being sent, the queued
+ *                           ones and one the reader may be waiting to queue.
+ * @param backpressureMillis Time the reader spent waiting for the sender to catch up.
+ * @param eventsPerSecond    Shipped events per second, averaged since startup.
+ */
+public record ShipperStatus(long shippedEvents, long shippedBytes, long rejectedEvents, long skippedLines,
+                            long retries, int pendingBatches, long backpressureMillis, double eventsPerSecond) {
+}
@@ -0,0 +1,169 @@
+package com.ust.elkstackdemo.cluster;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ust.elkstackdemo.ElkStackDemoApplication;
+import com.ust.elkstackdemo.model.BulkResult;
+import com.ust.elkstackdemo.model.Contact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Nodes of one cluster running in this JVM, each a whole application on its own port with its own
+ * store, talking over HTTP.
+ */
+class ContactClusterTest {
+
+    private static final TypeReference<List<Contact>> CONTACT_LIST = new TypeReference<>() {
+    };
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    private static String freeNode() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return "http://localhost:" + socket.getLocalPort();
+        }
+    }
+
+    private void start(String self, List<String> members) {
+        nodes.add(new SpringApplicationBuilder(ElkStackDemoApplication.class).run(
+                "--server.port=" + URI.create(self).getPort(),
+                "--logging.level.org.springframework.web=INFO",
+                "--logging.level.com.ust.elkstackdemo=INFO",
+                "--contacts.cluster.enabled=true",
+                "--contacts.cluster.self=" + self,
+                "--contacts.cluster.nodes=" + String.join(",", members),
+                // small batches, so that imports and rebalancing take several
+                "--contacts.cluster.batch-size=7"));
+    }
+
+    private HttpResponse<String> send(String node, String method, String path, String contentType, String body)
+            throws Exception {
+        var request = HttpRequest.newBuilder(URI.create(node + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (contentType != null) {
+            request.header("Content-Type", contentType);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<Contact> contacts(String node, String path) throws Exception {
+        var response = send(node, "GET", path, null, null);
+        if (response.statusCode() == 204) {
+            return List.of();
+        }
+        assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), CONTACT_LIST);
+    }
+
+    private ClusterStatus status(String node) throws Exception {
+        return objectMapper.readValue(send(node, "GET", "/cluster", null, null).body(), ClusterStatus.class);
+    }
+
+    private static Contact contact(int i) {
+        return new Contact("Contact " + i, "contact" + i + "@example.com", Long.toString(5_550_000_000L + i));
+    }
+
+    private static List<String> sorted(List<Contact> contacts) {
+        return contacts.stream().map(Contact::toString).sorted().toList();
+    }
+
+    @Test
+    @DisplayName("cluster_ShouldPartitionWritesAndMergeSearches")
+    void cluster_ShouldPartitionWritesAndMergeSearches() throws Exception {
+        String a = freeNode();
+        String b = freeNode();
+        start(a, List.of(a, b));
+        start(b, List.of(a, b));
+        var ring = new HashRing(List.of(a, b), 128);
+
+        List<Contact> added = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            added.add(contact(i));
+            assertEquals(200, send(a, "POST", "/contacts", "application/json", new String(contact(i).toJson())).statusCode());
+        }
+        var onA = contacts(a, "/contacts");
+        var onB = contacts(b, "/contacts");
+        assertFalse(onA.isEmpty());
+        assertFalse(onB.isEmpty());
+        assertTrue(onA.stream().allMatch(contact -> ring.owner(contact.getPhoneNumber()).equals(a)));
+        assertTrue(onB.stream().allMatch(contact -> ring.owner(contact.getPhoneNumber()).equals(b)));
+        assertEquals(sorted(added), sorted(contacts(b, "/contacts/search?type=name_prefix&key=Contact")));
+
+        var removed = onA.get(0);
+        assertEquals(200, send(b, "POST", "/contacts/remove?num=" + removed.getPhoneNumber(), null, null).statusCode());
+        assertEquals(onA.size() - 1, contacts(a, "/contacts").size());
+        assertEquals(List.of(), contacts(b, "/contacts/search?type=phone&key=" + removed.getPhoneNumber()));
+
+        var bulk = new StringBuilder();
+        for (int i = 40; i < 60; i++) {
+            bulk.append(new String(contact(i).toJson())).append('\n');
+        }
+        bulk.append(new String(contact(41).toJson())).append('\n');
+        var response = send(b, "POST", "/contacts/bulk", "application/x-ndjson", bulk.toString());
+        var result = objectMapper.readValue(response.body(), BulkResult.class);
+        assertEquals(new BulkResult(21, 20, 1, result.failures()), result);
+        assertEquals(20, result.failures().get(0).index());
+        assertEquals(59, status(a).localContacts() + status(b).localContacts());
+    }
+
+    @Test
+    @DisplayName("updateMembers_ShouldMoveContactsToTheirNewOwners")
+    void updateMembers_ShouldMoveContactsToTheirNewOwners() throws Exception {
+        String a = freeNode();
+        String b = freeNode();
+        String c = freeNode();
+        start(a, List.of(a, b));
+        start(b, List.of(a, b));
+        var bulk = new StringBuilder();
+        List<Contact> added = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            added.add(contact(i));
+            bulk.append(new String(contact(i).toJson())).append('\n');
+        }
+        assertEquals(200, send(a, "POST", "/contacts/bulk", "application/x-ndjson", bulk.toString()).statusCode());
+
+        start(c, List.of(c));
+        var update = send(a, "PUT", "/cluster/members", "application/json",
+                objectMapper.writeValueAsString(List.of(a, b, c)));
+        assertEquals(200, update.statusCode());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (status(a).rebalancing() || status(b).rebalancing() || status(c).rebalancing()) {
+            assertTrue(System.currentTimeMillis() < deadline, "rebalancing never finished");
+            Thread.sleep(5);
+        }
+
+        var ring = new HashRing(List.of(a, b, c), 128);
+        for (String node : List.of(a, b, c)) {
+            assertEquals(List.of(a, b, c), status(node).members());
+            var stored = contacts(node, "/contacts");
+            assertFalse(stored.isEmpty());
+            assertTrue(stored.stream().allMatch(contact -> ring.owner(contact.getPhoneNumber()).equals(node)));
+        }
+        assertEquals(contacts(c, "/contacts").size(), status(a).movedContacts() + status(b).movedContacts());
+        assertEquals(sorted(added), sorted(contacts(c, "/contacts/search?type=name_prefix&key=Contact")));
+
+        assertEquals(400, send(b, "PUT", "/cluster/members", "application/json", "[\"ftp://a\"]").statusCode());
+    }
+}
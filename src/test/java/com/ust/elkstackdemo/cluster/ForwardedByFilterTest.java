@@ -0,0 +1,97 @@
+package com.ust.elkstackdemo.cluster;
+
+import com.ust.elkstackdemo.repository.ContactRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ForwardedByFilterTest {
+
+    private static final String SELF = "http://localhost:8000";
+    private static final String MEMBER = "http://127.0.0.1:8001";
+    private static final String REMOTE_MEMBER = "http://192.0.2.7:8002";
+
+    private ContactCluster cluster;
+
+    @BeforeEach
+    void setUp() {
+        cluster = new ContactCluster(new ContactRepository(), new ClusterProperties(true, SELF,
+                List.of(SELF, MEMBER, REMOTE_MEMBER), 16, Duration.ofSeconds(1), 10));
+        cluster.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        cluster.stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ForwardedByFilter filter(ContactCluster cluster) {
+        ObjectProvider<ContactCluster> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(cluster);
+        return new ForwardedByFilter(provider);
+    }
+
+    /**
+     * @return The header as the rest of the chain sees it.
+     */
+    private static String forwardedBy(ForwardedByFilter filter, String node, String remoteAddress) throws Exception {
+        var request = new MockHttpServletRequest("POST", "/contacts/add");
+        request.setRemoteAddr(remoteAddress);
+        request.addHeader(ContactCluster.FORWARDED_HEADER, node);
+        var chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        var passed = (HttpServletRequest) chain.getRequest();
+        String header = passed.getHeader(ContactCluster.FORWARDED_HEADER);
+        if (header == null) {
+            assertFalse(passed.getHeaders(ContactCluster.FORWARDED_HEADER).hasMoreElements());
+            assertFalse(Collections.list(passed.getHeaderNames()).contains(ContactCluster.FORWARDED_HEADER));
+        }
+        return header;
+    }
+
+    @Test
+    @DisplayName("filter_FromMemberAddress_ShouldKeepHeader")
+    void filter_FromMemberAddress_ShouldKeepHeader() throws Exception {
+        assertEquals(MEMBER, forwardedBy(filter(cluster), MEMBER, "127.0.0.1"));
+        assertEquals(REMOTE_MEMBER, forwardedBy(filter(cluster), REMOTE_MEMBER, "192.0.2.7"));
+    }
+
+    @Test
+    @DisplayName("filter_FromElsewhere_ShouldHideHeader")
+    void filter_FromElsewhere_ShouldHideHeader() throws Exception {
+        var filter = filter(cluster);
+        // a member's name from another address
+        assertNull(forwardedBy(filter, MEMBER, "198.51.100.1"));
+        assertNull(forwardedBy(filter, REMOTE_MEMBER, "127.0.0.1"));
+        // this node, which never forwards to itself, and a node that is no member
+        assertNull(forwardedBy(filter, SELF, "127.0.0.1"));
+        assertNull(forwardedBy(filter, "http://127.0.0.1:9999", "127.0.0.1"));
+        assertNull(forwardedBy(filter(null), MEMBER, "127.0.0.1"));
+    }
+
+    @Test
+    @DisplayName("filter_AfterMembersChange_ShouldTrustNodesLeftOutUntilTheNextChange")
+    void filter_AfterMembersChange_ShouldTrustNodesLeftOutUntilTheNextChange() throws Exception {
+        var filter = filter(cluster);
+        cluster.updateMembers(List.of(SELF, REMOTE_MEMBER), false);
+        assertEquals(MEMBER, forwardedBy(filter, MEMBER, "127.0.0.1"));
+
+        cluster.updateMembers(List.of(SELF, REMOTE_MEMBER, "http://192.0.2.8:8003"), false);
+        assertNull(forwardedBy(filter, MEMBER, "127.0.0.1"));
+        assertEquals(REMOTE_MEMBER, forwardedBy(filter, REMOTE_MEMBER, "192.0.2.7"));
+    }
+}
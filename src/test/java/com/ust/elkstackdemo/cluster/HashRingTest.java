@@ -0,0 +1,70 @@
+package com.ust.elkstackdemo.cluster;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashRingTest {
+
+    private static final int KEYS = 100_000;
+
+    private static String key(int i) {
+        return Long.toString(5_550_000_000L + i);
+    }
+
+    @Test
+    @DisplayName("owner_WithVirtualNodes_ShouldSpreadKeysEvenly")
+    void owner_WithVirtualNodes_ShouldSpreadKeysEvenly() {
+        var nodes = List.of("http://a:8000", "http://b:8000", "http://c:8000", "http://d:8000");
+        var ring = new HashRing(nodes, 128);
+        Map<String, Integer> owned = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            owned.merge(ring.owner(key(i)), 1, Integer::sum);
+        }
+        assertEquals(nodes.size(), owned.size());
+        for (int count : owned.values()) {
+            assertEquals(KEYS / nodes.size(), count, KEYS / nodes.size() * 0.2);
+        }
+    }
+
+    @Test
+    @DisplayName("owner_AfterAddingNode_ShouldMoveOnlyItsShareToIt")
+    void owner_AfterAddingNode_ShouldMoveOnlyItsShareToIt() {
+        var before = new HashRing(List.of("http://a:8000", "http://b:8000", "http://c:8000"), 128);
+        var after = new HashRing(List.of("http://a:8000", "http://b:8000", "http://c:8000", "http://d:8000"), 128);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String owner = after.owner(key(i));
+            if (!owner.equals(before.owner(key(i)))) {
+                assertEquals("http://d:8000", owner);
+                moved++;
+            }
+        }
+        assertEquals(KEYS / 4, moved, KEYS / 4 * 0.2);
+    }
+
+    @Test
+    @DisplayName("owner_OfSameNodes_ShouldNotDependOnInstance")
+    void owner_OfSameNodes_ShouldNotDependOnInstance() {
+        var nodes = List.of("http://a:8000", "http://b:8000");
+        var first = new HashRing(nodes, 16);
+        var second = new HashRing(List.copyOf(nodes), 16);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(first.owner(key(i)), second.owner(key(i)));
+        }
+        // pinned, since nodes running different builds must still agree on owners
+        assertEquals(8_823_528_858_210_797_257L, HashRing.hash("5550000000"));
+    }
+
+    @Test
+    @DisplayName("constructor_WithoutNodes_ShouldThrowException")
+    void constructor_WithoutNodes_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(List.of(), 128));
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(List.of("http://a:8000"), 0));
+    }
+}
@@ -0,0 +1,180 @@
+package com.ust.elkstackdemo.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.repository.ContactRepository;
+import com.ust.elkstackdemo.service.ChangeLog;
+import com.ust.elkstackdemo.service.ChangeLogProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeFeedTest {
+
+    private final ContactRepository contactRepository = new ContactRepository();
+    private ChangeLog changeLog;
+    private ChangeFeed changeFeed;
+
+    private void start(int changeLogCapacity, int queueSize) {
+        start(changeLogCapacity, queueSize, Duration.ofSeconds(30));
+    }
+
+    private void start(int changeLogCapacity, int queueSize, Duration sendTimeout) {
+        changeLog = new ChangeLog(contactRepository, new ChangeLogProperties(changeLogCapacity));
+        changeLog.start();
+        changeFeed = new ChangeFeed(contactRepository, changeLog, new ObjectMapper(),
+                new ChangeFeedProperties(queueSize, 10, Duration.ofSeconds(30), sendTimeout));
+        changeFeed.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        changeFeed.stop();
+        changeLog.stop();
+    }
+
+    /**
+     * Records what the feed sends instead of writing a response, optionally holding every send
+     * until released.
+     */
+    private static class RecordingEmitter extends ResponseBodyEmitter {
+
+        final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+        final CountDownLatch released;
+        final CountDownLatch completed = new CountDownLatch(1);
+        final CountDownLatch failed = new CountDownLatch(1);
+
+        RecordingEmitter(boolean held) {
+            released = new CountDownLatch(held ? 1 : 0);
+        }
+
+        @Override
+        public void send(Object object, MediaType mediaType) {
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assertEquals(MediaType.TEXT_EVENT_STREAM, mediaType);
+            sent.add(new String((byte[]) object, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            failed.countDown();
+        }
+
+        String next() throws InterruptedException {
+            String event = sent.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "nothing sent");
+            return event;
+        }
+    }
+
+    @Test
+    @DisplayName("subscribe_ShouldSendTheCurrentVersionThenEveryChange")
+    void subscribe_ShouldSendTheCurrentVersionThenEveryChange() throws InterruptedException {
+        start(100, 8);
+        contactRepository.addContact(new Contact("Before", "before", "100"));
+        var emitter = new RecordingEmitter(false);
+        assertSame(emitter, changeFeed.subscribe(null, emitter));
+
+        assertEquals("event: version\nid: 1\ndata: 1\n\n", emitter.next());
+        contactRepository.addContact(new Contact("John Doe", "john.doe", "1234567890"));
+        contactRepository.removeContactByPhoneNumber("100");
+
+        assertEquals("event: add\nid: 2\ndata: {\"version\":2,\"type\":\"add\",\"contact\":"
+                + "{\"name\":\"John Doe\",\"email\":\"john.doe\",\"phoneNumber\":\"1234567890\"}}\n\n", emitter.next());
+        assertTrue(emitter.next().startsWith("event: remove\nid: 3\n"));
+        assertEquals(1, changeFeed.subscribers());
+    }
+
+    @Test
+    @DisplayName("subscribe_WithLastEventId_ShouldReplayMissedVersionsWithOneIdEach")
+    void subscribe_WithLastEventId_ShouldReplayMissedVersionsWithOneIdEach() throws InterruptedException {
+        start(100, 8);
+        contactRepository.addContact(new Contact("John Doe", "john.doe", "1234567890"));
+        contactRepository.addContact(new Contact("A", "a", "111"));
+        contactRepository.addContact(new Contact("B", "b", "111"));
+        contactRepository.removeContactByPhoneNumber("111");
+        var emitter = new RecordingEmitter(false);
+        changeFeed.subscribe(3L, emitter);
+
+        String replayed = emitter.next();
+        assertTrue(replayed.startsWith("event: remove\ndata: {\"version\":4"), replayed);
+        assertTrue(replayed.contains("\n\nevent: remove\nid: 4\ndata: {\"version\":4"), replayed);
+        assertFalse(replayed.contains("John Doe"));
+        assertEquals("event: version\nid: 4\ndata: 4\n\n", emitter.next());
+    }
+
+    @Test
+    @DisplayName("subscribe_WithLastEventIdNoLongerKept_ShouldReturnNull")
+    void subscribe_WithLastEventIdNoLongerKept_ShouldReturnNull() {
+        start(1, 8);
+        for (int i = 1; i <= 3; i++) {
+            contactRepository.addContact(new Contact("Contact " + i, "c" + i, Integer.toString(i)));
+        }
+
+        assertNull(changeFeed.subscribe(0L, new RecordingEmitter(false)));
+        assertEquals(0, changeFeed.subscribers());
+    }
+
+    @Test
+    @DisplayName("slowSubscriber_ShouldBeDisconnectedWithoutStallingWritersOrOthers")
+    void slowSubscriber_ShouldBeDisconnectedWithoutStallingWritersOrOthers() throws InterruptedException {
+        start(100, 2);
+        var slow = new RecordingEmitter(true);
+        var fast = new RecordingEmitter(false);
+        changeFeed.subscribe(null, slow);
+        changeFeed.subscribe(null, fast);
+        fast.next();
+
+        // writers and the other subscriber carry on while the slow one is stuck on its first send
+        for (int i = 1; i <= 10; i++) {
+            contactRepository.addContact(new Contact("Contact " + i, "c" + i, Integer.toString(i)));
+            assertTrue(fast.next().contains("id: " + i + "\n"));
+        }
+        slow.released.countDown();
+
+        assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, changeFeed.slowDisconnects());
+        assertEquals(1, changeFeed.subscribers());
+    }
+
+    @Test
+    @DisplayName("subscriberNotReading_ShouldBeDisconnectedAfterSendTimeout")
+    void subscriberNotReading_ShouldBeDisconnectedAfterSendTimeout() throws InterruptedException {
+        start(100, 8, Duration.ofMillis(200));
+        // its client never reads, so the first write never returns on its own
+        var stuck = new RecordingEmitter(true);
+        var fast = new RecordingEmitter(false);
+        changeFeed.subscribe(null, stuck);
+        changeFeed.subscribe(null, fast);
+        fast.next();
+        assertEquals(2, changeFeed.subscribers());
+
+        assertTrue(stuck.failed.await(5, TimeUnit.SECONDS), "the stuck write should have been interrupted");
+        assertEquals(1, changeFeed.subscribers());
+        assertEquals(1, changeFeed.slowDisconnects());
+        assertTrue(changeFeed.hasCapacity());
+        contactRepository.addContact(new Contact("John Doe", "john.doe", "1234567890"));
+        assertTrue(fast.next().contains("id: 1\n"));
+        assertEquals(1, changeFeed.slowDisconnects());
+    }
+}
@@ -0,0 +1,244 @@
+package com.ust.elkstackdemo.controller;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ust.elkstackdemo.logging.LogSamplingFilter;
+import com.ust.elkstackdemo.metrics.ContactMetrics;
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.repository.ContactRepository;
+import com.ust.elkstackdemo.service.ChangeLog;
+import com.ust.elkstackdemo.service.ChangeLogProperties;
+import com.ust.elkstackdemo.service.ContactService;
+import com.ust.elkstackdemo.service.SearchCache;
+import com.ust.elkstackdemo.service.SearchCacheProperties;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Bytes allocated per call of each {@link ContactController} endpoint, driven in-process against a
+ * real service and store, each held to a budget so that a change allocating more on a request path
+ * fails the build. Responses are written to a discarding stream inside the measurement; building
+ * the request is not measured.
+ * <p>
+ * Logging is set up as in production: DEBUG enabled for the application and a
+ * {@link LogSamplingFilter} that leaves the request unsampled, so debug lines must cost nothing.
+ * Budgets leave about a quarter of headroom and do not count on escape analysis, so they hold
+ * before the JIT has compiled anything.
+ */
+class ContactControllerAllocationTest {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final int CONTACTS = 200;
+    private static final int PAGE_SIZE = 20;
+    private static final int WARMUP_CALLS = 5_000;
+    private static final int MEASURED_CALLS = 1_000;
+
+    private static final OutputStream DISCARD = OutputStream.nullOutputStream();
+
+    private static LoggerContext loggerContext;
+    private static Level applicationLevel;
+    private static LogSamplingFilter sampling;
+
+    private static ContactRepository store;
+    private static SearchCache searchCache;
+    private static ChangeLog changeLog;
+    private static ContactController controller;
+
+    @FunctionalInterface
+    interface Call {
+        void run(ServletWebRequest request, int i) throws Exception;
+    }
+
+    @BeforeAll
+    @SuppressWarnings("unchecked")
+    static void setUp() {
+        loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        var logger = loggerContext.getLogger("com.ust.elkstackdemo");
+        applicationLevel = logger.getLevel();
+        logger.setLevel(Level.DEBUG);
+        sampling = new LogSamplingFilter();
+        sampling.setDebugSampleRate(0);
+        sampling.setContext(loggerContext);
+        sampling.start();
+        loggerContext.addTurboFilter(sampling);
+
+        var metrics = new ContactMetrics();
+        store = new ContactRepository(metrics);
+        searchCache = new SearchCache(store, metrics, new SearchCacheProperties(true, DataSize.ofMegabytes(1)));
+        searchCache.start();
+        changeLog = new ChangeLog(store, new ChangeLogProperties(1000));
+        changeLog.start();
+        var service = new ContactService(store, metrics, searchCache, changeLog);
+        controller = new ContactController(service, new ObjectMapper(), metrics, null, mock(ObjectProvider.class));
+        for (int i = 0; i < CONTACTS; i++) {
+            store.addContact(contact(i));
+        }
+        sampling.enterRequest();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        LogSamplingFilter.exitRequest();
+        searchCache.stop();
+        changeLog.stop();
+        loggerContext.getTurboFilterList().remove(sampling);
+        sampling.stop();
+        loggerContext.getLogger("com.ust.elkstackdemo").setLevel(applicationLevel);
+    }
+
+    @Test
+    @DisplayName("addContact_ShouldStayWithinAllocationBudget")
+    void addContact_ShouldStayWithinAllocationBudget() throws Exception {
+        // each added contact is removed again, outside the measurement, to keep the store's size
+        assertWithinBudget("POST /contacts", 3_800, (request, i) -> {
+            controller.addContact(contact(CONTACTS + i), null);
+        }, i -> store.removeContactByPhoneNumber(phoneNumber(CONTACTS + i)));
+    }
+
+    @Test
+    @DisplayName("removeContact_ShouldStayWithinAllocationBudget")
+    void removeContact_ShouldStayWithinAllocationBudget() throws Exception {
+        // each call removes the contact added, outside the measurement, after the previous one
+        store.addContact(contact(CONTACTS));
+        assertWithinBudget("POST /contacts/remove", 1_900, (request, i) -> {
+            controller.removeContactByPhoneNumber(phoneNumber(CONTACTS + i), null);
+        }, i -> store.addContact(contact(CONTACTS + i + 1)));
+        store.removeContactByPhoneNumber(phoneNumber(CONTACTS + WARMUP_CALLS + MEASURED_CALLS));
+    }
+
+    @Test
+    @DisplayName("addContacts_ShouldStayWithinAllocationBudget")
+    void addContacts_ShouldStayWithinAllocationBudget() throws Exception {
+        var ndjson = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            ndjson.append(new String(contact(i).toJson(), StandardCharsets.UTF_8)).append('\n');
+        }
+        byte[] body = ndjson.toString().getBytes(StandardCharsets.UTF_8);
+        var contentType = MediaType.parseMediaType(ContactController.APPLICATION_NDJSON_VALUE);
+        // ten duplicates: parsed, validated and rejected, leaving the store as it was
+        assertWithinBudget("POST /contacts/bulk", 10_000, (request, i) -> {
+            controller.addContacts(contentType, null, new ByteArrayInputStream(body));
+        });
+    }
+
+    @Test
+    @DisplayName("getContacts_ShouldStayWithinAllocationBudget")
+    void getContacts_ShouldStayWithinAllocationBudget() throws Exception {
+        assertWithinBudget("GET /contacts", 700, (request, i) -> {
+            write(controller.getContacts(null, request));
+        });
+        assertWithinBudget("GET /contacts as NDJSON", 2_200, (request, i) -> {
+            write(controller.streamContacts(request));
+        });
+    }
+
+    @Test
+    @DisplayName("getContactsPage_ShouldStayWithinAllocationBudget")
+    void getContactsPage_ShouldStayWithinAllocationBudget() throws Exception {
+        String after = Long.toString(CONTACTS / 2);
+        assertWithinBudget("GET /contacts?limit", 3_200, (request, i) -> {
+            controller.getContactsPage(PAGE_SIZE, after, null, request);
+        });
+    }
+
+    @Test
+    @DisplayName("search_ShouldStayWithinAllocationBudget")
+    void search_ShouldStayWithinAllocationBudget() throws Exception {
+        assertWithinBudget("GET /contacts/search phone", 500, (request, i) -> {
+            controller.getContactsByPhoneNumber("phone", phoneNumber(i % CONTACTS), null, null, request);
+        });
+        assertWithinBudget("GET /contacts/search name", 500, (request, i) -> {
+            controller.getContactsByPhoneNumber("name", name(i % CONTACTS), null, null, request);
+        });
+        assertWithinBudget("GET /contacts/search name_prefix", 3_600, (request, i) -> {
+            controller.getContactsByPhoneNumber("name_prefix", "Contact 19", null, null, request);
+        });
+        assertWithinBudget("GET /contacts/search name_ignore_case", 1_000, (request, i) -> {
+            controller.getContactsByPhoneNumber("name_ignore_case", "contact 7", null, null, request);
+        });
+        assertWithinBudget("GET /contacts/search name_fuzzy", 22_000, (request, i) -> {
+            controller.getContactsByPhoneNumber("name_fuzzy", "Contakt 42", null, null, request);
+        });
+    }
+
+    @Test
+    @DisplayName("getChanges_ShouldStayWithinAllocationBudget")
+    void getChanges_ShouldStayWithinAllocationBudget() throws Exception {
+        long since = store.version() - 10;
+        assertWithinBudget("GET /contacts/changes", 1_900, (request, i) -> {
+            controller.getChanges(since, 10);
+        });
+    }
+
+    @FunctionalInterface
+    interface Step {
+        void run(int i) throws Exception;
+    }
+
+    private static void assertWithinBudget(String endpoint, long budget, Call call) throws Exception {
+        assertWithinBudget(endpoint, budget, call, i -> {
+        });
+    }
+
+    /**
+     * @param between Run after each call, unmeasured.
+     */
+    private static void assertWithinBudget(String endpoint, long budget, Call call, Step between) throws Exception {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            call.run(request(), i);
+            between.run(i);
+        }
+        long allocated = 0;
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            var request = request();
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            call.run(request, WARMUP_CALLS + i);
+            allocated += THREADS.getCurrentThreadAllocatedBytes() - before;
+            between.run(WARMUP_CALLS + i);
+        }
+        long perCall = allocated / MEASURED_CALLS;
+        assertTrue(perCall <= budget, endpoint + " allocated " + perCall + " bytes per call, over its budget of " + budget);
+    }
+
+    private static ServletWebRequest request() {
+        return new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
+    }
+
+    private static void write(ResponseEntity<StreamingResponseBody> response) throws Exception {
+        response.getBody().writeTo(DISCARD);
+    }
+
+    private static Contact contact(int i) {
+        return new Contact(name(i), "contact" + i + "@example.com", phoneNumber(i));
+    }
+
+    private static String name(int i) {
+        return "Contact " + i;
+    }
+
+    private static String phoneNumber(int i) {
+        return Long.toString(5_550_000_000L + i);
+    }
+}
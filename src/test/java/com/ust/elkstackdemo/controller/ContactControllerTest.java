@@ -1,6 +1,15 @@
 package com.ust.elkstackdemo.controller;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.ust.elkstackdemo.metrics.ContactMetrics;
+import com.ust.elkstackdemo.model.BulkResult;
 import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactChange;
+import com.ust.elkstackdemo.model.ContactChanges;
+import com.ust.elkstackdemo.model.ContactPage;
+import com.ust.elkstackdemo.model.ContactProtobuf;
+import com.ust.elkstackdemo.model.Versioned;
 import com.ust.elkstackdemo.repository.ContactRepository;
 import com.ust.elkstackdemo.service.ContactService;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,15 +18,25 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @WebMvcTest(ContactController.class)
@@ -36,6 +55,12 @@ class ContactControllerTest {
     @MockBean
     ContactService contactService;
 
+    @MockBean
+    ContactMetrics contactMetrics;
+
+    @MockBean
+    ChangeFeed changeFeed;
+
     Contact contact;
 
     @BeforeEach
@@ -46,10 +71,14 @@ class ContactControllerTest {
     @Test
     @DisplayName("Test getALlContacts GET request")
     void getAllContacts_WithSatusOK() throws Exception {
-        when(contactService.getContacts()).thenReturn(List.of(contact));
+        when(contactService.streamContacts()).thenReturn(new Versioned<>(7, Stream.of(contact)));
 
-        mockMvc.perform(get("/contacts"))
+        MvcResult result = mockMvc.perform(get("/contacts"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
+                .andExpect(header().string(ContactController.VERSION_HEADER, "7"))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
                 .andExpect(jsonPath("$[0].name").value("John Doe"))
                 .andExpect(jsonPath("$[0].email").value("john.doe"))
@@ -60,13 +89,29 @@ class ContactControllerTest {
     @Test
     @DisplayName("Test getALlContacts GET request")
     void getAllContacts_WithSatusNoContent() throws Exception {
-        when(contactService.getContacts()).thenReturn(List.of());
+        when(contactService.streamContacts()).thenReturn(new Versioned<>(0, Stream.empty()));
 
         mockMvc.perform(get("/contacts"))
                 .andExpect(status().isNoContent())
                 .andDo(print());
     }
 
+    @Test
+    @DisplayName("Test getALlContacts GET request streamed as one JSON array")
+    void getAllContacts_WritesJsonArray() throws Exception {
+        when(contactService.streamContacts()).thenReturn(new Versioned<>(7, Stream.of(contact, new Contact("Jane Doe", "jane.doe", "0987654321"))));
+
+        MvcResult result = mockMvc.perform(get("/contacts"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json(
+                        "[{\"name\":\"John Doe\",\"email\":\"john.doe\",\"phoneNumber\":\"1234567890\"}," +
+                        "{\"name\":\"Jane Doe\",\"email\":\"jane.doe\",\"phoneNumber\":\"0987654321\"}]", true))
+                .andDo(print());
+    }
+
     @Test
     @DisplayName("Test addContact POST request")
     void addContact_WithSatusCreated() throws Exception {
@@ -80,4 +125,407 @@ class ContactControllerTest {
                 .andDo(print());
     }
 
+    @Test
+    @DisplayName("Test search GET request with name_prefix type")
+    void searchContacts_ByNamePrefix_WithStatusOK() throws Exception {
+        when(contactService.getContactsByNamePrefix("jo")).thenReturn(new Versioned<>(3, List.of(contact)));
+
+        mockMvc.perform(get("/contacts/search").param("type", "name_prefix").param("key", "jo"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ContactController.VERSION_HEADER, "3"))
+                .andExpect(header().string(HttpHeaders.ETAG, ContactController.etag(3)))
+                .andExpect(jsonPath("$[0].name").value("John Doe"))
+                .andDo(print());
+    }
+
+    @Test
+    @DisplayName("Test search GET request with phone type answered with cached JSON")
+    void searchContacts_ByPhone_WritesSerializedResult() throws Exception {
+        byte[] json = "[{\"name\":\"John Doe\",\"email\":\"john.doe\",\"phoneNumber\":\"1234567890\"}]"
+                .getBytes(StandardCharsets.UTF_8);
+        when(contactService.getContactsByPhoneNumberJson("4567")).thenReturn(new Versioned<>(4, json));
+        when(contactService.getContactsByNameJson("Nobody")).thenReturn(new Versioned<>(4, new byte[0]));
+
+        mockMvc.perform(get("/contacts/search").param("type", "phone").param("key", "4567"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ContactController.VERSION_HEADER, "4"))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(jsonPath("$[0].phoneNumber").value("1234567890"))
+                .andDo(print());
+        mockMvc.perform(get("/contacts/search").param("type", "name").param("key", "Nobody"))
+                .andExpect(status().isNoContent())
+                .andDo(print());
+    }
+
+    @Test
+    @DisplayName("Test search GET request with the ETag of the current result")
+    void searchContacts_WithMatchingETag_WithStatusNotModified() throws Exception {
+        when(contactService.getContactsByNamePrefix("jo")).thenReturn(new Versioned<>(3, List.of(contact)));
+        when(contactService.getContactsByNameJson("John Doe")).thenReturn(new Versioned<>(2, "[]".getBytes(StandardCharsets.UTF_8)));
+
+        mockMvc.perform(get("/contacts/search").param("type", "name_prefix").param("key", "jo")
+                        .header(HttpHeaders.IF_NONE_MATCH, ContactController.etag(3)))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""))
+                .andDo(print());
+        mockMvc.perform(get("/contacts/search").param("type", "name").param("key", "John Doe")
+                        .header(HttpHeaders.IF_NONE_MATCH, ContactController.etag(2)))
+                .andExpect(status().isNotModified())
+                .andDo(print());
+        mockMvc.perform(get("/contacts/search").param("type", "name").param("key", "John Doe")
+                        .header(HttpHeaders.IF_NONE_MATCH, ContactController.etag(1)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ContactController.etag(2)))
+                .andDo(print());
+    }
+
+    @Test
+    @DisplayName("Test getALlContacts GET request with the ETag of the current version")
+    void getAllContacts_WithMatchingETag_WithStatusNotModified() throws Exception {
+        when(contactService.streamContacts()).thenReturn(new Versioned<>(7, Stream.of(contact)));
+
+        mockMvc.perform(get("/contacts").header(HttpHeaders.IF_NONE_MATCH, ContactController.etag(7)))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, ContactController.etag(7)))
+                .andDo(print());
+    }
+
+    @Test
+    @DisplayName("Test getChanges GET request")
+    void getChanges_WithStatusOK() throws Exception {
+        when(contactService.getChanges(4, 100)).thenReturn(new ContactChanges(
+                List.of(new ContactChange(5, ContactChange.Type.REMOVE, contact)), 6, false));
+
+        mockMvc.perform(get("/contacts/changes").param("since", "4"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ContactController.VERSION_HEADER, "6"))
+                .andExpect(jsonPath("$.changes[0].version").value(5))
+                .andExpect(jsonPath("$.changes[0].type").value("remove"))
+                .andExpect(jsonPath("$.changes[0].contact.name").value("John Doe"))
+                .andExpect(jsonPath("$.version").value(6))
+                .andExpect(jsonPath("$.more").value(false))
+                .andDo(print());
+    }
+
+    @Test
+    @DisplayName("Test getChanges GET request for changes no longer kept")
+    void getChanges_WithStatusGone() throws Exception {
+        when(contactService.getChanges(1, 100)).thenReturn(null);
+
+        mockMvc.perform(get("/contacts/changes").param("since", "1"))
+                .andExpect(status().isGone())
+                .andDo(print());
+    }
+
+    @Test
+    @DisplayName("Test stream GET request resuming after changes no longer kept")
+    void streamChanges_WithStatusGone() throws Exception {
+        when(changeFeed.hasCapacity()).thenReturn(true);
+        when(changeFeed.subscribe(1L)).thenReturn(null);
+
+        mockMvc.perform(get("/contacts/stream").header("Last-Event-ID", "1"))
+                .andExpect(status().isGone())
+                .andDo(print());
+    }
+
+    @Test
+    @DisplayName("Test stream GET request beyond the subscriber limit")
+    void streamChanges_WithStatusServiceUnavailable() throws Exception {
+        when(changeFeed.hasCapacity()).thenReturn(false);
+
+        mockMvc.perform(get("/contacts/stream"))
+                .andExpect(status().isServiceUnavailable())
+                .andDo(print());
+        verify(changeFeed, never()).subscribe(any());
+    }
+
+    @Test
+    @DisplayName("Test search GET request with name_fuzzy type")
+    void searchContacts_ByNameFuzzy_WithStatusNoContent() throws Exception {
+        when(contactService.getContactsByNameFuzzy("Jhn")).thenReturn(new Versioned<>(3, List.of()));
+
+        mockMvc.perform(get("/contacts/search").param("type", "name_fuzzy").param("key", "Jhn"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(ContactController.VERSION_HEADER, "3"))
+                .andDo(print());
+    }
+
+    @Test
+    @DisplayName("Test getContacts GET request with limit and cursor")
+    void getContactsPage_WithStatusOK() throws Exception {
+        when(contactService.getContacts("41", 1)).thenReturn(new Versioned<>(5, new ContactPage(List.of(contact), "42")));
+
+        mockMvc.perform(get("/contacts").param("limit", "1").param("after", "41"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contacts[0].name").value("John Doe"))
+                .andExpect(jsonPath("$.next").value("42"))
+                .andExpect(header().string(ContactController.VERSION_HEADER, "5"))
+                .andDo(print());
+    }
+
+    @Test
+    @DisplayName("Test getContacts GET request with limit asking for NDJSON")
+    void getContactsPage_WithAcceptNdjson_ShouldAnswerThePageNotTheWholeStore() throws Exception {
+        when(contactService.getContacts(null, 10)).thenReturn(new Versioned<>(5, new ContactPage(List.of(contact), "42")));
+
+        mockMvc.perform(get("/contacts").param("limit", "10").accept("application/x-ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contacts[0].name").value("John Doe"))
+                .andExpect(jsonPath("$.next").value("42"))
+                .andDo(print());
+        verify(contactService, never()).streamContacts();
+    }
+
+    @Test
+    @DisplayName("Test getContacts GET request streamed as NDJSON")
+    void streamContacts_WithStatusOK() throws Exception {
+        when(contactService.streamContacts()).thenReturn(new Versioned<>(9, Stream.of(contact, new Contact("Jane Doe", "jane.doe", "0987654321"))));
+
+        MvcResult result = mockMvc.perform(get("/contacts").accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(header().string(ContactController.VERSION_HEADER, "9"))
+                .andExpect(content().string(
+                        "{\"name\":\"John Doe\",\"email\":\"john.doe\",\"phoneNumber\":\"1234567890\"}\n" +
+                        "{\"name\":\"Jane Doe\",\"email\":\"jane.doe\",\"phoneNumber\":\"0987654321\"}\n"))
+                .andDo(print());
+    }
+
+    /**
+     * Drain the parsed contacts handed to the service so the tests can inspect what the body became.
+     */
+    private List<Contact> answerBulkAdd() {
+        List<Contact> parsed = new ArrayList<>();
+        when(contactService.addContacts(any())).thenAnswer(invocation -> {
+            Iterator<Contact> it = invocation.getArgument(0);
+            it.forEachRemaining(parsed::add);
+            return new BulkResult(parsed.size(), parsed.size(), 0, List.of());
+        });
+        return parsed;
+    }
+
+    @Test
+    @DisplayName("Test bulk POST request with a JSON array")
+    void addContacts_WithJsonArray_WithStatusOK() throws Exception {
+        List<Contact> parsed = answerBulkAdd();
+        mockMvc.perform(post("/contacts/bulk")
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .content("[{\"name\":\"John Doe\",\"email\":\"john.doe\",\"phoneNumber\":\"1234567890\"}," +
+                                "{\"name\":\"Jane Doe\",\"email\":\"jane.doe\",\"phoneNumber\":\"0987654321\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(2))
+                .andDo(print());
+        assertEquals(List.of("John Doe", "Jane Doe"), parsed.stream().map(Contact::getName).toList());
+    }
+
+    @Test
+    @DisplayName("Test bulk POST request with NDJSON")
+    void addContacts_WithNdjson_WithStatusOK() throws Exception {
+        List<Contact> parsed = answerBulkAdd();
+        mockMvc.perform(post("/contacts/bulk")
+                        .contentType("application/x-ndjson")
+                        .content("{\"name\":\"John Doe\",\"email\":\"john.doe\",\"phoneNumber\":\"1234567890\"}\n" +
+                                "{\"name\":\"Jane Doe\",\"email\":\"jane.doe\",\"phoneNumber\":\"0987654321\"}\n"))
+                .andExpect(status().isOk())
+                .andDo(print());
+        assertEquals(List.of("1234567890", "0987654321"), parsed.stream().map(Contact::getPhoneNumber).toList());
+    }
+
+    @Test
+    @DisplayName("Test bulk POST request with CSV")
+    void addContacts_WithCsv_WithStatusOK() throws Exception {
+        List<Contact> parsed = answerBulkAdd();
+        mockMvc.perform(post("/contacts/bulk")
+                        .contentType("text/csv")
+                        .content("phoneNumber,name,email\n1234567890,\"Doe, John\",john.doe\n\n0987654321,Jane\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.added").value(2))
+                .andDo(print());
+        assertEquals(2, parsed.size());
+        assertEquals("Doe, John", parsed.get(0).getName());
+        assertEquals("1234567890", parsed.get(0).getPhoneNumber());
+        assertEquals("Jane", parsed.get(1).getName());
+        assertNull(parsed.get(1).getEmail());
+    }
+
+    /**
+     * Post a bulk body whose second record is malformed and check that the first was added and the
+     * response says where the import stopped.
+     */
+    private void assertBulkStopsAtSecondRecord(String contentType, byte[] body) throws Exception {
+        List<Contact> parsed = answerBulkAdd();
+        mockMvc.perform(post("/contacts/bulk")
+                        .contentType(contentType)
+                        .content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.added").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.failures[0].index").value(1))
+                .andExpect(jsonPath("$.failures[0].reason").isNotEmpty())
+                .andDo(print());
+        assertEquals(List.of("1234567890"), parsed.stream().map(Contact::getPhoneNumber).toList());
+    }
+
+    @Test
+    @DisplayName("Test bulk POST request with a malformed record in a JSON array")
+    void addContacts_WithMalformedJsonRecord_WithStatusBadRequest() throws Exception {
+        assertBulkStopsAtSecondRecord(MediaType.APPLICATION_JSON_VALUE,
+                ("[{\"name\":\"John Doe\",\"email\":\"john.doe\",\"phoneNumber\":\"1234567890\"}," +
+                        "{\"name\":,\"phoneNumber\":\"555\"}," +
+                        "{\"name\":\"Jane Doe\",\"email\":\"jane.doe\",\"phoneNumber\":\"0987654321\"}]").getBytes());
+    }
+
+    @Test
+    @DisplayName("Test bulk POST request with a malformed NDJSON line")
+    void addContacts_WithMalformedNdjsonLine_WithStatusBadRequest() throws Exception {
+        assertBulkStopsAtSecondRecord("application/x-ndjson",
+                ("{\"name\":\"John Doe\",\"email\":\"john.doe\",\"phoneNumber\":\"1234567890\"}\n" +
+                        "{\"name\":\"Bad\",\"phoneNumber\":[1,2}\n" +
+                        "{\"name\":\"Jane Doe\",\"email\":\"jane.doe\",\"phoneNumber\":\"0987654321\"}\n").getBytes());
+    }
+
+    @Test
+    @DisplayName("Test bulk POST request with a malformed CSV row")
+    void addContacts_WithMalformedCsvRow_WithStatusBadRequest() throws Exception {
+        assertBulkStopsAtSecondRecord("text/csv",
+                "name,email,phoneNumber\nJohn,john.doe,1234567890\n\"Bad,bad@x,555\nJane,jane.doe,0987654321\n".getBytes());
+    }
+
+    @Test
+    @DisplayName("Test bulk POST request with a malformed record after the failures are capped")
+    void addContacts_WithMalformedRecordAfterCappedFailures_ShouldCountButNotListIt() throws Exception {
+        when(contactService.addContacts(any())).thenAnswer(invocation -> {
+            Iterator<Contact> it = invocation.getArgument(0);
+            long received = 0;
+            for (; it.hasNext(); it.next()) {
+                received++;
+            }
+            List<BulkResult.Failure> failures = new ArrayList<>();
+            for (int i = 0; i < ContactService.BULK_MAX_FAILURES; i++) {
+                failures.add(new BulkResult.Failure(i, "Invalid phone number"));
+            }
+            return new BulkResult(received, 0, received, failures);
+        });
+        var body = new StringBuilder();
+        for (int i = 0; i < ContactService.BULK_MAX_FAILURES; i++) {
+            body.append("{\"name\":\"N\",\"phoneNumber\":\"x\"}\n");
+        }
+        body.append("{\"name\":\n");
+        mockMvc.perform(post("/contacts/bulk")
+                        .contentType("application/x-ndjson")
+                        .content(body.toString()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.received").value(ContactService.BULK_MAX_FAILURES + 1))
+                .andExpect(jsonPath("$.rejected").value(ContactService.BULK_MAX_FAILURES + 1))
+                .andExpect(jsonPath("$.failures.length()").value(ContactService.BULK_MAX_FAILURES));
+    }
+
+    @Test
+    @DisplayName("Test bulk POST request with a malformed protobuf ContactList entry")
+    void addContacts_WithMalformedProtobufEntry_WithStatusBadRequest() throws Exception {
+        var out = new ByteArrayOutputStream();
+        out.write(ContactProtobuf.list(List.of(contact)));
+        // a contact whose only field has the unknown wire type 7
+        out.write(new byte[]{0x0A, 2, 0x0F, 0});
+        out.write(ContactProtobuf.list(List.of(new Contact("Jane Doe", "jane.doe", "0987654321"))));
+        assertBulkStopsAtSecondRecord(ContactFormat.APPLICATION_PROTOBUF_VALUE, out.toByteArray());
+    }
+
+    @Test
+    @DisplayName("Test getAllContacts GET request negotiated to CBOR")
+    void getAllContacts_WithAcceptCbor_WritesCborArray() throws Exception {
+        when(contactService.streamContacts()).thenReturn(new Versioned<>(7, Stream.of(contact, new Contact("Jane Doe", null, "0987654321"))));
+
+        MvcResult result = mockMvc.perform(get("/contacts").accept("application/json;q=0.5, application/cbor"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(ContactFormat.APPLICATION_CBOR_VALUE))
+                .andExpect(header().string(HttpHeaders.ETAG, ContactController.etag(7, ContactFormat.CBOR)))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        List<Contact> read = new ArrayList<>();
+        ContactFormat.CBOR.read(new ByteArrayInputStream(body)).forEachRemaining(read::add);
+        assertEquals(List.of("John Doe", "Jane Doe"), read.stream().map(Contact::getName).toList());
+        assertNull(read.get(1).getEmail());
+    }
+
+    @Test
+    @DisplayName("Test search GET request with phone type negotiated to protobuf")
+    void searchContacts_ByPhone_WithAcceptProtobuf_WritesContactList() throws Exception {
+        when(contactService.getContactsByPhoneNumber("4567")).thenReturn(new Versioned<>(4, List.of(contact)));
+
+        byte[] body = mockMvc.perform(get("/contacts/search").param("type", "phone").param("key", "4567")
+                        .accept(ContactFormat.APPLICATION_PROTOBUF_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ContactController.VERSION_HEADER, "4"))
+                .andExpect(content().contentType(ContactFormat.APPLICATION_PROTOBUF_VALUE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertArrayEquals(ContactProtobuf.list(List.of(contact)), body);
+        verify(contactService, never()).getContactsByPhoneNumberJson(any());
+    }
+
+    @Test
+    @DisplayName("Test getContactsPage GET request negotiated to Smile")
+    void getContactsPage_WithAcceptSmile_WithStatusOK() throws Exception {
+        when(contactService.getContacts(null, 1)).thenReturn(new Versioned<>(5, new ContactPage(List.of(contact), "9")));
+
+        byte[] body = mockMvc.perform(get("/contacts").param("limit", "1").accept(ContactFormat.APPLICATION_SMILE_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(ContactFormat.APPLICATION_SMILE_VALUE))
+                .andExpect(header().string(HttpHeaders.ETAG, ContactController.etag(5, ContactFormat.SMILE)))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        var page = new SmileMapper().readValue(body, ContactPage.class);
+        assertEquals("9", page.next());
+        assertEquals("John Doe", page.contacts().get(0).getName());
+    }
+
+    @Test
+    @DisplayName("Test addContact POST request with CBOR and protobuf bodies")
+    void addContact_WithBinaryBodies_WithStatusOK() throws Exception {
+        mockMvc.perform(post("/contacts")
+                        .contentType(ContactFormat.APPLICATION_CBOR_VALUE)
+                        .content(new CBORMapper().writeValueAsBytes(contact)))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/contacts")
+                        .contentType(ContactFormat.APPLICATION_PROTOBUF_VALUE)
+                        .content(ContactProtobuf.encode(contact)))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/contacts")
+                        .contentType(ContactFormat.APPLICATION_PROTOBUF_VALUE)
+                        .content(new byte[]{0x0A, 9}))
+                .andExpect(status().isBadRequest());
+
+        verify(contactService, times(2)).addContact("John Doe", "john.doe", "1234567890");
+    }
+
+    @Test
+    @DisplayName("Test bulk POST request with CBOR and a protobuf ContactList")
+    void addContacts_WithBinaryBodies_WithStatusOK() throws Exception {
+        List<Contact> parsed = answerBulkAdd();
+        var contacts = List.of(contact, new Contact("Jane Doe", "jane.doe", "0987654321"));
+        mockMvc.perform(post("/contacts/bulk")
+                        .contentType(ContactFormat.APPLICATION_CBOR_VALUE)
+                        .content(ContactFormat.CBOR.encode(contacts)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(2));
+        mockMvc.perform(post("/contacts/bulk")
+                        .contentType(ContactFormat.APPLICATION_PROTOBUF_VALUE)
+                        .content(ContactProtobuf.list(contacts)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(4));
+
+        assertEquals(List.of("1234567890", "0987654321", "1234567890", "0987654321"),
+                parsed.stream().map(Contact::getPhoneNumber).toList());
+    }
+
 }
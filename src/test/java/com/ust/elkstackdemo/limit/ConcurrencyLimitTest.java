@@ -0,0 +1,215 @@
+package com.ust.elkstackdemo.limit;
+
+import com.ust.elkstackdemo.cluster.ContactCluster;
+import com.ust.elkstackdemo.metrics.ContactMetrics;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ConcurrencyLimitTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    private static AdaptiveLimit limit(int initial) {
+        return new AdaptiveLimit("reads", initial, 4, 200, 0.5, 1.5, 0.2, 0);
+    }
+
+    private static ConcurrencyLimitProperties properties(int readInitialLimit, int writeInitialLimit) {
+        return new ConcurrencyLimitProperties(true, 1, readInitialLimit, 1000, writeInitialLimit, 500, 0.5, 1.5,
+                0.2, Duration.ofMillis(100), 503, Duration.ofMillis(1500), Duration.ZERO);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrencyLimitFilter filter(ConcurrencyLimits limits) {
+        ObjectProvider<ConcurrencyLimits> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(limits);
+        return new ConcurrencyLimitFilter(provider);
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        var request = new MockHttpServletRequest(method, uri);
+        request.setRequestURI(uri);
+        return request;
+    }
+
+    @Test
+    @DisplayName("update_WithSteadyLatencyUnderFullUse_ShouldGrowUpToMaxLimit")
+    void update_WithSteadyLatencyUnderFullUse_ShouldGrowUpToMaxLimit() {
+        var limit = limit(100);
+        limit.update(5 * MILLIS, 100);
+        assertTrue(limit.limit() > 100, "limit " + limit.limit());
+        for (int i = 0; i < 1_000; i++) {
+            limit.update(5 * MILLIS, limit.limit());
+        }
+        assertEquals(200, limit.limit());
+    }
+
+    @Test
+    @DisplayName("update_WhenHardlyUsed_ShouldNotGrow")
+    void update_WhenHardlyUsed_ShouldNotGrow() {
+        var limit = limit(20);
+        for (int i = 0; i < 100; i++) {
+            limit.update(5 * MILLIS, 3);
+        }
+        assertEquals(20, limit.limit());
+    }
+
+    @Test
+    @DisplayName("update_WithRisingLatency_ShouldShrinkDownToMinLimit")
+    void update_WithRisingLatency_ShouldShrinkDownToMinLimit() {
+        var limit = limit(100);
+        for (int i = 0; i < 10; i++) {
+            limit.update(5 * MILLIS, 100);
+        }
+        int before = limit.limit();
+        limit.update(50 * MILLIS, before);
+        assertTrue(limit.limit() < before, limit.limit() + " not below " + before);
+        // within tolerance of the long-term average it does not shrink
+        var tolerant = limit(100);
+        tolerant.update(5 * MILLIS, 100);
+        tolerant.update(7 * MILLIS, 100);
+        assertTrue(tolerant.limit() >= 100);
+
+        double latency = 50 * MILLIS;
+        for (int i = 0; i < 200; i++) {
+            latency *= 1.1;
+            limit.update(latency, limit.limit());
+        }
+        assertEquals(4, limit.limit());
+        assertEquals(0, limit.inFlight());
+    }
+
+    @Test
+    @DisplayName("tryAcquire_OverLimit_ShouldRejectLowPriorityFirst")
+    void tryAcquire_OverLimit_ShouldRejectLowPriorityFirst() {
+        var limit = limit(4);
+        assertTrue(limit.tryAcquire(AdaptiveLimit.Priority.LOW));
+        assertTrue(limit.tryAcquire(AdaptiveLimit.Priority.LOW));
+        assertFalse(limit.tryAcquire(AdaptiveLimit.Priority.LOW));
+        assertTrue(limit.tryAcquire(AdaptiveLimit.Priority.HIGH));
+        assertTrue(limit.tryAcquire(AdaptiveLimit.Priority.HIGH));
+        assertFalse(limit.tryAcquire(AdaptiveLimit.Priority.HIGH));
+        assertEquals(4, limit.inFlight());
+
+        limit.release(System.nanoTime(), false);
+        assertTrue(limit.tryAcquire(AdaptiveLimit.Priority.HIGH));
+        var status = limit.status();
+        assertEquals(new ConcurrencyLimitStatus("reads", 4, 4, 5, 1, 1, 0), status);
+    }
+
+    @Test
+    @DisplayName("priority_ShouldPutScansAndBulkImportsLow")
+    void priority_ShouldPutScansAndBulkImportsLow() {
+        assertEquals(AdaptiveLimit.Priority.LOW, ConcurrencyLimitFilter.priority(request("POST", "/contacts/bulk"), true));
+        assertEquals(AdaptiveLimit.Priority.HIGH, ConcurrencyLimitFilter.priority(request("POST", "/contacts"), true));
+        assertEquals(AdaptiveLimit.Priority.HIGH, ConcurrencyLimitFilter.priority(request("POST", "/contacts/remove"), true));
+        assertEquals(AdaptiveLimit.Priority.LOW, ConcurrencyLimitFilter.priority(request("GET", "/contacts"), false));
+        var page = request("GET", "/contacts");
+        page.setParameter("limit", "10");
+        assertEquals(AdaptiveLimit.Priority.HIGH, ConcurrencyLimitFilter.priority(page, false));
+        var phone = request("GET", "/contacts/search");
+        phone.setParameter("type", "phone");
+        assertEquals(AdaptiveLimit.Priority.HIGH, ConcurrencyLimitFilter.priority(phone, false));
+        var fuzzy = request("GET", "/contacts/search");
+        fuzzy.setParameter("type", "name_fuzzy");
+        assertEquals(AdaptiveLimit.Priority.LOW, ConcurrencyLimitFilter.priority(fuzzy, false));
+        fuzzy.addHeader(ContactCluster.FORWARDED_HEADER, "http://other:8000");
+        assertEquals(AdaptiveLimit.Priority.HIGH, ConcurrencyLimitFilter.priority(fuzzy, false));
+    }
+
+    @Test
+    @DisplayName("filter_OverLimit_ShouldRejectAtOnceWithRetryAfter")
+    void filter_OverLimit_ShouldRejectAtOnceWithRetryAfter() throws Exception {
+        var limits = new ConcurrencyLimits(properties(1, 1));
+        var filter = filter(limits);
+        List<MockHttpServletResponse> nested = new ArrayList<>();
+        // the write is still being served when the second one and a read arrive
+        FilterChain serving = (request, response) -> {
+            var rejected = new MockHttpServletResponse();
+            filter.doFilter(request("POST", "/contacts/remove"), rejected, new MockFilterChain());
+            nested.add(rejected);
+            var read = new MockHttpServletResponse();
+            filter.doFilter(request("GET", "/contacts/search"), read, new MockFilterChain());
+            nested.add(read);
+        };
+        var admitted = new MockHttpServletResponse();
+        filter.doFilter(request("POST", "/contacts"), admitted, serving);
+
+        assertEquals(200, admitted.getStatus());
+        assertEquals(503, nested.get(0).getStatus());
+        assertEquals("2", nested.get(0).getHeader("Retry-After"));
+        assertEquals(200, nested.get(1).getStatus());
+        var writes = limits.status().get(1);
+        assertEquals(0, writes.inFlight());
+        assertEquals(1, writes.admitted());
+        assertEquals(1, writes.rejectedHigh());
+
+        // change feed subscribers and other endpoints are not counted
+        var stream = new MockFilterChain();
+        filter.doFilter(request("GET", "/contacts/stream"), new MockHttpServletResponse(), stream);
+        assertNotNull(stream.getRequest());
+        filter.doFilter(request("GET", "/metrics"), new MockHttpServletResponse(), new MockFilterChain());
+        assertEquals(1, limits.status().get(0).admitted());
+    }
+
+    @Test
+    @DisplayName("filter_WithAsyncResponse_ShouldHoldPlaceUntilComplete")
+    void filter_WithAsyncResponse_ShouldHoldPlaceUntilComplete() throws Exception {
+        var limits = new ConcurrencyLimits(properties(1, 1));
+        var filter = filter(limits);
+        var request = request("GET", "/contacts");
+        request.setAsyncSupported(true);
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> req.startAsync());
+        assertEquals(1, limits.status().get(0).inFlight());
+        var rejected = new MockHttpServletResponse();
+        filter.doFilter(request("GET", "/contacts/changes"), rejected, new MockFilterChain());
+        assertEquals(503, rejected.getStatus());
+
+        request.getAsyncContext().complete();
+        assertEquals(0, limits.status().get(0).inFlight());
+    }
+
+    @Test
+    @DisplayName("scrape_ShouldRenderLimitsAndRejections")
+    @SuppressWarnings("unchecked")
+    void scrape_ShouldRenderLimitsAndRejections() {
+        var limits = new ConcurrencyLimits(properties(10, 20));
+        for (int i = 0; i < 6; i++) {
+            limits.limit(false).tryAcquire(AdaptiveLimit.Priority.LOW);
+        }
+        ObjectProvider<ConcurrencyLimits> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(limits);
+        var out = new StringBuilder();
+        new ContactMetrics(null, null, null, provider).scrape(out);
+        String text = out.toString();
+
+        assertTrue(text.contains("contacts_concurrency_limit{class=\"reads\"} 10\n"), text);
+        assertTrue(text.contains("contacts_concurrency_limit{class=\"writes\"} 20\n"), text);
+        assertTrue(text.contains("contacts_concurrency_in_flight{class=\"reads\"} 5\n"), text);
+        assertTrue(text.contains("contacts_concurrency_requests_total{class=\"reads\",result=\"admitted\"} 5\n"), text);
+        assertTrue(text.contains("contacts_concurrency_requests_total{class=\"reads\",result=\"rejected\",priority=\"low\"} 1\n"), text);
+        assertTrue(text.contains("contacts_concurrency_requests_total{class=\"writes\",result=\"rejected\",priority=\"high\"} 0\n"), text);
+    }
+
+    @Test
+    @DisplayName("constructor_WithInvalidSettings_ShouldThrowException")
+    void constructor_WithInvalidSettings_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLimit("reads", 2, 4, 200, 0.5, 1.5, 0.2, 0));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLimit("reads", 10, 4, 200, 0, 1.5, 0.2, 0));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLimit("reads", 10, 4, 200, 0.5, 0.5, 0.2, 0));
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimits(new ConcurrencyLimitProperties(true,
+                1, 10, 100, 10, 100, 0.5, 1.5, 0.2, Duration.ZERO, 500, Duration.ZERO, Duration.ZERO)));
+    }
+}
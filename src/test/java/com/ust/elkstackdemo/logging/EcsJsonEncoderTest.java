@@ -0,0 +1,78 @@
+package com.ust.elkstackdemo.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.KeyValuePair;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EcsJsonEncoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Logger logger;
+    private EcsJsonEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        LoggerContext context = new LoggerContext();
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        logger = context.getLogger("com.ust.elkstackdemo.Test");
+        encoder = new EcsJsonEncoder();
+        encoder.setServiceName("elk-stack-demo");
+    }
+
+    @Test
+    @DisplayName("encode_WithParameterizedMessage_ShouldWriteEcsFieldsOnOneLine")
+    void encode_WithParameterizedMessage_ShouldWriteEcsFieldsOnOneLine() throws Exception {
+        var event = new LoggingEvent(Logger.class.getName(), logger, Level.DEBUG,
+                "Getting contact with name: {}", null, new Object[]{"Jo \"Quote\"\nNext"});
+        event.setThreadName("http-nio-8000-exec-1");
+        event.setTimeStamp(1_700_000_000_123L);
+
+        String line = new String(encoder.encode(event), StandardCharsets.UTF_8);
+
+        assertTrue(line.endsWith("}\n"));
+        assertEquals(1, line.split("\n").length);
+        JsonNode json = objectMapper.readTree(line);
+        assertEquals("2023-11-14T22:13:20.123Z", json.get("@timestamp").asText());
+        assertEquals("DEBUG", json.get("log.level").asText());
+        assertEquals("Getting contact with name: Jo \"Quote\"\nNext", json.get("message").asText());
+        assertEquals("elk-stack-demo", json.get("service.name").asText());
+        assertEquals("http-nio-8000-exec-1", json.get("process.thread.name").asText());
+        assertEquals("com.ust.elkstackdemo.Test", json.get("log.logger").asText());
+        assertEquals("1.2.0", json.get("ecs.version").asText());
+    }
+
+    @Test
+    @DisplayName("encode_WithKeyValuesMdcAndException_ShouldWriteThemAsFields")
+    void encode_WithKeyValuesMdcAndException_ShouldWriteThemAsFields() throws Exception {
+        var event = new LoggingEvent(Logger.class.getName(), logger, Level.WARN,
+                "Bulk import failed", new IllegalStateException("disk full"), null);
+        event.setMDCPropertyMap(Map.of("trace.id", "abc123"));
+        event.setKeyValuePairs(List.of(new KeyValuePair("contacts", 42), new KeyValuePair("partial", true),
+                new KeyValuePair("phoneNumber", "0012")));
+
+        JsonNode json = objectMapper.readTree(encoder.encode(event));
+
+        assertEquals("abc123", json.get("trace.id").asText());
+        assertEquals(42, json.get("contacts").asInt());
+        assertTrue(json.get("contacts").isNumber());
+        assertTrue(json.get("partial").asBoolean());
+        assertEquals("0012", json.get("phoneNumber").asText());
+        assertEquals("java.lang.IllegalStateException", json.get("error.type").asText());
+        assertEquals("disk full", json.get("error.message").asText());
+        assertTrue(json.get("error.stack_trace").asText().contains("EcsJsonEncoderTest"));
+    }
+}
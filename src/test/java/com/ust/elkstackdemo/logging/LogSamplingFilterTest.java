@@ -0,0 +1,137 @@
+package com.ust.elkstackdemo.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.KeyValuePair;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogSamplingFilterTest {
+
+    private LoggerContext context;
+    private Logger logger;
+    private ListAppender<ILoggingEvent> target;
+    private LogSamplingFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        context = new LoggerContext();
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        target = new ListAppender<>();
+        target.setContext(context);
+        target.start();
+        Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.DEBUG);
+        root.addAppender(target);
+        logger = context.getLogger("com.ust.elkstackdemo.repository.ContactRepository");
+        filter = new LogSamplingFilter();
+        filter.setContext(context);
+        filter.setDebugSampleRate(0);
+        filter.setEventsPerSecond(0.001);
+        filter.setBurst(3);
+        filter.start();
+        context.addTurboFilter(filter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        LogSamplingFilter.exitRequest();
+        filter.stop();
+    }
+
+    @Test
+    @DisplayName("decide_InUnsampledRequest_ShouldDenyDebugOnly")
+    void decide_InUnsampledRequest_ShouldDenyDebugOnly() {
+        assertFalse(filter.enterRequest());
+        assertFalse(logger.isDebugEnabled());
+        logger.debug("Getting contact with name: {}", "Jo");
+        logger.info("Added contact: {}", "Jo");
+        LogSamplingFilter.exitRequest();
+        logger.debug("Outside any request");
+
+        assertEquals(List.of("Added contact: {}", "Outside any request"), messages());
+        assertEquals(1, filter.status().debugDenied());
+        assertEquals(1, filter.status().unsampledRequests());
+    }
+
+    @Test
+    @DisplayName("decide_InSampledRequest_ShouldKeepEverythingOverBudget")
+    void decide_InSampledRequest_ShouldKeepEverythingOverBudget() {
+        filter.update(new LogSamplingSettings(1, 0.001, 3, Map.of(), 10));
+        assertTrue(filter.enterRequest());
+        for (int i = 0; i < 10; i++) {
+            logger.debug("Getting contact with name: {}", i);
+        }
+        assertEquals(10, target.list.size());
+        assertEquals(0, filter.status().suppressed());
+        assertEquals(1, filter.status().sampledRequests());
+    }
+
+    @Test
+    @DisplayName("decide_OverTemplateBudget_ShouldSuppressRepeatsAndSummarizeCounts")
+    void decide_OverTemplateBudget_ShouldSuppressRepeatsAndSummarizeCounts() {
+        for (int i = 0; i < 10; i++) {
+            logger.warn("No contacts with name: {}", "name" + i);
+        }
+        logger.info("A different template");
+        assertEquals(4, target.list.size());
+        assertEquals(7, filter.status().suppressed());
+
+        filter.summarize();
+        ILoggingEvent summary = target.list.get(target.list.size() - 1);
+        assertEquals(Level.WARN, summary.getLevel());
+        assertEquals("Suppressed 7 repeats of \"No contacts with name: {}\" in the last 10 s", summary.getFormattedMessage());
+        assertEquals(logger.getName(), summary.getLoggerName());
+        assertEquals(List.of(new KeyValuePair("log.suppressed", 7L).toString(),
+                        new KeyValuePair("log.template", "No contacts with name: {}").toString()),
+                summary.getKeyValuePairs().stream().map(KeyValuePair::toString).toList());
+
+        // counts are reset once reported
+        int size = target.list.size();
+        filter.summarize();
+        assertEquals(size, target.list.size());
+    }
+
+    @Test
+    @DisplayName("update_WithLoggerBudget_ShouldApplyLongestPrefixAndAlwaysPassErrors")
+    void update_WithLoggerBudget_ShouldApplyLongestPrefixAndAlwaysPassErrors() {
+        logger.warn("Before the update");
+        logger.warn("Before the update");
+        filter.update(new LogSamplingSettings(0, 100, 1, LogSamplingSettings.parseBudgets(
+                "com.ust.elkstackdemo=100, com.ust.elkstackdemo.repository=0, com.ust.elkstackdemo.repo=100"), 10));
+        logger.info("Muted");
+        logger.error("Still logged");
+        context.getLogger("com.ust.elkstackdemo.service.ContactService").info("Not muted");
+
+        assertEquals(List.of("Before the update", "Before the update", "Still logged", "Not muted"), messages());
+        assertEquals(0.0, filter.status().settings().loggerBudgets().get("com.ust.elkstackdemo.repository"));
+    }
+
+    @Test
+    @DisplayName("settings_WithInvalidValues_ShouldThrowException")
+    void settings_WithInvalidValues_ShouldThrowException() {
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> new LogSamplingSettings(1.5, 10, 20, Map.of(), 10));
+        assertEquals("Invalid debug sample rate: 1.5", thrown.getMessage());
+        thrown = assertThrows(IllegalArgumentException.class,
+                () -> new LogSamplingSettings(1, 10, 20, Map.of("org.springframework", -1.0), 10));
+        assertEquals("Invalid logger budget: org.springframework=-1.0", thrown.getMessage());
+        thrown = assertThrows(IllegalArgumentException.class, () -> LogSamplingSettings.parseBudgets("org.springframework"));
+        assertEquals("Invalid logger budget: org.springframework", thrown.getMessage());
+    }
+
+    private List<String> messages() {
+        return target.list.stream().map(ILoggingEvent::getMessage).toList();
+    }
+}
@@ -0,0 +1,179 @@
+package com.ust.elkstackdemo.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.AppenderBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferAppenderTest {
+
+    private LoggerContext context;
+    private Logger logger;
+    private GatedAppender target;
+    private RingBufferAppender appender;
+
+    @BeforeEach
+    void setUp() {
+        context = new LoggerContext();
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        logger = context.getLogger("test");
+        target = new GatedAppender();
+        target.setContext(context);
+        target.start();
+        appender = new RingBufferAppender();
+        appender.setContext(context);
+        appender.addAppender(target);
+    }
+
+    @AfterEach
+    void tearDown() {
+        target.gate.countDown();
+        appender.stop();
+    }
+
+    @Test
+    @DisplayName("append_FromManyThreads_ShouldDeliverEveryEventInPerThreadOrder")
+    void append_FromManyThreads_ShouldDeliverEveryEventInPerThreadOrder() throws Exception {
+        appender.setCapacity(64);
+        appender.setOverflowPolicy("block");
+        appender.start();
+        target.gate.countDown();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String thread = "t" + t;
+            producers.add(executor.submit(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    appender.doAppend(event(Level.DEBUG, thread + ":" + i));
+                }
+            }));
+        }
+        for (Future<?> producer : producers) {
+            producer.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        appender.stop();
+
+        assertEquals(20_000, target.events.size());
+        int[] next = new int[4];
+        for (ILoggingEvent event : target.events) {
+            String[] parts = event.getMessage().split(":");
+            int thread = parts[0].charAt(1) - '0';
+            assertEquals(next[thread]++, Integer.parseInt(parts[1]));
+        }
+        assertEquals(0, appender.status().dropped());
+    }
+
+    @Test
+    @DisplayName("append_WhenFullWithDropDebug_ShouldDropOnlyDebugEvents")
+    void append_WhenFullWithDropDebug_ShouldDropOnlyDebugEvents() throws Exception {
+        appender.setCapacity(4);
+        appender.setOverflowPolicy("drop-debug");
+        appender.start();
+        // the worker takes one event and then waits on the gate, so four more fill the buffer
+        appender.doAppend(event(Level.INFO, "first"));
+        target.entered.await(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 4; i++) {
+            appender.doAppend(event(Level.INFO, "fill " + i));
+        }
+        for (int i = 0; i < 10; i++) {
+            appender.doAppend(event(Level.DEBUG, "debug " + i));
+        }
+        LoggingStatus status = appender.status();
+        assertEquals(4, status.capacity());
+        assertEquals(4, status.queueDepth());
+        assertEquals(10, status.dropped());
+        assertEquals(10, status.droppedDebug());
+
+        Future<?> blocked = Executors.newSingleThreadExecutor().submit(() -> appender.doAppend(event(Level.WARN, "waits")));
+        assertThrows(java.util.concurrent.TimeoutException.class, () -> blocked.get(100, TimeUnit.MILLISECONDS));
+        target.gate.countDown();
+        blocked.get(5, TimeUnit.SECONDS);
+        appender.stop();
+
+        // the worker reports the drops as soon as the buffer empties
+        assertEquals(List.of("first", "fill 0", "fill 1", "fill 2", "fill 3"),
+                target.events.subList(0, 5).stream().map(ILoggingEvent::getMessage).toList());
+        assertTrue(target.events.stream().anyMatch(event -> event.getLevel() == Level.WARN
+                && event.getFormattedMessage().startsWith("Dropped 10 log events since the last report (10 in total)")));
+        assertEquals("waits", target.events.get(target.events.size() - 1).getMessage());
+    }
+
+    @Test
+    @DisplayName("append_WhenFullWithDropAll_ShouldNeverBlock")
+    void append_WhenFullWithDropAll_ShouldNeverBlock() throws Exception {
+        appender.setCapacity(2);
+        appender.setOverflowPolicy("drop-all");
+        appender.start();
+        appender.doAppend(event(Level.INFO, "first"));
+        target.entered.await(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 12; i++) {
+            appender.doAppend(event(Level.ERROR, "error " + i));
+        }
+        assertEquals(10, appender.status().dropped());
+        assertEquals(0, appender.status().droppedDebug());
+    }
+
+    @Test
+    @DisplayName("append_WhenNotAsync_ShouldWriteOnCallingThread")
+    void append_WhenNotAsync_ShouldWriteOnCallingThread() {
+        appender.setAsync(false);
+        appender.start();
+        target.gate.countDown();
+        appender.doAppend(event(Level.INFO, "direct"));
+        assertEquals(Thread.currentThread().getName(), target.threads.get(0));
+        assertFalse(appender.status().async());
+    }
+
+    @Test
+    @DisplayName("setOverflowPolicy_WithUnknownPolicy_ShouldThrowException")
+    void setOverflowPolicy_WithUnknownPolicy_ShouldThrowException() {
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> appender.setOverflowPolicy("drop-info"));
+        assertEquals("Invalid overflow policy: drop-info", thrown.getMessage());
+    }
+
+    private LoggingEvent event(Level level, String message) {
+        return new LoggingEvent(Logger.class.getName(), logger, level, message, null, null);
+    }
+
+    /**
+     * Collects events, holding the writer thread at the gate so tests can fill the buffer.
+     */
+    private static final class GatedAppender extends AppenderBase<ILoggingEvent> {
+
+        final List<ILoggingEvent> events = new ArrayList<>();
+        final List<String> threads = new ArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+            threads.add(Thread.currentThread().getName());
+        }
+    }
+}
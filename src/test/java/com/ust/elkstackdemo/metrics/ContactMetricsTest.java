@@ -0,0 +1,104 @@
+package com.ust.elkstackdemo.metrics;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.repository.ContactRepository;
+import com.ust.elkstackdemo.repository.ContactStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ContactMetricsTest {
+
+    private ContactRepository contactRepository;
+    private ContactMetrics metrics;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<ContactStore> store = mock(ObjectProvider.class);
+        metrics = new ContactMetrics(store, null, null, null);
+        contactRepository = new ContactRepository(metrics);
+        when(store.getIfAvailable()).thenReturn(contactRepository);
+    }
+
+    @Test
+    @DisplayName("bucket_ShouldPickFirstBucketWhoseBoundIsAtLeastTheLatency")
+    void bucket_ShouldPickFirstBucketWhoseBoundIsAtLeastTheLatency() {
+        assertEquals(0, LatencyHistogram.bucket(0));
+        assertEquals(0, LatencyHistogram.bucket(1_000));
+        assertEquals(1, LatencyHistogram.bucket(1_001));
+        assertEquals(1, LatencyHistogram.bucket(2_000));
+        assertEquals(2, LatencyHistogram.bucket(2_001));
+        assertEquals(10, LatencyHistogram.bucket(1_024_000));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket((1L << 23) * 1_000));
+        assertEquals(LatencyHistogram.BUCKETS, LatencyHistogram.bucket((1L << 23) * 1_000 + 1));
+        assertEquals(LatencyHistogram.BUCKETS, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    @DisplayName("scrape_ShouldRenderCumulativeHistogramsCountersAndGauges")
+    void scrape_ShouldRenderCumulativeHistogramsCountersAndGauges() {
+        contactRepository.addContact(new Contact("John Doe", "john.doe", "1234567890"));
+        contactRepository.addContact(new Contact("Jane Doe", "jane.doe", "0987654321"));
+        metrics.result(ContactMetrics.Operation.SEARCH_PHONE, true);
+        metrics.result(ContactMetrics.Operation.SEARCH_PHONE, false);
+        var histogram = metrics.latency(ContactMetrics.Layer.CONTROLLER, ContactMetrics.Operation.SEARCH_PHONE);
+        histogram.record(500);
+        histogram.record(1_500_000);
+
+        var out = new StringBuilder();
+        metrics.scrape(out);
+        String text = out.toString();
+
+        String labels = "layer=\"controller\",operation=\"search\",type=\"phone\"";
+        assertTrue(text.contains("contacts_operation_seconds_bucket{" + labels + ",le=\"0.000001\"} 1\n"), text);
+        assertTrue(text.contains("contacts_operation_seconds_bucket{" + labels + ",le=\"0.001024\"} 1\n"), text);
+        assertTrue(text.contains("contacts_operation_seconds_bucket{" + labels + ",le=\"0.002048\"} 2\n"), text);
+        assertTrue(text.contains("contacts_operation_seconds_bucket{" + labels + ",le=\"+Inf\"} 2\n"), text);
+        assertTrue(text.contains("contacts_operation_seconds_sum{" + labels + "} 0.0015005\n"), text);
+        assertTrue(text.contains("contacts_operation_seconds_count{" + labels + "} 2\n"), text);
+        assertTrue(text.contains("contacts_operation_seconds_count{layer=\"repository\",operation=\"add\"} 2\n"), text);
+        assertFalse(text.contains("operation=\"remove\""), text);
+        assertTrue(text.contains("contacts_lookups_total{operation=\"search\",type=\"phone\",result=\"hit\"} 1\n"), text);
+        assertTrue(text.contains("contacts_lookups_total{operation=\"search\",type=\"phone\",result=\"miss\"} 1\n"), text);
+        assertTrue(text.contains("contacts_store_size 2\n"), text);
+        assertTrue(text.contains("contacts_index_memory_bytes{index=\"name_trie\"} "), text);
+        assertTrue(text.contains("contacts_index_memory_bytes{index=\"phone_ngram\"} "), text);
+    }
+
+    @Test
+    @DisplayName("ofSearchType_WithUnknownType_ShouldThrowException")
+    void ofSearchType_WithUnknownType_ShouldThrowException() {
+        assertEquals(ContactMetrics.Operation.SEARCH_NAME_FUZZY, ContactMetrics.Operation.ofSearchType("name_fuzzy"));
+        var e = assertThrows(IllegalArgumentException.class, () -> ContactMetrics.Operation.ofSearchType("email"));
+        assertEquals("Invalid search type: email", e.getMessage());
+    }
+
+    @Test
+    @DisplayName("record_ShouldNotAllocate")
+    void record_ShouldNotAllocate() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        // warm up so the adders' cells and the JIT are settled
+        recordMany(100_000);
+        long before = threads.getThreadAllocatedBytes(thread);
+        recordMany(1_000_000);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        // allow for the odd allocation by the measurement itself, far below one byte per call
+        assertTrue(allocated < 10_000, "Allocated " + allocated + " bytes for 1,000,000 recordings");
+    }
+
+    private void recordMany(int n) {
+        for (int i = 0; i < n; i++) {
+            long start = System.nanoTime();
+            metrics.record(ContactMetrics.Layer.REPOSITORY, ContactMetrics.Operation.SEARCH_PHONE, start);
+            metrics.result(ContactMetrics.Operation.SEARCH_PHONE, (i & 1) == 0);
+        }
+    }
+}
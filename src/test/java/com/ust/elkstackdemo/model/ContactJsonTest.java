@@ -0,0 +1,59 @@
+package com.ust.elkstackdemo.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContactJsonTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<Contact> contacts = List.of(
+            new Contact("John Doe", "john.doe", "1234567890"),
+            new Contact("Zoë \"Z\" Ångström \\ 名前 😀", null, "+1/800"),
+            new Contact("tab\tnew\nline\rfeed\f\b bell\u0007 unit\u001F del\u007F", "a@b", "0"));
+
+    @Test
+    @DisplayName("toJson_ShouldMatchJackson")
+    void toJson_ShouldMatchJackson() throws Exception {
+        for (Contact contact : contacts) {
+            assertArrayEquals(objectMapper.writeValueAsBytes(contact), contact.toJson());
+        }
+    }
+
+    @Test
+    @DisplayName("array_ShouldMatchJackson")
+    void array_ShouldMatchJackson() throws Exception {
+        assertArrayEquals(objectMapper.writeValueAsBytes(contacts), ContactJson.array(contacts));
+        assertArrayEquals(objectMapper.writeValueAsBytes(contacts.subList(0, 1)), ContactJson.array(contacts.subList(0, 1)));
+        assertEquals("[]", new String(ContactJson.array(List.of()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("page_ShouldMatchJackson")
+    void page_ShouldMatchJackson() throws Exception {
+        var page = new ContactPage(contacts, "42");
+        var last = new ContactPage(List.of(), null);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(page), ContactJson.page(page));
+        assertArrayEquals(objectMapper.writeValueAsBytes(last), ContactJson.page(last));
+    }
+
+    @Test
+    @DisplayName("toJson_AfterSetter_ShouldEncodeAgain")
+    void toJson_AfterSetter_ShouldEncodeAgain() throws Exception {
+        var contact = new Contact("John Doe", "john.doe", "1234567890");
+        byte[] first = contact.toJson();
+        assertSame(first, contact.toJson());
+
+        contact.setEmail(null);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(contact), contact.toJson());
+        assertFalse(contact.toString().contains("json"));
+    }
+}
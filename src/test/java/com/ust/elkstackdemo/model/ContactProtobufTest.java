@@ -0,0 +1,71 @@
+package com.ust.elkstackdemo.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContactProtobufTest {
+
+    private final List<Contact> contacts = List.of(
+            new Contact("John Doe", "john.doe", "1234567890"),
+            new Contact("Zoë Ångström 名前 😀", null, "+1/800"),
+            new Contact("x".repeat(300), "", null));
+
+    @Test
+    @DisplayName("encode_ShouldWriteProtobufWireFormat")
+    void encode_ShouldWriteProtobufWireFormat() {
+        // field 1 (name) and field 3 (phone_number) as length-delimited strings, the null email left out
+        assertArrayEquals(new byte[]{0x0A, 1, 'a', 0x1A, 1, '1'}, ContactProtobuf.encode(new Contact("a", null, "1")));
+        // a 300-byte name has a two-byte varint length
+        byte[] encoded = ContactProtobuf.encode(contacts.get(2));
+        assertArrayEquals(new byte[]{0x0A, (byte) 0xAC, 0x02}, Arrays.copyOf(encoded, 3));
+        assertEquals(3 + 300 + 2, encoded.length);
+    }
+
+    @Test
+    @DisplayName("readList_ShouldReturnEncodedContacts")
+    void readList_ShouldReturnEncodedContacts() {
+        var read = new ArrayList<Contact>();
+        ContactProtobuf.readList(new ByteArrayInputStream(ContactProtobuf.list(contacts))).forEachRemaining(read::add);
+
+        assertEquals(contacts.size(), read.size());
+        for (int i = 0; i < contacts.size(); i++) {
+            assertEquals(contacts.get(i).toString(), read.get(i).toString());
+        }
+        assertFalse(ContactProtobuf.readList(new ByteArrayInputStream(new byte[0])).hasNext());
+    }
+
+    @Test
+    @DisplayName("page_ShouldAppendNextAfterContacts")
+    void page_ShouldAppendNextAfterContacts() {
+        byte[] list = ContactProtobuf.list(contacts.subList(0, 1));
+        byte[] page = ContactProtobuf.page(new ContactPage(contacts.subList(0, 1), "42"));
+
+        assertArrayEquals(list, Arrays.copyOf(page, list.length));
+        assertArrayEquals(new byte[]{0x12, 2, '4', '2'}, Arrays.copyOfRange(page, list.length, page.length));
+        // a reader of ContactList skips the next field
+        var read = ContactProtobuf.readList(new ByteArrayInputStream(page));
+        assertEquals("John Doe", read.next().getName());
+        assertFalse(read.hasNext());
+    }
+
+    @Test
+    @DisplayName("decode_ShouldSkipUnknownFieldsAndRejectTruncatedInput")
+    void decode_ShouldSkipUnknownFieldsAndRejectTruncatedInput() {
+        // field 4 varint 150, field 5 fixed32, then name "a"
+        var contact = ContactProtobuf.decode(new byte[]{0x20, (byte) 0x96, 0x01, 0x2D, 1, 2, 3, 4, 0x0A, 1, 'a'});
+        assertEquals("a", contact.getName());
+        assertNull(contact.getEmail());
+
+        assertThrows(IllegalArgumentException.class, () -> ContactProtobuf.decode(new byte[]{0x0A, 5, 'a'}));
+        assertThrows(IllegalArgumentException.class, () -> ContactProtobuf.decode(new byte[]{0x0B}));
+        assertThrows(IllegalArgumentException.class,
+                () -> ContactProtobuf.readList(new ByteArrayInputStream(new byte[]{0x0A, 3, 0x0A})).hasNext());
+    }
+}
@@ -0,0 +1,220 @@
+package com.ust.elkstackdemo.persistence;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.repository.ContactChangeListener;
+import com.ust.elkstackdemo.repository.ContactRepository;
+import com.ust.elkstackdemo.service.ChangeLog;
+import com.ust.elkstackdemo.service.ChangeLogProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContactPersistenceTest {
+
+    @TempDir
+    Path directory;
+
+    private ContactPersistence start(ContactRepository contactRepository) throws IOException {
+        var properties = new PersistenceProperties(true, directory, true, Duration.ofMillis(5), Duration.ofHours(1));
+        var persistence = new ContactPersistence(contactRepository, properties);
+        persistence.start();
+        return persistence;
+    }
+
+    private static List<String> names(ContactRepository contactRepository) {
+        return contactRepository.getContacts().stream().map(Contact::getName).sorted().toList();
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().startsWith(prefix)).toList();
+        }
+    }
+
+    @Test
+    @DisplayName("start_AfterCrash_ShouldReplayWriteAheadLog")
+    void start_AfterCrash_ShouldReplayWriteAheadLog() throws Exception {
+        var contactRepository = new ContactRepository();
+        start(contactRepository);
+        contactRepository.addContact(new Contact("Sam", "sss@gmail.com", "9899112379"));
+        contactRepository.addContact(new Contact("Alice", "alice@example.com", "1234567890"));
+        contactRepository.addContacts(List.of(new Contact("Bob", null, "555"), new Contact("Carol", "c@x", "556")));
+        contactRepository.removeContactByPhoneNumber("1234567890");
+        // no stop(): synchronous writes must already be on disk
+
+        var recovered = new ContactRepository();
+        start(recovered);
+        assertEquals(List.of("Bob", "Carol", "Sam"), names(recovered));
+        assertNull(recovered.getContactsByName("Bob").get(0).getEmail());
+    }
+
+    @Test
+    @DisplayName("stop_ShouldSnapshotAndTruncateLog")
+    void stop_ShouldSnapshotAndTruncateLog() throws Exception {
+        var contactRepository = new ContactRepository();
+        var persistence = start(contactRepository);
+        for (int i = 0; i < 100; i++) {
+            contactRepository.addContact(new Contact("Name" + i, "mail" + i, String.valueOf(1000 + i)));
+        }
+        persistence.stop();
+        assertEquals(1, files("snapshot-").size());
+        assertEquals(1, files("wal-").size(), "Only the segment opened after the snapshot should remain");
+
+        var recovered = new ContactRepository();
+        start(recovered);
+        assertEquals(100, recovered.size());
+        assertEquals(contactRepository.getContacts().stream().map(Contact::getName).toList(),
+                recovered.getContacts().stream().map(Contact::getName).toList());
+    }
+
+    @Test
+    @DisplayName("start_WithSnapshotAndLogTail_ShouldApplyBoth")
+    void start_WithSnapshotAndLogTail_ShouldApplyBoth() throws Exception {
+        var contactRepository = new ContactRepository();
+        var persistence = start(contactRepository);
+        contactRepository.addContact(new Contact("Sam", "sss@gmail.com", "9899112379"));
+        contactRepository.addContact(new Contact("Alice", "alice@example.com", "1234567890"));
+        persistence.snapshot();
+        contactRepository.removeContactByPhoneNumber("9899112379");
+        contactRepository.addContact(new Contact("Bob", "bob@example.com", "1112223333"));
+
+        var recovered = new ContactRepository();
+        start(recovered);
+        assertEquals(List.of("Alice", "Bob"), names(recovered));
+    }
+
+    @Test
+    @DisplayName("snapshot_WithWriterLoggedButNotCommitted_ShouldWaitForIt")
+    void snapshot_WithWriterLoggedButNotCommitted_ShouldWaitForIt() throws Exception {
+        var contactRepository = new ContactRepository();
+        var persistence = start(contactRepository);
+        contactRepository.addContact(new Contact("Sam", "sss@gmail.com", "9899112379"));
+        var logged = new CountDownLatch(1);
+        var resume = new CountDownLatch(1);
+        // registered after the persistence, so it runs once the add is logged and before it commits
+        contactRepository.addChangeListener(new ContactChangeListener() {
+            @Override
+            public void contactAdded(long version, Contact contact) {
+                if (contact.getName().equals("Alice")) {
+                    logged.countDown();
+                    try {
+                        resume.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            @Override
+            public void contactsRemoved(long version, String phoneNumber, List<Contact> contacts) {
+            }
+        });
+        var writer = Thread.ofPlatform().start(() ->
+                contactRepository.addContact(new Contact("Alice", "alice@example.com", "1234567890")));
+        assertTrue(logged.await(5, TimeUnit.SECONDS));
+
+        var snapshot = CompletableFuture.runAsync(() -> {
+            try {
+                persistence.snapshot();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(snapshot.isDone(), "The snapshot must not be cut before the logged add commits");
+        resume.countDown();
+        writer.join();
+        snapshot.get(5, TimeUnit.SECONDS);
+        // the segment holding the add is gone, so only the snapshot can bring Alice back
+        assertEquals(1, files("wal-").size());
+
+        var recovered = new ContactRepository();
+        start(recovered);
+        assertEquals(List.of("Alice", "Sam"), names(recovered));
+    }
+
+    @Test
+    @DisplayName("start_WithTornLogTail_ShouldKeepEarlierRecords")
+    void start_WithTornLogTail_ShouldKeepEarlierRecords() throws Exception {
+        var contactRepository = new ContactRepository();
+        start(contactRepository);
+        contactRepository.addContact(new Contact("Sam", "sss@gmail.com", "9899112379"));
+        contactRepository.addContact(new Contact("Alice", "alice@example.com", "1234567890"));
+        Path segment = files("wal-").get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        var recovered = new ContactRepository();
+        start(recovered);
+        assertEquals(List.of("Sam"), names(recovered));
+        recovered.addContact(new Contact("Bob", "bob@example.com", "1112223333"));
+
+        var again = new ContactRepository();
+        start(again);
+        assertEquals(List.of("Bob", "Sam"), names(again));
+    }
+
+    @Test
+    @DisplayName("addContact_FromManyThreads_ShouldBeDurable")
+    void addContact_FromManyThreads_ShouldBeDurable() throws Exception {
+        var contactRepository = new ContactRepository();
+        start(contactRepository);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 500;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = offset; i < offset + 500; i++) {
+                    contactRepository.addContact(new Contact("Name" + i, "mail" + i, String.valueOf(i % 300)));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        var recovered = new ContactRepository();
+        start(recovered);
+        assertEquals(2000, recovered.size());
+    }
+
+    @Test
+    @DisplayName("start_InContext_ShouldRecoverBeforeTheChangeLogListens")
+    void start_InContext_ShouldRecoverBeforeTheChangeLogListens() throws Exception {
+        var contactRepository = new ContactRepository();
+        start(contactRepository);
+        contactRepository.addContact(new Contact("Sam", "sss@gmail.com", "9899112379"));
+
+        var recovered = new ContactRepository();
+        var properties = new PersistenceProperties(true, directory, true, Duration.ofMillis(5), Duration.ofHours(1));
+        try (var context = new AnnotationConfigApplicationContext()) {
+            TestPropertyValues.of("contacts.persistence.enabled=true").applyTo(context);
+            // registered first, so created before the persistence
+            context.registerBean(ChangeLog.class, () -> new ChangeLog(recovered, new ChangeLogProperties(100)));
+            context.registerBean(ContactPersistence.class, () -> new ContactPersistence(recovered, properties));
+            context.refresh();
+
+            assertEquals(1, recovered.size());
+            assertEquals(0, context.getBean(ChangeLog.class).size());
+            recovered.addContact(new Contact("Alice", "alice@example.com", "1234567890"));
+            assertEquals(1, context.getBean(ChangeLog.class).size());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.ust.elkstackdemo.persistence;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    private volatile boolean failWrites;
+    private volatile boolean failForce;
+
+    private WriteAheadLog open() throws IOException {
+        return new WriteAheadLog(directory, 0, path -> new FlakyChannel(FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)));
+    }
+
+    private static long append(WriteAheadLog log, String phoneNumber) {
+        return log.append(1, WriteAheadLog.ADD, "Name" + phoneNumber, null, phoneNumber);
+    }
+
+    private List<String> replay() throws IOException {
+        List<String> replayed = new ArrayList<>();
+        WriteAheadLog.replay(directory, 0, record -> replayed.add(record.lsn() + ":" + record.phoneNumber()));
+        return replayed;
+    }
+
+    @Test
+    @DisplayName("sync_WhenWriteFailsPartWay_ShouldRejectWritesUntilTheRecordsAreWrittenAgain")
+    void sync_WhenWriteFailsPartWay_ShouldRejectWritesUntilTheRecordsAreWrittenAgain() throws IOException {
+        var log = open();
+        log.sync(append(log, "555"));
+
+        failWrites = true;
+        long lsn = append(log, "556");
+        assertThrows(UncheckedIOException.class, () -> log.sync(lsn));
+        assertThrows(UncheckedIOException.class, log::checkWritable);
+        assertThrows(IOException.class, log::rotate);
+        log.flush();
+        assertThrows(UncheckedIOException.class, log::checkWritable);
+
+        failWrites = false;
+        log.flush();
+        log.checkWritable();
+        log.sync(lsn);
+        log.sync(append(log, "557"));
+        log.close();
+
+        assertEquals(List.of("1:555", "2:556", "3:557"), replay());
+    }
+
+    @Test
+    @DisplayName("sync_WhenFsyncFails_ShouldNotCountTheRecordsAsDurableNorReplayThemTwice")
+    void sync_WhenFsyncFails_ShouldNotCountTheRecordsAsDurableNorReplayThemTwice() throws IOException {
+        var log = open();
+        failForce = true;
+        long lsn = append(log, "555");
+        assertThrows(UncheckedIOException.class, () -> log.sync(lsn));
+        // the record is in the page cache of the first segment, but was never confirmed durable
+        assertThrows(UncheckedIOException.class, () -> log.sync(lsn));
+
+        failForce = false;
+        log.sync(lsn);
+        log.sync(append(log, "556"));
+        log.close();
+
+        assertEquals(List.of("1:555", "2:556"), replay());
+    }
+
+    /**
+     * A file channel that, while asked to, writes half of what it is given and fails, or fails to fsync.
+     */
+    private final class FlakyChannel extends FileChannel {
+
+        private final FileChannel channel;
+
+        FlakyChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failWrites) {
+                var half = src.slice(src.position(), src.remaining() / 2);
+                src.position(src.position() + channel.write(half));
+                throw new IOException("No space left on device");
+            }
+            return channel.write(src);
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failForce) {
+                throw new IOException("Input/output error");
+            }
+            channel.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.ust.elkstackdemo.replication;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.repository.ContactChangeListener;
+import com.ust.elkstackdemo.repository.ContactRepository;
+import com.ust.elkstackdemo.repository.ContactStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A primary and its replicas on localhost, each with its own store, talking over real sockets.
+ */
+class ReplicationTest {
+
+    private final List<ReplicationPrimary> primaries = new ArrayList<>();
+    private final List<ContactReplica> replicas = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (ContactReplica replica : replicas) {
+            replica.stop();
+        }
+        for (ReplicationPrimary primary : primaries) {
+            primary.stop();
+        }
+    }
+
+    private static ReplicationProperties properties(String role, int port, int backlog) {
+        // small frames, so that snapshots and catching up take several
+        return new ReplicationProperties(role, "localhost", port, 3, backlog, Duration.ofMillis(50),
+                Duration.ofMillis(20), "");
+    }
+
+    private ReplicationPrimary startPrimary(ContactStore store, int port, int backlog) throws Exception {
+        var primary = new ReplicationPrimary(store, properties("primary", port, backlog));
+        primary.start();
+        primaries.add(primary);
+        return primary;
+    }
+
+    private ContactReplica startReplica(ContactStore store, ReplicationPrimary primary) {
+        var replica = new ContactReplica(store, properties("replica", primary.port(), 1));
+        replica.start();
+        replicas.add(replica);
+        return replica;
+    }
+
+    private static List<String> contents(ContactStore store) {
+        return store.getContacts().stream().map(Contact::toString).sorted().toList();
+    }
+
+    private static void awaitInSync(ContactStore primary, ContactStore replica) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!contents(primary).equals(contents(replica))) {
+            assertTrue(System.currentTimeMillis() < deadline, "replica never caught up");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void awaitCaughtUp(ContactReplica replica, ReplicationPrimary primary) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (replica.status().offset() != primary.status().offset()
+                || !replica.status().connected() || !replica.consistent()) {
+            assertTrue(System.currentTimeMillis() < deadline, "replica never caught up");
+            Thread.sleep(5);
+        }
+    }
+
+    private static Contact contact(int i) {
+        return new Contact("Contact " + i, i % 2 == 0 ? null : "contact" + i + "@example.com", Integer.toString(5_550_000 + i));
+    }
+
+    @Test
+    @DisplayName("replicas_ShouldLoadSnapshotThenApplyChangesInOrder")
+    void replicas_ShouldLoadSnapshotThenApplyChangesInOrder() throws Exception {
+        var primaryStore = new ContactRepository();
+        for (int i = 0; i < 10; i++) {
+            primaryStore.addContact(contact(i));
+        }
+        var primary = startPrimary(primaryStore, 0, 1_000);
+        var firstStore = new ContactRepository();
+        var secondStore = new ContactRepository();
+        var first = startReplica(firstStore, primary);
+        var second = startReplica(secondStore, primary);
+        awaitInSync(primaryStore, firstStore);
+        awaitInSync(primaryStore, secondStore);
+
+        primaryStore.addContact(contact(10));
+        primaryStore.addContacts(List.of(contact(11), contact(12), new Contact("Other", null, contact(11).getPhoneNumber())));
+        primaryStore.removeContactByPhoneNumber(contact(3).getPhoneNumber());
+        primaryStore.removeContactByPhoneNumber(contact(11).getPhoneNumber());
+        primaryStore.addContact(contact(3));
+        awaitCaughtUp(first, primary);
+        awaitCaughtUp(second, primary);
+
+        assertEquals(contents(primaryStore), contents(firstStore));
+        assertEquals(contents(primaryStore), contents(secondStore));
+        var status = first.status();
+        assertEquals(1, status.snapshots());
+        assertEquals(0, status.lagOperations());
+        assertEquals(0, status.lagMillis());
+        assertEquals(2, primary.status().snapshots());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (primary.status().replicas().stream().anyMatch(r -> r.lagOperations() > 0)) {
+            assertTrue(System.currentTimeMillis() < deadline, "acknowledgements never arrived");
+            Thread.sleep(5);
+        }
+        assertEquals(2, primary.status().replicas().size());
+    }
+
+    @Test
+    @DisplayName("replica_AfterReconnect_ShouldResumeFromItsOffset")
+    void replica_AfterReconnect_ShouldResumeFromItsOffset() throws Exception {
+        var primaryStore = new ContactRepository();
+        var primary = startPrimary(primaryStore, 0, 1_000);
+        var replicaStore = new ContactRepository();
+        var replica = startReplica(replicaStore, primary);
+        primaryStore.addContact(contact(0));
+        awaitCaughtUp(replica, primary);
+
+        replica.stop();
+        for (int i = 1; i < 20; i++) {
+            primaryStore.addContact(contact(i));
+        }
+        primaryStore.removeContactByPhoneNumber(contact(0).getPhoneNumber());
+        assertFalse(replica.status().connected());
+        replica.start();
+        awaitCaughtUp(replica, primary);
+
+        assertEquals(contents(primaryStore), contents(replicaStore));
+        assertEquals(1, replica.status().snapshots());
+    }
+
+    @Test
+    @DisplayName("replica_FallenOutOfBacklog_ShouldLoadNewSnapshot")
+    void replica_FallenOutOfBacklog_ShouldLoadNewSnapshot() throws Exception {
+        var primaryStore = new ContactRepository();
+        var primary = startPrimary(primaryStore, 0, 4);
+        var replicaStore = new ContactRepository();
+        var replica = startReplica(replicaStore, primary);
+        primaryStore.addContact(contact(0));
+        awaitCaughtUp(replica, primary);
+
+        replica.stop();
+        for (int i = 1; i < 10; i++) {
+            primaryStore.addContact(contact(i));
+        }
+        primaryStore.removeContactByPhoneNumber(contact(0).getPhoneNumber());
+        replica.start();
+        awaitCaughtUp(replica, primary);
+
+        assertEquals(contents(primaryStore), contents(replicaStore));
+        assertEquals(2, replica.status().snapshots());
+    }
+
+    @Test
+    @DisplayName("replica_OfRestartedPrimary_ShouldReplaceItsContents")
+    void replica_OfRestartedPrimary_ShouldReplaceItsContents() throws Exception {
+        var oldStore = new ContactRepository();
+        oldStore.addContact(contact(0));
+        var oldPrimary = startPrimary(oldStore, 0, 1_000);
+        var replicaStore = new ContactRepository();
+        var replica = startReplica(replicaStore, oldPrimary);
+        awaitCaughtUp(replica, oldPrimary);
+
+        oldPrimary.stop();
+        primaries.remove(oldPrimary);
+        // same port and offsets, different run and contents
+        var newStore = new ContactRepository();
+        newStore.addContact(contact(1));
+        var newPrimary = startPrimary(newStore, oldPrimary.port(), 1_000);
+        awaitInSync(newStore, replicaStore);
+
+        assertEquals(List.of(contact(1).toString()), contents(replicaStore));
+        assertEquals(2, replica.status().snapshots());
+        awaitCaughtUp(replica, newPrimary);
+    }
+
+    @Test
+    @DisplayName("replica_LoadingSnapshotOverContacts_ShouldOnlyChangeWhatDiffers")
+    void replica_LoadingSnapshotOverContacts_ShouldOnlyChangeWhatDiffers() throws Exception {
+        var oldStore = new ContactRepository();
+        for (int i = 0; i < 10; i++) {
+            oldStore.addContact(contact(i));
+        }
+        var oldPrimary = startPrimary(oldStore, 0, 1_000);
+        var replicaStore = new ContactRepository();
+        var replica = startReplica(replicaStore, oldPrimary);
+        awaitCaughtUp(replica, oldPrimary);
+        List<String> changes = Collections.synchronizedList(new ArrayList<>());
+        replicaStore.addChangeListener(new ContactChangeListener() {
+            @Override
+            public void contactAdded(long version, Contact contact) {
+                changes.add("+" + contact.getName());
+            }
+
+            @Override
+            public void contactsRemoved(long version, String phoneNumber, List<Contact> contacts) {
+                contacts.forEach(contact -> changes.add("-" + contact.getName()));
+            }
+        });
+
+        oldPrimary.stop();
+        primaries.remove(oldPrimary);
+        var newStore = new ContactRepository();
+        for (int i = 1; i < 11; i++) {
+            newStore.addContact(contact(i));
+        }
+        newStore.addContact(new Contact("Other", null, contact(5).getPhoneNumber()));
+        var newPrimary = startPrimary(newStore, oldPrimary.port(), 1_000);
+        awaitInSync(newStore, replicaStore);
+        awaitCaughtUp(replica, newPrimary);
+
+        assertEquals(List.of("+Contact 10", "+Contact 5", "+Other", "-Contact 0", "-Contact 5"),
+                changes.stream().sorted().toList());
+        assertTrue(replica.consistent());
+    }
+
+    @Test
+    @DisplayName("writeFilter_ShouldRedirectWritesToPrimaryAndPassReadsOnceConsistent")
+    void writeFilter_ShouldRedirectWritesToPrimaryAndPassReadsOnceConsistent() throws Exception {
+        var primary = startPrimary(new ContactRepository(), 0, 1_000);
+        var replica = startReplica(new ContactRepository(), primary);
+        awaitCaughtUp(replica, primary);
+        var redirecting = new ReplicaWriteFilter(new ReplicationProperties("replica", "localhost", 7070, 1000, 1000,
+                Duration.ofSeconds(1), Duration.ofSeconds(1), "http://primary:8000/"), replica);
+        var post = new MockHttpServletRequest("POST", "/contacts/remove");
+        post.setQueryString("phoneNumber=555");
+        var redirected = new MockHttpServletResponse();
+        var chain = new MockFilterChain();
+        redirecting.doFilter(post, redirected, chain);
+        assertEquals(307, redirected.getStatus());
+        assertEquals("http://primary:8000/contacts/remove?phoneNumber=555", redirected.getHeader("Location"));
+        assertNull(chain.getRequest());
+
+        var read = new MockFilterChain();
+        redirecting.doFilter(new MockHttpServletRequest("GET", "/contacts/search"), new MockHttpServletResponse(), read);
+        assertNotNull(read.getRequest());
+
+        // never started, so it has no snapshot yet
+        var refusing = new ReplicaWriteFilter(properties("replica", 7070, 1),
+                new ContactReplica(new ContactRepository(), properties("replica", 7070, 1)));
+        var refused = new MockHttpServletResponse();
+        refusing.doFilter(new MockHttpServletRequest("POST", "/contacts"), refused, new MockFilterChain());
+        assertEquals(503, refused.getStatus());
+        var unready = new MockHttpServletResponse();
+        var notRead = new MockFilterChain();
+        refusing.doFilter(new MockHttpServletRequest("GET", "/contacts"), unready, notRead);
+        assertEquals(503, unready.getStatus());
+        assertNull(notRead.getRequest());
+    }
+}
@@ -1,12 +1,20 @@
 package com.ust.elkstackdemo.repository;
 
 import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactPage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -266,4 +274,342 @@ class ContactRepositoryTest {
         });
         assertEquals("Name is null or empty.", thrown.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Additional. removeContactByPhoneNumber_WithSharedPhoneNumber_ShouldRemoveAllContacts")
+    void removeContactByPhoneNumber_WithSharedPhoneNumber_ShouldRemoveAllContacts() {
+        contactRepository.addContact(validContact);
+        contactRepository.addContact(new Contact("Samuel", "samuel@gmail.com", "9899112379"));
+        contactRepository.addContact(contactForRemoval);
+        contactRepository.removeContactByPhoneNumber("9899112379");
+        List<Contact> contacts = contactRepository.getContacts();
+        assertEquals(List.of(contactForRemoval), contacts);
+        assertThrows(IllegalArgumentException.class, () -> contactRepository.removeContactByPhoneNumber("9899112379"));
+    }
+
+    @Test
+    @DisplayName("Additional. addContact_AfterRemoval_ShouldAcceptSameContactAgain")
+    void addContact_AfterRemoval_ShouldAcceptSameContactAgain() {
+        contactRepository.addContact(validContact);
+        contactRepository.removeContactByPhoneNumber("9899112379");
+        contactRepository.addContact(contactWithExistingContact);
+        assertEquals(1, contactRepository.size());
+    }
+
+    @Test
+    @DisplayName("Additional. addContact_FromManyThreads_ShouldKeepEveryDistinctContact")
+    void addContact_FromManyThreads_ShouldKeepEveryDistinctContact() throws Exception {
+        int threads = 8;
+        int perThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (int i = offset; i < offset + perThread; i++) {
+                        // every other contact shares a phone number with its neighbour
+                        contactRepository.addContact(new Contact("Name" + i, "mail" + i, String.valueOf(1_000_000 + i / 2)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads * perThread, contactRepository.size());
+        assertEquals(threads * perThread, contactRepository.getContacts().size());
+    }
+
+    @Test
+    @DisplayName("Additional. addContact_SameContactFromManyThreads_ShouldAcceptExactlyOne")
+    void addContact_SameContactFromManyThreads_ShouldAcceptExactlyOne() throws Exception {
+        int threads = 8;
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        contactRepository.addContact(new Contact("Sam", "sss@gmail.com", "9899112379"));
+                        accepted.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        rejected.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, accepted.get());
+        assertEquals(threads - 1, rejected.get());
+        assertEquals(1, contactRepository.size());
+    }
+
+    @Test
+    @DisplayName("Additional. getContactsByName_WithDifferentCase_ShouldReturnEmptyList")
+    void getContactsByName_WithDifferentCase_ShouldReturnEmptyList() {
+        contactRepository.addContact(validContact);
+        assertTrue(contactRepository.getContactsByName("sam").isEmpty(), "Exact name search should stay case-sensitive");
+        assertEquals(List.of(validContact), contactRepository.getContactsByNameIgnoreCase("sAM"));
+    }
+
+    @Test
+    @DisplayName("Additional. getContactsByNamePrefix_WithExistingPrefix_ShouldReturnContacts")
+    void getContactsByNamePrefix_WithExistingPrefix_ShouldReturnContacts() {
+        contactRepository.addContact(validContact);
+        contactRepository.addContact(contactForRemoval);
+        assertEquals(List.of(validContact), contactRepository.getContactsByNamePrefix("sa"));
+        assertTrue(contactRepository.getContactsByNamePrefix("bob").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Additional. getContactsByNameFuzzy_WithMisspelledName_ShouldReturnContacts")
+    void getContactsByNameFuzzy_WithMisspelledName_ShouldReturnContacts() {
+        contactRepository.addContact(contactForRemoval);
+        assertEquals(List.of(contactForRemoval), contactRepository.getContactsByNameFuzzy("Alise"));
+        contactRepository.removeContactByPhoneNumber("1234567890");
+        assertTrue(contactRepository.getContactsByNameFuzzy("Alise").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Additional. getContactsByNamePrefix_WithEmptyPrefix_ShouldThrowException")
+    void getContactsByNamePrefix_WithEmptyPrefix_ShouldThrowException() {
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> {
+            contactRepository.getContactsByNamePrefix("");
+        });
+        assertEquals("Name is null or empty.", thrown.getMessage());
+    }
+
+    @Test
+    @DisplayName("Additional. getContactsPage_ShouldWalkStoreInInsertionOrder")
+    void getContactsPage_ShouldWalkStoreInInsertionOrder() {
+        for (int i = 0; i < 5; i++) {
+            contactRepository.addContact(new Contact("Name" + i, "mail" + i, "10" + i));
+        }
+        ContactPage first = contactRepository.getContacts(null, 2);
+        assertEquals(List.of("Name0", "Name1"), first.contacts().stream().map(Contact::getName).toList());
+        contactRepository.removeContactByPhoneNumber("102");
+        ContactPage second = contactRepository.getContacts(first.next(), 2);
+        assertEquals(List.of("Name3", "Name4"), second.contacts().stream().map(Contact::getName).toList());
+        assertNull(second.next(), "Last page should not have a next cursor");
+    }
+
+    @Test
+    @DisplayName("Additional. getContactsPage_WithInvalidArguments_ShouldThrowException")
+    void getContactsPage_WithInvalidArguments_ShouldThrowException() {
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> {
+            contactRepository.getContacts(null, 0);
+        });
+        assertEquals("Page size must be between 1 and 1000", thrown.getMessage());
+        thrown = assertThrows(IllegalArgumentException.class, () -> {
+            contactRepository.getContacts("abc", 10);
+        });
+        assertEquals("Invalid cursor: abc", thrown.getMessage());
+    }
+
+    @Test
+    @DisplayName("Additional. streamContacts_ShouldReturnContactsInInsertionOrder")
+    void streamContacts_ShouldReturnContactsInInsertionOrder() {
+        contactRepository.addContact(contactForRemoval);
+        contactRepository.addContact(validContact);
+        assertEquals(List.of(contactForRemoval, validContact), contactRepository.streamContacts().toList());
+    }
+
+    @Test
+    @DisplayName("Additional. addContacts_WithMixedBatch_ShouldReportEachContact")
+    void addContacts_WithMixedBatch_ShouldReportEachContact() {
+        contactRepository.addContact(validContact);
+        List<String> outcomes = contactRepository.addContacts(List.of(
+                contactForRemoval,
+                contactWithExistingContact,
+                contactWithEmptyName,
+                contactWithNullPhoneNumber,
+                new Contact("Alice", "alice@example.com", "1234567890"),
+                new Contact("Bob", "bob@example.com", "1234567890")));
+        assertEquals(Arrays.asList(null, "Contact already exists", "Contact name is empty",
+                "Contact phone number is empty", "Contact already exists", null), outcomes);
+        assertEquals(3, contactRepository.size());
+        assertEquals(2, contactRepository.getContactsByPhoneNumber("1234567890").size());
+        assertEquals(List.of(validContact), contactRepository.getContactsByNamePrefix("sa"));
+    }
+
+    @Test
+    @DisplayName("Additional. snapshot_AfterConcurrentWrites_ShouldStillSeeStateWhenOpened")
+    void snapshot_AfterConcurrentWrites_ShouldStillSeeStateWhenOpened() {
+        contactRepository.addContact(validContact);
+        try (var snapshot = contactRepository.snapshot()) {
+            contactRepository.removeContactByPhoneNumber("9899112379");
+            contactRepository.addContact(contactForRemoval);
+            contactRepository.addContact(validContact);
+
+            assertEquals(1, snapshot.version());
+            assertEquals(List.of(validContact), snapshot.getContacts());
+            assertEquals(List.of(validContact), snapshot.getContactsByPhoneNumber("112"));
+            assertEquals(List.of(validContact), snapshot.getContactsByName("Sam"));
+            assertTrue(snapshot.getContactsByNamePrefix("ali").isEmpty());
+            assertEquals(List.of(validContact), snapshot.streamContacts().toList());
+        }
+        try (var snapshot = contactRepository.snapshot()) {
+            assertEquals(4, snapshot.version());
+            assertEquals(List.of(contactForRemoval, validContact), snapshot.getContacts());
+            assertEquals(List.of(validContact), snapshot.getContactsByName("Sam"));
+        }
+    }
+
+    @Test
+    @DisplayName("Additional. snapshot_WithMoreOpenThanSlots_ShouldNotWaitForOneToClose")
+    void snapshot_WithMoreOpenThanSlots_ShouldNotWaitForOneToClose() {
+        contactRepository.addContact(validContact);
+        // one thread holds them all, as if each were streaming to a client that has not finished reading
+        List<ContactSnapshot> open = new ArrayList<>();
+        for (int i = 0; i < 3 * VersionClock.SEGMENT_SLOTS; i++) {
+            open.add(contactRepository.snapshot());
+        }
+        contactRepository.removeContactByPhoneNumber("9899112379");
+        var last = contactRepository.snapshot();
+        assertEquals(List.of(validContact), open.get(0).getContacts());
+        assertEquals(List.of(validContact), open.get(open.size() - 1).getContacts());
+        assertTrue(last.getContacts().isEmpty());
+
+        open.forEach(ContactSnapshot::close);
+        last.close();
+        try (var snapshot = contactRepository.snapshot()) {
+            assertTrue(snapshot.getContacts().isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Additional. snapshot_WhileContactsChange_ShouldNeverSeeHalfABatch")
+    void snapshot_WhileContactsChange_ShouldNeverSeeHalfABatch() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicInteger torn = new AtomicInteger();
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    String phoneNumber = String.valueOf(1_000 + i % 50);
+                    if (i % 3 == 2) {
+                        // drop the pair added just before
+                        contactRepository.removeContactByPhoneNumber(String.valueOf(1_000 + (i - 1) % 50));
+                    } else {
+                        contactRepository.addContacts(List.of(new Contact("A" + i, null, phoneNumber),
+                                new Contact("B" + i, null, phoneNumber)));
+                    }
+                }
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(executor.submit(() -> {
+                    while (!writer.isDone()) {
+                        try (var snapshot = contactRepository.snapshot()) {
+                            // each batch adds a pair under one version, so a consistent view is always even
+                            if (snapshot.getContacts().size() % 2 != 0
+                                    || snapshot.getContactsByPhoneNumber("10").size() != snapshot.getContacts().size()) {
+                                torn.incrementAndGet();
+                            }
+                        }
+                    }
+                }));
+            }
+            writer.get(30, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, torn.get());
+    }
+
+    @Test
+    @DisplayName("removeContacts_WithOthersOnTheSamePhoneNumber_ShouldRemoveOnlyThoseGiven")
+    void removeContacts_WithOthersOnTheSamePhoneNumber_ShouldRemoveOnlyThoseGiven() {
+        contactRepository.addContact(new Contact("Sam", null, "5550000001"));
+        contactRepository.addContact(new Contact("Samantha", "sam@example.com", "5550000001"));
+        contactRepository.addContact(new Contact("Alice", null, "5550000002"));
+
+        int removed = contactRepository.removeContacts(List.of(
+                new Contact("Sam", null, "5550000001"),
+                new Contact("Alice", null, "5550000002"),
+                new Contact("Bob", null, "5550000003")));
+
+        assertEquals(2, removed);
+        assertEquals(List.of("Samantha"), contactRepository.getContacts().stream().map(Contact::getName).toList());
+        assertEquals(List.of(), contactRepository.getContactsByName("Sam"));
+        assertEquals(1, contactRepository.getContactsByPhoneNumber("5550000001").size());
+        assertEquals(0, contactRepository.removeContacts(List.of(new Contact("Sam", null, "5550000001"))));
+    }
+
+    /**
+     * Rejects every change while {@link #full} is set, like a write-ahead log whose disk filled up,
+     * and counts what it is told.
+     */
+    static final class RejectingListener implements ContactChangeListener {
+
+        volatile boolean full;
+        int notified;
+        int afterChanges;
+
+        @Override
+        public void beforeChange() {
+            if (full) {
+                throw new IllegalStateException("Disk full");
+            }
+        }
+
+        @Override
+        public void contactAdded(long version, Contact contact) {
+            notified++;
+        }
+
+        @Override
+        public void contactsRemoved(long version, String phoneNumber, List<Contact> contacts) {
+            notified++;
+        }
+
+        @Override
+        public void afterChange() {
+            afterChanges++;
+        }
+    }
+
+    @Test
+    @DisplayName("addContact_WhenListenerRejects_ShouldChangeAndAnnounceNothing")
+    void addContact_WhenListenerRejects_ShouldChangeAndAnnounceNothing() {
+        // registered first, so it would have heard of any change the second one rejects
+        var earlier = new RejectingListener();
+        var rejecting = new RejectingListener();
+        contactRepository.addChangeListener(earlier);
+        contactRepository.addChangeListener(rejecting);
+        contactRepository.addContact(new Contact("Sam", null, "5550000001"));
+        long version = contactRepository.version();
+        rejecting.full = true;
+
+        assertThrows(IllegalStateException.class,
+                () -> contactRepository.addContact(new Contact("Samantha", null, "5550000002")));
+        assertThrows(IllegalStateException.class, () -> contactRepository.addContacts(List.of(
+                new Contact("Alice", null, "5550000003"),
+                new Contact("Bob", null, "5550000002"))));
+        assertThrows(IllegalStateException.class, () -> contactRepository.removeContactByPhoneNumber("5550000001"));
+
+        assertEquals(1, earlier.notified);
+        assertEquals(4, earlier.afterChanges);
+        assertEquals(version, contactRepository.version());
+        assertEquals(List.of("Sam"), contactRepository.getContacts().stream().map(Contact::getName).toList());
+        assertEquals(List.of(), contactRepository.getContactsByName("Samantha"));
+        assertEquals(List.of(), contactRepository.getContactsByName("Alice"));
+
+        // writes go through again once the listener accepts them
+        rejecting.full = false;
+        contactRepository.removeContactByPhoneNumber("5550000001");
+        assertEquals(2, earlier.notified);
+        assertEquals(0, contactRepository.size());
+    }
+}
@@ -0,0 +1,143 @@
+package com.ust.elkstackdemo.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NameIndexTest {
+
+    private NameIndex<String> nameIndex;
+
+    @BeforeEach
+    void setUp() {
+        nameIndex = new NameIndex<>();
+        nameIndex.add("Sam", "sam");
+        nameIndex.add("Samuel", "samuel");
+        nameIndex.add("José", "jose");
+        nameIndex.add("Alice", "alice");
+    }
+
+    private Set<String> exact(String name) {
+        Set<String> keys = new HashSet<>();
+        nameIndex.exact(name, keys::add);
+        return keys;
+    }
+
+    private Set<String> prefix(String prefix) {
+        Set<String> keys = new HashSet<>();
+        nameIndex.prefix(prefix, keys::add);
+        return keys;
+    }
+
+    private Set<String> fuzzy(String name, int maxEdits) {
+        Set<String> keys = new HashSet<>();
+        nameIndex.fuzzy(name, maxEdits, keys::add);
+        return keys;
+    }
+
+    @Test
+    @DisplayName("normalize_ShouldLowerCaseAndStripAccents")
+    void normalize_ShouldLowerCaseAndStripAccents() {
+        assertEquals("jose", NameIndex.normalize("JOSÉ"));
+    }
+
+    @Test
+    @DisplayName("exact_ShouldIgnoreCaseAndAccents")
+    void exact_ShouldIgnoreCaseAndAccents() {
+        assertEquals(Set.of("sam"), exact("SAM"));
+        assertEquals(Set.of("jose"), exact("jose"));
+        assertTrue(exact("Sa").isEmpty());
+    }
+
+    @Test
+    @DisplayName("prefix_ShouldReturnEveryNameStartingWithPrefix")
+    void prefix_ShouldReturnEveryNameStartingWithPrefix() {
+        assertEquals(Set.of("sam", "samuel"), prefix("sa"));
+        assertEquals(Set.of("samuel"), prefix("samu"));
+        assertTrue(prefix("bob").isEmpty());
+    }
+
+    @Test
+    @DisplayName("fuzzy_ShouldReturnNamesWithinEditDistance")
+    void fuzzy_ShouldReturnNamesWithinEditDistance() {
+        assertEquals(Set.of("samuel"), fuzzy("samual", 1));
+        assertEquals(Set.of("alice"), fuzzy("alcie", 2));
+        assertEquals(Set.of("sam"), fuzzy("sam", 0));
+        assertTrue(fuzzy("xyz", 1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("remove_ShouldDropKeyFromEveryLookup")
+    void remove_ShouldDropKeyFromEveryLookup() {
+        nameIndex.remove("Samuel", "samuel");
+        assertEquals(Set.of("sam"), prefix("sa"));
+        assertTrue(fuzzy("samual", 1).isEmpty());
+        nameIndex.remove("Samuel", "samuel");
+        assertEquals(Set.of("sam"), prefix("s"));
+    }
+
+    @Test
+    @DisplayName("remove_WithChurnOfDistinctNames_ShouldNotGrowTheTrie")
+    void remove_WithChurnOfDistinctNames_ShouldNotGrowTheTrie() {
+        long before = nameIndex.memoryBytes();
+        for (int i = 0; i < 10_000; i++) {
+            nameIndex.add("Churned " + i, "churned" + i);
+            nameIndex.remove("Churned " + i, "churned" + i);
+        }
+        assertEquals(before, nameIndex.memoryBytes());
+        assertEquals(Set.of("sam", "samuel"), prefix("sa"));
+        assertEquals(Set.of("samuel"), fuzzy("samual", 1));
+    }
+
+    @Test
+    @DisplayName("add_WhileOtherKeysArePruned_ShouldNeverLoseAKey")
+    void add_WhileOtherKeysArePruned_ShouldNeverLoseAKey() throws Exception {
+        int threads = 4;
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    // the names share their branches, which other threads keep emptying
+                    for (int i = 0; i < 20_000; i++) {
+                        String name = "n" + (i % 50);
+                        String key = thread + ":" + i;
+                        nameIndex.add(name, key);
+                        if (i % 10 != 0) {
+                            nameIndex.remove(name, key);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Set<String> kept = prefix("n");
+        assertEquals(threads * 2_000, kept.size());
+        for (int i = 0; i < 20_000; i += 10) {
+            assertTrue(exact("n" + (i % 50)).contains("0:" + i));
+        }
+    }
+
+    @Test
+    @DisplayName("autoFuzziness_ShouldGrowWithQueryLength")
+    void autoFuzziness_ShouldGrowWithQueryLength() {
+        assertEquals(0, NameIndex.autoFuzziness("ab"));
+        assertEquals(1, NameIndex.autoFuzziness("abcde"));
+        assertEquals(2, NameIndex.autoFuzziness("abcdef"));
+    }
+}
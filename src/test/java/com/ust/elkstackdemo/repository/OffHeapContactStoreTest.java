@@ -0,0 +1,280 @@
+package com.ust.elkstackdemo.repository;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapContactStoreTest {
+
+    private OffHeapContactStore offHeapStore;
+
+    @BeforeEach
+    void setUp() {
+        offHeapStore = new OffHeapContactStore();
+    }
+
+    @Test
+    @DisplayName("addContact_WithLeadingZerosAndOddNumbers_ShouldReturnNumbersUnchanged")
+    void addContact_WithLeadingZerosAndOddNumbers_ShouldReturnNumbersUnchanged() {
+        offHeapStore.addContact(new Contact("Sam", null, "0012345"));
+        offHeapStore.addContact(new Contact("Alice", "alice@example.com", "+1-800-555-0199"));
+        offHeapStore.addContact(new Contact("Bob", "bob@example.com", "123456789012345678901"));
+
+        assertEquals(List.of("Sam|null|0012345", "Alice|alice@example.com|+1-800-555-0199",
+                "Bob|bob@example.com|123456789012345678901"), describe(offHeapStore.getContacts()));
+        assertEquals(List.of("Sam|null|0012345"), describe(offHeapStore.getContactsByPhoneNumber("0012")));
+        assertEquals(List.of("Alice|alice@example.com|+1-800-555-0199"),
+                describe(offHeapStore.getContactsByPhoneNumber("555")));
+    }
+
+    @Test
+    @DisplayName("addContact_WithExistingContact_ShouldThrowException")
+    void addContact_WithExistingContact_ShouldThrowException() {
+        offHeapStore.addContact(new Contact("Sam", null, "9899112379"));
+        offHeapStore.addContact(new Contact("Sam", "sss@gmail.com", "9899112379"));
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> offHeapStore.addContact(new Contact("Sam", null, "9899112379")));
+        assertEquals("Contact already exists", thrown.getMessage());
+        assertEquals(2, offHeapStore.size());
+    }
+
+    @Test
+    @DisplayName("removeContactByPhoneNumber_WithSharedName_ShouldKeepOtherContactsFindable")
+    void removeContactByPhoneNumber_WithSharedName_ShouldKeepOtherContactsFindable() {
+        offHeapStore.addContact(new Contact("Sam", null, "111"));
+        offHeapStore.addContact(new Contact("Sam", null, "222"));
+        offHeapStore.addContact(new Contact("Sam", null, "333"));
+
+        offHeapStore.removeContactByPhoneNumber("222");
+
+        assertEquals(List.of("Sam|null|111", "Sam|null|333"), describe(offHeapStore.getContactsByName("Sam")));
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> offHeapStore.removeContactByPhoneNumber("222"));
+        assertEquals("No contact with phone number: 222", thrown.getMessage());
+    }
+
+    @Test
+    @DisplayName("getContactsPage_ShouldSkipRemovedRows")
+    void getContactsPage_ShouldSkipRemovedRows() {
+        for (int i = 0; i < 5; i++) {
+            offHeapStore.addContact(new Contact("Contact" + i, null, "10" + i));
+        }
+        offHeapStore.removeContactByPhoneNumber("101");
+
+        ContactPage first = offHeapStore.getContacts(null, 2);
+        ContactPage second = offHeapStore.getContacts(first.next(), 2);
+
+        assertEquals(List.of("Contact0|null|100", "Contact2|null|102"), describe(first.contacts()));
+        assertEquals(List.of("Contact3|null|103", "Contact4|null|104"), describe(second.contacts()));
+        assertNull(second.next());
+    }
+
+    @Test
+    @DisplayName("snapshot_AfterLaterWrites_ShouldStillSeeStateWhenOpened")
+    void snapshot_AfterLaterWrites_ShouldStillSeeStateWhenOpened() {
+        offHeapStore.addContact(new Contact("Sam", null, "111"));
+        try (var snapshot = offHeapStore.snapshot()) {
+            offHeapStore.removeContactByPhoneNumber("111");
+            offHeapStore.addContact(new Contact("Sam", null, "222"));
+
+            assertEquals(1, snapshot.version());
+            assertEquals(List.of("Sam|null|111"), describe(snapshot.getContactsByName("Sam")));
+            assertEquals(List.of("Sam|null|111"), describe(snapshot.streamContacts().toList()));
+        }
+        assertEquals(List.of("Sam|null|222"), describe(offHeapStore.getContactsByName("Sam")));
+    }
+
+    @Test
+    @DisplayName("removeContactByPhoneNumber_WhenMostRowsAreRemoved_ShouldCompactAndKeepCursorsAndLookups")
+    void removeContactByPhoneNumber_WhenMostRowsAreRemoved_ShouldCompactAndKeepCursorsAndLookups() {
+        var store = new OffHeapContactStore(4);
+        for (int i = 0; i < 10; i++) {
+            store.addContact(new Contact(i % 2 == 0 ? "Sam" : "Alex", null, i == 9 ? "+1-800-" + i : "10" + i));
+        }
+        ContactPage first = store.getContacts(null, 2);
+        long heapBytes = store.heapIndexBytes();
+        long arenaBytes = store.offHeapBytes();
+
+        for (int i = 0; i < 6; i++) {
+            store.removeContactByPhoneNumber("10" + i);
+        }
+
+        assertEquals(4, store.size());
+        assertTrue(store.offHeapBytes() <= arenaBytes, "off-heap bytes should not grow");
+        assertTrue(store.heapIndexBytes() <= heapBytes, "index bytes should not grow");
+        assertEquals(List.of("Sam|null|106", "Sam|null|108"), describe(store.getContactsByName("Sam")));
+        assertEquals(List.of("Alex|null|107", "Alex|null|+1-800-9"), describe(store.getContactsByNameIgnoreCase("alex")));
+        assertEquals(List.of("Alex|null|+1-800-9"), describe(store.getContactsByPhoneNumber("800")));
+        ContactPage second = store.getContacts(first.next(), 3);
+        assertEquals(List.of("Sam|null|106", "Alex|null|107", "Sam|null|108"), describe(second.contacts()));
+        assertEquals(List.of("Alex|null|+1-800-9"), describe(store.getContacts(second.next(), 3).contacts()));
+
+        store.removeContacts(List.of(new Contact("Alex", null, "+1-800-9")));
+        store.addContact(new Contact("Alex", null, "+1-800-9"));
+        assertEquals(List.of("Alex|null|107", "Alex|null|+1-800-9"), describe(store.getContactsByName("Alex")));
+    }
+
+    @Test
+    @DisplayName("snapshot_OpenedBeforeCompaction_ShouldStillSeeStateWhenOpened")
+    void snapshot_OpenedBeforeCompaction_ShouldStillSeeStateWhenOpened() {
+        var store = new OffHeapContactStore(2);
+        store.addContact(new Contact("Sam", null, "111"));
+        store.addContact(new Contact("Sam", null, "222"));
+        store.addContact(new Contact("Alex", null, "333"));
+        try (var snapshot = store.snapshot()) {
+            store.removeContacts(List.of(new Contact("Sam", null, "111"), new Contact("Sam", null, "222")));
+            store.addContact(new Contact("Sam", null, "444"));
+
+            assertEquals(List.of("Sam|null|111", "Sam|null|222"), describe(snapshot.getContactsByName("Sam")));
+            assertEquals(3, snapshot.streamContacts().count());
+            ContactPage page = snapshot.getContacts(null, 2);
+            assertEquals(List.of("Alex|null|333"), describe(snapshot.getContacts(page.next(), 2).contacts()));
+        }
+        assertEquals(List.of("Sam|null|444"), describe(store.getContactsByName("Sam")));
+        assertEquals(List.of("Alex|null|333", "Sam|null|444"), describe(store.getContacts()));
+    }
+
+    @Test
+    @DisplayName("operations_WithRandomWorkload_ShouldMatchHeapRepository")
+    void operations_WithRandomWorkload_ShouldMatchHeapRepository() {
+        ContactRepository heapStore = new ContactRepository();
+        Random random = new Random(7);
+        String[] names = {"Sam", "sam", "Samuel", "José", "Jose", "Alice", "Alise", "Bob"};
+        for (int i = 0; i < 3_000; i++) {
+            String name = names[random.nextInt(names.length)];
+            String phone = Integer.toString(random.nextInt(500));
+            String email = random.nextBoolean() ? null : name.toLowerCase() + "@example.com";
+            if (random.nextInt(5) == 0) {
+                assertSameOutcome(() -> heapStore.removeContactByPhoneNumber(phone),
+                        () -> offHeapStore.removeContactByPhoneNumber(phone));
+            } else {
+                assertSameOutcome(() -> heapStore.addContact(new Contact(name, email, phone)),
+                        () -> offHeapStore.addContact(new Contact(name, email, phone)));
+            }
+        }
+        List<Contact> batch = List.of(new Contact("Sam", null, "42"), new Contact(null, null, "43"),
+                new Contact("Sam", null, "42"), new Contact("Bob", null, ""));
+        assertEquals(heapStore.addContacts(batch), offHeapStore.addContacts(batch));
+
+        assertEquals(heapStore.size(), offHeapStore.size());
+        assertEquals(describe(heapStore.getContacts()), describe(offHeapStore.getContacts()));
+        assertEquals(describe(heapStore.streamContacts().toList()), describe(offHeapStore.streamContacts().toList()));
+        for (String name : names) {
+            assertEquals(sorted(heapStore.getContactsByName(name)), sorted(offHeapStore.getContactsByName(name)));
+            assertEquals(sorted(heapStore.getContactsByNameIgnoreCase(name)),
+                    sorted(offHeapStore.getContactsByNameIgnoreCase(name)));
+            assertEquals(sorted(heapStore.getContactsByNamePrefix(name.substring(0, 2))),
+                    sorted(offHeapStore.getContactsByNamePrefix(name.substring(0, 2))));
+            assertEquals(sorted(heapStore.getContactsByNameFuzzy(name)), sorted(offHeapStore.getContactsByNameFuzzy(name)));
+        }
+        for (String query : List.of("1", "42", "99", "123", "7")) {
+            assertEquals(sorted(heapStore.getContactsByPhoneNumber(query)),
+                    sorted(offHeapStore.getContactsByPhoneNumber(query)));
+        }
+    }
+
+    @Test
+    @DisplayName("operations_WithInvalidArguments_ShouldThrowSameMessagesAsHeapRepository")
+    void operations_WithInvalidArguments_ShouldThrowSameMessagesAsHeapRepository() {
+        ContactRepository heapStore = new ContactRepository();
+        assertSameOutcome(() -> heapStore.addContact(new Contact("", null, "1")),
+                () -> offHeapStore.addContact(new Contact("", null, "1")));
+        assertSameOutcome(() -> heapStore.addContact(new Contact("Sam", null, null)),
+                () -> offHeapStore.addContact(new Contact("Sam", null, null)));
+        assertSameOutcome(() -> heapStore.getContactsByPhoneNumber("12a"),
+                () -> offHeapStore.getContactsByPhoneNumber("12a"));
+        assertSameOutcome(() -> heapStore.getContactsByPhoneNumber("123456789001"),
+                () -> offHeapStore.getContactsByPhoneNumber("123456789001"));
+        assertSameOutcome(() -> heapStore.getContactsByName(null), () -> offHeapStore.getContactsByName(null));
+        assertSameOutcome(() -> heapStore.getContacts("x", 10), () -> offHeapStore.getContacts("x", 10));
+        assertSameOutcome(() -> heapStore.getContacts(null, 0), () -> offHeapStore.getContacts(null, 0));
+    }
+
+    private static void assertSameOutcome(Runnable expected, Runnable actual) {
+        assertEquals(outcome(expected), outcome(actual));
+    }
+
+    private static String outcome(Runnable operation) {
+        try {
+            operation.run();
+            return "ok";
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static List<String> describe(List<Contact> contacts) {
+        List<String> described = new ArrayList<>();
+        for (Contact contact : contacts) {
+            described.add(contact.getName() + "|" + contact.getEmail() + "|" + contact.getPhoneNumber());
+        }
+        return described;
+    }
+
+    private static List<String> sorted(List<Contact> contacts) {
+        String[] described = describe(contacts).toArray(String[]::new);
+        Arrays.sort(described);
+        return List.of(described);
+    }
+
+    @Test
+    @DisplayName("removeContacts_WithOthersOnTheSamePhoneNumber_ShouldRemoveOnlyThoseGiven")
+    void removeContacts_WithOthersOnTheSamePhoneNumber_ShouldRemoveOnlyThoseGiven() {
+        offHeapStore.addContact(new Contact("Sam", null, "5550000001"));
+        offHeapStore.addContact(new Contact("Samantha", "sam@example.com", "5550000001"));
+        offHeapStore.addContact(new Contact("Alice", null, "5550000002"));
+        long version = offHeapStore.version();
+
+        int removed = offHeapStore.removeContacts(List.of(
+                new Contact("Sam", null, "5550000001"),
+                new Contact("Alice", null, "5550000002"),
+                new Contact("Bob", null, "5550000003")));
+
+        assertEquals(2, removed);
+        assertEquals(version + 1, offHeapStore.version());
+        assertEquals(List.of("Samantha|sam@example.com|5550000001"), describe(offHeapStore.getContacts()));
+        assertEquals(List.of(), offHeapStore.getContactsByName("Sam"));
+        assertEquals(0, offHeapStore.removeContacts(List.of(new Contact("Sam", null, "5550000001"))));
+        offHeapStore.removeContactByPhoneNumber("5550000001");
+        assertEquals(List.of(), describe(offHeapStore.getContacts()));
+    }
+
+    @Test
+    @DisplayName("addContact_WhenListenerRejects_ShouldChangeAndAnnounceNothing")
+    void addContact_WhenListenerRejects_ShouldChangeAndAnnounceNothing() {
+        var earlier = new ContactRepositoryTest.RejectingListener();
+        var rejecting = new ContactRepositoryTest.RejectingListener();
+        offHeapStore.addChangeListener(earlier);
+        offHeapStore.addChangeListener(rejecting);
+        offHeapStore.addContact(new Contact("Sam", null, "5550000001"));
+        long version = offHeapStore.version();
+        rejecting.full = true;
+
+        assertThrows(IllegalStateException.class,
+                () -> offHeapStore.addContact(new Contact("Samantha", null, "5550000002")));
+        assertThrows(IllegalStateException.class, () -> offHeapStore.addContacts(List.of(
+                new Contact("Alice", null, "5550000003"),
+                new Contact("Bob", null, "5550000002"))));
+        assertThrows(IllegalStateException.class, () -> offHeapStore.removeContactByPhoneNumber("5550000001"));
+
+        assertEquals(1, earlier.notified);
+        assertEquals(4, earlier.afterChanges);
+        assertEquals(version, offHeapStore.version());
+        assertEquals(List.of("Sam|null|5550000001"), describe(offHeapStore.getContacts()));
+
+        rejecting.full = false;
+        offHeapStore.removeContactByPhoneNumber("5550000001");
+        assertEquals(2, earlier.notified);
+        assertEquals(List.of(), describe(offHeapStore.getContacts()));
+    }
+}
@@ -0,0 +1,109 @@
+package com.ust.elkstackdemo.repository;
+
+import com.ust.elkstackdemo.model.Contact;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhoneNumberIndexTest {
+
+    private PhoneNumberIndex phoneNumberIndex;
+
+    @BeforeEach
+    void setUp() {
+        phoneNumberIndex = new PhoneNumberIndex();
+    }
+
+    @Test
+    @DisplayName("candidates_WithIndexedNumber_ShouldContainEveryMatchingNumber")
+    void candidates_WithIndexedNumber_ShouldContainEveryMatchingNumber() {
+        phoneNumberIndex.add("9899112379");
+        phoneNumberIndex.add("1234567890");
+        assertEquals(Set.of("9899112379"), phoneNumberIndex.candidates("112"));
+        assertEquals(Set.of("1234567890"), phoneNumberIndex.candidates("4567"));
+        assertTrue(phoneNumberIndex.candidates("23").containsAll(Set.of("9899112379", "1234567890")));
+    }
+
+    @Test
+    @DisplayName("candidates_WithSingleDigitQuery_ShouldReturnNull")
+    void candidates_WithSingleDigitQuery_ShouldReturnNull() {
+        phoneNumberIndex.add("9899112379");
+        assertNull(phoneNumberIndex.candidates("9"));
+    }
+
+    @Test
+    @DisplayName("candidates_AfterRemove_ShouldNotContainNumber")
+    void candidates_AfterRemove_ShouldNotContainNumber() {
+        phoneNumberIndex.add("9899112379");
+        phoneNumberIndex.remove("9899112379");
+        assertTrue(phoneNumberIndex.candidates("899").isEmpty());
+    }
+
+    @Test
+    @DisplayName("candidates_WithNonDigitNumber_ShouldIndexOnlyDigitRuns")
+    void candidates_WithNonDigitNumber_ShouldIndexOnlyDigitRuns() {
+        phoneNumberIndex.add("+1-800-555");
+        assertEquals(Set.of("+1-800-555"), phoneNumberIndex.candidates("800"));
+        assertTrue(phoneNumberIndex.candidates("180").isEmpty());
+    }
+
+    @Test
+    @DisplayName("candidates_WithLongQuery_ShouldStayFewAsNumbersGrow")
+    void candidates_WithLongQuery_ShouldStayFewAsNumbersGrow() {
+        Random random = new Random(7);
+        phoneNumberIndex.add("9899112379");
+        int added = 0;
+        for (int total : new int[]{1_000, 10_000, 50_000}) {
+            for (; added < total; added++) {
+                phoneNumberIndex.add(String.valueOf(1_000_000_000L + random.nextInt(1_000_000_000)));
+            }
+            // every trigram of the query is held by hundreds of numbers by now, but all of them by
+            // hardly any
+            Set<String> candidates = phoneNumberIndex.candidates("9899112379");
+            assertTrue(candidates.contains("9899112379"));
+            assertTrue(candidates.size() <= 3, candidates.size() + " candidates among " + total + " numbers");
+            assertTrue(phoneNumberIndex.candidates("98991").size() <= 5 + total / 10_000,
+                    "five-digit query among " + total + " numbers");
+        }
+    }
+
+    @Test
+    @DisplayName("getContactsByPhoneNumber_WithIndex_ShouldMatchFullScan")
+    void getContactsByPhoneNumber_WithIndex_ShouldMatchFullScan() {
+        ContactRepository contactRepository = new ContactRepository();
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            String phoneNumber = String.valueOf(random.nextInt(1_000_000));
+            try {
+                contactRepository.addContact(new Contact("Name" + i, "mail" + i, phoneNumber));
+            } catch (IllegalArgumentException ignored) {
+                // duplicate identity, skip
+            }
+            if (i % 7 == 0) {
+                String victim = String.valueOf(random.nextInt(1_000_000));
+                try {
+                    contactRepository.removeContactByPhoneNumber(victim);
+                } catch (IllegalArgumentException ignored) {
+                    // nothing to remove
+                }
+            }
+        }
+        List<Contact> all = contactRepository.getContacts();
+        for (int i = 0; i < 500; i++) {
+            String query = String.valueOf(random.nextInt((int) Math.pow(10, 1 + random.nextInt(5))));
+            Set<Contact> expected = all.stream()
+                    .filter(c -> c.getPhoneNumber().contains(query))
+                    .collect(Collectors.toSet());
+            Set<Contact> actual = new HashSet<>(contactRepository.getContactsByPhoneNumber(query));
+            assertEquals(expected, actual, "Index lookup should match a full scan for " + query);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.ust.elkstackdemo.repository;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedContactStoreTest {
+
+    private ShardedContactStore shardedStore;
+    private List<Contact> added;
+
+    @BeforeEach
+    void setUp() {
+        shardedStore = new ShardedContactStore(8);
+        added = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            var contact = new Contact(i % 2 == 0 ? "Alice" : "Bob " + i, "mail" + i, String.valueOf(5_550_000 + i));
+            shardedStore.addContact(contact);
+            added.add(contact);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        shardedStore.stop();
+    }
+
+    @Test
+    @DisplayName("getContacts_AcrossShards_ShouldReturnContactsInInsertionOrder")
+    void getContacts_AcrossShards_ShouldReturnContactsInInsertionOrder() {
+        assertEquals(added, shardedStore.getContacts());
+        assertEquals(added, shardedStore.streamContacts().toList());
+        assertEquals(100, shardedStore.size());
+
+        List<Contact> paged = new ArrayList<>();
+        ContactPage page = shardedStore.getContacts(null, 7);
+        while (true) {
+            paged.addAll(page.contacts());
+            if (page.next() == null) {
+                break;
+            }
+            page = shardedStore.getContacts(page.next(), 7);
+        }
+        assertEquals(added, paged);
+        assertThrows(IllegalArgumentException.class, () -> shardedStore.getContacts("x", 7));
+        assertThrows(IllegalArgumentException.class, () -> shardedStore.getContacts(null, 0));
+    }
+
+    @Test
+    @DisplayName("searches_AcrossShards_ShouldFindEveryMatch")
+    void searches_AcrossShards_ShouldFindEveryMatch() {
+        assertEquals(50, shardedStore.getContactsByName("Alice").size());
+        assertEquals(50, shardedStore.getContactsByNameIgnoreCase("alice").size());
+        assertEquals(50, shardedStore.getContactsByNamePrefix("bo").size());
+        assertEquals(50, shardedStore.getContactsByNameFuzzy("Alise").size());
+        assertEquals(sorted(added.subList(10, 20)), sorted(shardedStore.getContactsByPhoneNumber("555001")));
+        assertTrue(shardedStore.getContactsByName("Carol").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> shardedStore.getContactsByName(""));
+        assertThrows(IllegalArgumentException.class, () -> shardedStore.getContactsByPhoneNumber("abc"));
+    }
+
+    @Test
+    @DisplayName("writes_ShouldBehaveLikeOneStore")
+    void writes_ShouldBehaveLikeOneStore() {
+        assertThrows(IllegalArgumentException.class, () -> shardedStore.addContact(added.get(3)));
+        assertThrows(IllegalArgumentException.class, () -> shardedStore.addContact(new Contact("Nobody", null, null)));
+
+        shardedStore.removeContactByPhoneNumber("5550003");
+        assertThrows(IllegalArgumentException.class, () -> shardedStore.removeContactByPhoneNumber("5550003"));
+        assertTrue(shardedStore.getContactsByPhoneNumber("5550003").isEmpty());
+        assertEquals(99, shardedStore.size());
+
+        List<String> outcomes = shardedStore.addContacts(Arrays.asList(
+                new Contact("Carol", null, "100"), added.get(4), new Contact("", null, "300"),
+                new Contact("Dave", null, "200"), new Contact("Carol", null, "100")));
+        assertEquals(Arrays.asList(null, "Contact already exists", "Contact name is empty", null,
+                "Contact already exists"), outcomes);
+        assertEquals(101, shardedStore.size());
+        assertEquals(List.of("Carol", "Dave"), shardedStore.getContacts().subList(99, 101).stream().map(Contact::getName).toList());
+        assertEquals(103, shardedStore.version());
+    }
+
+    @Test
+    @DisplayName("snapshot_AfterWritesToOtherShards_ShouldStillSeeStateWhenOpened")
+    void snapshot_AfterWritesToOtherShards_ShouldStillSeeStateWhenOpened() {
+        try (var snapshot = shardedStore.snapshot()) {
+            for (int i = 0; i < 100; i += 2) {
+                shardedStore.removeContactByPhoneNumber(String.valueOf(5_550_000 + i));
+            }
+            shardedStore.addContact(new Contact("Alice", null, "42"));
+
+            assertEquals(100, snapshot.version());
+            assertEquals(added, snapshot.getContacts());
+            assertEquals(50, snapshot.getContactsByName("Alice").size());
+            assertEquals(added, snapshot.streamContacts().toList());
+        }
+        assertEquals(151, shardedStore.version());
+        assertEquals(51, shardedStore.size());
+        assertEquals(List.of("Alice|42"), sorted(shardedStore.getContactsByName("Alice")));
+    }
+
+    @Test
+    @DisplayName("listener_ShouldHearEveryChangeOnce")
+    void listener_ShouldHearEveryChangeOnce() {
+        AtomicInteger changes = new AtomicInteger();
+        AtomicInteger afterChanges = new AtomicInteger();
+        var listener = new ContactChangeListener() {
+            @Override
+            public void contactAdded(long version, Contact contact) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void contactsRemoved(long version, String phoneNumber, List<Contact> contacts) {
+                changes.addAndGet(contacts.size());
+            }
+
+            @Override
+            public void afterChange() {
+                afterChanges.incrementAndGet();
+            }
+        };
+        shardedStore.addChangeListener(listener);
+        shardedStore.addContact(new Contact("Carol", null, "100"));
+        shardedStore.removeContactByPhoneNumber("5550000");
+        shardedStore.removeChangeListener(listener);
+        shardedStore.addContact(new Contact("Dave", null, "200"));
+
+        assertEquals(2, changes.get());
+        assertEquals(2, afterChanges.get());
+    }
+
+    @Test
+    @DisplayName("addContact_FromManyThreads_ShouldKeepEveryDistinctContact")
+    void addContact_FromManyThreads_ShouldKeepEveryDistinctContact() throws Exception {
+        int threads = 8;
+        int perThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (int i = offset; i < offset + perThread; i++) {
+                        shardedStore.addContact(new Contact("Name" + i, null, String.valueOf(1_000_000 + i / 2)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(100 + threads * perThread, shardedStore.size());
+        assertEquals(100 + threads * perThread, shardedStore.version());
+        List<Contact> contacts = shardedStore.getContacts();
+        assertEquals(100 + threads * perThread, new HashSet<>(contacts).size());
+        assertEquals(added, contacts.subList(0, 100));
+    }
+
+    private static List<String> sorted(List<Contact> contacts) {
+        return contacts.stream().map(contact -> contact.getName() + "|" + contact.getPhoneNumber()).sorted().toList();
+    }
+}
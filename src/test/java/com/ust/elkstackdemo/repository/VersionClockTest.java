@@ -0,0 +1,59 @@
+package com.ust.elkstackdemo.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionClockTest {
+
+    @Test
+    @DisplayName("commit_BeforeEarlierVersions_ShouldNotWaitAndBecomeVisibleWithThem")
+    void commit_BeforeEarlierVersions_ShouldNotWaitAndBecomeVisibleWithThem() {
+        var clock = new VersionClock();
+        long first = clock.next();
+        long second = clock.next();
+        long third = clock.next();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            clock.commit(third);
+            clock.commit(second);
+        });
+        assertEquals(0, clock.committed());
+        var awaited = CompletableFuture.runAsync(() -> clock.await(third));
+        assertFalse(awaited.isDone());
+
+        clock.commit(first);
+        assertEquals(third, clock.committed());
+        assertTimeoutPreemptively(Duration.ofSeconds(5), awaited::join);
+    }
+
+    @Test
+    @DisplayName("commit_ConcurrentlyInAnyOrder_ShouldMakeEveryVersionVisible")
+    void commit_ConcurrentlyInAnyOrder_ShouldMakeEveryVersionVisible() throws Exception {
+        var clock = new VersionClock();
+        int writers = 8;
+        int versionsEach = 3 * VersionClock.IN_FLIGHT;
+        try (var executor = Executors.newFixedThreadPool(writers)) {
+            List<CompletableFuture<Void>> done = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                done.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < versionsEach; i++) {
+                        long version = clock.next();
+                        clock.commit(version);
+                        clock.await(version);
+                        assertTrue(clock.committed() >= version);
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(done.toArray(CompletableFuture[]::new)).get();
+        }
+        assertEquals((long) writers * versionsEach, clock.committed());
+    }
+}
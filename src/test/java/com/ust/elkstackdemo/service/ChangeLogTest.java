@@ -0,0 +1,95 @@
+package com.ust.elkstackdemo.service;
+
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactChange;
+import com.ust.elkstackdemo.model.ContactChanges;
+import com.ust.elkstackdemo.repository.ContactRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeLogTest {
+
+    private final ContactRepository contactRepository = new ContactRepository();
+    private ChangeLog changeLog;
+
+    private ChangeLog start(int capacity) {
+        changeLog = new ChangeLog(contactRepository, new ChangeLogProperties(capacity));
+        changeLog.start();
+        return changeLog;
+    }
+
+    @AfterEach
+    void tearDown() {
+        changeLog.stop();
+    }
+
+    private static List<String> describe(ContactChanges changes) {
+        return changes.changes().stream()
+                .map(c -> c.version() + " " + c.type() + " " + c.contact().getName())
+                .toList();
+    }
+
+    @Test
+    @DisplayName("since_ShouldReturnAddsAndRemovesAfterTheVersion")
+    void since_ShouldReturnAddsAndRemovesAfterTheVersion() {
+        contactRepository.addContact(new Contact("Before", "before", "100"));
+        start(100);
+        contactRepository.addContact(new Contact("John Doe", "john.doe", "1234567890"));
+        contactRepository.addContact(new Contact("Jane Doe", "jane.doe", "5550001111"));
+        contactRepository.removeContactByPhoneNumber("1234567890");
+
+        var all = changeLog.since(1, 100);
+        assertEquals(List.of("2 ADD John Doe", "3 ADD Jane Doe", "4 REMOVE John Doe"), describe(all));
+        assertEquals(4, all.version());
+        assertFalse(all.more());
+        assertEquals(List.of("4 REMOVE John Doe"), describe(changeLog.since(3, 100)));
+        assertEquals(List.of(), changeLog.since(4, 100).changes());
+    }
+
+    @Test
+    @DisplayName("since_ShouldKeepEveryChangeOfAVersionTogether")
+    void since_ShouldKeepEveryChangeOfAVersionTogether() {
+        start(100);
+        contactRepository.addContacts(List.of(new Contact("A", "a", "111"), new Contact("B", "b", "111"),
+                new Contact("C", "c", "222")));
+
+        var first = changeLog.since(0, 1);
+        assertEquals(List.of("1 ADD A", "1 ADD B"), describe(first));
+        assertTrue(first.more());
+        assertEquals(1, first.version());
+        var rest = changeLog.since(first.version(), 1);
+        assertEquals(List.of("2 ADD C"), describe(rest));
+        assertFalse(rest.more());
+        assertEquals(ContactChange.Type.ADD, rest.changes().get(0).type());
+    }
+
+    @Test
+    @DisplayName("since_WhenChangesWereDropped_ShouldReturnNull")
+    void since_WhenChangesWereDropped_ShouldReturnNull() {
+        start(2);
+        for (int i = 1; i <= 5; i++) {
+            contactRepository.addContact(new Contact("Contact " + i, "c" + i, Integer.toString(i)));
+        }
+
+        assertEquals(2, changeLog.size());
+        assertNull(changeLog.since(0, 100));
+        assertNull(changeLog.since(2, 100));
+        assertEquals(List.of("4 ADD Contact 4", "5 ADD Contact 5"), describe(changeLog.since(3, 100)));
+    }
+
+    @Test
+    @DisplayName("since_WithVersionNotReachedOrChangesNotSeen_ShouldReturnNull")
+    void since_WithVersionNotReachedOrChangesNotSeen_ShouldReturnNull() {
+        contactRepository.addContact(new Contact("Before", "before", "100"));
+        start(100);
+
+        assertNull(changeLog.since(0, 100));
+        assertNull(changeLog.since(2, 100));
+        assertThrows(IllegalArgumentException.class, () -> changeLog.since(1, 0));
+    }
+}
@@ -1,19 +1,26 @@
 package com.ust.elkstackdemo.service;
 
+import com.ust.elkstackdemo.metrics.ContactMetrics;
+import com.ust.elkstackdemo.model.BulkResult;
 import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.ContactPage;
+import com.ust.elkstackdemo.model.Versioned;
 import com.ust.elkstackdemo.repository.ContactRepository;
+import com.ust.elkstackdemo.repository.ContactSnapshot;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 class ContactServiceTest {
@@ -33,15 +40,23 @@ class ContactServiceTest {
     @Mock
     ContactRepository contactRepository;
 
+    @Spy
+    ContactMetrics metrics = new ContactMetrics();
+
     @InjectMocks
     ContactService contactService;
 
+    @Mock
+    ContactSnapshot snapshot;
+
     List<Contact> contacts;
     Contact contact;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(contactRepository.snapshot()).thenReturn(snapshot);
+        when(snapshot.version()).thenReturn(42L);
         contact = new Contact("John Doe", "john.doe", "1234567890");
         contacts = List.of(contact);
     }
@@ -123,14 +138,15 @@ class ContactServiceTest {
         // Arrange
         List<Contact> contacts = new ArrayList<>();
         contacts.add(new Contact("John Doe", "john.doe@example.com", "1234567890"));
-        when(contactRepository.getContacts()).thenReturn(contacts);
+        when(snapshot.getContacts()).thenReturn(contacts);
 
         // Act
-        List<Contact> result = contactService.getContacts();
+        Versioned<List<Contact>> result = contactService.getContacts();
 
         // Assert
-        assertEquals(contacts, result);
-        verify(contactRepository, times(1)).getContacts();
+        assertEquals(new Versioned<>(42, contacts), result);
+        verify(snapshot, times(1)).getContacts();
+        verify(snapshot).close();
     }
 
     @Test
@@ -140,14 +156,15 @@ class ContactServiceTest {
         String phoneNumber = "1234567890";
         List<Contact> contacts = new ArrayList<>();
         contacts.add(new Contact("John Doe", "john.doe@example.com", phoneNumber));
-        when(contactRepository.getContactsByPhoneNumber(phoneNumber)).thenReturn(contacts);
+        when(snapshot.getContactsByPhoneNumber(phoneNumber)).thenReturn(contacts);
 
         // Act
-        List<Contact> result = contactService.getContactsByPhoneNumber(phoneNumber);
+        Versioned<List<Contact>> result = contactService.getContactsByPhoneNumber(phoneNumber);
 
         // Assert
-        assertEquals(contacts, result);
-        verify(contactRepository, times(1)).getContactsByPhoneNumber(phoneNumber);
+        assertEquals(new Versioned<>(42, contacts), result);
+        verify(snapshot, times(1)).getContactsByPhoneNumber(phoneNumber);
+        verify(snapshot).close();
     }
 
     @Test
@@ -157,13 +174,106 @@ class ContactServiceTest {
         String name = "John Doe";
         List<Contact> contacts = new ArrayList<>();
         contacts.add(new Contact(name, "john.doe@example.com", "1234567890"));
-        when(contactRepository.getContactsByName(name)).thenReturn(contacts);
+        when(snapshot.getContactsByName(name)).thenReturn(contacts);
+
+        // Act
+        Versioned<List<Contact>> result = contactService.getContactsByName(name);
+
+        // Assert
+        assertEquals(new Versioned<>(42, contacts), result);
+        verify(snapshot, times(1)).getContactsByName(name);
+        verify(snapshot).close();
+    }
+
+    @Test
+    @DisplayName("getContactsByNamePrefix_ShouldReturnContactsWithNamePrefix")
+    void getContactsByNamePrefix_ShouldReturnContactsWithNamePrefix() {
+        // Arrange
+        when(snapshot.getContactsByNamePrefix("Jo")).thenReturn(contacts);
+
+        // Act
+        Versioned<List<Contact>> result = contactService.getContactsByNamePrefix("Jo");
+
+        // Assert
+        assertEquals(new Versioned<>(42, contacts), result);
+        verify(snapshot, times(1)).getContactsByNamePrefix("Jo");
+        verify(snapshot).close();
+    }
+
+    @Test
+    @DisplayName("getContactsByNameFuzzy_ShouldReturnContactsWithSimilarName")
+    void getContactsByNameFuzzy_ShouldReturnContactsWithSimilarName() {
+        // Arrange
+        when(snapshot.getContactsByNameFuzzy("Jon Doe")).thenReturn(contacts);
+
+        // Act
+        Versioned<List<Contact>> result = contactService.getContactsByNameFuzzy("Jon Doe");
+
+        // Assert
+        assertEquals(new Versioned<>(42, contacts), result);
+        verify(snapshot, times(1)).getContactsByNameFuzzy("Jon Doe");
+        verify(snapshot).close();
+    }
+
+    @Test
+    @DisplayName("getContactsPage_ShouldReturnPageFromRepository")
+    void getContactsPage_ShouldReturnPageFromRepository() {
+        // Arrange
+        ContactPage page = new ContactPage(contacts, "1");
+        when(snapshot.getContacts(null, 10)).thenReturn(page);
+
+        // Act
+        Versioned<ContactPage> result = contactService.getContacts(null, 10);
+
+        // Assert
+        assertEquals(new Versioned<>(42, page), result);
+        verify(snapshot, times(1)).getContacts(null, 10);
+        verify(snapshot).close();
+    }
+
+    @Test
+    @DisplayName("addContacts_ShouldAddInBatchesAndSummarize")
+    void addContacts_ShouldAddInBatchesAndSummarize() {
+        // Arrange
+        int total = ContactService.BULK_BATCH_SIZE + 10;
+        List<Contact> input = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            input.add(new Contact("Name" + i, "mail" + i, String.valueOf(i)));
+        }
+        when(contactRepository.addContacts(anyList())).thenAnswer(invocation -> {
+            List<Contact> batch = invocation.getArgument(0);
+            List<String> outcomes = new ArrayList<>();
+            batch.forEach(c -> outcomes.add(c.getPhoneNumber().endsWith("7") ? "Contact already exists" : null));
+            return outcomes;
+        });
+
+        // Act
+        BulkResult result = contactService.addContacts(input.iterator());
+
+        // Assert
+        verify(contactRepository, times(2)).addContacts(anyList());
+        assertEquals(total, result.received());
+        assertEquals(total / 10, result.rejected());
+        assertEquals(result.received() - result.rejected(), result.added());
+        assertEquals(new BulkResult.Failure(7, "Contact already exists"), result.failures().get(0));
+        assertEquals(1007, result.failures().get(result.failures().size() - 1).index());
+    }
+
+    @Test
+    @DisplayName("searches_ShouldCountHitsAndMisses")
+    void searches_ShouldCountHitsAndMisses() {
+        // Arrange
+        when(snapshot.getContactsByName("John Doe")).thenReturn(contacts);
+        when(snapshot.getContactsByName("Nobody")).thenReturn(List.of());
 
         // Act
-        List<Contact> result = contactService.getContactsByName(name);
+        contactService.getContactsByName("John Doe");
+        contactService.getContactsByName("Nobody");
+        contactService.getContactsByName("Nobody");
 
         // Assert
-        assertEquals(contacts, result);
-        verify(contactRepository, times(1)).getContactsByName(name);
+        assertEquals(1, metrics.hits(ContactMetrics.Operation.SEARCH_NAME));
+        assertEquals(2, metrics.misses(ContactMetrics.Operation.SEARCH_NAME));
+        assertEquals(0, metrics.hits(ContactMetrics.Operation.SEARCH_PHONE) + metrics.misses(ContactMetrics.Operation.SEARCH_PHONE));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+package com.ust.elkstackdemo.service;
+
+import com.ust.elkstackdemo.metrics.ContactMetrics;
+import com.ust.elkstackdemo.model.Contact;
+import com.ust.elkstackdemo.model.Versioned;
+import com.ust.elkstackdemo.repository.ContactRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCacheTest {
+
+    private ContactRepository contactRepository;
+    private SearchCache searchCache;
+    private ContactService contactService;
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        contactRepository = new ContactRepository();
+        searchCache = cache(true);
+        contactService = new ContactService(contactRepository, new ContactMetrics(), searchCache, null);
+        contactService.addContact("John Doe", "john.doe", "1234567890");
+        contactService.addContact("Jane Doe", "jane.doe", "5550001111");
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchCache.stop();
+    }
+
+    private SearchCache cache(boolean enabled) {
+        var cache = new SearchCache(contactRepository, new ContactMetrics(),
+                new SearchCacheProperties(enabled, DataSize.ofMegabytes(1)));
+        cache.start();
+        return cache;
+    }
+
+    private String byName(String name) {
+        return json(searchCache.get(ContactMetrics.Operation.SEARCH_NAME, name, counted(contactService::getContactsByName)));
+    }
+
+    private String byPhone(String phoneNumber) {
+        return json(searchCache.get(ContactMetrics.Operation.SEARCH_PHONE, phoneNumber,
+                counted(contactService::getContactsByPhoneNumber)));
+    }
+
+    private Function<String, Versioned<List<Contact>>> counted(Function<String, Versioned<List<Contact>>> search) {
+        return key -> {
+            searches.incrementAndGet();
+            return search.apply(key);
+        };
+    }
+
+    private static String json(Versioned<byte[]> result) {
+        return new String(result.value(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("get_ShouldAnswerRepeatedSearchesWithoutSearching")
+    void get_ShouldAnswerRepeatedSearchesWithoutSearching() {
+        String first = byName("John Doe");
+        String second = byName("John Doe");
+
+        assertEquals("[{\"name\":\"John Doe\",\"email\":\"john.doe\",\"phoneNumber\":\"1234567890\"}]", first);
+        assertEquals(first, second);
+        assertEquals("", byPhone("999"));
+        assertEquals("", byPhone("999"));
+        assertEquals(2, searches.get());
+        assertEquals(2, searchCache.stats().hitCount());
+        assertEquals(2, searchCache.stats().missCount());
+        assertEquals(2, searchCache.size());
+    }
+
+    @Test
+    @DisplayName("addContact_ShouldInvalidateOnlyTheSearchesItChanges")
+    void addContact_ShouldInvalidateOnlyTheSearchesItChanges() {
+        byName("John Doe");
+        byName("Jane Doe");
+        byPhone("34567");
+        byPhone("555");
+        searches.set(0);
+
+        contactService.addContact("John Doe", "john.doe@work", "9934567000");
+
+        assertEquals(2, searchCache.invalidations());
+        assertTrue(byName("John Doe").contains("john.doe@work"));
+        assertTrue(byPhone("34567").contains("john.doe@work"));
+        assertEquals(2, searches.get());
+        assertFalse(byName("Jane Doe").isEmpty());
+        assertFalse(byPhone("555").isEmpty());
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    @DisplayName("removeContact_ShouldInvalidateNameAndPhoneSearches")
+    void removeContact_ShouldInvalidateNameAndPhoneSearches() {
+        byName("John Doe");
+        byPhone("1234567890");
+        byPhone("4567");
+
+        contactService.removeContactByPhoneNumber("1234567890");
+
+        assertEquals("", byName("John Doe"));
+        assertEquals("", byPhone("1234567890"));
+        assertEquals("", byPhone("4567"));
+        assertEquals(6, searches.get());
+    }
+
+    @Test
+    @DisplayName("get_ShouldNotCacheAResultAWriteCommittedDuringTheSearchChanged")
+    void get_ShouldNotCacheAResultAWriteCommittedDuringTheSearchChanged() {
+        var result = searchCache.get(ContactMetrics.Operation.SEARCH_NAME, "John Doe", name -> {
+            var found = contactService.getContactsByName(name);
+            contactService.addContact("John Doe", "john.doe@home", "7770001111");
+            return found;
+        });
+
+        assertFalse(json(result).contains("john.doe@home"));
+        assertTrue(byName("John Doe").contains("john.doe@home"));
+        assertEquals(0, searchCache.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("get_WhenDisabled_ShouldSearchEveryTime")
+    void get_WhenDisabled_ShouldSearchEveryTime() {
+        searchCache.stop();
+        searchCache = cache(false);
+
+        assertEquals(byName("Jane Doe"), byName("Jane Doe"));
+        assertEquals(2, searches.get());
+        assertEquals(0, searchCache.size());
+    }
+
+    @Test
+    @DisplayName("get_WithUncachedOperation_ShouldThrowException")
+    void get_WithUncachedOperation_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> searchCache.get(
+                ContactMetrics.Operation.SEARCH_NAME_FUZZY, "Jhn", contactService::getContactsByNameFuzzy));
+    }
+}
@@ -0,0 +1,340 @@
+package com.ust.elkstackdemo.shipping;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogShipperTest {
+
+    @TempDir
+    Path directory;
+
+    private Path logFile;
+    private Path checkpoint;
+    private StubBulkServer server;
+    private final List<LogShipper> shippers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logFile = directory.resolve("application.log");
+        checkpoint = directory.resolve("shipper.checkpoint");
+        server = new StubBulkServer();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.open();
+        for (LogShipper shipper : shippers) {
+            shipper.stop();
+        }
+        server.stop();
+    }
+
+    private LogShipper start(int batchSize, int maxPendingBatches) throws IOException {
+        var properties = new ShipperProperties(true, logFile, server.url(), "logs", batchSize,
+                DataSize.ofKilobytes(256), Duration.ofMillis(20), maxPendingBatches, Duration.ofMillis(5),
+                Duration.ofMillis(5), Duration.ofMillis(50), checkpoint);
+        var shipper = new LogShipper(properties);
+        shipper.start();
+        shippers.add(shipper);
+        return shipper;
+    }
+
+    private void append(Path file, int from, int to) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            lines.append(event(i)).append('\n');
+        }
+        Files.writeString(file, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void awaitAcknowledged(LogShipper shipper) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (shipper.status().pendingBatches() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "batches still pending");
+            Thread.sleep(5);
+        }
+    }
+
+    private static String event(int i) {
+        return "{\"message\":\"event " + i + "\"}";
+    }
+
+    private static List<String> events(int from, int to) {
+        return IntStream.range(from, to).mapToObj(LogShipperTest::event).toList();
+    }
+
+    @Test
+    @DisplayName("ship_WithLinesAppended_ShouldDeliverAllInOrderAsGzipBulkAndCheckpoint")
+    void ship_WithLinesAppended_ShouldDeliverAllInOrderAsGzipBulkAndCheckpoint() throws Exception {
+        append(logFile, 0, 1_000);
+        var shipper = start(100, 4);
+        Files.writeString(logFile, "not json\n{\"message\":\"ev", StandardOpenOption.APPEND);
+        Thread.sleep(50);
+        Files.writeString(logFile, "ent 1000\"}\r\n", StandardOpenOption.APPEND);
+        append(logFile, 1_001, 2_500);
+
+        server.await(2_500);
+        awaitAcknowledged(shipper);
+        assertEquals(events(0, 2_500), server.documents());
+        assertTrue(server.requests.get() >= 25);
+        assertEquals(List.of("{\"create\":{}}"), server.actions.stream().distinct().toList());
+        assertEquals(1, shipper.status().skippedLines());
+        assertEquals(2_500, shipper.status().shippedEvents());
+
+        shipper.stop();
+        shippers.clear();
+        assertEquals(Files.size(logFile), Checkpoint.read(checkpoint).orElseThrow().offset());
+    }
+
+    @Test
+    @DisplayName("ship_WhenEndpointFails_ShouldRetryWithBackoffAndDeliverOnce")
+    void ship_WhenEndpointFails_ShouldRetryWithBackoffAndDeliverOnce() throws Exception {
+        server.failures.set(3);
+        append(logFile, 0, 10);
+        var shipper = start(100, 4);
+
+        server.await(10);
+        awaitAcknowledged(shipper);
+        assertEquals(events(0, 10), server.documents());
+        assertEquals(3, shipper.status().retries());
+    }
+
+    @Test
+    @DisplayName("ship_WithRetryableItemErrors_ShouldResendOnlyThoseItems")
+    void ship_WithRetryableItemErrors_ShouldResendOnlyThoseItems() throws Exception {
+        Set<String> throttled = new HashSet<>();
+        server.itemStatus = document -> {
+            if (document.equals(event(0))) {
+                return 400;
+            }
+            // every other event is throttled once
+            return document.hashCode() % 2 == 0 && throttled.add(document) ? 429 : 201;
+        };
+        append(logFile, 0, 50);
+        var shipper = start(100, 4);
+
+        server.await(49);
+        awaitAcknowledged(shipper);
+        assertEquals(new HashSet<>(events(1, 50)), new HashSet<>(server.documents()));
+        assertEquals(49, server.documents().size());
+        assertEquals(1, shipper.status().rejectedEvents());
+        assertEquals(1, shipper.status().retries());
+    }
+
+    @Test
+    @DisplayName("ship_AcrossRotation_ShouldReadRestOfRotatedFileThenNewFile")
+    void ship_AcrossRotation_ShouldReadRestOfRotatedFileThenNewFile() throws Exception {
+        append(logFile, 0, 100);
+        start(1_000, 4);
+        server.await(100);
+
+        // what Logback does: last lines, rename, new file
+        append(logFile, 100, 150);
+        Files.move(logFile, directory.resolve("application.log.2024-01-01.0"));
+        append(logFile, 150, 200);
+
+        server.await(200);
+        assertEquals(events(0, 200), server.documents());
+    }
+
+    @Test
+    @DisplayName("start_WithCheckpointInRotatedGzipFile_ShouldResumeThereAndCatchUp")
+    void start_WithCheckpointInRotatedGzipFile_ShouldResumeThereAndCatchUp() throws Exception {
+        append(logFile, 0, 100);
+        var first = start(1_000, 4);
+        server.await(100);
+        first.stop();
+        shippers.clear();
+
+        // while the shipper is down the file is written to, rotated and compressed
+        append(logFile, 100, 130);
+        Path rotated = directory.resolve("application.log.2024-01-01.0.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(rotated))) {
+            Files.copy(logFile, out);
+        }
+        Files.setLastModifiedTime(rotated, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        Files.delete(logFile);
+        append(logFile, 130, 150);
+
+        start(1_000, 4);
+        server.await(150);
+        Thread.sleep(100);
+        assertEquals(events(0, 150), server.documents());
+    }
+
+    @Test
+    @DisplayName("ship_WhenSinkStalls_ShouldStopReadingInsteadOfBuffering")
+    void ship_WhenSinkStalls_ShouldStopReadingInsteadOfBuffering() throws Exception {
+        server.close();
+        append(logFile, 0, 1_000);
+        var shipper = start(10, 2);
+        Thread.sleep(300);
+
+        // one batch in flight, two queued and one waiting for room; the rest stays in the file
+        assertEquals(4, shipper.status().pendingBatches());
+        assertTrue(shipper.status().backpressureMillis() > 0);
+        assertEquals(0, server.documents().size());
+
+        server.open();
+        server.await(1_000);
+        awaitAcknowledged(shipper);
+        assertEquals(events(0, 1_000), server.documents());
+    }
+
+    @Test
+    @DisplayName("ship_AtFullSpeed_ShouldReportThroughput")
+    void ship_AtFullSpeed_ShouldReportThroughput() throws Exception {
+        int events = 200_000;
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < events; i++) {
+            lines.append("{\"@timestamp\":\"2024-01-01T00:00:00.000Z\",\"log.level\":\"DEBUG\",\"message\":\"event ")
+                    .append(i).append("\",\"log.logger\":\"com.ust.elkstackdemo.service.ContactService\"}\n");
+        }
+        Files.writeString(logFile, lines);
+        server.recordDocuments = false;
+
+        long started = System.nanoTime();
+        var shipper = start(1_000, 4);
+        server.await(events);
+        double seconds = (System.nanoTime() - started) / 1e9;
+        awaitAcknowledged(shipper);
+
+        ShipperStatus status = shipper.status();
+        System.out.printf("Shipped %d events (%d KB raw, %d KB gzip) in %.2f s: %.0f events/s%n", events,
+                Files.size(logFile) >> 10, status.shippedBytes() >> 10, seconds, events / seconds);
+        assertEquals(events, status.shippedEvents());
+        assertTrue(status.shippedBytes() < Files.size(logFile) / 4);
+    }
+
+    /**
+     * Just enough of Elasticsearch's {@code _bulk} API: gzip bodies, per-item statuses and failures.
+     */
+    private static final class StubBulkServer {
+
+        final HttpServer http;
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final List<String> actions = new ArrayList<>();
+        private final List<String> documents = new ArrayList<>();
+        private final AtomicInteger accepted = new AtomicInteger();
+        private final Semaphore gate = new Semaphore(Integer.MAX_VALUE);
+        volatile Function<String, Integer> itemStatus = document -> 201;
+        volatile boolean recordDocuments = true;
+
+        StubBulkServer() throws IOException {
+            // like Elasticsearch; otherwise Nagle's algorithm adds ~40 ms to every response
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+            http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            http.createContext("/logs/_bulk", this::bulk);
+            http.start();
+        }
+
+        URI url() {
+            return URI.create("http://127.0.0.1:" + http.getAddress().getPort());
+        }
+
+        void close() {
+            gate.drainPermits();
+        }
+
+        void open() {
+            gate.release(Integer.MAX_VALUE - gate.availablePermits());
+        }
+
+        void stop() {
+            http.stop(0);
+        }
+
+        synchronized List<String> documents() {
+            return new ArrayList<>(documents);
+        }
+
+        void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (accepted.get() < count) {
+                assertTrue(System.currentTimeMillis() < deadline, "only " + accepted.get() + " of " + count + " arrived");
+                Thread.sleep(5);
+            }
+        }
+
+        private void bulk(HttpExchange exchange) throws IOException {
+            try {
+                gate.acquire();
+                gate.release();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            requests.incrementAndGet();
+            if (failures.getAndUpdate(n -> Math.max(n - 1, 0)) > 0) {
+                respond(exchange, 503, "{\"error\":\"unavailable\"}");
+                return;
+            }
+            assertEquals("gzip", exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            String[] lines;
+            try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+                lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n");
+            }
+            StringBuilder items = new StringBuilder();
+            boolean errors = false;
+            synchronized (this) {
+                for (int i = 0; i + 1 < lines.length; i += 2) {
+                    if (recordDocuments && actions.size() < 10) {
+                        actions.add(lines[i]);
+                    }
+                    int status = itemStatus.apply(lines[i + 1]);
+                    if (status == 201) {
+                        if (recordDocuments) {
+                            documents.add(lines[i + 1]);
+                        }
+                        accepted.incrementAndGet();
+                    } else {
+                        errors = true;
+                    }
+                    items.append(items.isEmpty() ? "" : ",").append("{\"create\":{\"status\":").append(status)
+                            .append(status == 201 ? "" : ",\"error\":{\"reason\":\"stub says " + status + "\"}")
+                            .append("}}");
+                }
+            }
+            respond(exchange, 200, "{\"took\":1,\"errors\":" + errors + ",\"items\":[" + items + "]}");
+        }
+
+        private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}